@@ -30,12 +30,12 @@ import android.net.Uri;
 import android.util.Log;
 
 import org.github.bademux.feedly.andrss.R;
-import org.github.bademux.feedly.api.model.EntriesResponse;
 import org.github.bademux.feedly.api.model.Entry;
 import org.github.bademux.feedly.api.model.Feed;
 import org.github.bademux.feedly.api.model.Stream;
 import org.github.bademux.feedly.api.model.Subscription;
 import org.github.bademux.feedly.api.service.Feedly;
+import org.github.bademux.feedly.api.service.Paginator;
 import org.github.bademux.feedly.api.service.ServiceManager;
 import org.github.bademux.feedly.api.service.Utils;
 import org.github.bademux.feedly.api.util.FeedlyUtil;
@@ -139,22 +139,34 @@ public class FeedlyCacheService extends IntentService {
     processEntries(contentResolver, execute(request));
   }
 
+  /**
+   * Fetches all pages, a failed page is fetched again from the last good continuation up to
+   * {@link #MAX_RESUMES} times, entries fetched so far are kept anyway.
+   */
   private Collection<Entry> execute(final Feedly.Streams.Contents request) {
     final Collection<Entry> entriesCache = new ArrayList<Entry>();
-    do {
-
-      try {
-        EntriesResponse result = request.execute();
-        request.setContinuation(result.getContinuation());
-        List<Entry> entries = result.items();
-        if (entries != null && !entries.isEmpty()) {
-          entriesCache.addAll(entries);
+    Paginator<Entry> paginator = request.paginate();
+    Paginator<Entry>.PageIterator entries = paginator.iterator();
+    try {
+      for (int resumes = 0; ; resumes++) {
+        try {
+          while (entries.hasNext()) {
+            entriesCache.add(entries.next());
+          }
+          break;
+        } catch (Paginator.FetchException e) {
+          if (resumes == MAX_RESUMES) {
+            Log.e(TAG, "Can't fetch entries", e);
+            break;
+          }
+          Log.w(TAG, "Resuming entries from " + e.getContinuation(), e);
+          entries.close();
+          entries = paginator.iterator(e.getContinuation());
         }
-      } catch (IOException e) {
-        Log.e(TAG, "unknown action", e);
-        request.setContinuation(null);
       }
-    } while (!isNullOrEmpty(request.getContinuation()));
+    } finally {
+      entries.close();
+    }
     return entriesCache;
   }
 
@@ -271,4 +283,7 @@ public class FeedlyCacheService extends IntentService {
       "org.github.bademux.feedly.api.service.EXTRA_FEED_ID";
 
   static final String TAG = "FeedlyCacheService";
+
+  /** Number of times a failed read of entries is resumed. */
+  static final int MAX_RESUMES = 3;
 }
\ No newline at end of file
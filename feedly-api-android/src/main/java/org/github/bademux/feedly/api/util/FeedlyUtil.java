@@ -40,6 +40,7 @@ import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
 import org.github.bademux.feedly.api.oauth2.FeedlyOAuthConstants;
 import org.github.bademux.feedly.api.oauth2.FeedlyTokenResponse;
 import org.github.bademux.feedly.api.service.Feedly;
+import org.github.bademux.feedly.api.service.RetryPolicy;
 import org.github.bademux.feedly.api.util.store.AndroidDataStoreFactory;
 
 import java.io.IOException;
@@ -83,7 +84,8 @@ public final class FeedlyUtil {
       throw new IllegalStateException("Please login");
     }
     if (serviceInstance == null) {
-      serviceInstance = new DevFeedly.Builder(HTTP_TRANSPORT, JSON_FACTORY, credential).build();
+      serviceInstance = new DevFeedly.Builder(HTTP_TRANSPORT, JSON_FACTORY, credential)
+          .setRetryPolicy(new RetryPolicy()).build();
     }
     return serviceInstance;
   }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.benchmarks;
+
+import org.github.bademux.feedly.api.model.Category;
+import org.github.bademux.feedly.api.model.IdGenericJson;
+import org.github.bademux.feedly.api.model.Tag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Construction of the ids of {@link IdGenericJson} and their decoding. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IdBenchmark {
+
+  private static final String USER_ID = "c805fcbf-3acf-4302-a97e-d82f9d7c897f";
+
+  private final Category category = new Category("tech", USER_ID);
+
+  private final Tag tag = new Tag("global.saved", USER_ID);
+
+  @Benchmark
+  public Category newCategory() {
+    return new Category("tech", USER_ID);
+  }
+
+  @Benchmark
+  public Category newCategoryOfCurrentUser() {
+    return new Category("tech", null);
+  }
+
+  @Benchmark
+  public String categoryGetName() {
+    return category.getName();
+  }
+
+  @Benchmark
+  public String tagGetName() {
+    return tag.getName();
+  }
+
+  @Benchmark
+  public String parse() {
+    return IdGenericJson.parse(category.getId());
+  }
+}
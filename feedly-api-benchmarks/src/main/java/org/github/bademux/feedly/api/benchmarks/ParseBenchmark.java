@@ -0,0 +1,77 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.benchmarks;
+
+import org.github.bademux.feedly.api.model.EntriesResponse;
+import org.github.bademux.feedly.api.model.Stream;
+import org.github.bademux.feedly.api.model.UnreadResponse;
+import org.github.bademux.feedly.api.service.Feedly;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Execution and parsing of the recorded responses of various sizes, served by {@link
+ * com.google.api.client.testing.http.MockHttpTransport}, with reflective and reflection-free
+ * parsing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParseBenchmark {
+
+  /** Number of entries or feeds in the response. */
+  @Param({"1", "20", "250", "1000"})
+  public int size;
+
+  @Param({"false", "true"})
+  public boolean reflectionFreeParsing;
+
+  private Feedly entriesService;
+
+  private Feedly countsService;
+
+  private Stream stream;
+
+  @Setup
+  public void setUp() {
+    entriesService = Payloads.service(Payloads.entries(size), reflectionFreeParsing);
+    countsService = Payloads.service(Payloads.unreadCounts(size), reflectionFreeParsing);
+    stream = entriesService.newCategory("tech");
+  }
+
+  @Benchmark
+  public EntriesResponse entriesResponse() throws IOException {
+    return entriesService.streams().contents(stream).execute();
+  }
+
+  @Benchmark
+  public UnreadResponse unreadResponse() throws IOException {
+    return countsService.markers().counts().execute();
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.benchmarks;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.client.util.IOUtils;
+
+import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
+import org.github.bademux.feedly.api.service.Feedly;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** Recorded payloads and the {@link MockHttpTransport} serving them. */
+final class Payloads {
+
+  /** Recorded entry of {@code streams/contents}, see {@code entry.json}. */
+  private static final String ENTRY = load("entry.json");
+
+  private Payloads() {}
+
+  /** Returns {@code streams/contents} response with the given number of entries. */
+  static String entries(int count) {
+    StringBuilder sb = new StringBuilder(count * (ENTRY.length() + 16) + 256);
+    sb.append("{\"id\":\"user/c805fcbf-3acf-4302-a97e-d82f9d7c897f/category/tech\",")
+        .append("\"updated\":1373902003108,\"continuation\":\"13fb9d6f274:2ac9c5:f5718180\",")
+        .append("\"items\":[");
+    for (int i = 0; i < count; i++) {
+      if (i != 0) {
+        sb.append(',');
+      }
+      // keep ids unique, as they are in real streams
+      sb.append(ENTRY.replace(":2ac9c5:", ':' + Integer.toHexString(i) + ':'));
+    }
+    return sb.append("]}").toString();
+  }
+
+  /** Returns {@code markers/counts} response with the given number of feeds. */
+  static String unreadCounts(int count) {
+    StringBuilder sb = new StringBuilder(count * 96 + 32).append("{\"unreadcounts\":[");
+    for (int i = 0; i < count; i++) {
+      if (i != 0) {
+        sb.append(',');
+      }
+      sb.append("{\"id\":\"feed/http://feeds").append(i).append(".example.com/rss.xml\",")
+          .append("\"count\":").append(i % 200).append(",\"updated\":1373902003108}");
+    }
+    return sb.append("]}").toString();
+  }
+
+  /** Returns transport answering every request with the given JSON content. */
+  static MockHttpTransport transport(final String content) {
+    return new MockHttpTransport() {
+      @Override
+      public LowLevelHttpRequest buildRequest(String method, String url) throws IOException {
+        return new MockLowLevelHttpRequest(url).setResponse(
+            new MockLowLevelHttpResponse().setContentType("application/json")
+                .setContent(content));
+      }
+    };
+  }
+
+  /** Returns service answering every request with the given JSON content. */
+  static Feedly service(String content, boolean reflectionFreeParsing) {
+    return new Feedly.Builder(transport(content), new GsonFactory(), new FeedlyCredential())
+        .setReflectionFreeParsing(reflectionFreeParsing).build();
+  }
+
+  private static String load(String name) {
+    InputStream in = Payloads.class.getResourceAsStream(name);
+    if (in == null) {
+      throw new IllegalStateException("Missing payload " + name);
+    }
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      IOUtils.copy(in, out);
+      return out.toString("UTF-8");
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
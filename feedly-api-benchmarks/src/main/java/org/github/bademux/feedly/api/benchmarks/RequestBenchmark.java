@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.benchmarks;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.UriTemplate;
+
+import org.github.bademux.feedly.api.model.Category;
+import org.github.bademux.feedly.api.service.Feedly;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/** Building of requests: url template expansion, query parameters and headers. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RequestBenchmark {
+
+  private static final String BASE_URL = Feedly.DEFAULT_ROOT_URL + Feedly.DEFAULT_SERVICE_PATH;
+
+  private Feedly.Streams.Contents contents;
+
+  private Feedly.Markers.Counts counts;
+
+  @Setup
+  public void setUp() throws IOException {
+    Feedly service = Payloads.service("{}", false);
+    Category category = service.newCategory("tech");
+    contents = service.streams().contents(category).setCount(100).setNewerThan(1373902003108L)
+        .setContinuation("13fb9d6f274:2ac9c5:f5718180");
+    counts = service.markers().counts().setStreamId(category.getId());
+  }
+
+  @Benchmark
+  public GenericUrl buildHttpRequestUrl() {
+    return contents.buildHttpRequestUrl();
+  }
+
+  @Benchmark
+  public HttpRequest buildHttpRequest() throws IOException {
+    return contents.buildHttpRequest();
+  }
+
+  @Benchmark
+  public HttpRequest buildHttpRequestWithoutPathParameters() throws IOException {
+    return counts.buildHttpRequest();
+  }
+
+  @Benchmark
+  public String uriTemplateExpand() {
+    return UriTemplate.expand(BASE_URL, "streams/{streamId}/contents", contents, true);
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.benchmarks;
+
+import com.google.api.client.util.store.DataStore;
+import com.google.api.client.util.store.FileDataStoreFactory;
+import com.google.api.client.util.store.MemoryDataStoreFactory;
+
+import org.github.bademux.feedly.api.oauth2.FeedlyStoredCredential;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/** Round-trips of {@link FeedlyStoredCredential} through in-memory and file data stores. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StoredCredentialBenchmark {
+
+  private static final String USER_ID = "c805fcbf-3acf-4302-a97e-d82f9d7c897f";
+
+  private final FeedlyStoredCredential credential = new FeedlyStoredCredential();
+
+  private DataStore<FeedlyStoredCredential> memoryStore;
+
+  private DataStore<FeedlyStoredCredential> fileStore;
+
+  private File dataDirectory;
+
+  @Setup
+  public void setUp() throws IOException {
+    credential.setAccessToken("AQAAF4iTvPam_M4_dWheV_5NUL8E:sandbox")
+        .setRefreshToken("AQAA7rJ7InAiOjEsImEiOiJmZWVk:sandbox")
+        .setExpirationTimeMilliseconds(1373902003108L);
+    credential.setUserId(USER_ID);
+    credential.setPlan("standard");
+    memoryStore = FeedlyStoredCredential.getDefaultDataStore(new MemoryDataStoreFactory());
+    dataDirectory = File.createTempFile("feedly-benchmark", "");
+    if (!dataDirectory.delete() || !dataDirectory.mkdir()) {
+      throw new IOException("Can't create " + dataDirectory);
+    }
+    fileStore = FeedlyStoredCredential.getDefaultDataStore(new FileDataStoreFactory(dataDirectory));
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    fileStore.clear();
+    for (File file : dataDirectory.listFiles()) {
+      file.delete();
+    }
+    dataDirectory.delete();
+  }
+
+  @Benchmark
+  public FeedlyStoredCredential memoryRoundTrip() throws IOException {
+    memoryStore.set(USER_ID, credential);
+    return memoryStore.get(USER_ID);
+  }
+
+  @Benchmark
+  public FeedlyStoredCredential fileRoundTrip() throws IOException {
+    fileStore.set(USER_ID, credential);
+    return fileStore.get(USER_ID);
+  }
+}
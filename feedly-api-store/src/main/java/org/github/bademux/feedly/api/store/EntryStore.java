@@ -0,0 +1,695 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.store;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.JsonParser;
+import com.google.api.client.util.Charsets;
+
+import org.github.bademux.feedly.api.model.EntriesResponse;
+import org.github.bademux.feedly.api.model.Entry;
+import org.github.bademux.feedly.api.model.ModelReaders;
+import org.github.bademux.feedly.api.service.EntryHandler;
+import org.github.bademux.feedly.api.service.Feedly;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+import static com.google.api.client.util.Preconditions.checkState;
+
+/**
+ * Local store of entries, so stream reads are served without requests to the server.
+ *
+ * <p> Entries are appended to a log of segment files in the directory of the store, a changed
+ * entry is appended again and a deleted one gets a tombstone. Reads go through memory mappings of
+ * the segments. In memory there are only a hash index of entry ids and an index of every stream
+ * sorted by crawled time, both are rebuilt from the log on open; a torn record at the end of the
+ * log, left by a crash, is dropped. {@link #compact()} rewrites the live entries of the segments
+ * that are mostly superseded and deletes those. </p>
+ *
+ * <p> Entries of {@link Feedly.Streams.Contents} responses are stored with {@link
+ * #newHandler(String)} or {@link #put(EntriesResponse)} and read with {@link
+ * #contents(Feedly.Streams.Contents)}, which takes the same request. Example usage: </p>
+ *
+ * <pre>
+ * EntryStore store = new EntryStore(dir, new GsonFactory());
+ * Feedly.Streams.Contents request = service.streams().contents(stream).setNewerThan(lastSync);
+ * request.executeAndHandle(store.newHandler(request.getStreamId()));
+ * ...
+ * EntriesResponse page = store.contents(service.streams().contents(stream).setCount(50));
+ * </pre>
+ *
+ * <p> An entry belongs to the streams it was stored for and to its origin feed. Implementation
+ * is thread-safe, reads run concurrently; a directory must not be shared by several stores. </p>
+ */
+public class EntryStore implements Closeable {
+
+  /** Default size of the segment files. */
+  public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+  /** Default share of live records below which a segment is compacted. */
+  public static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+
+  /** Number of entries of a page if the request has no count, as for the server. */
+  static final int DEFAULT_COUNT = 20;
+
+  private static final Logger LOGGER = Logger.getLogger(EntryStore.class.getName());
+
+  private static final String SUFFIX = ".log";
+
+  private static final String[] NO_STREAMS = new String[0];
+
+  private final File directory;
+
+  private final JsonFactory jsonFactory;
+
+  private final int segmentSize;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /** Segments by id, the last one is active. */
+  private final TreeMap<Integer, Segment> segments = new TreeMap<Integer, Segment>();
+
+  private Segment active;
+
+  private final IdIndex ids = new IdIndex(new IdIndex.Ids() {
+    public String idAt(long location) {
+      return Record.readId(segmentOf(location).buffer(), offsetOf(location));
+    }
+  });
+
+  private final Map<String, StreamIndex> streams = new HashMap<String, StreamIndex>();
+
+  private final List<Listener> listeners = new ArrayList<Listener>();
+
+  private volatile double compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+
+  private boolean closed;
+
+  /** @param directory directory of the store, it is created if it doesn't exist */
+  public EntryStore(File directory, JsonFactory jsonFactory) throws IOException {
+    this(directory, jsonFactory, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * @param directory   directory of the store, it is created if it doesn't exist
+   * @param segmentSize size of the segment files, larger entries get a segment of their own
+   */
+  public EntryStore(File directory, JsonFactory jsonFactory, int segmentSize) throws IOException {
+    checkArgument(segmentSize > 0, "segmentSize must be positive");
+    this.directory = directory.getCanonicalFile();
+    this.jsonFactory = checkNotNull(jsonFactory);
+    this.segmentSize = segmentSize;
+    if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+      throw new IOException("Unable to create directory " + this.directory);
+    }
+    try {
+      load();
+    } catch (IOException e) {
+      closeSegments();
+      throw e;
+    }
+  }
+
+  /** Returns the directory of the store. */
+  public final File getDirectory() { return directory; }
+
+  /** Returns the share of live records below which {@link #compact()} rewrites a segment. */
+  public double getCompactionThreshold() { return compactionThreshold; }
+
+  /**
+   * Sets the share of live records below which {@link #compact()} rewrites a segment.
+   *
+   * <p> By default it is {@link #DEFAULT_COMPACTION_THRESHOLD}. </p>
+   */
+  public EntryStore setCompactionThreshold(double compactionThreshold) {
+    checkArgument(compactionThreshold >= 0 && compactionThreshold <= 1,
+                  "compactionThreshold must be in [0, 1]");
+    this.compactionThreshold = compactionThreshold;
+    return this;
+  }
+
+  /** Returns the number of stored entries. */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return ids.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Returns the number of stored entries of the stream. */
+  public int size(String streamId) {
+    lock.readLock().lock();
+    try {
+      StreamIndex index = streams.get(streamId);
+      return index == null ? 0 : index.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Returns the stored entry or {@code null} if there is none. */
+  public Entry get(String id) throws IOException {
+    lock.readLock().lock();
+    try {
+      ensureOpen();
+      long location = ids.get(checkNotNull(id));
+      return location == IdIndex.NONE ? null : read(location, recordAt(location));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Stores the entry, it replaces the stored one with the same id and belongs to the streams of
+   * both.
+   *
+   * @param streamId stream the entry is received from or {@code null} for its origin feed only
+   */
+  public void put(String streamId, Entry entry) throws IOException {
+    checkNotNull(entry.getId(), "entry without id");
+    byte[] json = jsonFactory.toByteArray(entry);
+    Boolean unread = entry.getUnread();
+    byte flags = unread == null ? 0 : (byte) (Record.UNREAD_KNOWN | (unread ? Record.UNREAD : 0));
+    long crawled = entry.getCrawled() == null ? 0 : entry.getCrawled();
+    lock.writeLock().lock();
+    try {
+      ensureOpen();
+      Set<String> entryStreams = new LinkedHashSet<String>();
+      long previous = ids.get(entry.getId());
+      if (previous != IdIndex.NONE) {
+        Collections.addAll(entryStreams, recordAt(previous).streams);
+      }
+      if (streamId != null) {
+        entryStreams.add(streamId);
+      }
+      if (entry.getOrigin() != null && entry.getOrigin().getStreamId() != null) {
+        entryStreams.add(entry.getOrigin().getStreamId());
+      }
+      String[] recordStreams = entryStreams.toArray(new String[entryStreams.size()]);
+      ByteBuffer record =
+          Record.encode(Record.PUT, flags, crawled, entry.getId(), recordStreams, json);
+      int length = record.remaining();
+      index(entry.getId(), crawled, recordStreams, length, append(record));
+      for (Listener listener : listeners) {
+        listener.onPut(entry, recordStreams);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Stores the entries, see {@link #put(String, Entry)}. */
+  public void putAll(String streamId, Collection<Entry> entries) throws IOException {
+    for (Entry entry : entries) {
+      put(streamId, entry);
+    }
+  }
+
+  /** Stores the items of {@link Feedly.Streams.Contents} response into its stream. */
+  public void put(EntriesResponse response) throws IOException {
+    if (response.items() != null) {
+      putAll(response.getId(), response.items());
+    }
+  }
+
+  /**
+   * Returns handler that stores the entries into the stream as they are decoded, for {@link
+   * Feedly.Streams.Contents#executeAndHandle(EntryHandler)}.
+   */
+  public EntryHandler newHandler(final String streamId) {
+    return new EntryHandler() {
+      public void handle(Entry entry) throws IOException { put(streamId, entry); }
+    };
+  }
+
+  /**
+   * Deletes the entry from the store and all its streams.
+   *
+   * @return {@code false} if the entry isn't stored
+   */
+  public boolean delete(String id) throws IOException {
+    lock.writeLock().lock();
+    try {
+      ensureOpen();
+      if (ids.get(checkNotNull(id)) == IdIndex.NONE) {
+        return false;
+      }
+      append(Record.encode(Record.DELETE, (byte) 0, 0, id, NO_STREAMS, new byte[0]));
+      unindex(id);
+      for (Listener listener : listeners) {
+        listener.onDelete(id);
+      }
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the stored page of the stream as {@link Feedly.Streams.Contents} returns it: honors
+   * count, newerThan, continuation, unreadOnly and 'oldest' ranking of the request. Projection
+   * isn't applied, entries are returned whole. Entries whose unread state is unknown are kept by
+   * unreadOnly.
+   */
+  public EntriesResponse contents(Feedly.Streams.Contents request) throws IOException {
+    return contents(request.getStreamId(), request.getCount(), request.getNewerThan(),
+                    request.getContinuation(), Boolean.TRUE.equals(request.getUnreadOnly()),
+                    "oldest".equals(request.getRanked()));
+  }
+
+  /**
+   * Returns the stored page of the stream.
+   *
+   * @param count        number of entries or {@code null} for {@value #DEFAULT_COUNT}
+   * @param newerThan    time in milliseconds the entries are crawled after or {@code null}
+   * @param continuation continuation of the previous page or {@code null} for the first page
+   * @param oldestFirst  whether to return the oldest entries first instead of the newest
+   */
+  public EntriesResponse contents(String streamId, Integer count, Long newerThan,
+                                  String continuation, boolean unreadOnly, boolean oldestFirst)
+      throws IOException {
+    int limit = count == null ? DEFAULT_COUNT : count;
+    checkArgument(limit > 0, "count must be positive");
+    List<Entry> items = new ArrayList<Entry>();
+    String nextContinuation = null;
+    lock.readLock().lock();
+    try {
+      ensureOpen();
+      StreamIndex index = streams.get(checkNotNull(streamId));
+      if (index != null) {
+        int from = newerThan == null ? 0 : index.upperBound(newerThan);
+        int to = index.size();
+        int step = oldestFirst ? 1 : -1;
+        int i = continuation == null ? (oldestFirst ? from : to - 1)
+                                     : positionOf(index, continuation, oldestFirst);
+        for (; i >= from && i < to && items.size() < limit; i += step) {
+          long location = index.locationAt(i);
+          Record record = recordAt(location);
+          if (!unreadOnly || !record.isUnreadKnown() || record.isUnread()) {
+            items.add(read(location, record));
+          }
+        }
+        if (i >= from && i < to) {
+          nextContinuation = index.crawledAt(i) + ":" + recordAt(index.locationAt(i)).id;
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    return new EntriesResponse().set("id", streamId).set("items", items)
+        .set("continuation", nextContinuation);
+  }
+
+  /**
+   * Rewrites the live entries of the segments with less than {@link #getCompactionThreshold()
+   * threshold} of live records to the end of the log and deletes the segments.
+   *
+   * @return number of reclaimed bytes
+   */
+  public long compact() throws IOException {
+    lock.writeLock().lock();
+    try {
+      ensureOpen();
+      List<Segment> compacted = new ArrayList<Segment>();
+      long reclaimed = 0;
+      for (Segment segment : new ArrayList<Segment>(segments.values())) {
+        if (segment == active || segment.getLive() >= segment.size() * compactionThreshold) {
+          continue;
+        }
+        Set<String> shadowed = shadowed(segment, compacted);
+        ByteBuffer buffer = segment.buffer();
+        reclaimed += segment.size();
+        for (int offset = 0; offset < segment.size(); ) {
+          Record record = Record.read(buffer, offset, false);
+          long location = location(segment.getId(), offset);
+          boolean live = record.type == Record.PUT && ids.get(record.id) == location;
+          if (live || (record.type == Record.DELETE && shadowed.remove(record.id))) {
+            ByteBuffer copy = buffer.duplicate();
+            copy.limit(offset + record.length).position(offset);
+            long moved = append(copy);
+            if (live) {
+              relocate(record, location, moved);
+            }
+            reclaimed -= record.length;
+          }
+          offset += record.length;
+        }
+        compacted.add(segment);
+      }
+      if (!compacted.isEmpty()) {
+        // rewritten records must be durable before the only other copy is deleted
+        active.force();
+        for (Segment segment : compacted) {
+          segments.remove(segment.getId());
+          if (!segment.delete()) {
+            LOGGER.log(Level.FINE, "{0} is deleted on the next open", segment.getFile());
+          }
+        }
+      }
+      return reclaimed;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns ids of the tombstones of the segment that are still needed: the entry is deleted and
+   * a segment older than this one, which stays after compaction, holds its record. Segments
+   * compacted before this one are deleted first, so their records don't count.
+   */
+  private Set<String> shadowed(Segment segment, List<Segment> compacted) {
+    Set<String> deleted = new HashSet<String>();
+    ByteBuffer buffer = segment.buffer();
+    for (int offset = 0; offset < segment.size(); ) {
+      Record record = Record.read(buffer, offset, false);
+      if (record.type == Record.DELETE && ids.get(record.id) == IdIndex.NONE) {
+        deleted.add(record.id);
+      }
+      offset += record.length;
+    }
+    Set<String> shadowed = new HashSet<String>();
+    for (Segment older : segments.headMap(segment.getId()).values()) {
+      if (deleted.isEmpty()) {
+        break;
+      }
+      if (compacted.contains(older)) {
+        continue;
+      }
+      ByteBuffer olderBuffer = older.buffer();
+      for (int offset = 0; offset < older.size(); ) {
+        Record record = Record.read(olderBuffer, offset, false);
+        if (record.type == Record.PUT && deleted.remove(record.id)) {
+          shadowed.add(record.id);
+        }
+        offset += record.length;
+      }
+    }
+    return shadowed;
+  }
+
+  /** Forces the appended records to the disk. */
+  public void flush() throws IOException {
+    lock.writeLock().lock();
+    try {
+      ensureOpen();
+      if (active != null) {
+        active.force();
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void close() throws IOException {
+    lock.writeLock().lock();
+    try {
+      if (!closed) {
+        closed = true;
+        if (active != null) {
+          active.force();
+        }
+        closeSegments();
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Passes the stored entries to the listener and then notifies it of every change, atomically,
+   * so no change is missed.
+   */
+  void attach(Listener listener) throws IOException {
+    lock.writeLock().lock();
+    try {
+      ensureOpen();
+      for (Segment segment : segments.values()) {
+        ByteBuffer buffer = segment.buffer();
+        for (int offset = 0; offset < segment.size(); ) {
+          Record record = Record.read(buffer, offset, false);
+          long location = location(segment.getId(), offset);
+          if (record.type == Record.PUT && ids.get(record.id) == location) {
+            listener.onPut(read(location, record), record.streams);
+          }
+          offset += record.length;
+        }
+      }
+      listeners.add(listener);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Stops notifying the listener. */
+  void detach(Listener listener) {
+    lock.writeLock().lock();
+    try {
+      listeners.remove(listener);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Opens the segments and rebuilds the indexes from their records. */
+  private void load() throws IOException {
+    File[] files = directory.listFiles(new FileFilter() {
+      public boolean accept(File file) {
+        return file.isFile() && file.getName().endsWith(SUFFIX);
+      }
+    });
+    for (File file : files == null ? new File[0] : files) {
+      String name = file.getName();
+      int id;
+      try {
+        id = Integer.parseInt(name.substring(0, name.length() - SUFFIX.length()));
+      } catch (NumberFormatException e) {
+        continue;
+      }
+      segments.put(id, Segment.open(id, file));
+    }
+    for (Segment segment : new ArrayList<Segment>(segments.values())) {
+      boolean last = segment.getId() == segments.lastKey();
+      if (!last && segment.isEmpty()) {
+        // compacted, but it was still mapped when it was deleted
+        segments.remove(segment.getId());
+        if (!segment.delete()) {
+          LOGGER.log(Level.WARNING, "Unable to delete {0}", segment.getFile());
+        }
+        continue;
+      }
+      segment.map();
+      ByteBuffer buffer = segment.buffer();
+      int offset = 0;
+      for (Record record; (record = Record.read(buffer, offset, true)) != null; ) {
+        if (record.type == Record.PUT) {
+          index(record.id, record.crawled, record.streams, record.length,
+                location(segment.getId(), offset));
+        } else {
+          unindex(record.id);
+        }
+        offset += record.length;
+      }
+      segment.setSize(offset);
+      if (last) {
+        if (!segment.isClean()) {
+          LOGGER.log(Level.WARNING, "Torn record at {0} of {1} is dropped",
+                     new Object[]{offset, segment.getFile()});
+          segment.clearTail();
+        }
+        active = segment;
+      } else if (!segment.isClean()) {
+        throw new IOException("Corrupted record at " + offset + " of " + segment.getFile());
+      }
+    }
+  }
+
+  /** Appends the record to the active segment, a new one is started if it doesn't fit. */
+  private long append(ByteBuffer record) throws IOException {
+    int length = record.remaining();
+    if (active == null || !active.fits(length)) {
+      int id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+      if (active != null) {
+        active.seal();
+      }
+      active = Segment.open(id, new File(directory, String.format("%010d%s", id, SUFFIX)));
+      segments.put(id, active);
+      active.allocate(Math.max(segmentSize, length));
+    }
+    return location(active.getId(), active.append(record));
+  }
+
+  private void index(String id, long crawled, String[] entryStreams, int length, long location) {
+    unlink(ids.put(id, location));
+    segmentOf(location).addLive(length);
+    for (String streamId : entryStreams) {
+      StreamIndex index = streams.get(streamId);
+      if (index == null) {
+        streams.put(streamId, index = new StreamIndex());
+      }
+      index.add(crawled, location);
+    }
+  }
+
+  private void unindex(String id) { unlink(ids.remove(id)); }
+
+  /** Removes the superseded record from the stream indexes. */
+  private void unlink(long location) {
+    if (location == IdIndex.NONE) {
+      return;
+    }
+    Record record = recordAt(location);
+    segmentOf(location).addLive(-record.length);
+    for (String streamId : record.streams) {
+      StreamIndex index = streams.get(streamId);
+      index.remove(record.crawled, location);
+      if (index.size() == 0) {
+        streams.remove(streamId);
+      }
+    }
+  }
+
+  private void relocate(Record record, long from, long to) {
+    ids.put(record.id, to);
+    segmentOf(from).addLive(-record.length);
+    segmentOf(to).addLive(record.length);
+    for (String streamId : record.streams) {
+      StreamIndex index = streams.get(streamId);
+      index.remove(record.crawled, from);
+      index.add(record.crawled, to);
+    }
+  }
+
+  /** Returns index of the entry of the continuation or of the first one crawled after it. */
+  private int positionOf(StreamIndex index, String continuation, boolean oldestFirst) {
+    int separator = continuation.indexOf(':');
+    checkArgument(separator > 0, "invalid continuation %s", continuation);
+    long crawled;
+    try {
+      crawled = Long.parseLong(continuation.substring(0, separator));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("invalid continuation " + continuation);
+    }
+    String id = continuation.substring(separator + 1);
+    int first = index.lowerBound(crawled), last = index.upperBound(crawled) - 1;
+    for (int i = first; i <= last; i++) {
+      if (id.equals(recordAt(index.locationAt(i)).id)) {
+        return i;
+      }
+    }
+    // the entry is deleted, resume with the entries crawled at the same time
+    return oldestFirst ? first : last;
+  }
+
+  private Entry read(long location, Record record) throws IOException {
+    ByteBuffer json = segmentOf(location).read(record.jsonOffset);
+    json.limit(record.jsonOffset + record.jsonLength);
+    JsonParser parser = jsonFactory.createJsonParser(new ByteBufferInputStream(json),
+                                                     Charsets.UTF_8);
+    try {
+      return ModelReaders.get(Entry.class).read(parser);
+    } finally {
+      parser.close();
+    }
+  }
+
+  private Record recordAt(long location) {
+    return Record.read(segmentOf(location).buffer(), offsetOf(location), false);
+  }
+
+  private Segment segmentOf(long location) { return segments.get((int) (location >>> 32)); }
+
+  private static int offsetOf(long location) { return (int) location; }
+
+  private static long location(int segment, int offset) {
+    return ((long) segment << 32) | (offset & 0xFFFFFFFFL);
+  }
+
+  private void ensureOpen() { checkState(!closed, "store is closed"); }
+
+  private void closeSegments() throws IOException {
+    IOException failure = null;
+    for (Segment segment : segments.values()) {
+      try {
+        segment.close();
+      } catch (IOException e) {
+        failure = e;
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /** Receives the changes of the store under its lock. */
+  interface Listener {
+
+    /** @param streams all the streams of the entry */
+    void onPut(Entry entry, String[] streams);
+
+    void onDelete(String id);
+  }
+
+  /** Stream over the remaining bytes of the buffer. */
+  private static final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) { this.buffer = buffer; }
+
+    @Override
+    public int read() { return buffer.hasRemaining() ? buffer.get() & 0xFF : -1; }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      length = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, length);
+      return length;
+    }
+
+    @Override
+    public int available() { return buffer.remaining(); }
+  }
+}
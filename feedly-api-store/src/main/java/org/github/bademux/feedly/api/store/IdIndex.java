@@ -0,0 +1,138 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.store;
+
+/**
+ * Hash index of the log locations of the entries by entry id. It is open addressing over
+ * primitive arrays, the ids aren't held in memory: a slot keeps the hash and the location and the
+ * id is read from the log when the hashes match.
+ *
+ * <p> Implementation is not thread-safe. </p>
+ */
+final class IdIndex {
+
+  /** Reads the id of the record at the location. */
+  interface Ids {
+
+    String idAt(long location);
+  }
+
+  /** Location of the empty slot, segments are numbered from 1. */
+  static final long NONE = 0;
+
+  private final Ids ids;
+
+  private int[] hashes = new int[16];
+
+  private long[] locations = new long[16];
+
+  private int size;
+
+  IdIndex(Ids ids) { this.ids = ids; }
+
+  int size() { return size; }
+
+  /** Returns the location of the entry or {@link #NONE}. */
+  long get(String id) {
+    int slot = find(id, hash(id));
+    return slot < 0 ? NONE : locations[slot];
+  }
+
+  /** Sets the location of the entry, returns the previous one or {@link #NONE}. */
+  long put(String id, long location) {
+    int hash = hash(id);
+    int slot = find(id, hash);
+    if (slot >= 0) {
+      long previous = locations[slot];
+      locations[slot] = location;
+      return previous;
+    }
+    if ((size + 1) * 4 > locations.length * 3) {
+      resize();
+    }
+    int mask = locations.length - 1;
+    slot = hash & mask;
+    while (locations[slot] != NONE) {
+      slot = (slot + 1) & mask;
+    }
+    hashes[slot] = hash;
+    locations[slot] = location;
+    size++;
+    return NONE;
+  }
+
+  /** Removes the entry, returns its location or {@link #NONE}. */
+  long remove(String id) {
+    int slot = find(id, hash(id));
+    if (slot < 0) {
+      return NONE;
+    }
+    long previous = locations[slot];
+    // backward shift: moves the following entries of the probe sequence into the gap
+    int mask = locations.length - 1;
+    int gap = slot;
+    for (int next = (gap + 1) & mask; locations[next] != NONE; next = (next + 1) & mask) {
+      int home = hashes[next] & mask;
+      if (((next - home) & mask) >= ((next - gap) & mask)) {
+        hashes[gap] = hashes[next];
+        locations[gap] = locations[next];
+        gap = next;
+      }
+    }
+    locations[gap] = NONE;
+    size--;
+    return previous;
+  }
+
+  /** Returns the slot of the id or {@code -1}. */
+  private int find(String id, int hash) {
+    int mask = locations.length - 1;
+    for (int slot = hash & mask; locations[slot] != NONE; slot = (slot + 1) & mask) {
+      if (hashes[slot] == hash && id.equals(ids.idAt(locations[slot]))) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private void resize() {
+    int[] oldHashes = hashes;
+    long[] oldLocations = locations;
+    hashes = new int[oldHashes.length * 2];
+    locations = new long[oldLocations.length * 2];
+    int mask = locations.length - 1;
+    for (int i = 0; i < oldLocations.length; i++) {
+      if (oldLocations[i] != NONE) {
+        int slot = oldHashes[i] & mask;
+        while (locations[slot] != NONE) {
+          slot = (slot + 1) & mask;
+        }
+        hashes[slot] = oldHashes[i];
+        locations[slot] = oldLocations[i];
+      }
+    }
+  }
+
+  /** Spreads the hash of the id, ids of a feed share long prefixes. */
+  private static int hash(String id) {
+    int h = id.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.store;
+
+import com.google.api.client.util.StringUtils;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+
+/**
+ * Record of the log: length of the body, CRC32 of the body and the body. The body starts with
+ * type, unread flags, crawled time, entry id and ids of the streams of the entry, so indexes are
+ * rebuilt without decoding the entries; JSON of the entry follows them.
+ */
+final class Record {
+
+  static final byte PUT = 1, DELETE = 2;
+
+  static final byte UNREAD_KNOWN = 1, UNREAD = 2;
+
+  /** Length of the length and CRC32 of the body. */
+  static final int HEADER = 8;
+
+  private static final String[] NO_STREAMS = new String[0];
+
+  final byte type;
+
+  final byte flags;
+
+  final long crawled;
+
+  final String id;
+
+  final String[] streams;
+
+  /** Offset of JSON of the entry in the buffer the record is read from. */
+  final int jsonOffset;
+
+  final int jsonLength;
+
+  /** Length of the record including the header. */
+  final int length;
+
+  private Record(byte type, byte flags, long crawled, String id, String[] streams,
+                 int jsonOffset, int jsonLength, int length) {
+    this.type = type;
+    this.flags = flags;
+    this.crawled = crawled;
+    this.id = id;
+    this.streams = streams;
+    this.jsonOffset = jsonOffset;
+    this.jsonLength = jsonLength;
+    this.length = length;
+  }
+
+  boolean isUnreadKnown() { return (flags & UNREAD_KNOWN) != 0; }
+
+  boolean isUnread() { return (flags & UNREAD) != 0; }
+
+  /** Encodes the record, the returned buffer is ready to be written. */
+  static ByteBuffer encode(byte type, byte flags, long crawled, String id, String[] streams,
+                           byte[] json) {
+    byte[] idBytes = StringUtils.getBytesUtf8(id);
+    byte[][] streamBytes = new byte[streams.length][];
+    int length = HEADER + 1 + 1 + 8 + 2 + idBytes.length + 2 + json.length;
+    for (int i = 0; i < streams.length; i++) {
+      streamBytes[i] = StringUtils.getBytesUtf8(streams[i]);
+      length += 2 + streamBytes[i].length;
+    }
+    checkArgument(streams.length <= 0xFFFF, "too many streams");
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    buffer.position(HEADER);
+    buffer.put(type).put(flags).putLong(crawled);
+    putString(buffer, idBytes);
+    buffer.putShort((short) streams.length);
+    for (byte[] stream : streamBytes) {
+      putString(buffer, stream);
+    }
+    buffer.put(json);
+    CRC32 crc = new CRC32();
+    crc.update(buffer.array(), HEADER, length - HEADER);
+    buffer.putInt(0, length - HEADER).putInt(4, (int) crc.getValue());
+    buffer.rewind();
+    return buffer;
+  }
+
+  /**
+   * Decodes the record at the offset of the buffer.
+   *
+   * @param verify whether to check CRC32 of the body
+   * @return record or {@code null} if there is no valid record at the offset, i.e. the end of
+   * records or a torn one
+   */
+  static Record read(ByteBuffer buffer, int offset, boolean verify) {
+    if (offset + HEADER > buffer.limit()) {
+      return null;
+    }
+    int bodyLength = buffer.getInt(offset);
+    if (bodyLength <= 0 || bodyLength > buffer.limit() - offset - HEADER) {
+      return null;
+    }
+    int body = offset + HEADER;
+    if (verify) {
+      CRC32 crc = new CRC32();
+      if (buffer.hasArray()) {
+        crc.update(buffer.array(), buffer.arrayOffset() + body, bodyLength);
+      } else {
+        byte[] bytes = new byte[bodyLength];
+        ByteBuffer view = buffer.duplicate();
+        view.position(body);
+        view.get(bytes);
+        crc.update(bytes);
+      }
+      if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+        return null;
+      }
+    }
+    ByteBuffer view = buffer.duplicate();
+    view.position(body);
+    byte type = view.get();
+    byte flags = view.get();
+    long crawled = view.getLong();
+    String id = getString(view);
+    int count = view.getShort() & 0xFFFF;
+    String[] streams = count == 0 ? NO_STREAMS : new String[count];
+    for (int i = 0; i < count; i++) {
+      streams[i] = getString(view);
+    }
+    int end = body + bodyLength;
+    return new Record(type, flags, crawled, id, streams, view.position(), end - view.position(),
+                      end - offset);
+  }
+
+  /** Reads the id of the record at the offset, it is cheaper than the whole record. */
+  static String readId(ByteBuffer buffer, int offset) {
+    ByteBuffer view = buffer.duplicate();
+    view.position(offset + HEADER + 1 + 1 + 8);
+    return getString(view);
+  }
+
+  private static void putString(ByteBuffer buffer, byte[] bytes) {
+    checkArgument(bytes.length <= 0xFFFF, "string is too long");
+    buffer.putShort((short) bytes.length).put(bytes);
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+    buffer.get(bytes);
+    return StringUtils.newStringUtf8(bytes);
+  }
+}
@@ -0,0 +1,536 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.store;
+
+import org.github.bademux.feedly.api.model.EntriesResponse;
+import org.github.bademux.feedly.api.model.Entry;
+import org.github.bademux.feedly.api.service.Feedly;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * Local full-text index of the entries of {@link EntryStore}, so searches are answered without
+ * {@link Feedly.Search.Entries} requests to the server.
+ *
+ * <p> Title, summary, content, keywords and author of the entries are tokenized into lower-case
+ * words, HTML tags and character references are skipped except in keywords. Every field has its
+ * own inverted index: a posting list per word holds the entries containing it and the number of
+ * occurrences, entries are numbered in the order they are indexed and the lists are delta and
+ * varint encoded. Results are ranked by BM25, title matches weigh double, equal ones newest
+ * first. </p>
+ *
+ * <p> The index follows the store: the stored entries are indexed on creation and every stored,
+ * changed or deleted entry afterwards. A changed entry is indexed anew and its old postings are
+ * skipped until the lists are rewritten, which happens once there are more of those than live
+ * entries. Example usage: </p>
+ *
+ * <pre>
+ * SearchIndex index = new SearchIndex(store);
+ * EntriesResponse results = index.search(
+ *     service.search().entries(service.newCategory(Category.ALL), "java").setUnreadOnly(true));
+ * </pre>
+ *
+ * <p> Implementation is thread-safe, searches run concurrently. </p>
+ */
+public class SearchIndex implements Closeable {
+
+  /** Indexed fields of the entries, named as {@link Feedly.Search.Entries#getFields()}. */
+  public enum Field {
+    TITLE(2), SUMMARY(1), CONTENT(1), KEYWORDS(1), AUTHOR(1);
+
+    private final float boost;
+
+    private Field(float boost) { this.boost = boost; }
+
+    /** Returns the field of the name, 'all' is every field. */
+    static Set<Field> of(Collection<String> names) {
+      if (names == null || names.isEmpty()) {
+        return ALL_FIELDS;
+      }
+      Set<Field> fields = EnumSet.noneOf(Field.class);
+      for (String name : names) {
+        if ("all".equalsIgnoreCase(name)) {
+          return ALL_FIELDS;
+        }
+        try {
+          fields.add(valueOf(name.toUpperCase(Locale.ENGLISH)));
+        } catch (IllegalArgumentException e) {
+          throw new IllegalArgumentException("unknown field " + name);
+        }
+      }
+      return fields;
+    }
+  }
+
+  private static final Set<Field> ALL_FIELDS = Collections.unmodifiableSet(
+      EnumSet.allOf(Field.class));
+
+  private static final Field[] FIELDS = Field.values();
+
+  /** BM25 parameters: term frequency saturation and length normalization. */
+  private static final float K1 = 1.2f, B = 0.75f;
+
+  private static final byte UNREAD_KNOWN = 1, UNREAD = 2;
+
+  private final EntryStore store;
+
+  private final EntryStore.Listener listener = new EntryStore.Listener() {
+    public void onPut(Entry entry, String[] streams) { add(entry, streams); }
+
+    public void onDelete(String id) { remove(id); }
+  };
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /** Posting lists by word, for every field. */
+  private final List<Map<String, Postings>> postings = new ArrayList<Map<String, Postings>>();
+
+  /** Numbers of the entries by id. */
+  private final Map<String, Integer> docs = new HashMap<String, Integer>();
+
+  private final BitSet deleted = new BitSet();
+
+  private String[] ids = new String[64];
+
+  private String[][] streams = new String[64][];
+
+  private long[] crawled = new long[64];
+
+  private byte[] flags = new byte[64];
+
+  /** Number of words of the fields of the entries, {@code FIELDS.length} per entry. */
+  private int[] lengths = new int[64 * FIELDS.length];
+
+  /** Total number of words of live entries by field. */
+  private final long[] totalLengths = new long[FIELDS.length];
+
+  private int docCount;
+
+  /** Indexes the entries of the store and follows its changes. */
+  public SearchIndex(EntryStore store) throws IOException {
+    this.store = checkNotNull(store);
+    for (int i = 0; i < FIELDS.length; i++) {
+      postings.add(new HashMap<String, Postings>());
+    }
+    store.attach(listener);
+  }
+
+  /** Returns the number of indexed entries. */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return docs.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the page of the stored entries that match the search, as {@link Feedly.Search.Entries}
+   * returns it: honors stream, query, fields, count, newerThan, continuation and unreadOnly of the
+   * request. Entries whose unread state is unknown are kept by unreadOnly.
+   */
+  public EntriesResponse search(Feedly.Search.Entries request) throws IOException {
+    return search(request.getStreamId(), request.getQ(), request.getFields(),
+                  Boolean.TRUE.equals(request.getUnreadOnly()), request.getNewerThan(),
+                  request.getCount(), request.getContinuation());
+  }
+
+  /**
+   * Returns the page of the stored entries that match the search, the best matches first.
+   *
+   * @param streamId     stream of the entries or {@code null} for all stored entries, {@link
+   *                     org.github.bademux.feedly.api.model.Category#ALL global.all} streams
+   *                     match all entries too
+   * @param q            words to search for, an entry matches any of them
+   * @param fields       fields to search in, see {@link Field}, or {@code null} for all
+   * @param newerThan    time in milliseconds the entries are crawled after or {@code null}
+   * @param count        number of entries or {@code null} for {@value EntryStore#DEFAULT_COUNT}
+   * @param continuation continuation of the previous page or {@code null} for the first page
+   */
+  public EntriesResponse search(String streamId, String q, Collection<String> fields,
+                                boolean unreadOnly, Long newerThan, Integer count,
+                                String continuation) throws IOException {
+    int limit = count == null ? EntryStore.DEFAULT_COUNT : count;
+    checkArgument(limit > 0, "count must be positive");
+    int offset = 0;
+    if (continuation != null) {
+      try {
+        offset = Integer.parseInt(continuation);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("invalid continuation " + continuation);
+      }
+    }
+    List<String> matches = match(isAll(streamId) ? null : streamId, tokenize(checkNotNull(q)),
+                                 Field.of(fields), unreadOnly, newerThan);
+    List<Entry> items = new ArrayList<Entry>();
+    int end = Math.min(matches.size(), offset + limit);
+    for (int i = offset; i < end; i++) {
+      Entry entry = store.get(matches.get(i));
+      // deleted since the search
+      if (entry != null) {
+        items.add(entry);
+      }
+    }
+    return new EntriesResponse().set("id", streamId).set("items", items)
+        .set("continuation", end < matches.size() ? String.valueOf(end) : null);
+  }
+
+  /** Stops following the store. */
+  public void close() { store.detach(listener); }
+
+  /** Returns the ids of the matching entries, the best matches first. */
+  private List<String> match(String streamId, Set<String> words, Set<Field> fields,
+                             boolean unreadOnly, Long newerThan) {
+    lock.readLock().lock();
+    try {
+      final float[] scores = new float[docCount];
+      BitSet seen = new BitSet(docCount);
+      List<Integer> matched = new ArrayList<Integer>();
+      int live = docs.size();
+      for (Field field : fields) {
+        Map<String, Postings> index = postings.get(field.ordinal());
+        float averageLength = live == 0 ? 0 : (float) totalLengths[field.ordinal()] / live;
+        for (String word : words) {
+          Postings list = index.get(word);
+          if (list == null) {
+            continue;
+          }
+          float idf = (float) Math.log(1 + (live - list.docFreq + 0.5) / (list.docFreq + 0.5));
+          for (Postings.Cursor cursor = list.cursor(); cursor.next(); ) {
+            int doc = cursor.doc;
+            if (deleted.get(doc) || !accepts(doc, streamId, unreadOnly, newerThan)) {
+              continue;
+            }
+            float norm = lengths[doc * FIELDS.length + field.ordinal()] / averageLength;
+            if (!seen.get(doc)) {
+              seen.set(doc);
+              matched.add(doc);
+            }
+            scores[doc] += field.boost * idf * cursor.frequency * (K1 + 1)
+                           / (cursor.frequency + K1 * (1 - B + B * norm));
+          }
+        }
+      }
+      Collections.sort(matched, new Comparator<Integer>() {
+        public int compare(Integer a, Integer b) {
+          int compare = Float.compare(scores[b], scores[a]);
+          return compare != 0 ? compare
+                              : (crawled[a] == crawled[b] ? 0 : (crawled[a] < crawled[b] ? 1 : -1));
+        }
+      });
+      List<String> result = new ArrayList<String>(matched.size());
+      for (int doc : matched) {
+        result.add(ids[doc]);
+      }
+      return result;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private boolean accepts(int doc, String streamId, boolean unreadOnly, Long newerThan) {
+    if (newerThan != null && crawled[doc] <= newerThan) {
+      return false;
+    }
+    if (unreadOnly && (flags[doc] & UNREAD_KNOWN) != 0 && (flags[doc] & UNREAD) == 0) {
+      return false;
+    }
+    return streamId == null || Arrays.asList(streams[doc]).contains(streamId);
+  }
+
+  private void add(Entry entry, String[] entryStreams) {
+    lock.writeLock().lock();
+    try {
+      removeDoc(entry.getId());
+      int doc = docCount++;
+      ensureCapacity(docCount);
+      ids[doc] = entry.getId();
+      streams[doc] = entryStreams;
+      crawled[doc] = entry.getCrawled() == null ? 0 : entry.getCrawled();
+      Boolean unread = entry.getUnread();
+      flags[doc] = unread == null ? 0 : (byte) (UNREAD_KNOWN | (unread ? UNREAD : 0));
+      docs.put(entry.getId(), doc);
+      for (Field field : FIELDS) {
+        Map<String, Integer> frequencies = new HashMap<String, Integer>();
+        int length = 0;
+        for (String text : textOf(entry, field)) {
+          for (String word : tokenize(text, field != Field.KEYWORDS)) {
+            Integer frequency = frequencies.get(word);
+            frequencies.put(word, frequency == null ? 1 : frequency + 1);
+            length++;
+          }
+        }
+        lengths[doc * FIELDS.length + field.ordinal()] = length;
+        totalLengths[field.ordinal()] += length;
+        Map<String, Postings> index = postings.get(field.ordinal());
+        for (Map.Entry<String, Integer> frequency : frequencies.entrySet()) {
+          Postings list = index.get(frequency.getKey());
+          if (list == null) {
+            index.put(frequency.getKey(), list = new Postings());
+          }
+          list.add(doc, frequency.getValue());
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void remove(String id) {
+    lock.writeLock().lock();
+    try {
+      removeDoc(id);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void removeDoc(String id) {
+    Integer doc = docs.remove(id);
+    if (doc == null) {
+      return;
+    }
+    deleted.set(doc);
+    ids[doc] = null;
+    streams[doc] = null;
+    for (Field field : FIELDS) {
+      totalLengths[field.ordinal()] -= lengths[doc * FIELDS.length + field.ordinal()];
+    }
+    if (deleted.cardinality() > Math.max(docs.size(), 1024)) {
+      purge();
+    }
+  }
+
+  /** Rewrites the posting lists without the deleted entries and renumbers the live ones. */
+  private void purge() {
+    int[] numbers = new int[docCount];
+    int live = 0;
+    for (int doc = 0; doc < docCount; doc++) {
+      if (deleted.get(doc)) {
+        numbers[doc] = -1;
+        continue;
+      }
+      numbers[doc] = live;
+      ids[live] = ids[doc];
+      streams[live] = streams[doc];
+      crawled[live] = crawled[doc];
+      flags[live] = flags[doc];
+      System.arraycopy(lengths, doc * FIELDS.length, lengths, live * FIELDS.length,
+                       FIELDS.length);
+      docs.put(ids[live], live);
+      live++;
+    }
+    Arrays.fill(ids, live, docCount, null);
+    Arrays.fill(streams, live, docCount, null);
+    for (Map<String, Postings> index : postings) {
+      for (Iterator<Postings> i = index.values().iterator(); i.hasNext(); ) {
+        Postings list = i.next();
+        list.renumber(numbers);
+        if (list.docFreq == 0) {
+          i.remove();
+        }
+      }
+    }
+    deleted.clear();
+    docCount = live;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > ids.length) {
+      int length = Math.max(capacity, ids.length * 2);
+      ids = Arrays.copyOf(ids, length);
+      streams = Arrays.copyOf(streams, length);
+      crawled = Arrays.copyOf(crawled, length);
+      flags = Arrays.copyOf(flags, length);
+      lengths = Arrays.copyOf(lengths, length * FIELDS.length);
+    }
+  }
+
+  private static List<String> textOf(Entry entry, Field field) {
+    String text;
+    switch (field) {
+      case TITLE:
+        text = entry.getTitle();
+        break;
+      case SUMMARY:
+        text = entry.getSummary() == null ? null : entry.getSummary().getContent();
+        break;
+      case CONTENT:
+        text = entry.getContent() == null ? null : entry.getContent().getContent();
+        break;
+      case KEYWORDS:
+        return entry.getKeywords() == null ? Collections.<String>emptyList()
+                                           : entry.getKeywords();
+      default:
+        text = entry.getAuthor();
+    }
+    return text == null ? Collections.<String>emptyList() : Collections.singletonList(text);
+  }
+
+  private static boolean isAll(String streamId) {
+    return streamId != null && streamId.endsWith("/category/global.all");
+  }
+
+  /** Returns the distinct words of the query. */
+  private static Set<String> tokenize(String q) {
+    return new LinkedHashSet<String>(tokenize(q, false));
+  }
+
+  /**
+   * Splits the text into lower-case words of letters and digits.
+   *
+   * @param markup whether to skip tags and character references of HTML
+   */
+  static List<String> tokenize(String text, boolean markup) {
+    List<String> words = new ArrayList<String>();
+    StringBuilder word = new StringBuilder();
+    int length = text.length();
+    for (int i = 0; i <= length; i++) {
+      char c = i < length ? text.charAt(i) : ' ';
+      if (Character.isLetterOrDigit(c)) {
+        word.append(Character.toLowerCase(c));
+        continue;
+      }
+      if (word.length() > 0) {
+        words.add(word.toString());
+        word.setLength(0);
+      }
+      if (markup && c == '<') {
+        int end = text.indexOf('>', i);
+        i = end < 0 ? length : end;
+      } else if (markup && c == '&') {
+        int end = text.indexOf(';', i);
+        if (end > 0 && end - i <= 10) {
+          i = end;
+        }
+      }
+    }
+    return words;
+  }
+
+  /** Posting list of a word: delta of the entry number and number of occurrences, as varints. */
+  private static final class Postings {
+
+    private byte[] data = new byte[8];
+
+    private int length;
+
+    private int lastDoc = -1;
+
+    /** Number of the entries in the list, deleted included. */
+    private int docFreq;
+
+    void add(int doc, int frequency) {
+      if (length + 10 > data.length) {
+        data = Arrays.copyOf(data, data.length * 2);
+      }
+      writeVarint(doc - lastDoc);
+      writeVarint(frequency);
+      lastDoc = doc;
+      docFreq++;
+    }
+
+    /** Re-encodes the list with the new entry numbers, {@code -1} drops the entry. */
+    void renumber(int[] numbers) {
+      Cursor cursor = cursor();
+      data = new byte[Math.max(8, length)];
+      length = 0;
+      lastDoc = -1;
+      docFreq = 0;
+      while (cursor.next()) {
+        if (numbers[cursor.doc] >= 0) {
+          add(numbers[cursor.doc], cursor.frequency);
+        }
+      }
+    }
+
+    /** Returns cursor over the current content of the list. */
+    Cursor cursor() { return new Cursor(data, length); }
+
+    private void writeVarint(int value) {
+      while ((value & ~0x7F) != 0) {
+        data[length++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      data[length++] = (byte) value;
+    }
+
+    /** Decodes the list entry by entry. */
+    static final class Cursor {
+
+      private final byte[] data;
+
+      private final int length;
+
+      private int position;
+
+      int doc = -1;
+
+      int frequency;
+
+      Cursor(byte[] data, int length) {
+        this.data = data;
+        this.length = length;
+      }
+
+      /** Moves to the next entry of the list, returns {@code false} at the end. */
+      boolean next() {
+        if (position == length) {
+          return false;
+        }
+        doc += readVarint();
+        frequency = readVarint();
+        return true;
+      }
+
+      private int readVarint() {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+          byte b = data[position++];
+          value |= (b & 0x7F) << shift;
+          if (b >= 0) {
+            return value;
+          }
+        }
+      }
+    }
+  }
+}
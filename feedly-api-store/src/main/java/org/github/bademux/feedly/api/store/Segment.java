@@ -0,0 +1,181 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static com.google.api.client.util.Preconditions.checkState;
+
+/**
+ * File of the log. Records are appended through the channel and read through the memory mapping
+ * of the file, both share the page cache so appended records are readable at once.
+ *
+ * <p> The segment is preallocated and mapped once, its unused tail is zeros, so the end of its
+ * records is the first zero length. The file is never resized while it is mapped, Windows refuses
+ * that and the mapping lives until it is collected: a sealed segment keeps its tail, which is
+ * shorter than the record that didn't fit. A deleted segment is cleared first, so a file that
+ * can't be deleted yet has no records and is deleted on the next open. </p>
+ */
+final class Segment implements Closeable {
+
+  /** Number of zeros written at once. */
+  private static final int CLEAR_SIZE = 8192;
+
+  private final int id;
+
+  private final File file;
+
+  private final RandomAccessFile raf;
+
+  private MappedByteBuffer buffer;
+
+  /** Length of the mapped file. */
+  private long capacity;
+
+  /** Length of the records. */
+  private int size;
+
+  /** Length of the records that are still referenced by the index. */
+  private int live;
+
+  private Segment(int id, File file, RandomAccessFile raf) {
+    this.id = id;
+    this.file = file;
+    this.raf = raf;
+  }
+
+  /** Opens the segment file, it is created if it doesn't exist. */
+  static Segment open(int id, File file) throws IOException {
+    return new Segment(id, file, new RandomAccessFile(file, "rw"));
+  }
+
+  int getId() { return id; }
+
+  File getFile() { return file; }
+
+  int size() { return size; }
+
+  int getLive() { return live; }
+
+  void addLive(int length) { live += length; }
+
+  /** Returns the length of the file, it is larger than the records if the file is preallocated. */
+  long capacity() { return capacity; }
+
+  /** Maps the file as is. */
+  void map() throws IOException {
+    capacity = raf.length();
+    buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, capacity);
+  }
+
+  /** Preallocates the new file for appends and maps it. */
+  void allocate(int capacity) throws IOException {
+    checkState(buffer == null, "Segment is mapped");
+    raf.setLength(capacity);
+    map();
+  }
+
+  /** Zeroes the file beyond the records, so a torn record isn't read after the appended ones. */
+  void clearTail() throws IOException {
+    ByteBuffer zeros = ByteBuffer.allocate(CLEAR_SIZE);
+    FileChannel channel = raf.getChannel();
+    for (long position = size; position < capacity; ) {
+      zeros.clear().limit((int) Math.min(CLEAR_SIZE, capacity - position));
+      while (zeros.hasRemaining()) {
+        position += channel.write(zeros, position);
+      }
+    }
+  }
+
+  /** Returns whether the file is zeros beyond the records, i.e. no record is cut after them. */
+  boolean isClean() {
+    for (long offset = size; offset < Math.min(capacity, size + Record.HEADER); offset++) {
+      if (buffer.get((int) offset) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns whether the file has no records, it is read before the file is mapped. */
+  boolean isEmpty() throws IOException {
+    if (raf.length() < 4) {
+      return true;
+    }
+    raf.seek(0);
+    return raf.readInt() == 0;
+  }
+
+  /** Forces the records to the disk, no appends are expected afterwards. */
+  void seal() throws IOException { force(); }
+
+  /** Sets the length of the records found by the scan of the file. */
+  void setSize(int size) { this.size = size; }
+
+  /** Returns whether the record fits into the preallocated file. */
+  boolean fits(int length) { return (long) size + length <= capacity; }
+
+  /** Appends the record, returns its offset. */
+  int append(ByteBuffer record) throws IOException {
+    int offset = size;
+    FileChannel channel = raf.getChannel();
+    long position = offset;
+    while (record.hasRemaining()) {
+      position += channel.write(record, position);
+    }
+    size = (int) position;
+    return offset;
+  }
+
+  /** Returns view of the mapped file, it is positioned at the offset. */
+  ByteBuffer read(int offset) {
+    ByteBuffer view = buffer.duplicate();
+    view.position(offset);
+    return view;
+  }
+
+  /** Returns the mapped file, its limit is the end of the file. */
+  ByteBuffer buffer() { return buffer.duplicate(); }
+
+  void force() throws IOException { raf.getChannel().force(false); }
+
+  public void close() throws IOException {
+    buffer = null;
+    raf.close();
+  }
+
+  /**
+   * Clears, closes and deletes the file.
+   *
+   * @return {@code false} if the file is still mapped and isn't deleted, it has no records
+   */
+  boolean delete() throws IOException {
+    raf.seek(0);
+    raf.writeInt(0);
+    close();
+    return file.delete() || !file.exists();
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.store;
+
+/**
+ * Index of the entries of a stream: log locations sorted by crawled time, ties by location, in
+ * primitive arrays.
+ *
+ * <p> Implementation is not thread-safe. </p>
+ */
+final class StreamIndex {
+
+  private long[] crawled = new long[8];
+
+  private long[] locations = new long[8];
+
+  private int size;
+
+  int size() { return size; }
+
+  long crawledAt(int index) { return crawled[index]; }
+
+  long locationAt(int index) { return locations[index]; }
+
+  void add(long crawledTime, long location) {
+    int index = search(crawledTime, location);
+    if (index >= 0) {
+      return;
+    }
+    index = -index - 1;
+    if (size == locations.length) {
+      long[] newCrawled = new long[size * 2];
+      long[] newLocations = new long[size * 2];
+      System.arraycopy(crawled, 0, newCrawled, 0, size);
+      System.arraycopy(locations, 0, newLocations, 0, size);
+      crawled = newCrawled;
+      locations = newLocations;
+    }
+    System.arraycopy(crawled, index, crawled, index + 1, size - index);
+    System.arraycopy(locations, index, locations, index + 1, size - index);
+    crawled[index] = crawledTime;
+    locations[index] = location;
+    size++;
+  }
+
+  void remove(long crawledTime, long location) {
+    int index = search(crawledTime, location);
+    if (index >= 0) {
+      System.arraycopy(crawled, index + 1, crawled, index, size - index - 1);
+      System.arraycopy(locations, index + 1, locations, index, size - index - 1);
+      size--;
+    }
+  }
+
+  /** Returns index of the first entry crawled at or after the time. */
+  int lowerBound(long crawledTime) {
+    int index = search(crawledTime, Long.MIN_VALUE);
+    return index >= 0 ? index : -index - 1;
+  }
+
+  /** Returns index of the first entry crawled after the time. */
+  int upperBound(long crawledTime) {
+    int index = search(crawledTime, Long.MAX_VALUE);
+    return index >= 0 ? index + 1 : -index - 1;
+  }
+
+  /** Binary search as {@link java.util.Arrays#binarySearch(long[], long)}. */
+  private int search(long crawledTime, long location) {
+    int low = 0, high = size - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int compare = compare(crawled[middle], locations[middle], crawledTime, location);
+      if (compare < 0) {
+        low = middle + 1;
+      } else if (compare > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -(low + 1);
+  }
+
+  private static int compare(long crawled1, long location1, long crawled2, long location2) {
+    if (crawled1 != crawled2) {
+      return crawled1 < crawled2 ? -1 : 1;
+    }
+    return location1 < location2 ? -1 : (location1 == location2 ? 0 : 1);
+  }
+}
@@ -0,0 +1,260 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.store;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+
+import org.github.bademux.feedly.api.model.EntriesResponse;
+import org.github.bademux.feedly.api.model.Entry;
+import org.github.bademux.feedly.api.model.Subscription;
+import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
+import org.github.bademux.feedly.api.service.Feedly;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EntryStoreTest {
+
+  private static final String STREAM = "feed/test";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final GsonFactory jsonFactory = new GsonFactory();
+
+  @Test
+  public void testReopen() throws IOException {
+    EntryStore store = new EntryStore(folder.getRoot(), jsonFactory);
+    store.put(STREAM, newEntry("a", 1, true));
+    store.put(STREAM, newEntry("b", 2, false));
+    store.put("user/1/category/tech", newEntry("a", 1, false));
+    assertTrue(store.delete("b"));
+    assertFalse("Entry is already deleted", store.delete("b"));
+    store.close();
+
+    store = new EntryStore(folder.getRoot(), jsonFactory);
+    assertEquals(1, store.size());
+    assertNull("Deleted entry", store.get("b"));
+    Entry entry = store.get("a");
+    assertEquals(Long.valueOf(1), entry.getCrawled());
+    assertEquals(Boolean.FALSE, entry.getUnread());
+    assertEquals(STREAM, entry.getOrigin().getStreamId());
+    assertEquals("Entry should belong to both streams", 1, store.size("user/1/category/tech"));
+    assertEquals(1, store.size(STREAM));
+    store.close();
+  }
+
+  @Test
+  public void testContents() throws IOException {
+    EntryStore store = new EntryStore(folder.getRoot(), jsonFactory);
+    for (int i = 1; i <= 5; i++) {
+      store.put(STREAM, newEntry(String.valueOf(i), i, i != 4));
+    }
+    Feedly service = new Feedly(new MockHttpTransport(), jsonFactory, new FeedlyCredential());
+
+    Feedly.Streams.Contents request = service.streams().contents(new Subscription("test"));
+    assertEquals(Arrays.asList("5", "4"), ids(store.contents(request.setCount(2))));
+    assertEquals(Arrays.asList("5", "4", "3", "2", "1"), readAll(store, request));
+    assertEquals(Arrays.asList("5", "4", "3"), readAll(store, request.setNewerThan(2L)));
+    assertEquals(Arrays.asList("3", "5"), readAll(store, request.setRanked("oldest")
+        .setUnreadOnly(true)));
+    store.close();
+  }
+
+  @Test
+  public void testStoreResponse() throws IOException {
+    MockHttpTransport transport = new MockHttpTransport() {
+      @Override
+      public LowLevelHttpRequest buildRequest(String method, String url) {
+        return new MockLowLevelHttpRequest(url).setResponse(
+            new MockLowLevelHttpResponse().setContentType("application/json").setContent(
+                "{\"id\":\"feed/test\",\"items\":[{\"id\":\"a\",\"crawled\":1,\"title\":\"A\"},"
+                + "{\"id\":\"b\",\"crawled\":2}]}"));
+      }
+    };
+    Feedly service = new Feedly(transport, jsonFactory, new FeedlyCredential());
+    EntryStore store = new EntryStore(folder.getRoot(), jsonFactory);
+
+    Feedly.Streams.Contents request = service.streams().contents(new Subscription("test"));
+    request.executeAndHandle(store.newHandler(request.getStreamId()));
+
+    EntriesResponse response = store.contents(request);
+    assertEquals(Arrays.asList("b", "a"), ids(response));
+    assertEquals("A", response.items().get(1).getTitle());
+    assertNull(response.getContinuation());
+    store.close();
+  }
+
+  @Test
+  public void testCompaction() throws IOException {
+    EntryStore store = new EntryStore(folder.getRoot(), jsonFactory, 512);
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < 5; i++) {
+        store.put(STREAM, newEntry(String.valueOf(i), i, round % 2 == 0));
+      }
+    }
+    int segments = segmentFiles().length;
+    assertTrue("Reclaimed bytes", store.compact() > 0);
+    assertTrue("Segments should be deleted", segmentFiles().length < segments);
+    store.close();
+
+    store = new EntryStore(folder.getRoot(), jsonFactory, 512);
+    assertEquals(5, store.size());
+    assertEquals(Boolean.FALSE, store.get("3").getUnread());
+    assertEquals(Arrays.asList("4", "3", "2", "1", "0"),
+                 ids(store.contents(STREAM, 10, null, null, false, false)));
+    store.close();
+  }
+
+  @Test
+  public void testCompactionKeepsReputEntry() throws IOException {
+    EntryStore store = new EntryStore(folder.getRoot(), jsonFactory, 128);
+    store.put(STREAM, newEntry("a", 1, true));
+    store.put(STREAM, newEntry("x", 2, true));
+    store.delete("x");
+    store.put(STREAM, newEntry("x", 3, false));
+    store.compact();
+    store.close();
+
+    store = new EntryStore(folder.getRoot(), jsonFactory, 128);
+    assertEquals(Long.valueOf(3), store.get("x").getCrawled());
+    assertEquals(2, store.size());
+    store.close();
+  }
+
+  @Test
+  public void testCompactionKeepsNeededTombstone() throws IOException {
+    EntryStore store = new EntryStore(folder.getRoot(), jsonFactory, 256);
+    store.put(STREAM, newEntry("a", 1, true));
+    store.put(STREAM, newEntry("x", 2, true));
+    store.delete("x");
+    store.put(STREAM, newEntry("b", 3, true));
+    store.put(STREAM, newEntry("b", 3, false));
+    store.put(STREAM, newEntry("c", 4, true));
+    store.compact();
+    store.close();
+
+    store = new EntryStore(folder.getRoot(), jsonFactory, 256);
+    assertNull("Entry is deleted", store.get("x"));
+    assertEquals(3, store.size());
+    store.close();
+  }
+
+  @Test
+  public void testTornRecordIsDropped() throws IOException {
+    EntryStore store = new EntryStore(folder.getRoot(), jsonFactory);
+    store.put(STREAM, newEntry("a", 1, true));
+    store.put(STREAM, newEntry("b", 2, true));
+    store.close();
+
+    // a record cut by a crash: length of the body is written, the body isn't
+    File segment = segmentFiles()[0];
+    RandomAccessFile file = new RandomAccessFile(segment, "rw");
+    try {
+      long end = 0;
+      for (int length; (length = readInt(file, end)) != 0; ) {
+        end += 8 + length;
+      }
+      file.seek(end);
+      file.writeInt(100);
+    } finally {
+      file.close();
+    }
+
+    store = new EntryStore(folder.getRoot(), jsonFactory);
+    assertEquals(2, store.size());
+    store.put(STREAM, newEntry("c", 3, true));
+    store.close();
+    store = new EntryStore(folder.getRoot(), jsonFactory);
+    assertEquals(Arrays.asList("c", "b", "a"),
+                 ids(store.contents(STREAM, null, null, null, false, false)));
+    store.close();
+  }
+
+  @Test
+  public void testClearedSegmentIsDeletedOnOpen() throws IOException {
+    EntryStore store = new EntryStore(folder.getRoot(), jsonFactory, 128);
+    store.put(STREAM, newEntry("a", 1, true));
+    store.put(STREAM, newEntry("b", 2, true));
+    store.close();
+    assertEquals("Sealed segments", 2, segmentFiles().length);
+
+    // left by a compaction that couldn't delete the mapped file
+    File segment = new File(folder.getRoot(), String.format("%010d.log", 1));
+    RandomAccessFile file = new RandomAccessFile(segment, "rw");
+    try {
+      file.writeInt(0);
+    } finally {
+      file.close();
+    }
+
+    store = new EntryStore(folder.getRoot(), jsonFactory, 128);
+    assertFalse("Cleared segment should be deleted", segment.exists());
+    assertNull(store.get("a"));
+    assertEquals(Arrays.asList("b"), ids(store.contents(STREAM, null, null, null, false, false)));
+    store.close();
+  }
+
+  private static List<String> readAll(EntryStore store, Feedly.Streams.Contents request)
+      throws IOException {
+    List<String> ids = new ArrayList<String>();
+    request.setContinuation(null);
+    do {
+      EntriesResponse response = store.contents(request);
+      ids.addAll(ids(response));
+      request.setContinuation(response.getContinuation());
+    } while (request.getContinuation() != null);
+    return ids;
+  }
+
+  private static List<String> ids(EntriesResponse response) {
+    List<String> ids = new ArrayList<String>();
+    for (Entry entry : response.items()) {
+      ids.add(entry.getId());
+    }
+    return ids;
+  }
+
+  private File[] segmentFiles() { return folder.getRoot().listFiles(); }
+
+  private static int readInt(RandomAccessFile file, long position) throws IOException {
+    file.seek(position);
+    return file.readInt();
+  }
+
+  private static Entry newEntry(String id, long crawled, boolean unread) {
+    return new Entry().set("id", id).set("crawled", crawled).set("unread", unread)
+        .set("origin", new Entry.Origin(STREAM, "Test", null));
+  }
+}
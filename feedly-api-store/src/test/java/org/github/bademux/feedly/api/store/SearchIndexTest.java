@@ -0,0 +1,152 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.store;
+
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+
+import org.github.bademux.feedly.api.model.Category;
+import org.github.bademux.feedly.api.model.EntriesResponse;
+import org.github.bademux.feedly.api.model.Entry;
+import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
+import org.github.bademux.feedly.api.service.Feedly;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SearchIndexTest {
+
+  private static final String STREAM = "feed/test";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private EntryStore store;
+
+  @Before
+  public void setUp() throws IOException {
+    store = new EntryStore(folder.getRoot(), new GsonFactory());
+  }
+
+  @After
+  public void tearDown() throws IOException { store.close(); }
+
+  @Test
+  public void testRanking() throws IOException {
+    store.put(STREAM, newEntry("a", 1, "Weekly news", "<p>java <b>java</b> and more</p>"));
+    store.put(STREAM, newEntry("b", 2, "Java released", "<p>Release notes</p>"));
+    store.put("feed/other", newEntry("c", 3, "Java &amp; Scala", null));
+    store.put(STREAM, newEntry("d", 4, "Nothing", "<a href=\"java\">link</a>"));
+    SearchIndex index = new SearchIndex(store);
+
+    assertEquals("Title matches weigh more", Arrays.asList("c", "b", "a"),
+                 search(index, null, "JAVA", null));
+    assertEquals(Arrays.asList("b", "a"), search(index, STREAM, "java", null));
+    assertEquals(Arrays.asList("a"), search(index, STREAM, "java", Arrays.asList("content")));
+    assertEquals("Any word matches, rare ones weigh more", Arrays.asList("a", "b"),
+                 search(index, STREAM, "weekly java", Arrays.asList("title")));
+    assertEquals(Collections.<String>emptyList(), search(index, STREAM, "href", null));
+    index.close();
+  }
+
+  @Test
+  public void testSearchRequest() throws IOException {
+    SearchIndex index = new SearchIndex(store);
+    for (int i = 1; i <= 5; i++) {
+      Entry entry = newEntry(String.valueOf(i), i, "java " + i, null);
+      store.put(STREAM, entry.set("unread", i != 3));
+    }
+    Feedly service = new Feedly(new MockHttpTransport(), new GsonFactory(),
+                                new FeedlyCredential());
+
+    Feedly.Search.Entries request =
+        service.search().entries(service.newCategory(Category.ALL), "java").setCount(2)
+            .setNewerThan(1L).setUnreadOnly(true);
+    List<String> ids = new ArrayList<String>();
+    do {
+      EntriesResponse response = index.search(request);
+      ids.addAll(ids(response));
+      request.setContinuation(response.getContinuation());
+    } while (request.getContinuation() != null);
+    assertEquals("Equal scores are ordered newest first", Arrays.asList("5", "4", "2"), ids);
+    index.close();
+  }
+
+  @Test
+  public void testFollowsStore() throws IOException {
+    SearchIndex index = new SearchIndex(store);
+    store.put(STREAM, newEntry("a", 1, "java", null));
+    store.put(STREAM, newEntry("b", 2, "scala", null));
+    assertEquals(Arrays.asList("a"), search(index, null, "java", null));
+
+    for (int i = 0; i < 1100; i++) {
+      store.put(STREAM, newEntry("a", 1, i % 2 == 0 ? "scala" : "java", null));
+    }
+    assertEquals(Arrays.asList("a"), search(index, null, "java", null));
+    assertEquals(Arrays.asList("b"), search(index, null, "scala", null));
+
+    store.delete("b");
+    assertEquals(Collections.<String>emptyList(), search(index, null, "scala", null));
+    assertEquals(1, index.size());
+
+    index.close();
+    store.put(STREAM, newEntry("c", 3, "java", null));
+    assertEquals("Closed index doesn't follow the store", 1, index.size());
+  }
+
+  @Test
+  public void testTokenize() {
+    assertEquals(Arrays.asList("a", "b", "héllo", "42"),
+                 SearchIndex.tokenize("<p class=\"x\">A&nbsp;b</p> Héllo, 42!", true));
+    assertEquals(Arrays.asList("p", "a", "nbsp", "b"), SearchIndex.tokenize("<p>A&nbsp;b", false));
+  }
+
+  private static List<String> search(SearchIndex index, String streamId, String q,
+                                     List<String> fields) throws IOException {
+    EntriesResponse response = index.search(streamId, q, fields, false, null, null, null);
+    assertNull(response.getContinuation());
+    return ids(response);
+  }
+
+  private static List<String> ids(EntriesResponse response) {
+    List<String> ids = new ArrayList<String>();
+    for (Entry entry : response.items()) {
+      ids.add(entry.getId());
+    }
+    return ids;
+  }
+
+  private static Entry newEntry(String id, long crawled, String title, String content) {
+    Entry entry = new Entry().set("id", id).set("crawled", crawled).set("title", title);
+    if (content != null) {
+      entry.set("content", new Entry.Content(content, Entry.Content.Direction.LTR));
+    }
+    return entry;
+  }
+}
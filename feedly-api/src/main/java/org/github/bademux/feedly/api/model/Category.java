@@ -19,8 +19,10 @@
 
 package org.github.bademux.feedly.api.model;
 
+import com.google.api.client.json.JsonParser;
 import com.google.api.client.util.Key;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 
@@ -65,6 +67,21 @@ public class Category extends IdGenericJson implements Markable, Stream {
   @Override
   public Category clone() { return (Category) super.clone(); }
 
+  static final ModelReaders.ObjectReader<Category> READER =
+      new ModelReaders.ObjectReader<Category>() {
+        @Override
+        Category newInstance() { return new Category(); }
+
+        @Override
+        boolean readField(Category category, String name, JsonParser parser) throws IOException {
+          if ("label".equals(name)) {
+            category.label = ModelReaders.readString(parser);
+            return true;
+          }
+          return IdGenericJson.readField(category, name, parser);
+        }
+      };
+
   @SuppressWarnings("serial")
   public static class Categories extends ArrayList<Category> {}
 }
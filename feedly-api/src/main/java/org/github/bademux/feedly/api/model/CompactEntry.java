@@ -0,0 +1,389 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.model;
+
+import com.google.api.client.util.StringUtils;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.api.client.util.Preconditions.checkNotNull;
+import static org.github.bademux.feedly.api.model.Entry.Content.Direction;
+
+/**
+ * Immutable, memory-lean counterpart of {@link Entry} for holding many entries in memory.
+ *
+ * <p> Timestamps and engagement are primitives, {@code 0} and {@code -1} stand for absent ones.
+ * Content and summary are kept as UTF-8 bytes and decoded on each access. Origins, categories and
+ * tags are shared by the entries created by one {@link Converter}, so they must not be modified.
+ * Unknown keys and the deprecated engagement rate aren't kept. </p>
+ */
+public final class CompactEntry {
+
+  private static final String[] NO_STRINGS = new String[0];
+
+  private static final Direction[] DIRECTIONS = Direction.values();
+
+  /** Bits of {@link #flags}: unread state and directions of the content and the summary. */
+  private static final int UNREAD_KNOWN = 1, UNREAD = 2, CONTENT_DIRECTION_SHIFT = 2,
+      SUMMARY_DIRECTION_SHIFT = 4, DIRECTION_MASK = 3;
+
+  private final String id;
+  private final String title;
+  private final String author;
+  private final long crawled;
+  private final long recrawled;
+  private final long published;
+  private final long updated;
+  private final long actionTimestamp;
+  private final int engagement;
+  private final byte flags;
+  private final byte[] content;
+  private final byte[] summary;
+  private final Entry.Origin origin;
+  private final Category[] categories;
+  private final Tag[] tags;
+  private final String[] keywords;
+  private final Entry.Location[] alternate;
+  private final Entry.Location[] canonical;
+  private final Entry.Enclosure[] enclosure;
+  private final Entry.Visual visual;
+  private final String originId;
+  private final String fingerprint;
+  private final String sid;
+
+  @SuppressWarnings("deprecation")
+  private CompactEntry(Entry entry, Converter converter) {
+    id = checkNotNull(entry.getId());
+    title = entry.getTitle();
+    author = converter.intern(entry.getAuthor());
+    crawled = toLong(entry.getCrawled());
+    recrawled = toLong(entry.getRecrawled());
+    published = toLong(entry.getPublished());
+    updated = toLong(entry.getUpdated());
+    actionTimestamp = toLong(entry.getActionTimestamp());
+    engagement = entry.getEngagement() == null ? -1 : entry.getEngagement();
+    content = toBytes(entry.getContent());
+    summary = toBytes(entry.getSummary());
+    int flags = 0;
+    if (entry.getUnread() != null) {
+      flags |= UNREAD_KNOWN | (entry.getUnread() ? UNREAD : 0);
+    }
+    flags |= directionOf(entry.getContent()) << CONTENT_DIRECTION_SHIFT;
+    flags |= directionOf(entry.getSummary()) << SUMMARY_DIRECTION_SHIFT;
+    this.flags = (byte) flags;
+    origin = converter.intern(entry.getOrigin());
+    categories = converter.internCategories(entry.getCategories());
+    tags = converter.internTags(entry.getTags());
+    keywords = converter.internKeywords(entry.getKeywords());
+    alternate = toArray(entry.getAlternate(), Entry.Location.class);
+    canonical = toArray(entry.getCanonical(), Entry.Location.class);
+    enclosure = toArray(entry.getEnclosure(), Entry.Enclosure.class);
+    visual = entry.getVisual();
+    originId = entry.getOriginId();
+    fingerprint = entry.getFingerprint();
+    sid = entry.getSid();
+  }
+
+  public String getId() { return id; }
+
+  public String getTitle() { return title; }
+
+  public String getAuthor() { return author; }
+
+  /** Returns the crawl timestamp or {@code 0} if it is absent. */
+  public long getCrawled() { return crawled; }
+
+  /** Returns the recrawl timestamp or {@code 0} if it is absent. */
+  public long getRecrawled() { return recrawled; }
+
+  /** Returns the publish timestamp or {@code 0} if it is absent. */
+  public long getPublished() { return published; }
+
+  /** Returns the update timestamp or {@code 0} if it is absent. */
+  public long getUpdated() { return updated; }
+
+  /** Returns the tagging timestamp or {@code 0} if it is absent. */
+  public long getActionTimestamp() { return actionTimestamp; }
+
+  /** Returns the engagement or {@code -1} if it is absent. */
+  public int getEngagement() { return engagement; }
+
+  /** Returns the unread state or {@code null} if it is unknown. */
+  public Boolean getUnread() {
+    return (flags & UNREAD_KNOWN) == 0 ? null : Boolean.valueOf((flags & UNREAD) != 0);
+  }
+
+  /** Returns the content decoded from UTF-8 or {@code null} if it is absent. */
+  public String getContent() { return StringUtils.newStringUtf8(content); }
+
+  /** Returns the direction of the content or {@code null} if it is absent. */
+  public Direction getContentDirection() { return directionOf(content, CONTENT_DIRECTION_SHIFT); }
+
+  /** Returns the length of the UTF-8 encoded content or {@code 0} if it is absent. */
+  public int getContentLength() { return content == null ? 0 : content.length; }
+
+  /** Returns the summary decoded from UTF-8 or {@code null} if it is absent. */
+  public String getSummary() { return StringUtils.newStringUtf8(summary); }
+
+  /** Returns the direction of the summary or {@code null} if it is absent. */
+  public Direction getSummaryDirection() { return directionOf(summary, SUMMARY_DIRECTION_SHIFT); }
+
+  /** Returns the shared origin, it must not be modified. */
+  public Entry.Origin getOrigin() { return origin; }
+
+  /** Returns the shared categories, they must not be modified. */
+  public List<Category> getCategories() { return asList(categories); }
+
+  /** Returns the shared tags, they must not be modified. */
+  public List<Tag> getTags() { return asList(tags); }
+
+  public List<String> getKeywords() { return asList(keywords); }
+
+  public List<Entry.Location> getAlternate() { return asList(alternate); }
+
+  public List<Entry.Location> getCanonical() { return asList(canonical); }
+
+  public List<Entry.Enclosure> getEnclosure() { return asList(enclosure); }
+
+  public Entry.Visual getVisual() { return visual; }
+
+  public String getOriginId() { return originId; }
+
+  public String getFingerprint() { return fingerprint; }
+
+  public String getSid() { return sid; }
+
+  /** Returns a new {@link Entry} with the keys of this entry. */
+  public Entry toEntry() {
+    Entry entry = new Entry().set("id", id);
+    setIfPresent(entry, "title", title);
+    setIfPresent(entry, "author", author);
+    setIfPresent(entry, "crawled", crawled == 0 ? null : crawled);
+    setIfPresent(entry, "recrawled", recrawled == 0 ? null : recrawled);
+    setIfPresent(entry, "published", published == 0 ? null : published);
+    setIfPresent(entry, "updated", updated == 0 ? null : updated);
+    setIfPresent(entry, "actionTimestamp", actionTimestamp == 0 ? null : actionTimestamp);
+    setIfPresent(entry, "engagement", engagement == -1 ? null : engagement);
+    setIfPresent(entry, "unread", getUnread());
+    if (content != null) {
+      entry.set("content", new Entry.Content(getContent(), getContentDirection()));
+    }
+    if (summary != null) {
+      entry.set("summary", new Entry.Content(getSummary(), getSummaryDirection()));
+    }
+    setIfPresent(entry, "origin", origin);
+    setIfPresent(entry, "categories", toList(categories));
+    setIfPresent(entry, "tags", toList(tags));
+    setIfPresent(entry, "keywords", toList(keywords));
+    setIfPresent(entry, "alternate", toList(alternate));
+    setIfPresent(entry, "canonical", toList(canonical));
+    setIfPresent(entry, "enclosure", toList(enclosure));
+    setIfPresent(entry, "visual", visual);
+    setIfPresent(entry, "originId", originId);
+    setIfPresent(entry, "fingerprint", fingerprint);
+    setIfPresent(entry, "sid", sid);
+    return entry;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return this == o || o instanceof CompactEntry && id.equals(((CompactEntry) o).id);
+  }
+
+  @Override
+  public int hashCode() { return id.hashCode(); }
+
+  @Override
+  public String toString() { return "CompactEntry{id=" + id + ", title=" + title + '}'; }
+
+  private Direction directionOf(byte[] body, int shift) {
+    return body == null ? null : DIRECTIONS[(flags >> shift) & DIRECTION_MASK];
+  }
+
+  private static int directionOf(Entry.Content content) {
+    return content == null || content.getDirection() == null
+           ? Direction.UNKNOWN.ordinal() : content.getDirection().ordinal();
+  }
+
+  private static byte[] toBytes(Entry.Content content) {
+    return content == null || content.getContent() == null
+           ? null : StringUtils.getBytesUtf8(content.getContent());
+  }
+
+  private static long toLong(Long value) { return value == null ? 0 : value; }
+
+  @SuppressWarnings("unchecked")
+  private static <T> T[] toArray(List<T> list, Class<T> type) {
+    return list == null
+           ? null : list.toArray((T[]) Array.newInstance(type, list.size()));
+  }
+
+  private static <T> List<T> asList(T[] array) {
+    return array == null ? null : Collections.unmodifiableList(Arrays.asList(array));
+  }
+
+  private static <T> List<T> toList(T[] array) {
+    return array == null ? null : new ArrayList<T>(Arrays.asList(array));
+  }
+
+  private static void setIfPresent(Entry entry, String name, Object value) {
+    if (value != null) {
+      entry.set(name, value);
+    }
+  }
+
+  /**
+   * Converts entries to {@link CompactEntry}, sharing equal origins, categories, tags, authors and
+   * keywords among the entries it converts.
+   *
+   * <p> Implementation is not thread-safe. </p>
+   */
+  public static class Converter {
+
+    private final Map<String, String> strings = new HashMap<String, String>();
+
+    private final Map<String, Entry.Origin> origins = new HashMap<String, Entry.Origin>();
+
+    private final Map<String, Category> categories = new HashMap<String, Category>();
+
+    private final Map<String, Tag> tags = new HashMap<String, Tag>();
+
+    private final Map<List<Object>, Object[]> arrays = new HashMap<List<Object>, Object[]>();
+
+    /** Returns compact copy of the entry. */
+    public CompactEntry toCompact(Entry entry) {
+      return new CompactEntry(entry, this);
+    }
+
+    /** Returns compact copies of the entries. */
+    public List<CompactEntry> toCompact(List<Entry> entries) {
+      List<CompactEntry> compact = new ArrayList<CompactEntry>(entries.size());
+      for (Entry entry : entries) {
+        compact.add(toCompact(entry));
+      }
+      return compact;
+    }
+
+    /** Returns the canonical instance of the string, {@code null} for {@code null}. */
+    String intern(String value) {
+      if (value == null) {
+        return null;
+      }
+      String canonical = strings.get(value);
+      if (canonical == null) {
+        strings.put(value, canonical = value);
+      }
+      return canonical;
+    }
+
+    Entry.Origin intern(Entry.Origin origin) {
+      if (origin == null) {
+        return null;
+      }
+      Entry.Origin canonical = origins.get(origin.getStreamId());
+      if (canonical == null || !equal(canonical.getTitle(), origin.getTitle())
+          || !equal(canonical.getHtmlUrl(), origin.getHtmlUrl())) {
+        canonical = new Entry.Origin(intern(origin.getStreamId()), intern(origin.getTitle()),
+                                     intern(origin.getHtmlUrl()));
+        origins.put(canonical.getStreamId(), canonical);
+      }
+      return canonical;
+    }
+
+    Category[] internCategories(List<Category> list) {
+      if (list == null) {
+        return null;
+      }
+      Category[] array = new Category[list.size()];
+      for (int i = 0; i < array.length; i++) {
+        Category category = list.get(i);
+        Category canonical = categories.get(category.getId());
+        if (canonical == null || !equal(canonical.getLabel(), category.getLabel())) {
+          categories.put(category.getId(), canonical = category);
+        }
+        array[i] = canonical;
+      }
+      return internArray(array);
+    }
+
+    Tag[] internTags(List<Tag> list) {
+      if (list == null) {
+        return null;
+      }
+      Tag[] array = new Tag[list.size()];
+      for (int i = 0; i < array.length; i++) {
+        Tag tag = list.get(i);
+        Tag canonical = tags.get(tag.getId());
+        if (canonical == null || !equal(canonical.getLabel(), tag.getLabel())) {
+          tags.put(tag.getId(), canonical = tag);
+        }
+        array[i] = canonical;
+      }
+      return internArray(array);
+    }
+
+    String[] internKeywords(List<String> list) {
+      if (list == null) {
+        return null;
+      }
+      if (list.isEmpty()) {
+        return NO_STRINGS;
+      }
+      String[] array = new String[list.size()];
+      for (int i = 0; i < array.length; i++) {
+        array[i] = intern(list.get(i));
+      }
+      return internArray(array);
+    }
+
+    /** Returns the canonical array with the same elements, entries of a feed share them. */
+    @SuppressWarnings("unchecked")
+    private <T> T[] internArray(T[] array) {
+      List<Object> key = Arrays.<Object>asList(array);
+      Object[] canonical = arrays.get(key);
+      if (canonical != null && canonical.getClass() == array.getClass()
+          && isSame(canonical, array)) {
+        return (T[]) canonical;
+      }
+      arrays.put(key, array);
+      return array;
+    }
+
+    /** Returns whether the arrays hold the same instances, equal ones may differ in labels. */
+    private static boolean isSame(Object[] a, Object[] b) {
+      for (int i = 0; i < a.length; i++) {
+        if (a[i] != b[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static boolean equal(Object a, Object b) {
+      return a == null ? b == null : a.equals(b);
+    }
+  }
+}
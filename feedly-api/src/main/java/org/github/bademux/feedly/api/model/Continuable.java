@@ -19,7 +19,18 @@
 
 package org.github.bademux.feedly.api.model;
 
-public interface Continuable {
+import java.util.List;
 
+/**
+ * Paged response.
+ *
+ * @param <T> type of the page items
+ */
+public interface Continuable<T> {
+
+  /** @return token of the next page or {@code null} if this page is the last one */
   public String getContinuation();
+
+  /** @return items of the page or {@code null} for none */
+  public List<T> items();
 }
\ No newline at end of file
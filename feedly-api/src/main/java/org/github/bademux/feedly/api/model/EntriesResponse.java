@@ -20,15 +20,17 @@
 package org.github.bademux.feedly.api.model;
 
 import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonParser;
 import com.google.api.client.util.Key;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 import static org.github.bademux.feedly.api.model.Entry.Content.Direction;
 import static org.github.bademux.feedly.api.model.Entry.Location;
 
-public final class EntriesResponse extends GenericJson implements Continuable {
+public final class EntriesResponse extends GenericJson implements Continuable<org.github.bademux.feedly.api.model.Entry> {
 
   @Key
   private String id;
@@ -63,6 +65,46 @@ public final class EntriesResponse extends GenericJson implements Continuable {
 
   public List<org.github.bademux.feedly.api.model.Entry> items() { return items; }
 
+  static final ModelReaders.ObjectReader<EntriesResponse> READER =
+      new ModelReaders.ObjectReader<EntriesResponse>() {
+        @Override
+        EntriesResponse newInstance() { return new EntriesResponse(); }
+
+        @Override
+        boolean readField(EntriesResponse response, String name, JsonParser parser)
+            throws IOException {
+          if ("id".equals(name)) {
+            response.id = ModelReaders.readString(parser);
+          } else if ("direction".equals(name)) {
+            response.direction = org.github.bademux.feedly.api.model.Entry.Content
+                .readDirection(parser);
+          } else if ("title".equals(name)) {
+            response.title = ModelReaders.readString(parser);
+          } else if ("continuation".equals(name)) {
+            response.continuation = ModelReaders.readString(parser);
+          } else if ("self".equals(name)) {
+            response.self = ModelReaders.readList(parser, STRING_MAP);
+          } else if ("alternate".equals(name)) {
+            response.alternate = ModelReaders.readList(parser, Location.READER);
+          } else if ("updated".equals(name)) {
+            response.updated = ModelReaders.readLong(parser);
+          } else if ("items".equals(name)) {
+            response.items = ModelReaders.readList(
+                parser, org.github.bademux.feedly.api.model.Entry.READER);
+          } else {
+            return false;
+          }
+          return true;
+        }
+      };
+
+  private static final ModelReader<Map<String, String>> STRING_MAP =
+      new ModelReader<Map<String, String>>() {
+        public Map<String, String> read(JsonParser parser) throws IOException {
+          return ModelReaders.readMap(parser, ModelReaders.STRING);
+        }
+      };
+
   @Override
   public EntriesResponse set(String fieldName, Object value) {
     return (EntriesResponse) super.set(fieldName, value);
@@ -20,10 +20,12 @@
 package org.github.bademux.feedly.api.model;
 
 import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonParser;
 import com.google.api.client.util.Key;
 import com.google.api.client.util.NullValue;
 import com.google.api.client.util.Value;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -255,6 +257,71 @@ public final class Entry extends GenericJson implements Markable {
 
   public String getSid() { return sid; }
 
+  static final ModelReaders.ObjectReader<org.github.bademux.feedly.api.model.Entry> READER =
+      new ModelReaders.ObjectReader<org.github.bademux.feedly.api.model.Entry>() {
+    @Override
+    org.github.bademux.feedly.api.model.Entry newInstance() {
+      return new org.github.bademux.feedly.api.model.Entry();
+    }
+
+    @Override
+    boolean readField(org.github.bademux.feedly.api.model.Entry entry, String name,
+                      JsonParser parser) throws IOException {
+      if ("id".equals(name)) {
+        entry.id = ModelReaders.readString(parser);
+      } else if ("title".equals(name)) {
+        entry.title = ModelReaders.readString(parser);
+      } else if ("content".equals(name)) {
+        entry.content = Content.READER.read(parser);
+      } else if ("summary".equals(name)) {
+        entry.summary = Content.READER.read(parser);
+      } else if ("author".equals(name)) {
+        entry.author = ModelReaders.readString(parser);
+      } else if ("crawled".equals(name)) {
+        entry.crawled = ModelReaders.readLong(parser);
+      } else if ("recrawled".equals(name)) {
+        entry.recrawled = ModelReaders.readLong(parser);
+      } else if ("published".equals(name)) {
+        entry.published = ModelReaders.readLong(parser);
+      } else if ("updated".equals(name)) {
+        entry.updated = ModelReaders.readLong(parser);
+      } else if ("alternate".equals(name)) {
+        entry.alternate = ModelReaders.readList(parser, Location.READER);
+      } else if ("origin".equals(name)) {
+        entry.origin = Origin.READER.read(parser);
+      } else if ("keywords".equals(name)) {
+        entry.keywords = ModelReaders.readList(parser, ModelReaders.STRING);
+      } else if ("unread".equals(name)) {
+        entry.unread = ModelReaders.readBoolean(parser);
+      } else if ("visual".equals(name)) {
+        entry.visual = Visual.READER.read(parser);
+      } else if ("tags".equals(name)) {
+        entry.tags = ModelReaders.readList(parser, ModelReaders.TAG);
+      } else if ("categories".equals(name)) {
+        entry.categories = ModelReaders.readList(parser, ModelReaders.CATEGORY);
+      } else if ("engagement".equals(name)) {
+        entry.engagement = ModelReaders.readInteger(parser);
+      } else if ("engagementRate".equals(name)) {
+        entry.engagementRate = ModelReaders.readDouble(parser);
+      } else if ("canonical".equals(name)) {
+        entry.canonical = ModelReaders.readList(parser, Location.READER);
+      } else if ("actionTimestamp".equals(name)) {
+        entry.actionTimestamp = ModelReaders.readLong(parser);
+      } else if ("enclosure".equals(name)) {
+        entry.enclosure = ModelReaders.readList(parser, Enclosure.READER);
+      } else if ("originId".equals(name)) {
+        entry.originId = ModelReaders.readString(parser);
+      } else if ("fingerprint".equals(name)) {
+        entry.fingerprint = ModelReaders.readString(parser);
+      } else if ("sid".equals(name)) {
+        entry.sid = ModelReaders.readString(parser);
+      } else {
+        return false;
+      }
+      return true;
+    }
+  };
+
   @Override
   public org.github.bademux.feedly.api.model.Entry set(String fieldName, Object value) {
     return (org.github.bademux.feedly.api.model.Entry) super.set(fieldName, value);
@@ -282,6 +349,25 @@ public final class Entry extends GenericJson implements Markable {
     public String getHref() { return href; }
 
     public String getType() { return type; }
+
+    static final ModelReaders.ObjectReader<Location> READER =
+        new ModelReaders.ObjectReader<Location>() {
+          @Override
+          Location newInstance() { return new Location(); }
+
+          @Override
+          boolean readField(Location location, String name, JsonParser parser)
+              throws IOException {
+            if ("href".equals(name)) {
+              location.href = ModelReaders.readString(parser);
+            } else if ("type".equals(name)) {
+              location.type = ModelReaders.readString(parser);
+            } else {
+              return false;
+            }
+            return true;
+          }
+        };
   }
 
   public static class Content {
@@ -303,6 +389,36 @@ public final class Entry extends GenericJson implements Markable {
     public String getContent() { return content; }
 
     public Direction getDirection() { return direction; }
+
+    static Direction readDirection(JsonParser parser) throws IOException {
+      String value = ModelReaders.readString(parser);
+      if (value == null) {
+        return Direction.UNKNOWN;
+      } else if ("ltr".equals(value)) {
+        return Direction.LTR;
+      } else if ("rtl".equals(value)) {
+        return Direction.RTL;
+      }
+      throw new IllegalArgumentException("Unknown content direction " + value);
+    }
+
+    static final ModelReaders.ObjectReader<Content> READER =
+        new ModelReaders.ObjectReader<Content>() {
+          @Override
+          Content newInstance() { return new Content(); }
+
+          @Override
+          boolean readField(Content content, String name, JsonParser parser) throws IOException {
+            if ("content".equals(name)) {
+              content.content = ModelReaders.readString(parser);
+            } else if ("direction".equals(name)) {
+              content.direction = readDirection(parser);
+            } else {
+              return false;
+            }
+            return true;
+          }
+        };
   }
 
   public static class Origin {
@@ -331,6 +447,26 @@ public final class Entry extends GenericJson implements Markable {
     public Feed toFeed() {
       return new Subscription(streamId.substring(streamId.indexOf('/') + 1), title);
     }
+
+    static final ModelReaders.ObjectReader<Origin> READER =
+        new ModelReaders.ObjectReader<Origin>() {
+          @Override
+          Origin newInstance() { return new Origin(); }
+
+          @Override
+          boolean readField(Origin origin, String name, JsonParser parser) throws IOException {
+            if ("streamId".equals(name)) {
+              origin.streamId = ModelReaders.readId(parser);
+            } else if ("title".equals(name)) {
+              origin.title = ModelReaders.readString(parser);
+            } else if ("htmlUrl".equals(name)) {
+              origin.htmlUrl = ModelReaders.readString(parser);
+            } else {
+              return false;
+            }
+            return true;
+          }
+        };
   }
 
   /**
@@ -359,6 +495,28 @@ public final class Entry extends GenericJson implements Markable {
 
     @Override
     public String getMime() { return contentType; }
+
+    static final ModelReaders.ObjectReader<Visual> READER =
+        new ModelReaders.ObjectReader<Visual>() {
+          @Override
+          Visual newInstance() { return new Visual(); }
+
+          @Override
+          boolean readField(Visual visual, String name, JsonParser parser) throws IOException {
+            if ("url".equals(name)) {
+              visual.url = ModelReaders.readString(parser);
+            } else if ("width".equals(name)) {
+              visual.width = ModelReaders.readInteger(parser);
+            } else if ("height".equals(name)) {
+              visual.height = ModelReaders.readInteger(parser);
+            } else if ("contentType".equals(name)) {
+              visual.contentType = ModelReaders.readString(parser);
+            } else {
+              return false;
+            }
+            return true;
+          }
+        };
   }
 
   public static class Enclosure implements File {
@@ -379,6 +537,27 @@ public final class Entry extends GenericJson implements Markable {
 
     @Override
     public String getMime() { return type; }
+
+    static final ModelReaders.ObjectReader<Enclosure> READER =
+        new ModelReaders.ObjectReader<Enclosure>() {
+          @Override
+          Enclosure newInstance() { return new Enclosure(); }
+
+          @Override
+          boolean readField(Enclosure enclosure, String name, JsonParser parser)
+              throws IOException {
+            if ("href".equals(name)) {
+              enclosure.href = ModelReaders.readString(parser);
+            } else if ("length".equals(name)) {
+              enclosure.length = ModelReaders.readLong(parser);
+            } else if ("type".equals(name)) {
+              enclosure.type = ModelReaders.readString(parser);
+            } else {
+              return false;
+            }
+            return true;
+          }
+        };
   }
 
   public interface File {
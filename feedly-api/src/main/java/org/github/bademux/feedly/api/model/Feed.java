@@ -19,10 +19,13 @@
 
 package org.github.bademux.feedly.api.model;
 
+import com.google.api.client.json.JsonParser;
 import com.google.api.client.util.Key;
 import com.google.api.client.util.NullValue;
 import com.google.api.client.util.Value;
 
+import java.io.IOException;
+
 
 public abstract class Feed extends IdGenericJson implements Markable, Stream{
 
@@ -63,10 +66,41 @@ public abstract class Feed extends IdGenericJson implements Markable, Stream{
     return state;
   }
 
-  public String getUrl() { return getId().substring(PREFIX.length() + 1); }
+  public String getUrl() { return getName(); }
 
   protected Feed() { super(PREFIX); }
   
+  /** Reads the keys of {@link Feed}, see {@link ModelReaders.ObjectReader}. */
+  static boolean readField(Feed destination, String name, JsonParser parser) throws IOException {
+    if ("title".equals(name)) {
+      destination.title = ModelReaders.readString(parser);
+    } else if ("website".equals(name)) {
+      destination.website = ModelReaders.readString(parser);
+    } else if ("velocity".equals(name)) {
+      destination.velocity = ModelReaders.readDouble(parser);
+    } else if ("state".equals(name)) {
+      destination.state = readState(ModelReaders.readString(parser));
+    } else {
+      return IdGenericJson.readField(destination, name, parser);
+    }
+    return true;
+  }
+
+  private static State readState(String value) {
+    if (value == null) {
+      return State.UNKNOWN;
+    } else if ("alive".equals(value)) {
+      return State.alive;
+    } else if ("dormant".equals(value)) {
+      return State.DORMANT;
+    } else if ("dead".equals(value)) {
+      return State.DEAD;
+    } else if ("dead.flooded".equals(value)) {
+      return State.DEAD_FLOODED;
+    }
+    throw new IllegalArgumentException("Unknown feed state " + value);
+  }
+
   @Override
   public Feed set(String fieldName, Object value) { return (Feed) super.set(fieldName, value); }
 
@@ -20,19 +20,27 @@
 package org.github.bademux.feedly.api.model;
 
 import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonParser;
 import com.google.api.client.util.Key;
 
+import java.io.IOException;
+
 import static com.google.api.client.util.Preconditions.checkNotNull;
 import static com.google.api.client.util.Strings.isNullOrEmpty;
 
 
 public abstract class IdGenericJson extends GenericJson {
 
+  private static final String USER = "user/";
+
   private final String prefix;
 
   @Key
   private String id;
 
+  /** Components of the id, they are parsed anew when the id is changed. */
+  private transient Components components;
+
   /**
    * Support current user format 'user/-/...'
    * see https://groups.google.com/forum/?fromgroups=#!topic/feedly-cloud/R0GC4IMgejI
@@ -57,7 +65,24 @@ public abstract class IdGenericJson extends GenericJson {
 
   public String getId() { return id; }
 
-  public String getName() { return id.substring(id.indexOf(prefix + '/') + prefix.length() + 1); }
+  public String getPrefix() { return prefix; }
+
+  public String getName() { return components().name; }
+
+  /**
+   * @return id of the user from 'user/&lt;userId&gt;/...' ids, '-' for the current user or {@code
+   * null} if the id isn't a user one
+   */
+  public String getUserId() { return components().userId; }
+
+  /** Parses the id once, getters are called for every entry of a stream. */
+  private Components components() {
+    Components components = this.components;
+    if (components == null || components.id != id) {
+      this.components = components = new Components(prefix, id);
+    }
+    return components;
+  }
 
   @Override
   public boolean equals(final Object o) {
@@ -69,6 +94,16 @@ public abstract class IdGenericJson extends GenericJson {
   @Override
   public int hashCode() { return id.hashCode(); }
 
+  /** Reads the keys of {@link IdGenericJson}, see {@link ModelReaders.ObjectReader}. */
+  static boolean readField(IdGenericJson destination, String name, JsonParser parser)
+      throws IOException {
+    if ("id".equals(name)) {
+      destination.id = ModelReaders.readString(parser);
+      return true;
+    }
+    return false;
+  }
+
   /**
    *
    * @param id format id-type/data
@@ -77,6 +112,25 @@ public abstract class IdGenericJson extends GenericJson {
   public static final String parse(String id) {
     return isNullOrEmpty(id) ? null : id.substring(id.indexOf('/') + 1);
   }
-}
 
+  /** Immutable parsed id, safely shared by the threads reading the model. */
+  private static final class Components {
+
+    private final String id;
 
+    private final String name;
+
+    private final String userId;
+
+    Components(String prefix, String id) {
+      this.id = id;
+      if (id == null) {
+        name = userId = null;
+      } else {
+        name = id.substring(id.indexOf(prefix + '/') + prefix.length() + 1);
+        int slash = id.indexOf('/', USER.length());
+        userId = id.startsWith(USER) && slash > 0 ? id.substring(USER.length(), slash) : null;
+      }
+    }
+  }
+}
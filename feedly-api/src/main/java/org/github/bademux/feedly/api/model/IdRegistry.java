@@ -0,0 +1,168 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * Concurrent registry of canonical stream ids, {@link Category}, {@link Tag} and {@link
+ * Subscription} flyweights keyed by id. Every decoded {@link Entry} repeats the same origin stream
+ * id, categories and tags, the reflection-free decoder of a client built with {@link
+ * org.github.bademux.feedly.api.service.AbstractClient.Builder#setIdRegistry registry} replaces
+ * them with the canonical instances, so a stream of entries holds a single copy of each.
+ *
+ * <p> Registry is bounded: once a kind reaches {@link #getMaximumSize() maximum size} new ids
+ * aren't registered any more and their instances are returned as is, unshared; the registered
+ * ones stay canonical until {@link #clear()}. The {@link #DEFAULT_MAXIMUM_SIZE default} fits the
+ * feeds, categories and tags of a large account. </p>
+ *
+ * <p> Canonical instances are shared by all entries decoded with the registry, they must not be
+ * modified; {@link Category#clone() clone} them instead. A registry should be used by the clients
+ * of one user. Implementation is thread-safe. </p>
+ */
+public final class IdRegistry {
+
+  /** Default maximum number of instances of each kind. */
+  public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+  private final int maximumSize;
+
+  private final ConcurrentMap<String, String> ids = new ConcurrentHashMap<String, String>();
+
+  private final ConcurrentMap<String, Category> categories =
+      new ConcurrentHashMap<String, Category>();
+
+  private final ConcurrentMap<String, Tag> tags = new ConcurrentHashMap<String, Tag>();
+
+  private final ConcurrentMap<String, Subscription> subscriptions =
+      new ConcurrentHashMap<String, Subscription>();
+
+  public IdRegistry() { this(DEFAULT_MAXIMUM_SIZE); }
+
+  /** @param maximumSize maximum number of instances of each kind */
+  public IdRegistry(int maximumSize) {
+    checkArgument(maximumSize > 0, "maximumSize must be positive");
+    this.maximumSize = maximumSize;
+  }
+
+  /** Returns the maximum number of instances of each kind. */
+  public int getMaximumSize() { return maximumSize; }
+
+  /** Returns the canonical instance of the stream id, {@code null} for {@code null}. */
+  public String intern(String id) {
+    return id == null ? null : putIfAbsent(ids, id, id);
+  }
+
+  /**
+   * Returns the canonical category with the id and label of the given one. The given category
+   * becomes canonical if there is none or its label has changed; categories with unknown keys are
+   * never shared and returned as is.
+   */
+  public Category intern(Category category) {
+    if (category == null || category.getId() == null || !category.getUnknownKeys().isEmpty()) {
+      return category;
+    }
+    Category canonical = categories.get(category.getId());
+    if (canonical != null && equal(canonical.getLabel(), category.getLabel())) {
+      return canonical;
+    }
+    put(categories, category.getId(), category);
+    return category;
+  }
+
+  /**
+   * Returns the canonical tag with the id and label of the given one. The given tag becomes
+   * canonical if there is none or its label has changed; tags with unknown keys are never shared
+   * and returned as is.
+   */
+  public Tag intern(Tag tag) {
+    if (tag == null || tag.getId() == null || !tag.getUnknownKeys().isEmpty()) {
+      return tag;
+    }
+    Tag canonical = tags.get(tag.getId());
+    if (canonical != null && equal(canonical.getLabel(), tag.getLabel())) {
+      return canonical;
+    }
+    put(tags, tag.getId(), tag);
+    return tag;
+  }
+
+  /** Returns the canonical category of the id, it has no label unless one was interned. */
+  public Category getCategory(String id) {
+    Category category = categories.get(checkNotNull(id));
+    return category != null ? category
+                            : putIfAbsent(categories, id, new Category().set("id", intern(id)));
+  }
+
+  /** Returns the canonical tag of the id, it has no label unless one was interned. */
+  public Tag getTag(String id) {
+    Tag tag = tags.get(checkNotNull(id));
+    return tag != null ? tag : putIfAbsent(tags, id, new Tag().set("id", intern(id)));
+  }
+
+  /**
+   * Returns the canonical subscription of the feed id, e.g. {@link Entry.Origin#getStreamId()}.
+   * It holds the id only, the subscription details are requested by {@link
+   * org.github.bademux.feedly.api.service.Feedly.Subscriptions}.
+   */
+  public Subscription getSubscription(String id) {
+    Subscription subscription = subscriptions.get(checkNotNull(id));
+    return subscription != null ? subscription
+                                : putIfAbsent(subscriptions, id,
+                                              new Subscription().set("id", intern(id)));
+  }
+
+  /** Returns the number of registered instances of all kinds. */
+  public int size() {
+    return ids.size() + categories.size() + tags.size() + subscriptions.size();
+  }
+
+  /** Forgets all canonical instances. */
+  public void clear() {
+    ids.clear();
+    categories.clear();
+    tags.clear();
+    subscriptions.clear();
+  }
+
+  private <V> V putIfAbsent(ConcurrentMap<String, V> map, String key, V value) {
+    if (map.size() >= maximumSize) {
+      V registered = map.get(key);
+      return registered == null ? value : registered;
+    }
+    V previous = map.putIfAbsent(key, value);
+    return previous == null ? value : previous;
+  }
+
+  /** Registers the value unless the map is full, then only a registered key is replaced. */
+  private <V> void put(ConcurrentMap<String, V> map, String key, V value) {
+    if (map.size() < maximumSize) {
+      map.put(key, value);
+    } else {
+      map.replace(key, value);
+    }
+  }
+
+  private static boolean equal(Object a, Object b) { return a == null ? b == null : a.equals(b); }
+}
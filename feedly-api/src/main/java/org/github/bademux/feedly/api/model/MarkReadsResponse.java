@@ -19,9 +19,11 @@
 
 package org.github.bademux.feedly.api.model;
 
+import com.google.api.client.json.JsonParser;
 import com.google.api.client.util.GenericData;
 import com.google.api.client.util.Key;
 
+import java.io.IOException;
 import java.util.List;
 
 
@@ -30,6 +32,8 @@ public class MarkReadsResponse extends GenericData {
   @Key
   private List<String> entries;
   @Key
+  private List<String> unread;
+  @Key
   private List<Item> feeds;
 
   public static class Item {
@@ -42,8 +46,46 @@ public class MarkReadsResponse extends GenericData {
     public String getId() { return id; }
 
     public Long getAsOf() { return asOf; }
+
+    static final ModelReaders.ObjectReader<Item> READER = new ModelReaders.ObjectReader<Item>() {
+      @Override
+      Item newInstance() { return new Item(); }
+
+      @Override
+      boolean readField(Item item, String name, JsonParser parser) throws IOException {
+        if ("id".equals(name)) {
+          item.id = ModelReaders.readString(parser);
+        } else if ("asOf".equals(name)) {
+          item.asOf = ModelReaders.readLong(parser);
+        } else {
+          return false;
+        }
+        return true;
+      }
+    };
   }
 
+  static final ModelReaders.ObjectReader<MarkReadsResponse> READER =
+      new ModelReaders.ObjectReader<MarkReadsResponse>() {
+        @Override
+        MarkReadsResponse newInstance() { return new MarkReadsResponse(); }
+
+        @Override
+        boolean readField(MarkReadsResponse response, String name, JsonParser parser)
+            throws IOException {
+          if ("entries".equals(name)) {
+            response.entries = ModelReaders.readList(parser, ModelReaders.STRING);
+          } else if ("unread".equals(name)) {
+            response.unread = ModelReaders.readList(parser, ModelReaders.STRING);
+          } else if ("feeds".equals(name)) {
+            response.feeds = ModelReaders.readList(parser, Item.READER);
+          } else {
+            return false;
+          }
+          return true;
+        }
+      };
+
   public List<Item> feeds() { return feeds; }
 
   public Long feedAsOf(String feedId) {
@@ -55,6 +97,9 @@ public class MarkReadsResponse extends GenericData {
 
   public List<String> entries() { return entries; }
 
+  /** Returns ids of the entries explicitly kept unread. */
+  public List<String> unread() { return unread; }
+
   @Override
   public MarkReadsResponse set(String fieldName, Object value) {
     return (MarkReadsResponse) super.set(fieldName, value);
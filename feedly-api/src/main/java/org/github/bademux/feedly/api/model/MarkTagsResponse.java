@@ -19,9 +19,11 @@
 
 package org.github.bademux.feedly.api.model;
 
+import com.google.api.client.json.JsonParser;
 import com.google.api.client.util.GenericData;
 import com.google.api.client.util.Key;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
@@ -43,6 +45,28 @@ public class MarkTagsResponse extends GenericData {
     return null;
   }
 
+  static final ModelReaders.ObjectReader<MarkTagsResponse> READER =
+      new ModelReaders.ObjectReader<MarkTagsResponse>() {
+        @Override
+        MarkTagsResponse newInstance() { return new MarkTagsResponse(); }
+
+        @Override
+        boolean readField(MarkTagsResponse response, String name, JsonParser parser)
+            throws IOException {
+          if ("taggedEntries".equals(name)) {
+            response.taggedEntries = ModelReaders.readMap(parser, STRING_LIST);
+            return true;
+          }
+          return false;
+        }
+      };
+
+  private static final ModelReader<List<String>> STRING_LIST = new ModelReader<List<String>>() {
+    public List<String> read(JsonParser parser) throws IOException {
+      return ModelReaders.readList(parser, ModelReaders.STRING);
+    }
+  };
+
   @Override
   public MarkTagsResponse set(String fieldName, Object value) {
     return (MarkTagsResponse) super.set(fieldName, value);
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.model;
+
+import com.google.api.client.json.JsonParser;
+
+import java.io.IOException;
+
+/**
+ * Reflection-free JSON reader of a model class.
+ *
+ * @param <T> type of the model
+ * @see ModelReaders
+ */
+public interface ModelReader<T> {
+
+  /**
+   * Reads the JSON value that starts at the current token of the parser, or at the next token if
+   * parsing isn't started yet. The parser is left at the last token of the value.
+   *
+   * @return read model or {@code null} for JSON null
+   */
+  public T read(JsonParser parser) throws IOException;
+}
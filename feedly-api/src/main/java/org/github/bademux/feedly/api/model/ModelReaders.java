@@ -0,0 +1,276 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.model;
+
+import com.google.api.client.json.JsonParser;
+import com.google.api.client.json.JsonToken;
+import com.google.api.client.util.ArrayMap;
+import com.google.api.client.util.GenericData;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+
+/**
+ * Registry of hand-written {@link ModelReader}s. They decode the models without {@link
+ * com.google.api.client.util.ClassInfo} and {@link com.google.api.client.util.FieldInfo} lookups;
+ * only keys unknown to the model are stored through the reflective {@link GenericData#set}.
+ */
+public final class ModelReaders {
+
+  private static final Map<Class<?>, ModelReader<?>> READERS =
+      new HashMap<Class<?>, ModelReader<?>>();
+
+  static {
+    READERS.put(Entry.class, Entry.READER);
+    READERS.put(Entry.Entries.class, new ArrayReader<Entry.Entries, Entry>(Entry.READER) {
+      @Override
+      Entry.Entries newInstance() { return new Entry.Entries(); }
+    });
+    READERS.put(EntriesResponse.class, EntriesResponse.READER);
+    READERS.put(StreamsResponse.class, StreamsResponse.READER);
+    READERS.put(UnreadResponse.class, UnreadResponse.READER);
+    READERS.put(MarkReadsResponse.class, MarkReadsResponse.READER);
+    READERS.put(MarkTagsResponse.class, MarkTagsResponse.READER);
+    READERS.put(Category.class, Category.READER);
+    READERS.put(Category.Categories.class, new ArrayReader<Category.Categories, Category>(
+        Category.READER) {
+      @Override
+      Category.Categories newInstance() { return new Category.Categories(); }
+    });
+    READERS.put(Tag.class, Tag.READER);
+    READERS.put(Tag.Tags.class, new ArrayReader<Tag.Tags, Tag>(Tag.READER) {
+      @Override
+      Tag.Tags newInstance() { return new Tag.Tags(); }
+    });
+    READERS.put(Subscription.class, Subscription.READER);
+    READERS.put(Subscription.Subscriptions.class,
+                new ArrayReader<Subscription.Subscriptions, Subscription>(Subscription.READER) {
+                  @Override
+                  Subscription.Subscriptions newInstance() {
+                    return new Subscription.Subscriptions();
+                  }
+                });
+  }
+
+  /** Registry of the decoding on the current thread or {@code null} for none. */
+  private static final ThreadLocal<IdRegistry> ID_REGISTRY = new ThreadLocal<IdRegistry>();
+
+  /** Returns the reader of the class or {@code null} if there is none. */
+  @SuppressWarnings("unchecked")
+  public static <T> ModelReader<T> get(Class<T> type) {
+    return (ModelReader<T>) READERS.get(type);
+  }
+
+  /**
+   * Returns the reader of the class that interns the stream ids, categories and tags of entries
+   * into the registry or {@code null} if there is none. Without registry it is {@link
+   * #get(Class)}.
+   */
+  public static <T> ModelReader<T> get(Class<T> type, final IdRegistry registry) {
+    final ModelReader<T> reader = get(type);
+    if (reader == null || registry == null) {
+      return reader;
+    }
+    return new ModelReader<T>() {
+      public T read(JsonParser parser) throws IOException {
+        IdRegistry previous = ID_REGISTRY.get();
+        ID_REGISTRY.set(registry);
+        try {
+          return reader.read(parser);
+        } finally {
+          if (previous == null) {
+            ID_REGISTRY.remove();
+          } else {
+            ID_REGISTRY.set(previous);
+          }
+        }
+      }
+    };
+  }
+
+  static final ModelReader<String> STRING = new ModelReader<String>() {
+    public String read(JsonParser parser) throws IOException { return readString(parser); }
+  };
+
+  /** Reader of the categories of entries, returns the canonical ones. */
+  static final ModelReader<Category> CATEGORY = new ModelReader<Category>() {
+    public Category read(JsonParser parser) throws IOException {
+      IdRegistry registry = ID_REGISTRY.get();
+      Category category = Category.READER.read(parser);
+      return registry == null ? category : registry.intern(category);
+    }
+  };
+
+  /** Reader of the tags of entries, returns the canonical ones. */
+  static final ModelReader<Tag> TAG = new ModelReader<Tag>() {
+    public Tag read(JsonParser parser) throws IOException {
+      IdRegistry registry = ID_REGISTRY.get();
+      Tag tag = Tag.READER.read(parser);
+      return registry == null ? tag : registry.intern(tag);
+    }
+  };
+
+  /** Returns the current token, moves to the first one if parsing isn't started yet. */
+  static JsonToken currentToken(JsonParser parser) throws IOException {
+    JsonToken token = parser.getCurrentToken();
+    return token == null ? parser.nextToken() : token;
+  }
+
+  static String readString(JsonParser parser) throws IOException {
+    return currentToken(parser) == JsonToken.VALUE_NULL ? null : parser.getText();
+  }
+
+  /** Reads the stream id, returns the canonical one. */
+  static String readId(JsonParser parser) throws IOException {
+    IdRegistry registry = ID_REGISTRY.get();
+    String id = readString(parser);
+    return registry == null ? id : registry.intern(id);
+  }
+
+  static Long readLong(JsonParser parser) throws IOException {
+    JsonToken token = currentToken(parser);
+    if (token == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    return token == JsonToken.VALUE_STRING ? Long.valueOf(parser.getText())
+                                           : parser.getLongValue();
+  }
+
+  static Integer readInteger(JsonParser parser) throws IOException {
+    JsonToken token = currentToken(parser);
+    if (token == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    return token == JsonToken.VALUE_STRING ? Integer.valueOf(parser.getText())
+                                           : parser.getIntValue();
+  }
+
+  static Double readDouble(JsonParser parser) throws IOException {
+    JsonToken token = currentToken(parser);
+    if (token == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    return token == JsonToken.VALUE_STRING ? Double.valueOf(parser.getText())
+                                           : parser.getDoubleValue();
+  }
+
+  static Boolean readBoolean(JsonParser parser) throws IOException {
+    switch (currentToken(parser)) {
+      case VALUE_TRUE: return Boolean.TRUE;
+      case VALUE_FALSE: return Boolean.FALSE;
+      case VALUE_NULL: return null;
+      default: return Boolean.valueOf(parser.getText());
+    }
+  }
+
+  static <E> List<E> readList(JsonParser parser, ModelReader<E> reader) throws IOException {
+    return readArray(parser, new ArrayList<E>(), reader);
+  }
+
+  static <E, C extends Collection<E>> C readArray(JsonParser parser, C destination,
+                                                  ModelReader<E> reader) throws IOException {
+    JsonToken token = currentToken(parser);
+    if (token == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    checkArgument(token == JsonToken.START_ARRAY, "JSON array expected but was %s", token);
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      destination.add(reader.read(parser));
+    }
+    return destination;
+  }
+
+  static <V> Map<String, V> readMap(JsonParser parser, ModelReader<V> reader) throws IOException {
+    JsonToken token = currentToken(parser);
+    if (token == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    checkArgument(token == JsonToken.START_OBJECT, "JSON object expected but was %s", token);
+    Map<String, V> map = ArrayMap.create();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      parser.nextToken();
+      map.put(name, reader.read(parser));
+    }
+    return map;
+  }
+
+  /** Stores the value of the unknown key into {@link GenericData}, skips it for other models. */
+  static void readUnknown(Object destination, String name, JsonParser parser)
+      throws IOException {
+    if (destination instanceof GenericData) {
+      ((GenericData) destination).set(name, parser.parse(Object.class, false));
+    } else {
+      parser.skipChildren();
+    }
+  }
+
+  /** Reader of JSON object, subclasses read the known keys. */
+  abstract static class ObjectReader<T> implements ModelReader<T> {
+
+    public final T read(JsonParser parser) throws IOException {
+      JsonToken token = currentToken(parser);
+      if (token == JsonToken.VALUE_NULL) {
+        return null;
+      }
+      checkArgument(token == JsonToken.START_OBJECT, "JSON object expected but was %s", token);
+      T destination = newInstance();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        parser.nextToken();
+        if (!readField(destination, name, parser)) {
+          readUnknown(destination, name, parser);
+        }
+      }
+      return destination;
+    }
+
+    abstract T newInstance();
+
+    /**
+     * Reads the value of the key, the current token is the start of the value.
+     *
+     * @return {@code false} if the key is unknown
+     */
+    abstract boolean readField(T destination, String name, JsonParser parser) throws IOException;
+  }
+
+  /** Reader of JSON array into a collection model. */
+  abstract static class ArrayReader<C extends Collection<E>, E> implements ModelReader<C> {
+
+    private final ModelReader<E> itemReader;
+
+    ArrayReader(ModelReader<E> itemReader) { this.itemReader = itemReader; }
+
+    public final C read(JsonParser parser) throws IOException {
+      return readArray(parser, newInstance(), itemReader);
+    }
+
+    abstract C newInstance();
+  }
+
+  private ModelReaders() {}
+}
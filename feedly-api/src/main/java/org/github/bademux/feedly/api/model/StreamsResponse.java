@@ -20,11 +20,13 @@
 package org.github.bademux.feedly.api.model;
 
 import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonParser;
 import com.google.api.client.util.Key;
 
+import java.io.IOException;
 import java.util.List;
 
-public final class StreamsResponse extends GenericJson implements Continuable {
+public final class StreamsResponse extends GenericJson implements Continuable<String> {
 
   @Key
   private List<String> ids;
@@ -33,8 +35,29 @@ public final class StreamsResponse extends GenericJson implements Continuable {
 
   public List<String> ids() { return ids; }
 
+  public List<String> items() { return ids; }
+
   public String getContinuation() { return continuation; }
 
+  static final ModelReaders.ObjectReader<StreamsResponse> READER =
+      new ModelReaders.ObjectReader<StreamsResponse>() {
+        @Override
+        StreamsResponse newInstance() { return new StreamsResponse(); }
+
+        @Override
+        boolean readField(StreamsResponse response, String name, JsonParser parser)
+            throws IOException {
+          if ("ids".equals(name)) {
+            response.ids = ModelReaders.readList(parser, ModelReaders.STRING);
+          } else if ("continuation".equals(name)) {
+            response.continuation = ModelReaders.readString(parser);
+          } else {
+            return false;
+          }
+          return true;
+        }
+      };
+
   @Override
   public StreamsResponse set(String fieldName, Object value) {
     return (StreamsResponse) super.set(fieldName, value);
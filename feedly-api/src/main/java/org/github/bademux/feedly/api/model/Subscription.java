@@ -19,8 +19,10 @@
 
 package org.github.bademux.feedly.api.model;
 
+import com.google.api.client.json.JsonParser;
 import com.google.api.client.util.Key;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -77,6 +79,27 @@ public class Subscription extends Feed {
 
   public Subscription() {}
 
+  static final ModelReaders.ObjectReader<Subscription> READER =
+      new ModelReaders.ObjectReader<Subscription>() {
+        @Override
+        Subscription newInstance() { return new Subscription(); }
+
+        @Override
+        boolean readField(Subscription subscription, String name, JsonParser parser)
+            throws IOException {
+          if ("sortid".equals(name)) {
+            subscription.sortid = ModelReaders.readString(parser);
+          } else if ("updated".equals(name)) {
+            subscription.updated = ModelReaders.readLong(parser);
+          } else if ("categories".equals(name)) {
+            subscription.categories = ModelReaders.readList(parser, Category.READER);
+          } else {
+            return Feed.readField(subscription, name, parser);
+          }
+          return true;
+        }
+      };
+
   @SuppressWarnings("serial")
   public static class Subscriptions extends ArrayList<Subscription> {}
 }
@@ -19,8 +19,10 @@
 
 package org.github.bademux.feedly.api.model;
 
+import com.google.api.client.json.JsonParser;
 import com.google.api.client.util.Key;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 
@@ -63,6 +65,20 @@ public class Tag extends IdGenericJson implements Stream {
 
   public Tag() {super(PREFIX);}
 
+  static final ModelReaders.ObjectReader<Tag> READER = new ModelReaders.ObjectReader<Tag>() {
+    @Override
+    Tag newInstance() { return new Tag(); }
+
+    @Override
+    boolean readField(Tag tag, String name, JsonParser parser) throws IOException {
+      if ("label".equals(name)) {
+        tag.label = ModelReaders.readString(parser);
+        return true;
+      }
+      return IdGenericJson.readField(tag, name, parser);
+    }
+  };
+
   @SuppressWarnings("serial")
   public static class Tags extends ArrayList<Tag> {}
 }
@@ -20,8 +20,10 @@
 package org.github.bademux.feedly.api.model;
 
 import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.JsonParser;
 import com.google.api.client.util.Key;
 
+import java.io.IOException;
 import java.util.List;
 
 
@@ -56,8 +58,43 @@ public class UnreadResponse extends GenericJson {
       }
       return null;
     }
+
+    static final ModelReaders.ObjectReader<Item> READER = new ModelReaders.ObjectReader<Item>() {
+      @Override
+      Item newInstance() { return new Item(); }
+
+      @Override
+      boolean readField(Item item, String name, JsonParser parser) throws IOException {
+        if ("id".equals(name)) {
+          item.id = ModelReaders.readId(parser);
+        } else if ("count".equals(name)) {
+          item.count = ModelReaders.readInteger(parser);
+        } else if ("updated".equals(name)) {
+          item.updated = ModelReaders.readLong(parser);
+        } else {
+          return false;
+        }
+        return true;
+      }
+    };
   }
 
+  static final ModelReaders.ObjectReader<UnreadResponse> READER =
+      new ModelReaders.ObjectReader<UnreadResponse>() {
+        @Override
+        UnreadResponse newInstance() { return new UnreadResponse(); }
+
+        @Override
+        boolean readField(UnreadResponse response, String name, JsonParser parser)
+            throws IOException {
+          if ("unreadcounts".equals(name)) {
+            response.unreadcounts = ModelReaders.readList(parser, Item.READER);
+            return true;
+          }
+          return false;
+        }
+      };
+
   @Override
   public UnreadResponse set(String fieldName, Object value) {
     return (UnreadResponse) super.set(fieldName, value);
@@ -22,21 +22,50 @@ package org.github.bademux.feedly.api.oauth2;
 import com.google.api.client.auth.oauth2.Credential;
 import com.google.api.client.auth.oauth2.CredentialRefreshListener;
 import com.google.api.client.auth.oauth2.TokenResponse;
+import com.google.api.client.auth.oauth2.TokenResponseException;
 import com.google.api.client.http.GenericUrl;
 import com.google.api.client.http.HttpExecuteInterceptor;
+import com.google.api.client.http.HttpRequest;
 import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpStatusCodes;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.util.Clock;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Feedly OAuth 2.0 credential.
+ *
+ * <p> Token refresh is single-flight: when many threads find the access token expired only one
+ * of them sends {@link FeedlyRefreshTokenRequest}, the others wait for and share its result. The
+ * refresh request is sent without holding the credential lock, so requests with a still valid
+ * token aren't blocked by it. </p>
+ *
+ * <p> With {@link Builder#setRefreshMargin(Long) refresh margin} the token is refreshed in
+ * background that many milliseconds before {@link #getExpirationTimeMilliseconds()}, so requests
+ * don't wait for refresh at all. A token that lives less than twice the margin is refreshed at
+ * half of its lifetime and one that doesn't outlive the margin only when it expires. </p>
+ */
 public class FeedlyCredential extends Credential {
 
   static final Logger LOGGER = Logger.getLogger(FeedlyCredential.class.getName());
 
+  /** Seconds before expiration when request refreshes the token, same as {@link Credential}. */
+  private static final long EXPIRATION_MARGIN_SECONDS = 60;
+
   /**
    * Feedly user id
    */
@@ -47,6 +76,16 @@ public class FeedlyCredential extends Credential {
    */
   private String plan;
 
+  /** Milliseconds before expiration to refresh the token in background or {@code null}. */
+  private final Long refreshMargin;
+
+  private final Object refreshMonitor = new Object();
+
+  /** Refresh in flight or {@code null}. Guarded by {@code refreshMonitor}. */
+  private FutureTask<Boolean> refreshTask;
+
+  /** Scheduled background refresh or {@code null}. Guarded by {@code refreshMonitor}. */
+  private ScheduledFuture<?> scheduledRefresh;
 
   public String getUserId() { return userId; }
 
@@ -62,6 +101,151 @@ public class FeedlyCredential extends Credential {
     super(builder);
     userId = builder.userId;
     plan = builder.plan;
+    refreshMargin = builder.refreshMargin;
+  }
+
+  /** Returns milliseconds before expiration to refresh the token in background or {@code null}. */
+  public final Long getRefreshMargin() { return refreshMargin; }
+
+  /** Refreshes the token by {@link #refreshToken(String)} if it is missing or about to expire. */
+  @Override
+  public void intercept(HttpRequest request) throws IOException {
+    String accessToken = getAccessToken();
+    Long expiresIn = getExpiresInSeconds();
+    if (accessToken == null || expiresIn != null && expiresIn <= EXPIRATION_MARGIN_SECONDS) {
+      refreshToken(accessToken);
+      accessToken = getAccessToken();
+      if (accessToken == null) {
+        return;
+      }
+    }
+    getMethod().intercept(request, accessToken);
+  }
+
+  /** Refreshes the token by {@link #refreshToken(String)} on unauthorized response. */
+  @Override
+  public boolean handleResponse(HttpRequest request, HttpResponse response,
+                                boolean supportsRetry) {
+    if (response.getStatusCode() != HttpStatusCodes.STATUS_CODE_UNAUTHORIZED) {
+      return false;
+    }
+    try {
+      return refreshToken(getMethod().getAccessTokenFromRequest(request));
+    } catch (IOException e) {
+      LOGGER.log(Level.SEVERE, "unable to refresh token", e);
+      return false;
+    }
+  }
+
+  /**
+   * Single-flight refresh of the token: if refresh is already in flight waits for its result,
+   * if the stale token was already replaced returns without refresh. Unlike {@link
+   * #refreshToken()} concurrent callers send only one {@link FeedlyRefreshTokenRequest}.
+   *
+   * @param staleAccessToken access token the caller found expired or {@code null}
+   * @return whether the token is refreshed
+   */
+  public boolean refreshToken(String staleAccessToken) throws IOException {
+    FutureTask<Boolean> task;
+    boolean owner = false;
+    synchronized (refreshMonitor) {
+      if (refreshTask == null) {
+        String accessToken = getAccessToken();
+        if (accessToken != null && !accessToken.equals(staleAccessToken)) {
+          return true;
+        }
+        refreshTask = new FutureTask<Boolean>(new Callable<Boolean>() {
+          public Boolean call() throws IOException { return executeSingleRefresh(); }
+        });
+        owner = true;
+      }
+      task = refreshTask;
+    }
+    if (owner) {
+      try {
+        task.run();
+      } finally {
+        synchronized (refreshMonitor) {
+          refreshTask = null;
+        }
+      }
+    }
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for token refresh");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw (Error) cause;
+    }
+  }
+
+  /** Mirrors {@link #refreshToken()}, but sends the request without holding the lock. */
+  private boolean executeSingleRefresh() throws IOException {
+    try {
+      TokenResponse tokenResponse = executeRefreshToken();
+      if (tokenResponse != null) {
+        setFromTokenResponse(tokenResponse);
+        for (CredentialRefreshListener refreshListener : getRefreshListeners()) {
+          refreshListener.onTokenResponse(this, tokenResponse);
+        }
+        return true;
+      }
+    } catch (TokenResponseException e) {
+      boolean statusCode4xx = 400 <= e.getStatusCode() && e.getStatusCode() < 500;
+      // check if it is a normal error response
+      if (e.getDetails() != null && statusCode4xx) {
+        // We were unable to get a new access token (e.g. it may have been revoked), we must now
+        // indicate that our current token is invalid.
+        setAccessToken(null);
+        setExpiresInSeconds(null);
+      }
+      for (CredentialRefreshListener refreshListener : getRefreshListeners()) {
+        refreshListener.onTokenErrorResponse(this, e.getDetails());
+      }
+      if (statusCode4xx) {
+        throw e;
+      }
+    }
+    return false;
+  }
+
+  /** Schedules background refresh {@link #refreshMargin} before the expiration. */
+  private void scheduleRefresh(Long expirationTimeMilliseconds) {
+    if (refreshMargin == null) {
+      return;
+    }
+    synchronized (refreshMonitor) {
+      if (scheduledRefresh != null) {
+        scheduledRefresh.cancel(false);
+        scheduledRefresh = null;
+      }
+      if (expirationTimeMilliseconds == null || getRefreshToken() == null) {
+        return;
+      }
+      long lifetime = expirationTimeMilliseconds - getClock().currentTimeMillis();
+      if (lifetime <= refreshMargin) {
+        // the refreshed token would be due at once again, requests refresh it when it expires
+        return;
+      }
+      // a token that lives less than twice the margin is refreshed at half of its lifetime
+      long delay = Math.max(lifetime - refreshMargin, lifetime / 2);
+      scheduledRefresh = RefreshScheduler.INSTANCE.schedule(new Runnable() {
+        public void run() {
+          try {
+            refreshToken(getAccessToken());
+          } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "unable to refresh token in background", e);
+          }
+        }
+      }, delay, TimeUnit.MILLISECONDS);
+    }
   }
 
   @Override
@@ -76,7 +260,9 @@ public class FeedlyCredential extends Credential {
 
   @Override
   public FeedlyCredential setExpirationTimeMilliseconds(Long expirationTimeMilliseconds) {
-    return (FeedlyCredential) super.setExpirationTimeMilliseconds(expirationTimeMilliseconds);
+    super.setExpirationTimeMilliseconds(expirationTimeMilliseconds);
+    scheduleRefresh(expirationTimeMilliseconds);
+    return this;
   }
 
   @Override
@@ -107,6 +293,19 @@ public class FeedlyCredential extends Credential {
         .setRequestInitializer(getRequestInitializer()).execute();
   }
 
+  /** Shared daemon thread of background refreshes. */
+  private static final class RefreshScheduler {
+
+    static final ScheduledExecutorService INSTANCE =
+        Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "feedly-token-refresh");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+  }
+
   /**
    * FeedlyCredential builder.
    *
@@ -124,6 +323,9 @@ public class FeedlyCredential extends Credential {
      */
     String plan;
 
+    /** Milliseconds before expiration to refresh the token in background or {@code null}. */
+    Long refreshMargin;
+
 
     public Builder() { super(FeedlyBearerToken.authorizationHeaderAccessMethod()); }
 
@@ -135,6 +337,17 @@ public class FeedlyCredential extends Credential {
 
     public void setPlan(final String plan) { this.plan = plan; }
 
+    public Long getRefreshMargin() { return refreshMargin; }
+
+    /**
+     * Sets milliseconds before the expiration to refresh the token in background, {@code null}
+     * (default) refreshes only when a request finds the token expired.
+     */
+    public Builder setRefreshMargin(final Long refreshMargin) {
+      this.refreshMargin = refreshMargin;
+      return this;
+    }
+
     @Override
     public FeedlyCredential build() { return new FeedlyCredential(this); }
 
@@ -29,9 +29,15 @@ import com.google.api.client.json.JsonObjectParser;
 import com.google.api.client.util.ObjectParser;
 import com.google.api.client.util.Preconditions;
 
+import org.github.bademux.feedly.api.model.IdRegistry;
 import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
 
 import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /** Abstract thread-safe client. */
 public abstract class AbstractClient {
@@ -57,14 +63,49 @@ public abstract class AbstractClient {
   /** Whether discovery required parameter checks should be suppressed. */
   private boolean suppressRequiredParameterChecks;
 
+  /** Executor used to run asynchronous requests. */
+  private final Executor executor;
+
+  /** Cache of GET responses or {@code null} for none. */
+  private final HttpResponseCache responseCache;
+
+  /** Receiver of request measurements or {@code null} for none. */
+  private final Instrumentation instrumentation;
+
+  /** Retries of failed requests or {@code null} for none. */
+  private final RetryPolicy retryPolicy;
+
+  /** Rate and concurrency limits of requests or {@code null} for none. */
+  private final RequestThrottle requestThrottle;
+
+  /** De-duplication of identical concurrent GET requests or {@code null} for none. */
+  private final RequestCoalescer requestCoalescer;
+
+  /** Per-endpoint circuit breaker or {@code null} for none. */
+  private final CircuitBreaker circuitBreaker;
+
+  /** Hedging of slow idempotent requests or {@code null} for none. */
+  private final HedgingPolicy hedgingPolicy;
+
   /** @param builder builder */
   protected AbstractClient(Builder builder) {
     rootUrl = normalizeRootUrl(builder.rootUrl);
     servicePath = normalizeServicePath(builder.servicePath);
     requestFactory = builder.transport.createRequestFactory(builder.httpRequestInitializer);
-    objectParser = builder.objectParser;
+    objectParser = builder.reflectionFreeParsing
+                   ? new ModelObjectParser(builder.objectParser.getJsonFactory(),
+                                           builder.idRegistry)
+                   : builder.objectParser;
     suppressPatternChecks = builder.suppressPatternChecks;
     suppressRequiredParameterChecks = builder.suppressRequiredParameterChecks;
+    executor = builder.executor == null ? newDefaultExecutor() : builder.executor;
+    responseCache = builder.responseCache;
+    instrumentation = builder.instrumentation;
+    retryPolicy = builder.retryPolicy;
+    requestThrottle = builder.requestThrottle;
+    requestCoalescer = builder.requestCoalescer;
+    circuitBreaker = builder.circuitBreaker;
+    hedgingPolicy = builder.hedgingPolicy;
   }
 
   /**
@@ -119,11 +160,81 @@ public abstract class AbstractClient {
     return suppressPatternChecks;
   }
 
+  /** Returns the cache of GET responses or {@code null} for none. */
+  public final HttpResponseCache getResponseCache() {
+    return responseCache;
+  }
+
+  /** Returns the receiver of request measurements or {@code null} for none. */
+  public final Instrumentation getInstrumentation() {
+    return instrumentation;
+  }
+
+  /** Returns the retries of failed requests or {@code null} for none. */
+  public final RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+
+  /** Returns the rate and concurrency limits of requests or {@code null} for none. */
+  public final RequestThrottle getRequestThrottle() {
+    return requestThrottle;
+  }
+
+  /** Returns the de-duplication of identical concurrent GET requests or {@code null} for none. */
+  public final RequestCoalescer getRequestCoalescer() {
+    return requestCoalescer;
+  }
+
+  /**
+   * Returns the registry the ids of decoded entries are interned into or {@code null} for none.
+   */
+  public final IdRegistry getIdRegistry() {
+    return objectParser instanceof ModelObjectParser
+           ? ((ModelObjectParser) objectParser).getIdRegistry() : null;
+  }
+
+  /** Returns the per-endpoint circuit breaker or {@code null} for none. */
+  public final CircuitBreaker getCircuitBreaker() {
+    return circuitBreaker;
+  }
+
+  /** Returns the hedging of slow idempotent requests or {@code null} for none. */
+  public final HedgingPolicy getHedgingPolicy() {
+    return hedgingPolicy;
+  }
+
   /** Returns whether discovery required parameter checks should be suppressed. */
   public final boolean getSuppressRequiredParameterChecks() {
     return suppressRequiredParameterChecks;
   }
 
+  /**
+   * Returns the executor used by {@link Request#executeAsync()}.
+   *
+   * <p> Overriding is only supported for the purpose of calling the super implementation and
+   * changing the return type, but nothing else. </p>
+   */
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Creates the executor used when none was set on the {@link Builder}: an unbounded pool of
+   * daemon threads that are released after a minute of inactivity.
+   */
+  static ExecutorService newDefaultExecutor() {
+    return Executors.newCachedThreadPool(new ThreadFactory() {
+
+      private final AtomicInteger count = new AtomicInteger();
+
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "feedly-async-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
   /** If the specified root URL does not end with a "/" then a "/" is added to the end. */
   static String normalizeRootUrl(String rootUrl) {
     Preconditions.checkNotNull(rootUrl, "root URL cannot be null.");
@@ -206,6 +317,36 @@ public abstract class AbstractClient {
     /** Whether discovery required parameter checks should be suppressed. */
     boolean suppressRequiredParameterChecks;
 
+    /** Executor for asynchronous requests or {@code null} for the default one. */
+    Executor executor;
+
+    /** Whether models are decoded by {@link ModelObjectParser}. */
+    boolean reflectionFreeParsing;
+
+    /** Registry the ids of decoded entries are interned into or {@code null} for none. */
+    IdRegistry idRegistry;
+
+    /** Cache of GET responses or {@code null} for none. */
+    HttpResponseCache responseCache;
+
+    /** Receiver of request measurements or {@code null} for none. */
+    Instrumentation instrumentation;
+
+    /** Retries of failed requests or {@code null} for none. */
+    RetryPolicy retryPolicy;
+
+    /** Rate and concurrency limits of requests or {@code null} for none. */
+    RequestThrottle requestThrottle;
+
+    /** De-duplication of identical concurrent GET requests or {@code null} for none. */
+    RequestCoalescer requestCoalescer;
+
+    /** Per-endpoint circuit breaker or {@code null} for none. */
+    CircuitBreaker circuitBreaker;
+
+    /** Hedging of slow idempotent requests or {@code null} for none. */
+    HedgingPolicy hedgingPolicy;
+
     /**
      * Returns an instance of a new builder.
      *
@@ -347,6 +488,208 @@ public abstract class AbstractClient {
       return this;
     }
 
+    /** Returns the executor for asynchronous requests or {@code null} for the default one. */
+    public final Executor getExecutor() {
+      return executor;
+    }
+
+    /**
+     * Sets the executor used by {@link Request#executeAsync()} or {@code null} for the default
+     * one.
+     *
+     * <p> By default an unbounded pool of daemon threads is used. On a runtime with virtual
+     * threads pass {@code Executors.newVirtualThreadPerTaskExecutor()} to drive thousands of
+     * concurrent requests without a platform thread per request. </p>
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     */
+    public Builder setExecutor(Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /** Returns whether models are decoded without reflection. */
+    public final boolean getReflectionFreeParsing() {
+      return reflectionFreeParsing;
+    }
+
+    /**
+     * Sets whether responses are decoded by hand-written {@link
+     * org.github.bademux.feedly.api.model.ModelReader}s instead of reflective field lookup, see
+     * {@link ModelObjectParser}. It lowers per-entry allocation and CPU on large streams.
+     *
+     * <p> Default value is {@code false}. </p>
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     */
+    public Builder setReflectionFreeParsing(boolean reflectionFreeParsing) {
+      this.reflectionFreeParsing = reflectionFreeParsing;
+      return this;
+    }
+
+    /**
+     * Returns the registry the ids of decoded entries are interned into or {@code null} for none.
+     */
+    public final IdRegistry getIdRegistry() {
+      return idRegistry;
+    }
+
+    /**
+     * Sets the registry the stream ids, categories and tags of entries decoded with {@link
+     * #setReflectionFreeParsing(boolean) reflection-free parsing} are interned into or {@code
+     * null} for none, see {@link IdRegistry}. The entries then share the instances, so they must
+     * not be modified.
+     *
+     * <p> By default there is no registry. </p>
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     */
+    public Builder setIdRegistry(IdRegistry idRegistry) {
+      this.idRegistry = idRegistry;
+      return this;
+    }
+
+    /** Returns the cache of GET responses or {@code null} for none. */
+    public final HttpResponseCache getResponseCache() {
+      return responseCache;
+    }
+
+    /**
+     * Sets the cache of GET responses or {@code null} for none, see {@link HttpResponseCache}.
+     *
+     * <p> By default there is no cache and every request is sent with the {@code ck}
+     * cache-buster. </p>
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     */
+    public Builder setResponseCache(HttpResponseCache responseCache) {
+      this.responseCache = responseCache;
+      return this;
+    }
+
+    /** Returns the receiver of request measurements or {@code null} for none. */
+    public final Instrumentation getInstrumentation() {
+      return instrumentation;
+    }
+
+    /**
+     * Sets the receiver of request measurements or {@code null} for none, for example {@link
+     * MetricsRegistry}.
+     *
+     * <p> By default there is none and requests aren't measured. </p>
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     */
+    public Builder setInstrumentation(Instrumentation instrumentation) {
+      this.instrumentation = instrumentation;
+      return this;
+    }
+
+    /** Returns the retries of failed requests or {@code null} for none. */
+    public final RetryPolicy getRetryPolicy() {
+      return retryPolicy;
+    }
+
+    /**
+     * Sets the retries of failed requests or {@code null} for none, see {@link RetryPolicy}. The
+     * policy keeps the retry budget of the client, so it shouldn't be shared between clients.
+     *
+     * <p> By default there is none and a failed request throws at once. </p>
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     */
+    public Builder setRetryPolicy(RetryPolicy retryPolicy) {
+      this.retryPolicy = retryPolicy;
+      return this;
+    }
+
+    /** Returns the rate and concurrency limits of requests or {@code null} for none. */
+    public final RequestThrottle getRequestThrottle() {
+      return requestThrottle;
+    }
+
+    /**
+     * Sets the rate and concurrency limits of requests or {@code null} for none, see {@link
+     * RequestThrottle}. A throttle may be shared by clients of the same account to keep them
+     * within one quota.
+     *
+     * <p> By default there is none and requests are sent at once. </p>
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     */
+    public Builder setRequestThrottle(RequestThrottle requestThrottle) {
+      this.requestThrottle = requestThrottle;
+      return this;
+    }
+
+    /**
+     * Returns the de-duplication of identical concurrent GET requests or {@code null} for none.
+     */
+    public final RequestCoalescer getRequestCoalescer() {
+      return requestCoalescer;
+    }
+
+    /**
+     * Sets the de-duplication of identical concurrent GET requests or {@code null} for none, see
+     * {@link RequestCoalescer}.
+     *
+     * <p> By default there is none and every request is sent. </p>
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     */
+    public Builder setRequestCoalescer(RequestCoalescer requestCoalescer) {
+      this.requestCoalescer = requestCoalescer;
+      return this;
+    }
+
+    /** Returns the per-endpoint circuit breaker or {@code null} for none. */
+    public final CircuitBreaker getCircuitBreaker() {
+      return circuitBreaker;
+    }
+
+    /**
+     * Sets the per-endpoint circuit breaker or {@code null} for none, see {@link CircuitBreaker}.
+     *
+     * <p> By default there is none and requests are sent however the server responds. </p>
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     */
+    public Builder setCircuitBreaker(CircuitBreaker circuitBreaker) {
+      this.circuitBreaker = circuitBreaker;
+      return this;
+    }
+
+    /** Returns the hedging of slow idempotent requests or {@code null} for none. */
+    public final HedgingPolicy getHedgingPolicy() {
+      return hedgingPolicy;
+    }
+
+    /**
+     * Sets the hedging of slow idempotent requests or {@code null} for none, see {@link
+     * HedgingPolicy}.
+     *
+     * <p> By default there is none and every request is sent once per attempt. Both attempts of
+     * a hedged request run on the {@link #getExecutor() executor} while the caller waits for the
+     * first success; if the executor doesn't start the request within the hedge delay, the caller
+     * sends it itself and then only returns once it is done. </p>
+     *
+     * <p> Overriding is only supported for the purpose of calling the super implementation and
+     * changing the return type, but nothing else. </p>
+     */
+    public Builder setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+      this.hedgingPolicy = hedgingPolicy;
+      return this;
+    }
+
     /**
      * Suppresses all discovery pattern and required parameter checks.
      *
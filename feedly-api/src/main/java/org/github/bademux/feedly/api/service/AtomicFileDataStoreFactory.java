@@ -0,0 +1,212 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.util.IOUtils;
+import com.google.api.client.util.StringUtils;
+import com.google.api.client.util.store.AbstractDataStore;
+import com.google.api.client.util.store.AbstractDataStoreFactory;
+import com.google.api.client.util.store.DataStore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * File-backed {@link com.google.api.client.util.store.DataStoreFactory} that survives crashes:
+ * every data store is a directory with a file per key, written to a temporary file and renamed
+ * over the old one, so a key has either its old or its new value after a crash, never a torn one.
+ *
+ * <p> Unlike {@link com.google.api.client.util.store.FileDataStoreFactory}, which rewrites the
+ * whole store on every change, setting a key writes only that key, so frequently updated stores
+ * with many keys, such as {@link CheckpointStore}, stay cheap. Values are cached in memory, reads
+ * don't touch the disk. </p>
+ *
+ * <p> Implementation is thread-safe, but a directory must not be shared by several factories.
+ * </p>
+ */
+public class AtomicFileDataStoreFactory extends AbstractDataStoreFactory {
+
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private final File dataDirectory;
+
+  /** @param dataDirectory directory with the data stores, it is created if it doesn't exist */
+  public AtomicFileDataStoreFactory(File dataDirectory) throws IOException {
+    this.dataDirectory = mkdirs(dataDirectory.getCanonicalFile());
+  }
+
+  /** Returns the directory with the data stores. */
+  public final File getDataDirectory() { return dataDirectory; }
+
+  @Override
+  protected <V extends Serializable> DataStore<V> createDataStore(String id) throws IOException {
+    return new AtomicFileDataStore<V>(this, new File(dataDirectory, id), id);
+  }
+
+  private static File mkdirs(File directory) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Unable to create directory " + directory);
+    }
+    return directory;
+  }
+
+  /** Data store with a file per key, the file holds the key and the serialized value. */
+  static final class AtomicFileDataStore<V extends Serializable> extends AbstractDataStore<V> {
+
+    private final File directory;
+
+    /** Serialized values by key, guarded by {@code this}. */
+    private final Map<String, byte[]> values = new HashMap<String, byte[]>();
+
+    AtomicFileDataStore(AtomicFileDataStoreFactory factory, File directory, String id)
+        throws IOException {
+      super(factory, id);
+      this.directory = mkdirs(directory);
+      File[] files = directory.listFiles();
+      for (File file : files == null ? new File[0] : files) {
+        if (file.getName().endsWith(TEMP_SUFFIX)) {
+          // left by a crash before rename, the previous value is intact
+          file.delete();
+          continue;
+        }
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+          String key = in.readUTF();
+          ByteArrayOutputStream value = new ByteArrayOutputStream();
+          IOUtils.copy(in, value, false);
+          values.put(key, value.toByteArray());
+        } finally {
+          in.close();
+        }
+      }
+    }
+
+    @Override
+    public AtomicFileDataStoreFactory getDataStoreFactory() {
+      return (AtomicFileDataStoreFactory) super.getDataStoreFactory();
+    }
+
+    public synchronized Set<String> keySet() {
+      return Collections.unmodifiableSet(new HashSet<String>(values.keySet()));
+    }
+
+    public synchronized Collection<V> values() throws IOException {
+      List<V> result = new ArrayList<V>(values.size());
+      for (byte[] value : values.values()) {
+        result.add(IOUtils.<V>deserialize(value));
+      }
+      return Collections.unmodifiableList(result);
+    }
+
+    public synchronized V get(String key) throws IOException {
+      return key == null ? null : IOUtils.<V>deserialize(values.get(key));
+    }
+
+    public synchronized DataStore<V> set(String key, V value) throws IOException {
+      checkNotNull(key);
+      checkNotNull(value);
+      byte[] bytes = IOUtils.serialize(value);
+      File file = fileOf(key);
+      File temp = new File(directory, file.getName() + TEMP_SUFFIX);
+      FileOutputStream out = new FileOutputStream(temp);
+      try {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeUTF(key);
+        data.write(bytes);
+        data.flush();
+        out.getFD().sync();
+      } finally {
+        out.close();
+      }
+      // rename doesn't replace existing file on some platforms
+      if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+        temp.delete();
+        throw new IOException("Unable to rename " + temp + " to " + file);
+      }
+      values.put(key, bytes);
+      return this;
+    }
+
+    public synchronized DataStore<V> delete(String key) throws IOException {
+      if (key != null && values.remove(key) != null) {
+        File file = fileOf(key);
+        if (!file.delete() && file.exists()) {
+          throw new IOException("Unable to delete " + file);
+        }
+      }
+      return this;
+    }
+
+    public synchronized DataStore<V> clear() throws IOException {
+      for (String key : new ArrayList<String>(values.keySet())) {
+        delete(key);
+      }
+      return this;
+    }
+
+    @Override
+    public synchronized boolean containsKey(String key) {
+      return values.containsKey(key);
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+      return values.isEmpty();
+    }
+
+    @Override
+    public synchronized int size() {
+      return values.size();
+    }
+
+    /** Returns the file of the key, named by its hash as keys may be any strings. */
+    private File fileOf(String key) {
+      byte[] hash;
+      try {
+        hash = MessageDigest.getInstance("SHA-1").digest(StringUtils.getBytesUtf8(key));
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException(e);
+      }
+      StringBuilder name = new StringBuilder(hash.length * 2);
+      for (byte b : hash) {
+        name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return new File(directory, name.toString());
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Changes pulled by one {@link SyncEngine#sync()} cycle. Collections are unmodifiable and never
+ * {@code null}; changes of overlapping cycles may repeat, so they should be applied idempotently.
+ */
+public final class ChangeSet {
+
+  private final Map<String, List<String>> newEntryIds;
+
+  private final List<String> readEntryIds;
+
+  private final List<String> unreadEntryIds;
+
+  private final Map<String, Long> feedsReadAsOf;
+
+  private final Map<String, List<String>> taggedEntryIds;
+
+  ChangeSet(Map<String, List<String>> newEntryIds, List<String> readEntryIds,
+            List<String> unreadEntryIds, Map<String, Long> feedsReadAsOf,
+            Map<String, List<String>> taggedEntryIds) {
+    this.newEntryIds = Collections.unmodifiableMap(newEntryIds);
+    this.readEntryIds = Collections.unmodifiableList(readEntryIds);
+    this.unreadEntryIds = Collections.unmodifiableList(unreadEntryIds);
+    this.feedsReadAsOf = Collections.unmodifiableMap(feedsReadAsOf);
+    this.taggedEntryIds = Collections.unmodifiableMap(taggedEntryIds);
+  }
+
+  /** Returns ids of the new entries by stream id. */
+  public Map<String, List<String>> getNewEntryIds() { return newEntryIds; }
+
+  /** Returns ids of the entries marked as read. */
+  public List<String> getReadEntryIds() { return readEntryIds; }
+
+  /** Returns ids of the entries kept unread. */
+  public List<String> getUnreadEntryIds() { return unreadEntryIds; }
+
+  /** Returns timestamps, in ms, the feeds are marked as read as of, by feed id. */
+  public Map<String, Long> getFeedsReadAsOf() { return feedsReadAsOf; }
+
+  /** Returns ids of the tagged entries by tag id. */
+  public Map<String, List<String>> getTaggedEntryIds() { return taggedEntryIds; }
+
+  /** Returns {@code true} if there are no changes. */
+  public boolean isEmpty() {
+    return newEntryIds.isEmpty() && readEntryIds.isEmpty() && unreadEntryIds.isEmpty()
+           && feedsReadAsOf.isEmpty() && taggedEntryIds.isEmpty();
+  }
+}
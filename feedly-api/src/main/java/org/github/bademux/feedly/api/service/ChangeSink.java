@@ -0,0 +1,33 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import java.io.IOException;
+
+/** Receiver of the changes pulled by {@link SyncEngine}, for example local cache of entries. */
+public interface ChangeSink {
+
+  /**
+   * Applies the changes, watermarks are advanced only if it returns normally.
+   *
+   * @throws IOException if the changes can't be applied, they are pulled again by the next cycle
+   */
+  public void apply(ChangeSet changes) throws IOException;
+}
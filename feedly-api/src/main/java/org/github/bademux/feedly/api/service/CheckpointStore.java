@@ -0,0 +1,199 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.util.Clock;
+import com.google.api.client.util.store.DataStore;
+import com.google.api.client.util.store.DataStoreFactory;
+
+import java.io.IOException;
+import java.io.Serializable;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * Persistent progress of stream crawls, so a restarted crawler resumes every stream where it
+ * stopped instead of starting from scratch.
+ *
+ * <p> A crawl of a stream is {@link #begin(String) begun} with {@code newerThan} of the previous
+ * completed crawl, less {@link #getOverlap() overlap}. A {@link Paginator#setCheckpoint
+ * checkpointed paginator} records the continuation of the next page each time a page is consumed
+ * and completes the crawl after the last page. If the crawler stops in between, the next {@link
+ * #begin(String)} returns the interrupted crawl with the same {@code newerThan} and the
+ * continuation of the first page that wasn't consumed. Checkpoints are kept in the {@link
+ * DataStore} {@link #DEFAULT_DATA_STORE_ID}, {@link AtomicFileDataStoreFactory} keeps them
+ * intact on crash. Example usage: </p>
+ *
+ * <pre>
+ * CheckpointStore checkpoints = new CheckpointStore(new AtomicFileDataStoreFactory(dir));
+ * CheckpointStore.Checkpoint checkpoint = checkpoints.begin(stream.getId());
+ * Feedly.Streams.Contents request = service.streams().contents(stream)
+ *     .setNewerThan(checkpoint.getNewerThan()).setContinuation(checkpoint.getContinuation());
+ * for (Entry entry : request.paginate().setCheckpoint(checkpoints, stream.getId())) {
+ *   // process entry..
+ * }
+ * </pre>
+ *
+ * <p> Implementation is thread-safe if the data store is. </p>
+ */
+public class CheckpointStore {
+
+  /** Id of the data store with checkpoints. */
+  public static final String DEFAULT_DATA_STORE_ID = "CheckpointStore";
+
+  /** Default overlap of the crawls in milliseconds. */
+  public static final long DEFAULT_OVERLAP = 60 * 1000;
+
+  private final DataStore<Checkpoint> checkpoints;
+
+  private volatile Clock clock = Clock.SYSTEM;
+
+  private volatile long overlap = DEFAULT_OVERLAP;
+
+  /** @param dataStoreFactory factory of the data store {@link #DEFAULT_DATA_STORE_ID} */
+  public CheckpointStore(DataStoreFactory dataStoreFactory) throws IOException {
+    this.checkpoints = dataStoreFactory.getDataStore(DEFAULT_DATA_STORE_ID);
+  }
+
+  CheckpointStore setClock(Clock clock) {
+    this.clock = checkNotNull(clock);
+    return this;
+  }
+
+  /** Returns the overlap of the crawls in milliseconds. */
+  public long getOverlap() { return overlap; }
+
+  /**
+   * Sets the overlap of the crawls, it covers clock skew and late indexing.
+   *
+   * <p> By default it is {@link #DEFAULT_OVERLAP} milliseconds. </p>
+   */
+  public CheckpointStore setOverlap(long overlap) {
+    checkArgument(overlap >= 0, "overlap must not be negative");
+    this.overlap = overlap;
+    return this;
+  }
+
+  /** Returns the checkpoint of the stream or {@code null} if it was never crawled. */
+  public Checkpoint get(String streamId) throws IOException {
+    return checkpoints.get(streamId);
+  }
+
+  /**
+   * Returns the interrupted crawl of the stream or begins a new one, newer than the previous
+   * completed crawl.
+   */
+  public Checkpoint begin(String streamId) throws IOException {
+    Checkpoint checkpoint = checkpoints.get(streamId);
+    if (checkpoint != null && checkpoint.isInProgress()) {
+      return checkpoint;
+    }
+    Long newerThan = checkpoint == null ? null : Math.max(0, checkpoint.watermark - overlap);
+    checkpoint = new Checkpoint(true, null, newerThan, clock.currentTimeMillis(),
+                                checkpoint == null ? 0 : checkpoint.watermark);
+    checkpoints.set(streamId, checkpoint);
+    return checkpoint;
+  }
+
+  /**
+   * Records the continuation of the first page of the crawl that isn't consumed yet. Does nothing
+   * if the stream isn't being crawled.
+   */
+  public void advance(String streamId, String continuation) throws IOException {
+    checkNotNull(continuation);
+    Checkpoint checkpoint = checkpoints.get(streamId);
+    if (checkpoint != null && checkpoint.isInProgress()) {
+      checkpoints.set(streamId, new Checkpoint(true, continuation, checkpoint.newerThan,
+                                               checkpoint.started, checkpoint.watermark));
+    }
+  }
+
+  /**
+   * Completes the crawl, the next one is newer than its beginning. Does nothing if the stream
+   * isn't being crawled.
+   */
+  public void complete(String streamId) throws IOException {
+    Checkpoint checkpoint = checkpoints.get(streamId);
+    if (checkpoint != null && checkpoint.isInProgress()) {
+      checkpoints.set(streamId, new Checkpoint(false, null, null, 0, checkpoint.started));
+    }
+  }
+
+  /** Forgets the checkpoint of the stream, the next crawl starts from scratch. */
+  public void delete(String streamId) throws IOException {
+    checkpoints.delete(streamId);
+  }
+
+  /** Forgets all checkpoints. */
+  public void clear() throws IOException {
+    checkpoints.clear();
+  }
+
+  /** Progress of the crawl of a stream. */
+  public static final class Checkpoint implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean inProgress;
+
+    private final String continuation;
+
+    private final Long newerThan;
+
+    private final long started;
+
+    private final long watermark;
+
+    Checkpoint(boolean inProgress, String continuation, Long newerThan, long started,
+               long watermark) {
+      this.inProgress = inProgress;
+      this.continuation = continuation;
+      this.newerThan = newerThan;
+      this.started = started;
+      this.watermark = watermark;
+    }
+
+    /** Returns whether the crawl is begun and not completed. */
+    public boolean isInProgress() { return inProgress; }
+
+    /**
+     * Returns the continuation to resume the crawl from or {@code null} to start from the first
+     * page.
+     */
+    public String getContinuation() { return continuation; }
+
+    /** Returns {@code newerThan} of the crawl or {@code null} to crawl all entries. */
+    public Long getNewerThan() { return newerThan; }
+
+    /** Returns the time the crawl began or {@code 0} if it isn't in progress. */
+    public long getStarted() { return started; }
+
+    /** Returns the time the last completed crawl began or {@code 0} if there is none. */
+    public long getWatermark() { return watermark; }
+
+    @Override
+    public String toString() {
+      return "Checkpoint{inProgress=" + inProgress + ", continuation=" + continuation
+             + ", newerThan=" + newerThan + ", started=" + started + ", watermark=" + watermark
+             + '}';
+    }
+  }
+}
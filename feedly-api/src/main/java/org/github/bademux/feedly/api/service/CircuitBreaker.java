@@ -0,0 +1,354 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.util.Clock;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * Per-endpoint circuit breaker, see {@link AbstractClient.Builder#setCircuitBreaker}. An endpoint
+ * is the HTTP method and the URI template of the request, as in {@link RequestEvent#getEndpoint()}.
+ *
+ * <p> The circuit of an endpoint is {@link State#CLOSED closed} while the server is healthy and
+ * keeps the outcomes of the last {@link #getWindowSize()} calls. Once there are at least {@link
+ * #getMinimumCalls()} of them and the share of failures reaches {@link #getFailureRateThreshold()}
+ * or the share of calls slower than {@link #getSlowCallDuration()} reaches {@link
+ * #getSlowCallRateThreshold()}, the circuit {@link State#OPEN opens}: requests fail at once with
+ * {@link CircuitBreakerOpenException} instead of waiting for the socket timeout. After {@link
+ * #getOpenDuration()} the circuit is {@link State#HALF_OPEN half-open} and lets {@link
+ * #getHalfOpenCalls()} probe requests through; it closes if they pass the thresholds, otherwise
+ * it opens again. </p>
+ *
+ * <p> A failure is an {@link IOException} without response or a {@code 429} or {@code 5xx}
+ * response, client errors such as {@code 404} are the server being healthy. </p>
+ *
+ * <p> Implementation is thread-safe. </p>
+ */
+public class CircuitBreaker {
+
+  /** State of the circuit of an endpoint. */
+  public enum State {
+    /** Requests are sent, outcomes are recorded. */
+    CLOSED,
+    /** Requests fail at once. */
+    OPEN,
+    /** A few probe requests are sent to check the recovery. */
+    HALF_OPEN
+  }
+
+  /** Default number of the last calls the rates are computed over. */
+  public static final int DEFAULT_WINDOW_SIZE = 20;
+
+  /** Default number of calls in the window before the circuit may open. */
+  public static final int DEFAULT_MINIMUM_CALLS = 10;
+
+  /** Default share of failed calls, in percent, that opens the circuit. */
+  public static final int DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+
+  /** Default duration of the slow call in milliseconds. */
+  public static final long DEFAULT_SLOW_CALL_DURATION = 10 * 1000;
+
+  /** Default share of slow calls, in percent, that opens the circuit. */
+  public static final int DEFAULT_SLOW_CALL_RATE_THRESHOLD = 80;
+
+  /** Default time in milliseconds the circuit stays open. */
+  public static final long DEFAULT_OPEN_DURATION = 30 * 1000;
+
+  /** Default number of probe calls of the half-open circuit. */
+  public static final int DEFAULT_HALF_OPEN_CALLS = 3;
+
+  private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<String, Circuit>();
+
+  private volatile int windowSize = DEFAULT_WINDOW_SIZE;
+
+  private volatile int minimumCalls = DEFAULT_MINIMUM_CALLS;
+
+  private volatile int failureRateThreshold = DEFAULT_FAILURE_RATE_THRESHOLD;
+
+  private volatile long slowCallDuration = DEFAULT_SLOW_CALL_DURATION;
+
+  private volatile int slowCallRateThreshold = DEFAULT_SLOW_CALL_RATE_THRESHOLD;
+
+  private volatile long openDuration = DEFAULT_OPEN_DURATION;
+
+  private volatile int halfOpenCalls = DEFAULT_HALF_OPEN_CALLS;
+
+  private volatile Clock clock = Clock.SYSTEM;
+
+  /** Returns the number of the last calls the rates are computed over. */
+  public int getWindowSize() { return windowSize; }
+
+  /** Returns the number of calls in the window before the circuit may open. */
+  public int getMinimumCalls() { return minimumCalls; }
+
+  /**
+   * Sets the number of the last calls the rates are computed over and the number of calls in the
+   * window before the circuit may open. It applies to circuits created afterwards.
+   *
+   * <p> By default it is {@link #DEFAULT_WINDOW_SIZE} and {@link #DEFAULT_MINIMUM_CALLS}. </p>
+   */
+  public CircuitBreaker setWindow(int windowSize, int minimumCalls) {
+    checkArgument(windowSize > 0, "window size must be positive");
+    checkArgument(minimumCalls > 0 && minimumCalls <= windowSize,
+                  "minimum calls must be in range 1..window size");
+    this.windowSize = windowSize;
+    this.minimumCalls = minimumCalls;
+    return this;
+  }
+
+  /** Returns the share of failed calls, in percent, that opens the circuit. */
+  public int getFailureRateThreshold() { return failureRateThreshold; }
+
+  /**
+   * Sets the share of failed calls, in percent, that opens the circuit.
+   *
+   * <p> By default it is {@link #DEFAULT_FAILURE_RATE_THRESHOLD}. </p>
+   */
+  public CircuitBreaker setFailureRateThreshold(int percent) {
+    checkArgument(percent > 0 && percent <= 100, "threshold must be in range 1..100");
+    this.failureRateThreshold = percent;
+    return this;
+  }
+
+  /** Returns the duration of the slow call in milliseconds. */
+  public long getSlowCallDuration() { return slowCallDuration; }
+
+  /** Returns the share of slow calls, in percent, that opens the circuit. */
+  public int getSlowCallRateThreshold() { return slowCallRateThreshold; }
+
+  /**
+   * Sets the duration in milliseconds of the slow call and the share of slow calls, in percent,
+   * that opens the circuit.
+   *
+   * <p> By default it is {@link #DEFAULT_SLOW_CALL_DURATION} and {@link
+   * #DEFAULT_SLOW_CALL_RATE_THRESHOLD}. </p>
+   */
+  public CircuitBreaker setSlowCall(long duration, int percent) {
+    checkArgument(duration > 0, "duration must be positive");
+    checkArgument(percent > 0 && percent <= 100, "threshold must be in range 1..100");
+    this.slowCallDuration = duration;
+    this.slowCallRateThreshold = percent;
+    return this;
+  }
+
+  /** Returns the time in milliseconds the circuit stays open. */
+  public long getOpenDuration() { return openDuration; }
+
+  /**
+   * Sets the time in milliseconds the circuit stays open.
+   *
+   * <p> By default it is {@link #DEFAULT_OPEN_DURATION}. </p>
+   */
+  public CircuitBreaker setOpenDuration(long openDuration) {
+    checkArgument(openDuration > 0, "open duration must be positive");
+    this.openDuration = openDuration;
+    return this;
+  }
+
+  /** Returns the number of probe calls of the half-open circuit. */
+  public int getHalfOpenCalls() { return halfOpenCalls; }
+
+  /**
+   * Sets the number of probe calls of the half-open circuit.
+   *
+   * <p> By default it is {@link #DEFAULT_HALF_OPEN_CALLS}. </p>
+   */
+  public CircuitBreaker setHalfOpenCalls(int halfOpenCalls) {
+    checkArgument(halfOpenCalls > 0, "half-open calls must be positive");
+    this.halfOpenCalls = halfOpenCalls;
+    return this;
+  }
+
+  /** Sets the clock of the open duration, for testing purposes. */
+  CircuitBreaker setClock(Clock clock) {
+    this.clock = checkNotNull(clock);
+    return this;
+  }
+
+  /** Returns the state of the circuit of the endpoint. */
+  public State getState(String endpoint) {
+    Circuit circuit = circuits.get(endpoint);
+    return circuit == null ? State.CLOSED : circuit.getState(clock.currentTimeMillis());
+  }
+
+  /** Returns states of the circuits by endpoint, sorted by endpoint. */
+  public Map<String, State> getStates() {
+    Map<String, State> states = new TreeMap<String, State>();
+    long now = clock.currentTimeMillis();
+    for (Map.Entry<String, Circuit> circuit : circuits.entrySet()) {
+      states.put(circuit.getKey(), circuit.getValue().getState(now));
+    }
+    return Collections.unmodifiableMap(states);
+  }
+
+  /** Closes all circuits and forgets the recorded calls. */
+  public void reset() {
+    circuits.clear();
+  }
+
+  /** Returns whether the exception of the call means the server is unhealthy. */
+  public boolean isFailure(IOException e) {
+    if (e instanceof HttpResponseException) {
+      int statusCode = ((HttpResponseException) e).getStatusCode();
+      return statusCode == RetryPolicy.STATUS_CODE_TOO_MANY_REQUESTS || statusCode / 100 == 5;
+    }
+    return !(e instanceof InterruptedIOException || e instanceof CircuitBreakerOpenException);
+  }
+
+  /**
+   * Lets the call of the endpoint through, it must be followed by {@link #onComplete}.
+   *
+   * @throws CircuitBreakerOpenException if the circuit is open or out of probe calls
+   */
+  void acquire(String endpoint) throws CircuitBreakerOpenException {
+    circuit(endpoint).acquire(endpoint, clock.currentTimeMillis());
+  }
+
+  /**
+   * Records the outcome of the call let through by {@link #acquire}.
+   *
+   * @param nanos     duration of the call
+   * @param exception exception of the call or {@code null} if it succeeded
+   */
+  void onComplete(String endpoint, long nanos, Throwable exception) {
+    boolean failed = exception instanceof IOException && isFailure((IOException) exception);
+    boolean slow = TimeUnit.NANOSECONDS.toMillis(nanos) >= slowCallDuration;
+    circuit(endpoint).record(failed, slow, clock.currentTimeMillis());
+  }
+
+  private Circuit circuit(String endpoint) {
+    Circuit circuit = circuits.get(endpoint);
+    if (circuit == null) {
+      Circuit created = new Circuit(windowSize);
+      circuit = circuits.putIfAbsent(endpoint, created);
+      if (circuit == null) {
+        circuit = created;
+      }
+    }
+    return circuit;
+  }
+
+  /** Circuit of an endpoint. */
+  private final class Circuit {
+
+    private static final byte FAILED = 1;
+
+    private static final byte SLOW = 2;
+
+    /** Outcomes of the last calls, ring buffer. */
+    private final byte[] outcomes;
+
+    private int count;
+
+    private int next;
+
+    private int failures;
+
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+
+    private long openedAt;
+
+    /** Number of probe calls let through by the half-open circuit. */
+    private int probes;
+
+    Circuit(int windowSize) {
+      outcomes = new byte[windowSize];
+    }
+
+    synchronized State getState(long now) {
+      if (state == State.OPEN && now - openedAt >= openDuration) {
+        transition(State.HALF_OPEN, now);
+      }
+      return state;
+    }
+
+    synchronized void acquire(String endpoint, long now) throws CircuitBreakerOpenException {
+      switch (getState(now)) {
+        case OPEN:
+          throw new CircuitBreakerOpenException(endpoint, openedAt + openDuration - now);
+        case HALF_OPEN:
+          if (probes >= halfOpenCalls) {
+            throw new CircuitBreakerOpenException(endpoint, 0);
+          }
+          probes++;
+          break;
+        default:
+      }
+    }
+
+    synchronized void record(boolean failed, boolean slow, long now) {
+      State current = getState(now);
+      if (current == State.OPEN) {
+        // late outcome of a call let through before the circuit opened
+        return;
+      }
+      if (count == outcomes.length) {
+        byte evicted = outcomes[next];
+        failures -= evicted & FAILED;
+        slowCalls -= (evicted & SLOW) >> 1;
+      } else {
+        count++;
+      }
+      outcomes[next] = (byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0));
+      next = (next + 1) % outcomes.length;
+      failures += failed ? 1 : 0;
+      slowCalls += slow ? 1 : 0;
+
+      if (current == State.HALF_OPEN) {
+        if (count >= halfOpenCalls || count == outcomes.length) {
+          transition(isUnhealthy() ? State.OPEN : State.CLOSED, now);
+        }
+      } else if (count >= minimumCalls && isUnhealthy()) {
+        transition(State.OPEN, now);
+      }
+    }
+
+    private boolean isUnhealthy() {
+      return failures * 100 >= failureRateThreshold * count
+             || slowCalls * 100 >= slowCallRateThreshold * count;
+    }
+
+    private void transition(State state, long now) {
+      this.state = state;
+      if (state == State.OPEN) {
+        openedAt = now;
+      }
+      probes = 0;
+      count = 0;
+      next = 0;
+      failures = 0;
+      slowCalls = 0;
+    }
+  }
+}
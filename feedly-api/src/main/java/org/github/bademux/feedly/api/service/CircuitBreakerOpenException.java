@@ -0,0 +1,50 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import java.io.IOException;
+
+/**
+ * Thrown by {@link Request#execute()} without sending the request while the {@link
+ * CircuitBreaker circuit} of its endpoint is open.
+ */
+public class CircuitBreakerOpenException extends IOException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String endpoint;
+
+  private final long retryAfter;
+
+  public CircuitBreakerOpenException(String endpoint, long retryAfter) {
+    super("Circuit of " + endpoint + " is open, retry after " + retryAfter + "ms");
+    this.endpoint = endpoint;
+    this.retryAfter = retryAfter;
+  }
+
+  /** Returns the endpoint, i.e. HTTP method and URI template. */
+  public String getEndpoint() { return endpoint; }
+
+  /**
+   * Returns the time in milliseconds till the circuit lets probe requests through, {@code 0} if
+   * it is probing already.
+   */
+  public long getRetryAfter() { return retryAfter; }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import org.github.bademux.feedly.api.model.CompactEntry;
+import org.github.bademux.feedly.api.model.Entry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * Decodes entries of the responses straight into {@link CompactEntry}: passed to {@code
+ * executeAndHandle} of {@link Feedly.Streams.Contents}, {@link Feedly.Entries.List} and other
+ * entry requests, each decoded {@link Entry} is converted and dropped at once, so only compact
+ * entries are held in memory. Example usage:
+ *
+ * <pre>
+ * CompactEntryCollector collector = new CompactEntryCollector();
+ * String continuation = null;
+ * do {
+ *   continuation = service.streams().contents(stream).setContinuation(continuation)
+ *       .executeAndHandle(collector).getContinuation();
+ * } while (continuation != null);
+ * List&lt;CompactEntry&gt; entries = collector.getEntries();
+ * </pre>
+ *
+ * <p> Origins, categories and tags are shared by all entries the collector decodes. Implementation
+ * is not thread-safe. </p>
+ */
+public class CompactEntryCollector implements EntryHandler {
+
+  private final CompactEntry.Converter converter;
+
+  private final List<CompactEntry> entries = new ArrayList<CompactEntry>();
+
+  public CompactEntryCollector() { this(new CompactEntry.Converter()); }
+
+  /** @param converter converter to share the origins, categories and tags with */
+  public CompactEntryCollector(CompactEntry.Converter converter) {
+    this.converter = checkNotNull(converter);
+  }
+
+  public void handle(Entry entry) {
+    entries.add(converter.toCompact(entry));
+  }
+
+  /** Returns the collected entries in the order they were decoded. */
+  public List<CompactEntry> getEntries() { return entries; }
+}
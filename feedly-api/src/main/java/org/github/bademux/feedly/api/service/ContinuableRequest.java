@@ -0,0 +1,45 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import org.github.bademux.feedly.api.model.Continuable;
+
+import java.io.IOException;
+
+/**
+ * Request that fetches a paged response, the next page is requested by passing the {@link
+ * Continuable#getContinuation()} of the previous one.
+ *
+ * @param <T> type of the response
+ */
+public interface ContinuableRequest<T extends Continuable<?>> {
+
+  /** Returns the continuation token of the page to fetch or {@code null} for the first one. */
+  public String getContinuation();
+
+  /** Sets the continuation token of the page to fetch or {@code null} for the first one. */
+  public ContinuableRequest<T> setContinuation(String continuation);
+
+  /** @see Request#execute() */
+  public T execute() throws IOException;
+
+  /** @see Request#getAbstractClient() */
+  public AbstractClient getAbstractClient();
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.json.JsonParser;
+import com.google.api.client.json.JsonToken;
+import com.google.api.client.util.ClassInfo;
+import com.google.api.client.util.FieldInfo;
+import com.google.api.client.util.GenericData;
+import com.google.api.client.util.Types;
+
+import org.github.bademux.feedly.api.model.EntriesResponse;
+import org.github.bademux.feedly.api.model.Entry;
+import org.github.bademux.feedly.api.model.ModelReader;
+import org.github.bademux.feedly.api.model.ModelReaders;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+
+/**
+ * Streaming parser of entries responses: walks the entries token by token and passes each
+ * decoded {@link Entry} to an {@link EntryHandler}, so at most one entry of the page is held in
+ * memory. With {@link FieldProjection} only the projected keys of the entries are decoded, the
+ * others are skipped.
+ */
+final class EntriesParser {
+
+  /** Parses {@link EntriesResponse} decoding only the projected keys of its items. */
+  static EntriesResponse parse(Request<?> request, HttpResponse response,
+                               FieldProjection projection) throws IOException {
+    final List<Entry> items = new ArrayList<Entry>();
+    EntriesResponse entriesResponse = parse(request, response, projection, new EntryHandler() {
+      public void handle(Entry entry) { items.add(entry); }
+    });
+    return entriesResponse.set("items", items);
+  }
+
+  /** Parses JSON array of entries decoding only the projected keys. */
+  static Entry.Entries parseArray(Request<?> request, HttpResponse response,
+                                  FieldProjection projection) throws IOException {
+    final Entry.Entries entries = new Entry.Entries();
+    parseArray(request, response, projection, new EntryHandler() {
+      public void handle(Entry entry) { entries.add(entry); }
+    });
+    return entries;
+  }
+
+  /**
+   * Parses {@link EntriesResponse} and passes its items to the handler.
+   *
+   * @param projection keys of the items to decode or {@code null} for all
+   * @return response without {@link EntriesResponse#items() items}
+   */
+  static EntriesResponse parse(Request<?> request, HttpResponse response,
+                               FieldProjection projection, EntryHandler handler)
+      throws IOException {
+    EntriesResponse entriesResponse = new EntriesResponse();
+    JsonParser parser = createParser(request, response);
+    if (parser == null) {
+      return entriesResponse;
+    }
+    try {
+      if (parser.nextToken() == null) {
+        return entriesResponse;
+      }
+      checkArgument(parser.getCurrentToken() == JsonToken.START_OBJECT,
+                    "JSON object expected but was %s", parser.getCurrentToken());
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        parser.nextToken();
+        if ("items".equals(name)) {
+          parseItems(parser, readerOf(request.getAbstractClient()), projection, handler);
+        } else {
+          parseField(parser, entriesResponse, name);
+        }
+      }
+      return entriesResponse;
+    } finally {
+      parser.close();
+    }
+  }
+
+  /**
+   * Parses JSON array of entries and passes them to the handler.
+   *
+   * @param projection keys of the entries to decode or {@code null} for all
+   */
+  static void parseArray(Request<?> request, HttpResponse response,
+                         FieldProjection projection, EntryHandler handler) throws IOException {
+    JsonParser parser = createParser(request, response);
+    if (parser == null) {
+      return;
+    }
+    try {
+      if (parser.nextToken() != null) {
+        parseItems(parser, readerOf(request.getAbstractClient()), projection, handler);
+      }
+    } finally {
+      parser.close();
+    }
+  }
+
+  /** Current token is expected to be the start of the array. */
+  private static void parseItems(JsonParser parser, ModelReader<Entry> reader,
+                                 FieldProjection projection, EntryHandler handler)
+      throws IOException {
+    if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+      return;
+    }
+    checkArgument(parser.getCurrentToken() == JsonToken.START_ARRAY,
+                  "JSON array expected but was %s", parser.getCurrentToken());
+    while (parser.nextToken() == JsonToken.START_OBJECT) {
+      if (projection == null) {
+        handler.handle(reader == null ? parser.parse(Entry.class) : reader.read(parser));
+      } else {
+        Entry entry = new Entry();
+        parseObject(parser, entry, projection);
+        handler.handle(entry);
+      }
+    }
+  }
+
+  /**
+   * Decodes the projected keys of JSON object into the destination and skips the others. Current
+   * token is expected to be the start of the object.
+   */
+  private static void parseObject(JsonParser parser, Object destination,
+                                  FieldProjection projection) throws IOException {
+    ClassInfo classInfo = ClassInfo.of(destination.getClass());
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      parser.nextToken();
+      if (!projection.keeps(name)) {
+        parser.skipChildren();
+        continue;
+      }
+      FieldInfo fieldInfo = classInfo.getFieldInfo(name);
+      FieldProjection nested = projection.get(name);
+      Object value;
+      if (nested != null && fieldInfo != null
+          && parser.getCurrentToken() == JsonToken.START_OBJECT) {
+        value = Types.newInstance(fieldInfo.getType());
+        parseObject(parser, value, nested);
+      } else {
+        value = parser.parse(fieldInfo == null ? Object.class : fieldInfo.getGenericType(), false);
+      }
+      if (destination instanceof GenericData) {
+        ((GenericData) destination).set(name, value);
+      } else if (fieldInfo != null) {
+        fieldInfo.setValue(destination, value);
+      }
+    }
+  }
+
+  /** Current token is expected to be the value of the field. */
+  static void parseField(JsonParser parser, GenericData destination, String name)
+      throws IOException {
+    FieldInfo fieldInfo = destination.getClassInfo().getFieldInfo(name);
+    Type type = fieldInfo == null ? Object.class : fieldInfo.getGenericType();
+    destination.set(name, parser.parse(type, false));
+  }
+
+  /** @return parser of the response content or {@code null} if there is no content */
+  private static JsonParser createParser(Request<?> request, HttpResponse response)
+      throws IOException {
+    InputStream content = request.getContent(response);
+    if (content == null) {
+      response.ignore();
+      return null;
+    }
+    return request.getAbstractClient().getJsonFactory()
+        .createJsonParser(content, response.getContentCharset());
+  }
+
+  /** @return reader of entries or {@code null} if they are decoded by reflection */
+  private static ModelReader<Entry> readerOf(AbstractClient client) {
+    return client.getObjectParser() instanceof ModelObjectParser
+           ? ModelReaders.get(Entry.class, client.getIdRegistry()) : null;
+  }
+
+  private EntriesParser() {}
+}
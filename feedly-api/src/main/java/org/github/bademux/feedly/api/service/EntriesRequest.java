@@ -0,0 +1,97 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpResponse;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Request returning entries: they may be decoded by {@link FieldProjection projection} or passed
+ * one by one to {@link EntryHandler} by {@link EntriesParser}.
+ *
+ * @param <T> type of the response
+ */
+abstract class EntriesRequest<T> extends Request<T> {
+
+  /** Keys of the entries to decode or {@code null} for all. */
+  private Collection<String> projection;
+
+  private FieldProjection fieldProjection;
+
+  EntriesRequest(AbstractClient client, String requestMethod, String uriTemplate,
+                 Object jsonContent, Class<T> responseClass) {
+    super(client, requestMethod, uriTemplate, jsonContent, responseClass);
+    setDisableGZipContent(true);
+  }
+
+  public Collection<String> getProjection() { return projection; }
+
+  /**
+   * Sets keys of the entries to decode, nested keys are separated with dot, e.g. {@code
+   * "origin.streamId"}. Values of the other keys are skipped by the parser. {@code null} decodes
+   * all keys.
+   */
+  public EntriesRequest<T> setProjection(final Collection<String> projection) {
+    this.projection = projection;
+    fieldProjection = projection == null ? null : FieldProjection.of(projection);
+    return this;
+  }
+
+  @Override
+  protected T parseResponse(HttpResponse response) throws IOException {
+    if (fieldProjection == null) {
+      return super.parseResponse(response);
+    }
+    return parse(response, fieldProjection);
+  }
+
+  @Override
+  protected String getCoalescingKey() {
+    String key = super.getCoalescingKey();
+    return key == null || projection == null ? key : key + " projection=" + projection;
+  }
+
+  /**
+   * Executes the request and passes each entry to the handler as soon as it is decoded, so only
+   * one entry of the response is held in memory.
+   */
+  final T executeAndHandleEntries(final EntryHandler handler) throws IOException {
+    return executeUnparsed(new ResponseHandler<T>() {
+
+      public T handle(HttpResponse response) throws IOException {
+        return parse(response, fieldProjection, handler);
+      }
+    });
+  }
+
+  /** Parses the response decoding only the projected keys of the entries. */
+  abstract T parse(HttpResponse response, FieldProjection projection) throws IOException;
+
+  /**
+   * Parses the response passing the entries to the handler.
+   *
+   * @param projection projected keys of the entries or {@code null} for all
+   * @return response without entries
+   */
+  abstract T parse(HttpResponse response, FieldProjection projection, EntryHandler handler)
+      throws IOException;
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import org.github.bademux.feedly.api.model.Entry;
+import org.github.bademux.feedly.api.model.Stream;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * Ids-first fetching of entries: walks the ids of the stream by {@link Feedly.Streams#ids},
+ * skips the ones already known locally and fetches only the missing entries by {@link
+ * Feedly.Entry#list(Collection)} in chunks of at most {@link #MAX_CHUNK_SIZE} ids.
+ *
+ * <p> Up to {@link #getParallelism()} chunks are fetched at once on the {@link
+ * AbstractClient#getExecutor() client executor}, while the ids of the next ones are still being
+ * walked. Example usage: </p>
+ *
+ * <pre>
+ * int fetched = new EntryFetcher(service).fetch(stream, localIds, new EntryHandler() {
+ *   public void handle(Entry entry) throws IOException {
+ *     // store entry..
+ *   }
+ * });
+ * </pre>
+ *
+ * <p> Entries are passed to the handler in the caller thread, chunk after chunk in the order of
+ * ids. Implementation is not thread-safe. </p>
+ */
+public class EntryFetcher {
+
+  /** Maximum number of ids accepted by {@link Feedly.Entry#list(Collection)}. */
+  public static final int MAX_CHUNK_SIZE = 1000;
+
+  /** Default number of chunks fetched at once. */
+  public static final int DEFAULT_PARALLELISM = 4;
+
+  private final Feedly feedly;
+
+  private int chunkSize = MAX_CHUNK_SIZE;
+
+  private int parallelism = DEFAULT_PARALLELISM;
+
+  private Collection<String> projection;
+
+  public EntryFetcher(Feedly feedly) {
+    this.feedly = checkNotNull(feedly);
+  }
+
+  /** Returns the maximum number of ids per {@link Feedly.Entry.List} request. */
+  public int getChunkSize() { return chunkSize; }
+
+  /**
+   * Sets the maximum number of ids per {@link Feedly.Entry.List} request.
+   *
+   * <p> By default it is {@link #MAX_CHUNK_SIZE}. </p>
+   */
+  public EntryFetcher setChunkSize(int chunkSize) {
+    checkArgument(chunkSize > 0 && chunkSize <= MAX_CHUNK_SIZE,
+                  "chunk size must be in range 1..%s", MAX_CHUNK_SIZE);
+    this.chunkSize = chunkSize;
+    return this;
+  }
+
+  /** Returns the number of chunks fetched at once. */
+  public int getParallelism() { return parallelism; }
+
+  /**
+   * Sets the number of chunks fetched at once.
+   *
+   * <p> By default it is {@link #DEFAULT_PARALLELISM}. </p>
+   */
+  public EntryFetcher setParallelism(int parallelism) {
+    checkArgument(parallelism > 0, "parallelism must be positive");
+    this.parallelism = parallelism;
+    return this;
+  }
+
+  /** Returns keys of the entries to decode or {@code null} for all. */
+  public Collection<String> getProjection() { return projection; }
+
+  /** @see Feedly.Entry.List#setProjection(Collection) */
+  public EntryFetcher setProjection(Collection<String> projection) {
+    this.projection = projection;
+    return this;
+  }
+
+  /**
+   * Fetches the entries of the stream that aren't known.
+   *
+   * @param known ids of the entries available locally, {@link Set#contains} is the only method
+   *              used, so it can be backed by a local storage
+   * @return number of the fetched entries
+   */
+  public int fetch(Stream stream, Set<String> known, EntryHandler handler) throws IOException {
+    Paginator<String>.PageIterator ids = feedly.streams().ids(stream)
+        .setCount(SyncEngine.MAX_IDS_PER_PAGE).paginate().iterator();
+    try {
+      return fetch(ids, known, handler);
+    } catch (Paginator.FetchException e) {
+      throw SyncEngine.rethrow(e);
+    } finally {
+      ids.close();
+    }
+  }
+
+  /**
+   * Fetches the entries that aren't known, for example new ids of {@link ChangeSet}.
+   *
+   * @param known ids of the entries available locally or {@code null} to fetch all
+   * @return number of the fetched entries
+   */
+  public int fetch(Collection<String> entryIds, Set<String> known, EntryHandler handler)
+      throws IOException {
+    return fetch(entryIds.iterator(), known, handler);
+  }
+
+  private int fetch(Iterator<String> ids, Set<String> known, EntryHandler handler)
+      throws IOException {
+    checkNotNull(handler);
+    Queue<Future<Entry.Entries>> inFlight = new LinkedList<Future<Entry.Entries>>();
+    int fetched = 0;
+    try {
+      List<String> chunk = new ArrayList<String>(chunkSize);
+      while (ids.hasNext()) {
+        String id = ids.next();
+        if (known != null && known.contains(id)) {
+          continue;
+        }
+        chunk.add(id);
+        if (chunk.size() == chunkSize) {
+          fetched += submit(chunk, inFlight, handler);
+          chunk = new ArrayList<String>(chunkSize);
+        }
+      }
+      if (!chunk.isEmpty()) {
+        fetched += submit(chunk, inFlight, handler);
+      }
+      while (!inFlight.isEmpty()) {
+        fetched += handle(inFlight.remove(), handler);
+      }
+      return fetched;
+    } finally {
+      for (Future<Entry.Entries> future : inFlight) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Submits the chunk, first handling the oldest request if {@link #parallelism} are in flight.
+   *
+   * @return number of the handled entries
+   */
+  private int submit(List<String> chunk, Queue<Future<Entry.Entries>> inFlight,
+                     EntryHandler handler) throws IOException {
+    int handled = 0;
+    if (inFlight.size() == parallelism) {
+      handled = handle(inFlight.remove(), handler);
+    }
+    inFlight.add(submit(chunk));
+    return handled;
+  }
+
+  private Future<Entry.Entries> submit(List<String> chunk) throws IOException {
+    return feedly.entries().list(chunk).setProjection(projection).executeAsync();
+  }
+
+  private static int handle(Future<Entry.Entries> future, EntryHandler handler)
+      throws IOException {
+    List<Entry> entries;
+    try {
+      entries = future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while fetching entries");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+    if (entries == null) {
+      entries = Collections.emptyList();
+    }
+    for (Entry entry : entries) {
+      handler.handle(entry);
+    }
+    return entries.size();
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import org.github.bademux.feedly.api.model.Entry;
+
+import java.io.IOException;
+
+/**
+ * Receives entries one by one as soon as they are decoded from a response.
+ *
+ * @see Feedly.Streams.Contents#executeAndHandle(EntryHandler)
+ */
+public interface EntryHandler {
+
+  /**
+   * Handles the decoded entry, it isn't referenced by the parser afterwards.
+   *
+   * @throws IOException to abort parsing of the response
+   */
+  public void handle(Entry entry) throws IOException;
+}
@@ -20,6 +20,7 @@
 package org.github.bademux.feedly.api.service;
 
 import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponse;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.http.InputStreamContent;
 import com.google.api.client.json.GenericJson;
@@ -31,6 +32,7 @@ import org.github.bademux.feedly.api.model.Category;
 import org.github.bademux.feedly.api.model.EntriesResponse;
 import org.github.bademux.feedly.api.model.FeedInfo;
 import org.github.bademux.feedly.api.model.FeedsResponse;
+import org.github.bademux.feedly.api.model.IdRegistry;
 import org.github.bademux.feedly.api.model.MarkReadsResponse;
 import org.github.bademux.feedly.api.model.MarkTagsResponse;
 import org.github.bademux.feedly.api.model.Stream;
@@ -49,6 +51,7 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.concurrent.Executor;
 
 import static com.google.api.client.repackaged.com.google.common.base.Preconditions.checkNotNull;
 
@@ -89,6 +92,7 @@ public class Feedly extends AbstractClient {
       public Get() {
         super(Feedly.this, "GET", REST_PATH, null,
               org.github.bademux.feedly.api.model.Profile.class);
+        setUseResponseCache(true);
       }
     }
 
@@ -138,6 +142,7 @@ public class Feedly extends AbstractClient {
       public Get() {
         super(Feedly.this, "GET", REST_PATH, null,
               org.github.bademux.feedly.api.model.Preferences.class);
+        setUseResponseCache(true);
       }
     }
 
@@ -185,6 +190,7 @@ public class Feedly extends AbstractClient {
 
       public List() {
         super(Feedly.this, "GET", REST_PATH, null, Category.Categories.class);
+        setUseResponseCache(true);
       }
 
       @Override
@@ -294,6 +300,7 @@ public class Feedly extends AbstractClient {
 
       public List() {
         super(Feedly.this, "GET", REST_PATH, null, Subscription.Subscriptions.class);
+        setUseResponseCache(true);
       }
 
       @Override
@@ -493,6 +500,7 @@ public class Feedly extends AbstractClient {
       public List() {
         super(Feedly.this, "GET", REST_PATH, null,
               org.github.bademux.feedly.api.model.Tag.Tags.class);
+        setUseResponseCache(true);
       }
 
       @Override
@@ -690,14 +698,44 @@ public class Feedly extends AbstractClient {
     /** The number of entry ids you can pass as an input is limited to 1,000. */
     public List list(Collection<String> entryIds) throws IOException { return new List(entryIds); }
 
-    public class List extends Request<org.github.bademux.feedly.api.model.Entry.Entries> {
+    public class List extends EntriesRequest<org.github.bademux.feedly.api.model.Entry.Entries> {
 
       private static final String REST_PATH = "entries/.mget";
 
       public List(Collection<String> entryIds) {
         super(Feedly.this, "POST", REST_PATH, new GenericData().set("ids", entryIds),
               org.github.bademux.feedly.api.model.Entry.Entries.class);
-        setDisableGZipContent(true);
+      }
+
+      @Override
+      public List setProjection(final Collection<String> projection) {
+        return (List) super.setProjection(projection);
+      }
+
+      /** Only reads the entries, so it may be hedged like a GET request. */
+      @Override
+      protected boolean isIdempotent() { return true; }
+
+      /**
+       * Executes the request and passes each entry to the handler as soon as it is decoded, so
+       * only one entry of the response is held in memory.
+       */
+      public void executeAndHandle(EntryHandler handler) throws IOException {
+        executeAndHandleEntries(handler);
+      }
+
+      @Override
+      org.github.bademux.feedly.api.model.Entry.Entries parse(
+          HttpResponse response, FieldProjection projection) throws IOException {
+        return EntriesParser.parseArray(this, response, projection);
+      }
+
+      @Override
+      org.github.bademux.feedly.api.model.Entry.Entries parse(
+          HttpResponse response, FieldProjection projection, EntryHandler handler)
+          throws IOException {
+        EntriesParser.parseArray(this, response, projection, handler);
+        return null;
       }
 
       @Override
@@ -833,7 +871,8 @@ public class Feedly extends AbstractClient {
       return new Entries(stream, q);
     }
 
-    public class Entries extends Request<EntriesResponse> {
+    public class Entries extends StreamEntriesRequest
+        implements ContinuableRequest<EntriesResponse> {
 
       private static final String REST_PATH = "streams/{streamId}/contents";
 
@@ -855,10 +894,9 @@ public class Feedly extends AbstractClient {
       private Integer minMatches;
 
       public Entries(Stream stream, String q) {
-        super(Feedly.this, "GET", REST_PATH, null, EntriesResponse.class);
+        super(Feedly.this, REST_PATH);
         streamId = stream.getId();
         this.q = checkNotNull(q);
-        setDisableGZipContent(true);
       }
 
       public String getStreamId() { return streamId; }
@@ -909,6 +947,16 @@ public class Feedly extends AbstractClient {
         return this;
       }
 
+      /** @see Paginator */
+      public Paginator<org.github.bademux.feedly.api.model.Entry> paginate() {
+        return new Paginator<org.github.bademux.feedly.api.model.Entry>(this);
+      }
+
+      @Override
+      public Entries setProjection(final Collection<String> projection) {
+        return (Entries) super.setProjection(projection);
+      }
+
       @Override
       public Entries setDisableGZipContent(boolean disableGZipContent) {
         return (Entries) super.setDisableGZipContent(disableGZipContent);
@@ -1204,6 +1252,10 @@ public class Feedly extends AbstractClient {
         setDisableGZipContent(true);
       }
 
+      /** Only reads the feeds, so it may be hedged like a GET request. */
+      @Override
+      protected boolean isIdempotent() { return true; }
+
       @Override
       public List setDisableGZipContent(boolean disableGZipContent) {
         return (List) super.setDisableGZipContent(disableGZipContent);
@@ -1231,6 +1283,7 @@ public class Feedly extends AbstractClient {
 
       public Get(String feedId) {
         super(Feedly.this, "GET", REST_PATH, null, FeedInfo.class);
+        setUseResponseCache(true);
         this.feedId = checkNotNull(feedId);
         setDisableGZipContent(true);
       }
@@ -1261,7 +1314,8 @@ public class Feedly extends AbstractClient {
       return new Ids(stream);
     }
 
-    public class Ids extends Request<StreamsResponse> {
+    public class Ids extends Request<StreamsResponse>
+        implements ContinuableRequest<StreamsResponse> {
 
       private static final String REST_PATH = "streams/{streamId}/ids";
 
@@ -1312,6 +1366,9 @@ public class Feedly extends AbstractClient {
 
       public Ids setRanked(final Ranked ranked) {this.ranked = ranked; return this; }
 
+      /** @see Paginator */
+      public Paginator<String> paginate() { return new Paginator<String>(this); }
+
       @Override
       public Ids setDisableGZipContent(boolean disableGZipContent) {
         return (Ids) super.setDisableGZipContent(disableGZipContent);
@@ -1331,7 +1388,8 @@ public class Feedly extends AbstractClient {
 
     public Contents contents(Stream stream) { return new Contents(stream); }
 
-    public class Contents extends Request<EntriesResponse> {
+    public class Contents extends StreamEntriesRequest
+        implements ContinuableRequest<EntriesResponse> {
 
       private static final String REST_PATH = "streams/{streamId}/contents";
 
@@ -1349,9 +1407,8 @@ public class Feedly extends AbstractClient {
       private String ranked;
 
       public Contents(Stream stream) {
-        super(Feedly.this, "GET", REST_PATH, null, EntriesResponse.class);
+        super(Feedly.this, REST_PATH);
         streamId = stream.getId();
-        setDisableGZipContent(true);
       }
 
       public String getStreamId() { return streamId; }
@@ -1382,6 +1439,16 @@ public class Feedly extends AbstractClient {
 
       public Contents setRanked(final String ranked) {this.ranked = ranked; return this; }
 
+      /** @see Paginator */
+      public Paginator<org.github.bademux.feedly.api.model.Entry> paginate() {
+        return new Paginator<org.github.bademux.feedly.api.model.Entry>(this);
+      }
+
+      @Override
+      public Contents setProjection(final Collection<String> projection) {
+        return (Contents) super.setProjection(projection);
+      }
+
       @Override
       public Contents setDisableGZipContent(boolean disableGZipContent) {
         return (Contents) super.setDisableGZipContent(disableGZipContent);
@@ -1406,7 +1473,7 @@ public class Feedly extends AbstractClient {
 
     public Get contents(Stream stream) throws IOException { return new Get(stream); }
 
-    public class Get extends Request<EntriesResponse> {
+    public class Get extends StreamEntriesRequest {
 
       private static final String REST_PATH = "mixes/{streamId}/contents";
 
@@ -1422,9 +1489,8 @@ public class Feedly extends AbstractClient {
       private String hours;
 
       public Get(Stream stream) {
-        super(Feedly.this, "GET", REST_PATH, null, EntriesResponse.class);
+        super(Feedly.this, REST_PATH);
         this.streamId = stream.getId();
-        setDisableGZipContent(true);
       }
 
       public String getStreamId() { return streamId; }
@@ -1448,6 +1514,11 @@ public class Feedly extends AbstractClient {
 
       public Get setHours(final String hours) { this.hours = hours; return this; }
 
+      @Override
+      public Get setProjection(final Collection<String> projection) {
+        return (Get) super.setProjection(projection);
+      }
+
       @Override
       public Get setDisableGZipContent(boolean disableGZipContent) {
         return (Get) super.setDisableGZipContent(disableGZipContent);
@@ -1597,6 +1668,56 @@ public class Feedly extends AbstractClient {
       return (Builder) super.setHttpRequestInitializer(httpRequestInitializer);
     }
 
+    @Override
+    public Builder setExecutor(Executor executor) {
+      return (Builder) super.setExecutor(executor);
+    }
+
+    @Override
+    public Builder setInstrumentation(Instrumentation instrumentation) {
+      return (Builder) super.setInstrumentation(instrumentation);
+    }
+
+    @Override
+    public Builder setCircuitBreaker(CircuitBreaker circuitBreaker) {
+      return (Builder) super.setCircuitBreaker(circuitBreaker);
+    }
+
+    @Override
+    public Builder setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+      return (Builder) super.setHedgingPolicy(hedgingPolicy);
+    }
+
+    @Override
+    public Builder setRequestCoalescer(RequestCoalescer requestCoalescer) {
+      return (Builder) super.setRequestCoalescer(requestCoalescer);
+    }
+
+    @Override
+    public Builder setRequestThrottle(RequestThrottle requestThrottle) {
+      return (Builder) super.setRequestThrottle(requestThrottle);
+    }
+
+    @Override
+    public Builder setRetryPolicy(RetryPolicy retryPolicy) {
+      return (Builder) super.setRetryPolicy(retryPolicy);
+    }
+
+    @Override
+    public Builder setResponseCache(HttpResponseCache responseCache) {
+      return (Builder) super.setResponseCache(responseCache);
+    }
+
+    @Override
+    public Builder setReflectionFreeParsing(boolean reflectionFreeParsing) {
+      return (Builder) super.setReflectionFreeParsing(reflectionFreeParsing);
+    }
+
+    @Override
+    public Builder setIdRegistry(IdRegistry idRegistry) {
+      return (Builder) super.setIdRegistry(idRegistry);
+    }
+
     @Override
     public Builder setSuppressPatternChecks(boolean suppressPatternChecks) {
       return (Builder) super.setSuppressPatternChecks(suppressPatternChecks);
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+
+/**
+ * Set of JSON keys to decode, nested keys are separated with dot, e.g. {@code
+ * "origin.streamId"}. Values of the other keys are skipped by the parser.
+ *
+ * <p> Implementation is immutable. </p>
+ */
+final class FieldProjection {
+
+  /** Kept keys mapped to their nested projection or {@code null} to keep the whole value. */
+  private final Map<String, FieldProjection> fields = new HashMap<String, FieldProjection>();
+
+  private FieldProjection() {}
+
+  /** @param paths keys to keep, nested keys are separated with dot */
+  static FieldProjection of(Collection<String> paths) {
+    FieldProjection projection = new FieldProjection();
+    for (String path : paths) {
+      projection.add(path);
+    }
+    return projection;
+  }
+
+  /** Returns whether the value of the key should be decoded. */
+  boolean keeps(String name) {
+    return fields.containsKey(name);
+  }
+
+  /** Returns projection of the kept key or {@code null} to decode the whole value. */
+  FieldProjection get(String name) {
+    return fields.get(name);
+  }
+
+  private void add(String path) {
+    checkArgument(path != null && path.length() != 0, "empty projection path");
+    int dot = path.indexOf('.');
+    String name = dot == -1 ? path : path.substring(0, dot);
+    if (dot == -1) {
+      fields.put(name, null);
+      return;
+    }
+    if (fields.containsKey(name) && fields.get(name) == null) {
+      return; //whole value is already kept
+    }
+    FieldProjection nested = fields.get(name);
+    if (nested == null) {
+      nested = new FieldProjection();
+      fields.put(name, nested);
+    }
+    nested.add(path.substring(dot + 1));
+  }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+
+/**
+ * Hedged requests, see {@link AbstractClient.Builder#setHedgingPolicy}.
+ *
+ * <p> If an {@link Request#isIdempotent() idempotent} request gets no response within the hedge
+ * delay of its endpoint, a duplicate is sent and the first successful response is returned. Both
+ * are sent by the client executor, so the caller doesn't wait for the loser; it is interrupted,
+ * but a blocked read only ends with its response or timeout. The delay is the {@link
+ * #getPercentile() percentile} of the latency observed for the endpoint, so only the slowest
+ * requests are hedged; until {@link #getMinimumSamples()} latencies are observed the endpoint
+ * isn't hedged. Latencies are kept in windows of {@link #getWindowSamples()} samples, so the
+ * delay follows the current latency. </p>
+ *
+ * <p> Hedges are limited by a budget shared by all requests of the client: every request deposits
+ * {@link #getBudgetRatio()} of a hedge, every hedge withdraws a whole one and the balance is kept
+ * within {@link #getMaxBudget()}. With the default ratio hedging costs at most 5% extra requests.
+ * </p>
+ *
+ * <p> Implementation is thread-safe, but it should be configured before the client is built. </p>
+ */
+public class HedgingPolicy {
+
+  /** Default percentile of the latency used as the hedge delay. */
+  public static final double DEFAULT_PERCENTILE = 95;
+
+  /** Default number of latencies observed before an endpoint is hedged. */
+  public static final int DEFAULT_MINIMUM_SAMPLES = 50;
+
+  /** Default number of latencies in a window. */
+  public static final int DEFAULT_WINDOW_SAMPLES = 1000;
+
+  /** Default minimum hedge delay in milliseconds. */
+  public static final long DEFAULT_MIN_DELAY = 10;
+
+  /** Default share of a hedge deposited to the budget by every request. */
+  public static final double DEFAULT_BUDGET_RATIO = 0.05;
+
+  /** Default maximum balance, and the initial one, of the hedge budget. */
+  public static final int DEFAULT_MAX_BUDGET = 10;
+
+  private final ConcurrentMap<String, Latency> latencies =
+      new ConcurrentHashMap<String, Latency>();
+
+  private volatile double percentile = DEFAULT_PERCENTILE;
+
+  private volatile int minimumSamples = DEFAULT_MINIMUM_SAMPLES;
+
+  private volatile int windowSamples = DEFAULT_WINDOW_SAMPLES;
+
+  private volatile long minDelay = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MIN_DELAY);
+
+  private double budgetRatio = DEFAULT_BUDGET_RATIO;
+
+  private int maxBudget = DEFAULT_MAX_BUDGET;
+
+  private double budget = DEFAULT_MAX_BUDGET;
+
+  private long hedgeCount;
+
+  private long hedgeWinCount;
+
+  /** Returns the percentile of the latency used as the hedge delay. */
+  public double getPercentile() { return percentile; }
+
+  /**
+   * Sets the percentile of the latency used as the hedge delay.
+   *
+   * <p> By default it is {@link #DEFAULT_PERCENTILE}. </p>
+   */
+  public HedgingPolicy setPercentile(double percentile) {
+    checkArgument(percentile > 0 && percentile < 100, "percentile must be in range (0, 100)");
+    this.percentile = percentile;
+    return this;
+  }
+
+  /** Returns the number of latencies observed before an endpoint is hedged. */
+  public int getMinimumSamples() { return minimumSamples; }
+
+  /** Returns the number of latencies in a window. */
+  public int getWindowSamples() { return windowSamples; }
+
+  /**
+   * Sets the number of latencies observed before an endpoint is hedged and the number of
+   * latencies in a window.
+   *
+   * <p> By default it is {@link #DEFAULT_MINIMUM_SAMPLES} and {@link #DEFAULT_WINDOW_SAMPLES}.
+   * </p>
+   */
+  public HedgingPolicy setSamples(int minimumSamples, int windowSamples) {
+    checkArgument(minimumSamples > 0 && minimumSamples <= windowSamples,
+                  "minimum samples must be in range 1..window samples");
+    this.minimumSamples = minimumSamples;
+    this.windowSamples = windowSamples;
+    return this;
+  }
+
+  /** Returns the minimum hedge delay in milliseconds. */
+  public long getMinDelay() { return TimeUnit.NANOSECONDS.toMillis(minDelay); }
+
+  /**
+   * Sets the minimum hedge delay in milliseconds.
+   *
+   * <p> By default it is {@link #DEFAULT_MIN_DELAY}. </p>
+   */
+  public HedgingPolicy setMinDelay(long minDelay) {
+    checkArgument(minDelay >= 0, "min delay must not be negative");
+    this.minDelay = TimeUnit.MILLISECONDS.toNanos(minDelay);
+    return this;
+  }
+
+  /** Returns the share of a hedge deposited to the budget by every request. */
+  public synchronized double getBudgetRatio() { return budgetRatio; }
+
+  /** Returns the maximum balance of the hedge budget. */
+  public synchronized int getMaxBudget() { return maxBudget; }
+
+  /**
+   * Sets the hedge budget: hedges are limited to the given share of requests with a reserve of
+   * at most {@code maxBudget} hedges for bursts, the budget starts full.
+   *
+   * <p> By default it is {@link #DEFAULT_BUDGET_RATIO} and {@link #DEFAULT_MAX_BUDGET}. </p>
+   */
+  public synchronized HedgingPolicy setBudget(double ratio, int maxBudget) {
+    checkArgument(ratio >= 0, "ratio must not be negative");
+    checkArgument(maxBudget >= 0, "max budget must not be negative");
+    this.budgetRatio = ratio;
+    this.maxBudget = maxBudget;
+    this.budget = maxBudget;
+    return this;
+  }
+
+  /** Returns the number of hedges sent. */
+  public synchronized long getHedgeCount() { return hedgeCount; }
+
+  /** Returns the number of hedges that responded before the original request. */
+  public synchronized long getHedgeWinCount() { return hedgeWinCount; }
+
+  /**
+   * Returns the hedge delay of the endpoint in nanoseconds or {@code -1} if it isn't hedged yet.
+   * Deposits the share of a hedge for the new request.
+   */
+  long getDelay(String endpoint) {
+    synchronized (this) {
+      budget = Math.min(maxBudget, budget + budgetRatio);
+    }
+    Latency latency = latencies.get(endpoint);
+    Histogram histogram = latency == null ? null : latency.get(minimumSamples);
+    if (histogram == null) {
+      return -1;
+    }
+    return Math.max(minDelay, histogram.getValueAtPercentile(percentile));
+  }
+
+  /** Returns whether the budget allows a hedge and withdraws it. */
+  synchronized boolean tryHedge() {
+    if (budget < 1) {
+      return false;
+    }
+    budget--;
+    hedgeCount++;
+    return true;
+  }
+
+  synchronized void onHedgeWin() {
+    hedgeWinCount++;
+  }
+
+  /** Records the latency in nanoseconds of the successful request of the endpoint. */
+  void record(String endpoint, long nanos) {
+    Latency latency = latencies.get(endpoint);
+    if (latency == null) {
+      Latency created = new Latency();
+      latency = latencies.putIfAbsent(endpoint, created);
+      if (latency == null) {
+        latency = created;
+      }
+    }
+    latency.record(nanos, windowSamples);
+  }
+
+  /** Latencies of the current window and of the previous one. */
+  private static final class Latency {
+
+    private volatile Histogram current = new Histogram();
+
+    private volatile Histogram previous;
+
+    void record(long nanos, int windowSamples) {
+      Histogram histogram = current;
+      histogram.record(Math.min(nanos, Histogram.MAX_VALUE));
+      if (histogram.getCount() >= windowSamples) {
+        synchronized (this) {
+          if (current == histogram) {
+            previous = histogram;
+            current = new Histogram();
+          }
+        }
+      }
+    }
+
+    /** Returns the window with enough samples or {@code null} if there is none. */
+    Histogram get(int minimumSamples) {
+      Histogram histogram = current;
+      if (histogram.getCount() >= minimumSamples) {
+        return histogram;
+      }
+      return previous;
+    }
+  }
+}
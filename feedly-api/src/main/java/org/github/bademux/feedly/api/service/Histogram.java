@@ -0,0 +1,122 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+package org.github.bademux.feedly.api.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+
+/**
+ * Lock-free histogram of non-negative values with bounded relative error, in the manner of
+ * HdrHistogram: each power of two range is split into 32 linear buckets, so a value is reported
+ * with relative error of at most 1/32, about 3%. Values above
+ * {@link #MAX_VALUE} are recorded as {@link #MAX_VALUE}.
+ *
+ * <p> Recording is a few atomic increments and never blocks; reads made concurrently with
+ * recording are consistent only approximately. </p>
+ */
+public final class Histogram {
+
+  /** Linear buckets per power of two. */
+  static final int SUB_BUCKETS = 32;
+
+  private static final int SUB_BUCKET_BITS = 6; // log2(SUB_BUCKETS) + 1
+
+  /** Highest trackable value, 2^40 - 1: about 18 minutes in nanoseconds or 1 TiB in bytes. */
+  public static final long MAX_VALUE = (1L << 40) - 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_VALUE) + 1);
+
+  private final AtomicLong count = new AtomicLong();
+
+  private final AtomicLong sum = new AtomicLong();
+
+  private final AtomicLong max = new AtomicLong();
+
+  /** Records the value. */
+  public void record(long value) {
+    checkArgument(value >= 0, "value must not be negative");
+    value = Math.min(value, MAX_VALUE);
+    counts.incrementAndGet(indexOf(value));
+    count.incrementAndGet();
+    sum.addAndGet(value);
+    long current;
+    while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+      // retry
+    }
+  }
+
+  /** Returns the number of recorded values. */
+  public long getCount() { return count.get(); }
+
+  /** Returns the highest recorded value or {@code 0} if there are none. */
+  public long getMax() { return max.get(); }
+
+  /** Returns the mean of recorded values or {@code 0} if there are none. */
+  public double getMean() {
+    long n = count.get();
+    return n == 0 ? 0 : (double) sum.get() / n;
+  }
+
+  /**
+   * Returns the value at the percentile: the highest value equivalent, within the error, to the
+   * one that many percent of recorded values don't exceed, or {@code 0} if there are none.
+   *
+   * @param percentile percentile in range 0..100
+   */
+  public long getValueAtPercentile(double percentile) {
+    checkArgument(percentile >= 0 && percentile <= 100, "percentile must be in range 0..100");
+    long total = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      total += counts.get(i);
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(highestEquivalentValue(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /** Returns the bucket of the value: values below 2 * {@link #SUB_BUCKETS} are exact. */
+  static int indexOf(long value) {
+    int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    if (shift <= 0) {
+      return (int) value;
+    }
+    return shift * SUB_BUCKETS + (int) (value >>> shift);
+  }
+
+  /** Returns the highest value of the bucket. */
+  static long highestEquivalentValue(int index) {
+    if (index < 2 * SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long lowest = (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+}
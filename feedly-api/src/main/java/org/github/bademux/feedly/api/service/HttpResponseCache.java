@@ -0,0 +1,247 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.util.store.DataStore;
+import com.google.api.client.util.store.DataStoreFactory;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+
+/**
+ * Client-side cache of GET responses, see {@link AbstractClient.Builder#setResponseCache}.
+ *
+ * <p> Responses are keyed by the request URL without the {@code ck} cache-buster and kept in an
+ * in-memory LRU of {@link #getMaxEntries()} responses, optionally backed by the {@link
+ * DataStore} {@link #DEFAULT_DATA_STORE_ID} as a disk tier. A response is served from the cache
+ * while it is fresh by {@code Cache-Control: max-age}, after that it is revalidated by a
+ * conditional request with {@code If-None-Match} / {@code If-Modified-Since} and reused on
+ * {@code 304 Not Modified}. Responses with {@code Cache-Control: no-store} or without validators
+ * and freshness aren't cached. </p>
+ *
+ * <p> Only requests with {@link Request#setUseResponseCache(boolean)} use the cache, by default
+ * these are profile, preferences, categories, subscriptions, tags and feed metadata. The cache
+ * must not be shared between clients of different users. </p>
+ *
+ * <p> Implementation is thread-safe. </p>
+ */
+public class HttpResponseCache {
+
+  /** Id of the data store of the disk tier. */
+  public static final String DEFAULT_DATA_STORE_ID = "HttpResponseCache";
+
+  /** Default number of responses kept in memory. */
+  public static final int DEFAULT_MAX_ENTRIES = 64;
+
+  private final int maxEntries;
+
+  /** Disk tier or {@code null} for none. */
+  private final DataStore<CachedResponse> dataStore;
+
+  private final Map<String, CachedResponse> memory;
+
+  private long hitCount;
+
+  private long revalidationCount;
+
+  private long missCount;
+
+  /** Creates in-memory cache of {@link #DEFAULT_MAX_ENTRIES} responses. */
+  public HttpResponseCache() {
+    this(DEFAULT_MAX_ENTRIES);
+  }
+
+  /** Creates in-memory cache of the given number of responses. */
+  public HttpResponseCache(int maxEntries) {
+    checkArgument(maxEntries > 0, "max entries must be positive");
+    this.maxEntries = maxEntries;
+    this.dataStore = null;
+    this.memory = newLruMap(maxEntries);
+  }
+
+  /**
+   * Creates cache with the in-memory tier of the given number of responses and the disk tier in
+   * the data store {@link #DEFAULT_DATA_STORE_ID}. The disk tier isn't bounded, it is meant for a
+   * handful of rarely changing lists.
+   */
+  public HttpResponseCache(int maxEntries, DataStoreFactory dataStoreFactory) throws IOException {
+    checkArgument(maxEntries > 0, "max entries must be positive");
+    this.maxEntries = maxEntries;
+    this.dataStore = dataStoreFactory.getDataStore(DEFAULT_DATA_STORE_ID);
+    this.memory = newLruMap(maxEntries);
+  }
+
+  /** Returns the number of responses kept in memory. */
+  public final int getMaxEntries() { return maxEntries; }
+
+  /** Returns the number of responses served from the cache without a request. */
+  public synchronized long getHitCount() { return hitCount; }
+
+  /** Returns the number of responses revalidated by {@code 304 Not Modified}. */
+  public synchronized long getRevalidationCount() { return revalidationCount; }
+
+  /** Returns the number of responses downloaded in full. */
+  public synchronized long getMissCount() { return missCount; }
+
+  /** Removes all responses of both tiers. */
+  public synchronized void clear() throws IOException {
+    memory.clear();
+    if (dataStore != null) {
+      dataStore.clear();
+    }
+  }
+
+  /** Returns the cached response or {@code null}. */
+  synchronized CachedResponse get(String key) throws IOException {
+    CachedResponse response = memory.get(key);
+    if (response == null && dataStore != null) {
+      response = dataStore.get(key);
+      if (response != null) {
+        memory.put(key, response);
+      }
+    }
+    return response;
+  }
+
+  /** Stores the response, {@code null} removes the cached one. */
+  synchronized void put(String key, CachedResponse response) throws IOException {
+    if (response == null) {
+      memory.remove(key);
+      if (dataStore != null) {
+        dataStore.delete(key);
+      }
+      return;
+    }
+    memory.put(key, response);
+    if (dataStore != null) {
+      dataStore.set(key, response);
+    }
+  }
+
+  synchronized void recordHit() { hitCount++; }
+
+  synchronized void recordRevalidation() { revalidationCount++; }
+
+  synchronized void recordMiss() { missCount++; }
+
+  private static Map<String, CachedResponse> newLruMap(final int maxEntries) {
+    return new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /** Cached content and validators of the response. */
+  static final class CachedResponse implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    final byte[] content;
+
+    final String charset;
+
+    final String contentType;
+
+    final String etag;
+
+    final String lastModified;
+
+    /** Time, in ms, till the response is fresh. */
+    final long expiresAt;
+
+    CachedResponse(byte[] content, String charset, String contentType, String etag,
+                   String lastModified, long expiresAt) {
+      this.content = content;
+      this.charset = charset;
+      this.contentType = contentType;
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Returns the cached response or {@code null} if the response can't be cached by its
+     * headers.
+     */
+    static CachedResponse of(HttpHeaders headers, byte[] content, Charset charset, long now) {
+      String cacheControl = headers.getCacheControl();
+      if (cacheControl != null && cacheControl.contains("no-store")) {
+        return null;
+      }
+      long expiresAt = expiresAt(cacheControl, now);
+      if (headers.getETag() == null && headers.getLastModified() == null && expiresAt <= now) {
+        return null;
+      }
+      return new CachedResponse(content, charset == null ? null : charset.name(),
+                                headers.getContentType(), headers.getETag(),
+                                headers.getLastModified(), expiresAt);
+    }
+
+    /** Returns the response with freshness of the {@code 304 Not Modified} response. */
+    CachedResponse revalidated(HttpHeaders headers, long now) {
+      String etag = headers.getETag() == null ? this.etag : headers.getETag();
+      String lastModified =
+          headers.getLastModified() == null ? this.lastModified : headers.getLastModified();
+      return new CachedResponse(content, charset, contentType, etag, lastModified,
+                                expiresAt(headers.getCacheControl(), now));
+    }
+
+    boolean isFresh(long now) { return now < expiresAt; }
+
+    Charset getCharset() { return charset == null ? null : Charset.forName(charset); }
+
+    /** Returns headers of the cached response. */
+    HttpHeaders toHeaders() {
+      return new HttpHeaders().setContentType(contentType).setETag(etag)
+          .setLastModified(lastModified);
+    }
+
+    /**
+     * Returns the time till the response is fresh by {@code max-age}, with {@code no-cache} or
+     * without {@code max-age} the response is stale at once.
+     */
+    private static long expiresAt(String cacheControl, long now) {
+      if (cacheControl == null || cacheControl.contains("no-cache")) {
+        return now;
+      }
+      for (String directive : cacheControl.split(",")) {
+        directive = directive.trim();
+        if (directive.startsWith("max-age=")) {
+          try {
+            return now + Long.parseLong(directive.substring("max-age=".length())) * 1000;
+          } catch (NumberFormatException e) {
+            return now;
+          }
+        }
+      }
+      return now;
+    }
+  }
+}
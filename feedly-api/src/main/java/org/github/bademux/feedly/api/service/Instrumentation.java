@@ -0,0 +1,35 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+package org.github.bademux.feedly.api.service;
+
+/**
+ * Receiver of the measurements of executed requests, see {@link
+ * AbstractClient.Builder#setInstrumentation}. {@link MetricsRegistry} is the default in-memory
+ * implementation.
+ *
+ * <p> It is called on the thread that executed the request, right after {@link Request#execute()}
+ * returns or throws, so implementations must be fast and thread-safe. Unparsed and streamed
+ * executions, like {@link Request#executeUnparsed()}, are reported once the response is received
+ * or, when the request reads the response itself, once it is read. </p>
+ */
+public interface Instrumentation {
+
+  /** Receives the measurement of the executed request, must not throw. */
+  public void onRequest(RequestEvent event);
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.util.store.DataStore;
+import com.google.api.client.util.store.DataStoreFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+import static com.google.api.client.util.Preconditions.checkState;
+
+/**
+ * Write-behind queue of entry markers: read/unread and tag/untag operations are buffered and sent
+ * in batches by {@link Feedly.Markers#entriesAsRead}, {@link Feedly.Markers#entriesUnread},
+ * {@link Feedly.Tags#tag} and {@link Feedly.Tags#untag}.
+ *
+ * <p> Operations on the same entry (and tag) coalesce, the last one wins: a read, unread, read
+ * sequence of clicks is sent as a single read marker. Pending operations are flushed when there
+ * are {@link #getMaxPending()} of them, {@link #getFlushDelay() flush delay} after the first one
+ * or on {@link #flush()}. Failed operations stay pending and are retried by the next flush. </p>
+ *
+ * <p> With {@link DataStoreFactory} the pending operations are spilled to the {@link DataStore}
+ * {@link #DEFAULT_DATA_STORE_ID} as they are queued, so they survive process restart and are
+ * restored by the next batcher. Example usage: </p>
+ *
+ * <pre>
+ * MarkerBatcher batcher = new MarkerBatcher(service, new FileDataStoreFactory(dir));
+ * batcher.markAsRead(entry.getId());
+ * ...
+ * batcher.close();
+ * </pre>
+ *
+ * <p> Implementation is thread-safe. </p>
+ */
+public class MarkerBatcher implements Closeable {
+
+  private static final Logger LOGGER = Logger.getLogger(MarkerBatcher.class.getName());
+
+  /** Id of the data store with pending operations. */
+  public static final String DEFAULT_DATA_STORE_ID = "MarkerBatcher";
+
+  /** Maximum number of entry ids sent by one marker or tag request. */
+  public static final int MAX_IDS_PER_REQUEST = 1000;
+
+  /** Maximum number of entry ids sent by one untag request, they are a part of the URL path. */
+  public static final int MAX_IDS_PER_UNTAG = 50;
+
+  /** Default number of pending operations that triggers flush. */
+  public static final int DEFAULT_MAX_PENDING = 500;
+
+  /** Default delay in milliseconds between the first queued operation and flush. */
+  public static final long DEFAULT_FLUSH_DELAY = 5000;
+
+  /** Key separator of tag id and entry id, read markers have empty tag id. */
+  private static final char SEPARATOR = '\n';
+
+  private final Feedly feedly;
+
+  /** Spilled operations or {@code null} if they are kept only in memory. */
+  private final DataStore<Boolean> dataStore;
+
+  /** Pending operations by key, value is {@code true} for read/tag. Guarded by {@code this}. */
+  private Map<String, Boolean> pending = new LinkedHashMap<String, Boolean>();
+
+  /** Serializes flushes, so the batches reach the server in queuing order. */
+  private final Object flushLock = new Object();
+
+  private ScheduledExecutorService scheduler;
+
+  private ScheduledFuture<?> scheduledFlush;
+
+  private int maxPending = DEFAULT_MAX_PENDING;
+
+  private long flushDelay = DEFAULT_FLUSH_DELAY;
+
+  private boolean closed;
+
+  /** Creates batcher that keeps pending operations only in memory. */
+  public MarkerBatcher(Feedly feedly) {
+    this.feedly = checkNotNull(feedly);
+    this.dataStore = null;
+  }
+
+  /**
+   * Creates batcher that spills pending operations to the data store {@link
+   * #DEFAULT_DATA_STORE_ID} and restores the ones left by previous batcher.
+   */
+  public MarkerBatcher(Feedly feedly, DataStoreFactory dataStoreFactory) throws IOException {
+    this.feedly = checkNotNull(feedly);
+    this.dataStore = dataStoreFactory.getDataStore(DEFAULT_DATA_STORE_ID);
+    for (String key : dataStore.keySet()) {
+      pending.put(key, dataStore.get(key));
+    }
+  }
+
+  /** Returns the number of pending operations that triggers flush. */
+  public int getMaxPending() { return maxPending; }
+
+  /**
+   * Sets the number of pending operations that triggers flush.
+   *
+   * <p> By default it is {@link #DEFAULT_MAX_PENDING}. </p>
+   */
+  public MarkerBatcher setMaxPending(int maxPending) {
+    checkArgument(maxPending > 0, "max pending must be positive");
+    this.maxPending = maxPending;
+    return this;
+  }
+
+  /** Returns the delay in milliseconds between the first queued operation and flush. */
+  public long getFlushDelay() { return flushDelay; }
+
+  /**
+   * Sets the delay between the first queued operation and flush, {@code 0} disables timed flush.
+   *
+   * <p> By default it is {@link #DEFAULT_FLUSH_DELAY} milliseconds. </p>
+   */
+  public MarkerBatcher setFlushDelay(long flushDelay, TimeUnit unit) {
+    checkArgument(flushDelay >= 0, "flush delay must not be negative");
+    this.flushDelay = unit.toMillis(flushDelay);
+    return this;
+  }
+
+  /** Queues {@code markAsRead} marker of the entries. */
+  public void markAsRead(String... entryIds) throws IOException {
+    markAsRead(Arrays.asList(entryIds));
+  }
+
+  /** Queues {@code markAsRead} marker of the entries. */
+  public void markAsRead(Collection<String> entryIds) throws IOException {
+    enqueue("", entryIds, Boolean.TRUE);
+  }
+
+  /** Queues {@code keepUnread} marker of the entries. */
+  public void keepUnread(String... entryIds) throws IOException {
+    keepUnread(Arrays.asList(entryIds));
+  }
+
+  /** Queues {@code keepUnread} marker of the entries. */
+  public void keepUnread(Collection<String> entryIds) throws IOException {
+    enqueue("", entryIds, Boolean.FALSE);
+  }
+
+  /** Queues tagging of the entries. */
+  public void tag(Collection<String> entryIds, Collection<String> tagIds) throws IOException {
+    for (String tagId : tagIds) {
+      enqueue(checkTagId(tagId), entryIds, Boolean.TRUE);
+    }
+  }
+
+  /** Queues untagging of the entries. */
+  public void untag(Collection<String> entryIds, Collection<String> tagIds) throws IOException {
+    for (String tagId : tagIds) {
+      enqueue(checkTagId(tagId), entryIds, Boolean.FALSE);
+    }
+  }
+
+  /** Returns the number of pending operations. */
+  public synchronized int getPendingCount() { return pending.size(); }
+
+  /**
+   * Sends pending operations, blocks until they are sent.
+   *
+   * @throws IOException if any batch fails, the operations that weren't sent stay pending
+   */
+  public void flush() throws IOException {
+    synchronized (flushLock) {
+      Map<String, Boolean> batch;
+      synchronized (this) {
+        if (scheduledFlush != null) {
+          scheduledFlush.cancel(false);
+          scheduledFlush = null;
+        }
+        if (pending.isEmpty()) {
+          return;
+        }
+        batch = pending;
+        pending = new LinkedHashMap<String, Boolean>();
+      }
+      boolean sent = false;
+      try {
+        send(batch);
+        sent = true;
+      } finally {
+        complete(batch, sent);
+      }
+    }
+  }
+
+  /** Flushes pending operations and stops timed flushing, later operations are rejected. */
+  public void close() throws IOException {
+    ScheduledExecutorService scheduler;
+    synchronized (this) {
+      closed = true;
+      scheduler = this.scheduler;
+    }
+    try {
+      flush();
+    } finally {
+      if (scheduler != null) {
+        scheduler.shutdown();
+      }
+    }
+  }
+
+  private void enqueue(String tagId, Collection<String> entryIds, Boolean value)
+      throws IOException {
+    boolean full;
+    synchronized (this) {
+      checkState(!closed, "batcher is closed");
+      for (String entryId : entryIds) {
+        String key = tagId + SEPARATOR + checkNotNull(entryId);
+        // re-insert to keep the queuing order of the last operation
+        pending.remove(key);
+        pending.put(key, value);
+        if (dataStore != null) {
+          dataStore.set(key, value);
+        }
+      }
+      full = pending.size() >= maxPending;
+      if (!full && scheduledFlush == null && flushDelay > 0 && !pending.isEmpty()) {
+        scheduledFlush = getScheduler().schedule(new Runnable() {
+          public void run() { flushQuietly(); }
+        }, flushDelay, TimeUnit.MILLISECONDS);
+      }
+    }
+    if (full) {
+      feedly.getExecutor().execute(new Runnable() {
+        public void run() { flushQuietly(); }
+      });
+    }
+  }
+
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Markers flush failed, operations will be retried", e);
+      synchronized (this) {
+        if (!closed && scheduledFlush == null && flushDelay > 0) {
+          scheduledFlush = getScheduler().schedule(new Runnable() {
+            public void run() { flushQuietly(); }
+          }, flushDelay, TimeUnit.MILLISECONDS);
+        }
+      }
+    }
+  }
+
+  /** Groups the operations by action and sends them in chunks. */
+  private void send(Map<String, Boolean> batch) throws IOException {
+    List<String> read = new ArrayList<String>();
+    List<String> unread = new ArrayList<String>();
+    Map<String, List<String>> tagged = new LinkedHashMap<String, List<String>>();
+    Map<String, List<String>> untagged = new LinkedHashMap<String, List<String>>();
+    for (Map.Entry<String, Boolean> operation : batch.entrySet()) {
+      String key = operation.getKey();
+      int separator = key.indexOf(SEPARATOR);
+      String tagId = key.substring(0, separator);
+      String entryId = key.substring(separator + 1);
+      boolean value = operation.getValue();
+      if (tagId.isEmpty()) {
+        (value ? read : unread).add(entryId);
+      } else {
+        Map<String, List<String>> byTag = value ? tagged : untagged;
+        List<String> entryIds = byTag.get(tagId);
+        if (entryIds == null) {
+          byTag.put(tagId, entryIds = new ArrayList<String>());
+        }
+        entryIds.add(entryId);
+      }
+    }
+    Feedly.Markers markers = feedly.markers();
+    for (List<String> chunk : chunks(read, MAX_IDS_PER_REQUEST)) {
+      markers.entriesAsRead(chunk).execute();
+    }
+    for (List<String> chunk : chunks(unread, MAX_IDS_PER_REQUEST)) {
+      markers.entriesUnread(chunk).execute();
+    }
+    Feedly.Tags tags = feedly.tags();
+    for (Map.Entry<String, List<String>> tag : tagged.entrySet()) {
+      for (List<String> chunk : chunks(tag.getValue(), MAX_IDS_PER_REQUEST)) {
+        tags.tag(chunk, Collections.singletonList(tag.getKey())).execute();
+      }
+    }
+    for (Map.Entry<String, List<String>> tag : untagged.entrySet()) {
+      for (List<String> chunk : chunks(tag.getValue(), MAX_IDS_PER_UNTAG)) {
+        tags.untag(chunk, Collections.singletonList(tag.getKey())).execute();
+      }
+    }
+  }
+
+  /**
+   * Removes sent operations from the data store or returns failed ones to the queue, unless they
+   * were superseded while the batch was being sent. Markers are idempotent, so a failed batch is
+   * retried as a whole.
+   */
+  private synchronized void complete(Map<String, Boolean> batch, boolean sent)
+      throws IOException {
+    if (sent) {
+      if (dataStore != null) {
+        for (String key : batch.keySet()) {
+          if (!pending.containsKey(key)) {
+            dataStore.delete(key);
+          }
+        }
+      }
+      return;
+    }
+    Map<String, Boolean> merged = new LinkedHashMap<String, Boolean>(batch);
+    for (Map.Entry<String, Boolean> operation : pending.entrySet()) {
+      merged.remove(operation.getKey());
+      merged.put(operation.getKey(), operation.getValue());
+    }
+    pending = merged;
+  }
+
+  private synchronized ScheduledExecutorService getScheduler() {
+    if (scheduler == null) {
+      scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "feedly-markers");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return scheduler;
+  }
+
+  private static String checkTagId(String tagId) {
+    checkArgument(!tagId.isEmpty() && tagId.indexOf(SEPARATOR) < 0, "invalid tag id %s", tagId);
+    return tagId;
+  }
+
+  static <T> List<List<T>> chunks(List<T> list, int size) {
+    List<List<T>> chunks = new ArrayList<List<T>>((list.size() + size - 1) / size);
+    for (int from = 0; from < list.size(); from += size) {
+      chunks.add(list.subList(from, Math.min(from + size, list.size())));
+    }
+    return chunks;
+  }
+}
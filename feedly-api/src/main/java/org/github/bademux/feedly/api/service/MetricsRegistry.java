@@ -0,0 +1,213 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+package org.github.bademux.feedly.api.service;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Default {@link Instrumentation}: keeps {@link Histogram histograms} of latency, parse time and
+ * payload sizes and counters of requests, errors, retries and status codes per endpoint, i.e.
+ * HTTP method and URI template. Example usage:
+ *
+ * <pre>
+ * MetricsRegistry metrics = new MetricsRegistry();
+ * Feedly service = new Feedly.Builder(transport, jsonFactory, credential)
+ *     .setInstrumentation(metrics).build();
+ * // run the workload..
+ * metrics.dump(System.out);
+ * </pre>
+ *
+ * <p> Implementation is lock-free and thread-safe. </p>
+ */
+public class MetricsRegistry implements Instrumentation {
+
+  private final ConcurrentMap<String, EndpointMetrics> endpoints =
+      new ConcurrentHashMap<String, EndpointMetrics>();
+
+  public void onRequest(RequestEvent event) {
+    EndpointMetrics metrics = endpoints.get(event.getEndpoint());
+    if (metrics == null) {
+      EndpointMetrics created = new EndpointMetrics();
+      metrics = endpoints.putIfAbsent(event.getEndpoint(), created);
+      if (metrics == null) {
+        metrics = created;
+      }
+    }
+    metrics.record(event);
+  }
+
+  /** Returns metrics of the endpoint or {@code null} if it wasn't requested. */
+  public EndpointMetrics getEndpoint(String endpoint) {
+    return endpoints.get(endpoint);
+  }
+
+  /** Returns metrics by endpoint, sorted by endpoint. */
+  public Map<String, EndpointMetrics> getEndpoints() {
+    return Collections.unmodifiableMap(new TreeMap<String, EndpointMetrics>(endpoints));
+  }
+
+  /** Forgets all metrics. */
+  public void reset() {
+    endpoints.clear();
+  }
+
+  /**
+   * Writes metrics in text format, one line per endpoint sorted by endpoint, with space
+   * separated {@code key=value} fields, times in milliseconds:
+   *
+   * <pre>
+   * GET streams/{streamId}/contents count=42 errors=1 retries=2 cached=0
+   *   latency.p50=81.9 latency.p90=120.3 latency.p99=350.2 latency.max=360.1
+   *   parse.p50=3.1 parse.p99=9.8 bytes.p50=48127 bytes.max=230143 status.200=41 status.429=1
+   * </pre>
+   *
+   * (wrapped here for readability)
+   */
+  public void dump(Appendable out) throws IOException {
+    for (Map.Entry<String, EndpointMetrics> endpoint : getEndpoints().entrySet()) {
+      EndpointMetrics metrics = endpoint.getValue();
+      out.append(endpoint.getKey())
+          .append(" count=").append(String.valueOf(metrics.getCount()))
+          .append(" errors=").append(String.valueOf(metrics.getErrorCount()))
+          .append(" retries=").append(String.valueOf(metrics.getRetryCount()))
+          .append(" cached=").append(String.valueOf(metrics.getCacheHitCount()));
+      appendMillis(out, "latency.p50", metrics.getLatency().getValueAtPercentile(50));
+      appendMillis(out, "latency.p90", metrics.getLatency().getValueAtPercentile(90));
+      appendMillis(out, "latency.p99", metrics.getLatency().getValueAtPercentile(99));
+      appendMillis(out, "latency.max", metrics.getLatency().getMax());
+      appendMillis(out, "parse.p50", metrics.getParseTime().getValueAtPercentile(50));
+      appendMillis(out, "parse.p99", metrics.getParseTime().getValueAtPercentile(99));
+      out.append(" bytes.p50=")
+          .append(String.valueOf(metrics.getResponseBytes().getValueAtPercentile(50)))
+          .append(" bytes.max=").append(String.valueOf(metrics.getResponseBytes().getMax()));
+      for (int code = 0; code < EndpointMetrics.STATUS_CODES; code++) {
+        long count = metrics.getStatusCount(code);
+        if (count != 0) {
+          out.append(" status.").append(String.valueOf(code)).append('=')
+              .append(String.valueOf(count));
+        }
+      }
+      out.append('\n');
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    try {
+      dump(sb);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return sb.toString();
+  }
+
+  private static void appendMillis(Appendable out, String key, long nanos) throws IOException {
+    out.append(' ').append(key).append('=')
+        .append(String.valueOf(Math.round(nanos / 100000.0) / 10.0));
+  }
+
+  /** Metrics of one endpoint, see {@link MetricsRegistry}. */
+  public static final class EndpointMetrics {
+
+    /** Status codes are tracked in range 0..599, {@code -1} of failed requests isn't. */
+    static final int STATUS_CODES = 600;
+
+    private final Histogram latency = new Histogram();
+
+    private final Histogram sendTime = new Histogram();
+
+    private final Histogram parseTime = new Histogram();
+
+    private final Histogram requestBytes = new Histogram();
+
+    private final Histogram responseBytes = new Histogram();
+
+    private final AtomicLong errorCount = new AtomicLong();
+
+    private final AtomicLong retryCount = new AtomicLong();
+
+    private final AtomicLong cacheHitCount = new AtomicLong();
+
+    private final AtomicLongArray statusCounts = new AtomicLongArray(STATUS_CODES);
+
+    EndpointMetrics() {}
+
+    void record(RequestEvent event) {
+      latency.record(event.getTotalNanos());
+      sendTime.record(event.getSendNanos());
+      parseTime.record(event.getParseNanos());
+      if (event.getRequestBytes() >= 0) {
+        requestBytes.record(event.getRequestBytes());
+      }
+      responseBytes.record(event.getResponseBytes());
+      if (event.getException() != null) {
+        errorCount.incrementAndGet();
+      }
+      if (event.getRetries() != 0) {
+        retryCount.addAndGet(event.getRetries());
+      }
+      if (event.isFromCache()) {
+        cacheHitCount.incrementAndGet();
+      }
+      if (event.getStatusCode() >= 0 && event.getStatusCode() < STATUS_CODES) {
+        statusCounts.incrementAndGet(event.getStatusCode());
+      }
+    }
+
+    /** Returns the number of requests. */
+    public long getCount() { return latency.getCount(); }
+
+    /** Returns the number of requests that threw. */
+    public long getErrorCount() { return errorCount.get(); }
+
+    /** Returns the total number of retries. */
+    public long getRetryCount() { return retryCount.get(); }
+
+    /** Returns the number of responses served from {@link HttpResponseCache}. */
+    public long getCacheHitCount() { return cacheHitCount.get(); }
+
+    /** Returns the number of responses with the status code. */
+    public long getStatusCount(int statusCode) {
+      return statusCode >= 0 && statusCode < STATUS_CODES ? statusCounts.get(statusCode) : 0;
+    }
+
+    /** Returns the histogram of total time of requests in nanoseconds. */
+    public Histogram getLatency() { return latency; }
+
+    /** Returns the histogram of send time of requests in nanoseconds. */
+    public Histogram getSendTime() { return sendTime; }
+
+    /** Returns the histogram of parse time of responses in nanoseconds. */
+    public Histogram getParseTime() { return parseTime; }
+
+    /** Returns the histogram of request content lengths, where they are known. */
+    public Histogram getRequestBytes() { return requestBytes; }
+
+    /** Returns the histogram of decoded response content lengths. */
+    public Histogram getResponseBytes() { return responseBytes; }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.JsonObjectParser;
+import com.google.api.client.json.JsonParser;
+
+import org.github.bademux.feedly.api.model.IdRegistry;
+import org.github.bademux.feedly.api.model.ModelReader;
+import org.github.bademux.feedly.api.model.ModelReaders;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+
+/**
+ * {@link JsonObjectParser} that decodes the models with {@link ModelReaders} instead of
+ * reflection, types without a reader are parsed by the super implementation.
+ *
+ * @see AbstractClient.Builder#setReflectionFreeParsing(boolean)
+ */
+public class ModelObjectParser extends JsonObjectParser {
+
+  private final IdRegistry idRegistry;
+
+  public ModelObjectParser(JsonFactory jsonFactory) { this(jsonFactory, null); }
+
+  /** @param idRegistry registry the ids of entries are interned into or {@code null} for none */
+  public ModelObjectParser(JsonFactory jsonFactory, IdRegistry idRegistry) {
+    super(jsonFactory);
+    this.idRegistry = idRegistry;
+  }
+
+  /** Returns the registry the ids of entries are interned into or {@code null} for none. */
+  public final IdRegistry getIdRegistry() { return idRegistry; }
+
+  @Override
+  public <T> T parseAndClose(InputStream in, Charset charset, Class<T> dataClass)
+      throws IOException {
+    ModelReader<T> reader = ModelReaders.get(dataClass, idRegistry);
+    if (reader == null) {
+      return super.parseAndClose(in, charset, dataClass);
+    }
+    return read(getJsonFactory().createJsonParser(in, charset), reader);
+  }
+
+  @Override
+  public Object parseAndClose(InputStream in, Charset charset, Type dataType)
+      throws IOException {
+    if (dataType instanceof Class<?>) {
+      return parseAndClose(in, charset, (Class<?>) dataType);
+    }
+    return super.parseAndClose(in, charset, dataType);
+  }
+
+  @Override
+  public <T> T parseAndClose(Reader reader, Class<T> dataClass) throws IOException {
+    ModelReader<T> modelReader = ModelReaders.get(dataClass, idRegistry);
+    if (modelReader == null) {
+      return super.parseAndClose(reader, dataClass);
+    }
+    return read(getJsonFactory().createJsonParser(reader), modelReader);
+  }
+
+  @Override
+  public Object parseAndClose(Reader reader, Type dataType) throws IOException {
+    if (dataType instanceof Class<?>) {
+      return parseAndClose(reader, (Class<?>) dataType);
+    }
+    return super.parseAndClose(reader, dataType);
+  }
+
+  /** @return decoded model or {@code null} for empty content */
+  private static <T> T read(JsonParser parser, ModelReader<T> reader) throws IOException {
+    try {
+      return parser.nextToken() == null ? null : reader.read(parser);
+    } finally {
+      parser.close();
+    }
+  }
+}
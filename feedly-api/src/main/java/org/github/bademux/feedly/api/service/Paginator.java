@@ -0,0 +1,366 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import org.github.bademux.feedly.api.model.Continuable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.SynchronousQueue;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+import static com.google.api.client.util.Strings.isNullOrEmpty;
+
+/**
+ * Lazy {@link Iterable} over the items of a {@link ContinuableRequest}: pages are fetched one by
+ * one following {@link Continuable#getContinuation()}, so only a few pages are held in memory.
+ *
+ * <p> While the current page is being consumed the next pages are fetched in background, up to
+ * {@link #getPrefetchDepth()} pages ahead. Depth {@code 0} fetches pages synchronously in the
+ * consumer thread. Example usage: </p>
+ *
+ * <pre>
+ * Paginator&lt;Entry&gt; paginator = service.streams().contents(stream).paginate();
+ * Paginator&lt;Entry&gt;.PageIterator it = paginator.iterator();
+ * try {
+ *   while (it.hasNext()) {
+ *     Entry entry = it.next();
+ *     // process entry..
+ *   }
+ * } finally {
+ *   it.close();
+ * }
+ * </pre>
+ *
+ * <p> The request is owned by the paginator while iterating and must not be modified or shared.
+ * Implementation is not thread-safe. </p>
+ *
+ * @param <T> type of the page items
+ */
+public class Paginator<T> implements Iterable<T> {
+
+  /** Default number of pages fetched ahead of the consumer. */
+  public static final int DEFAULT_PREFETCH_DEPTH = 1;
+
+  private final ContinuableRequest<? extends Continuable<T>> request;
+
+  private Executor executor;
+
+  private int prefetchDepth = DEFAULT_PREFETCH_DEPTH;
+
+  private CheckpointStore checkpoints;
+
+  private String checkpointKey;
+
+  /**
+   * @param request request to paginate, iteration starts from its current continuation and
+   *                prefetching runs on the {@link AbstractClient#getExecutor() client executor}
+   */
+  public Paginator(ContinuableRequest<? extends Continuable<T>> request) {
+    this.request = checkNotNull(request);
+    this.executor = request.getAbstractClient().getExecutor();
+  }
+
+  /** Returns the number of pages fetched ahead of the consumer. */
+  public int getPrefetchDepth() { return prefetchDepth; }
+
+  /**
+   * Sets the number of pages fetched ahead of the consumer, {@code 0} disables prefetching.
+   *
+   * <p> By default it is {@link #DEFAULT_PREFETCH_DEPTH}. </p>
+   */
+  public Paginator<T> setPrefetchDepth(int prefetchDepth) {
+    checkArgument(prefetchDepth >= 0, "prefetch depth must not be negative");
+    this.prefetchDepth = prefetchDepth;
+    return this;
+  }
+
+  /** Returns the executor that fetches pages in background. */
+  public Executor getExecutor() { return executor; }
+
+  /** Sets the executor that fetches pages in background. */
+  public Paginator<T> setExecutor(Executor executor) {
+    this.executor = checkNotNull(executor);
+    return this;
+  }
+
+  /** Returns the store the progress is recorded to or {@code null} for none. */
+  public CheckpointStore getCheckpointStore() { return checkpoints; }
+
+  /**
+   * Records the progress of iteration to the crawl of the stream, see {@link CheckpointStore}:
+   * the continuation of the next page once a page is consumed and completion after the last
+   * page. Resuming from the checkpoint re-delivers the items of the page that wasn't consumed
+   * entirely.
+   *
+   * @param checkpoints store of the progress or {@code null} to stop recording it
+   * @param streamId    id of the crawled stream
+   */
+  public Paginator<T> setCheckpoint(CheckpointStore checkpoints, String streamId) {
+    checkArgument(checkpoints == null || streamId != null, "stream id must be set");
+    this.checkpoints = checkpoints;
+    this.checkpointKey = streamId;
+    return this;
+  }
+
+  /** Returns the paginated request. */
+  public ContinuableRequest<? extends Continuable<T>> getRequest() { return request; }
+
+  /**
+   * Returns a new iterator starting from the current continuation of the request. The iterator
+   * should be {@link PageIterator#close() closed} if it isn't consumed till the end.
+   */
+  public PageIterator iterator() {
+    return new PageIterator(request.getContinuation());
+  }
+
+  /**
+   * Returns a new iterator starting from the given continuation token, for example {@link
+   * FetchException#getContinuation()} to resume after a failed page.
+   */
+  public PageIterator iterator(String continuation) {
+    return new PageIterator(continuation);
+  }
+
+  /** Fetches the page for the given continuation token. */
+  Page<T> fetch(String continuation) throws IOException {
+    request.setContinuation(continuation);
+    Continuable<T> response = request.execute();
+    return new Page<T>(continuation, response.items(), response.getContinuation(), null);
+  }
+
+  /** Iterator over the items of fetched pages. */
+  public final class PageIterator implements Iterator<T>, Closeable {
+
+    /** Prefetched pages or {@code null} when pages are fetched synchronously. */
+    private final BlockingQueue<Page<T>> pages;
+
+    /** Background fetcher or {@code null} if it isn't started yet. */
+    private FutureTask<Void> fetcher;
+
+    private List<T> items = Collections.emptyList();
+
+    private int index;
+
+    /** Continuation token used to fetch the current page. */
+    private String continuation;
+
+    /** Continuation token of the next page. */
+    private String nextContinuation;
+
+    private boolean last;
+
+    private boolean closed;
+
+    /** Whether the items of the current page are loaded and not yet recorded as consumed. */
+    private boolean loaded;
+
+    PageIterator(String continuation) {
+      // the fetcher blocked on put holds one more page
+      pages = prefetchDepth == 0 ? null
+              : prefetchDepth == 1 ? new SynchronousQueue<Page<T>>()
+                : new ArrayBlockingQueue<Page<T>>(prefetchDepth - 1);
+      nextContinuation = continuation;
+    }
+
+    /** @throws FetchException if the page can't be fetched or the checkpoint can't be recorded */
+    public boolean hasNext() {
+      while (index >= items.size()) {
+        if (loaded) {
+          loaded = false;
+          checkpoint();
+        }
+        if (last || closed) {
+          return false;
+        }
+        Page<T> page = nextPage();
+        loaded = true;
+        items = page.items == null ? Collections.<T>emptyList() : page.items;
+        index = 0;
+        continuation = page.continuation;
+        nextContinuation = page.nextContinuation;
+        last = isNullOrEmpty(nextContinuation);
+      }
+      return true;
+    }
+
+    /** @throws FetchException if the page can't be fetched */
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return items.get(index++);
+    }
+
+    public void remove() { throw new UnsupportedOperationException(); }
+
+    /**
+     * Returns the continuation token that fetched the current page, or {@code null} for the first
+     * page. Resuming from it re-delivers the rest of the current page.
+     */
+    public String getContinuation() { return continuation; }
+
+    /**
+     * Returns the continuation token of the page after the current one, or {@code null} if there
+     * is none. Once the current page is consumed resuming from it doesn't repeat any item.
+     */
+    public String getNextContinuation() { return nextContinuation; }
+
+    /** Stops background fetching, the iterator has no more items after that. */
+    public void close() {
+      closed = true;
+      if (fetcher != null) {
+        fetcher.cancel(true);
+      }
+    }
+
+    /** Records the current page as consumed. */
+    private void checkpoint() {
+      if (checkpoints == null) {
+        return;
+      }
+      try {
+        if (last) {
+          checkpoints.complete(checkpointKey);
+        } else {
+          checkpoints.advance(checkpointKey, nextContinuation);
+        }
+      } catch (IOException e) {
+        last = true;
+        throw new FetchException(e, nextContinuation);
+      }
+    }
+
+    private Page<T> nextPage() {
+      if (pages == null) {
+        try {
+          return fetch(nextContinuation);
+        } catch (IOException e) {
+          last = true;
+          throw new FetchException(e, nextContinuation);
+        }
+      }
+      if (fetcher == null) {
+        fetcher = new FutureTask<Void>(new Fetcher(pages, nextContinuation), null);
+        executor.execute(fetcher);
+      }
+      Page<T> page;
+      try {
+        page = pages.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        close();
+        throw new FetchException(e, nextContinuation);
+      }
+      if (page.error != null) {
+        last = true;
+        if (page.error instanceof RuntimeException) {
+          throw (RuntimeException) page.error;
+        }
+        throw new FetchException(page.error, page.continuation);
+      }
+      return page;
+    }
+  }
+
+  /** Fetches pages in background until the last one. */
+  private class Fetcher implements Runnable {
+
+    private final BlockingQueue<Page<T>> pages;
+
+    private final String continuation;
+
+    Fetcher(BlockingQueue<Page<T>> pages, String continuation) {
+      this.pages = pages;
+      this.continuation = continuation;
+    }
+
+    public void run() {
+      String next = continuation;
+      try {
+        try {
+          do {
+            Page<T> page = fetch(next);
+            pages.put(page);
+            next = page.nextContinuation;
+          } while (!isNullOrEmpty(next));
+        } catch (IOException e) {
+          pages.put(new Page<T>(next, null, null, e));
+        } catch (RuntimeException e) {
+          pages.put(new Page<T>(next, null, null, e));
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /** Fetched page or the fetch error of the page of the continuation token. */
+  static final class Page<T> {
+
+    final String continuation;
+
+    final List<T> items;
+
+    final String nextContinuation;
+
+    final Exception error;
+
+    Page(String continuation, List<T> items, String nextContinuation, Exception error) {
+      this.continuation = continuation;
+      this.items = items;
+      this.nextContinuation = nextContinuation;
+      this.error = error;
+    }
+  }
+
+  /**
+   * Thrown by {@link PageIterator} when a page can't be fetched, after the retries of the {@link
+   * AbstractClient#getRetryPolicy() client retry policy}.
+   */
+  @SuppressWarnings("serial")
+  public static class FetchException extends RuntimeException {
+
+    private final String continuation;
+
+    public FetchException(Throwable cause) { this(cause, null); }
+
+    public FetchException(Throwable cause, String continuation) {
+      super(cause);
+      this.continuation = continuation;
+    }
+
+    /**
+     * Returns the continuation token of the failed page, the last good one, or {@code null} for
+     * the first page. Pass it to {@link Paginator#iterator(String)} to resume the read without
+     * repeating the consumed items.
+     */
+    public String getContinuation() { return continuation; }
+  }
+}
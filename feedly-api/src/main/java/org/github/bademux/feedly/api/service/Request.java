@@ -23,20 +23,35 @@ import com.google.api.client.http.EmptyContent;
 import com.google.api.client.http.GZipEncoding;
 import com.google.api.client.http.GenericUrl;
 import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpExecuteInterceptor;
 import com.google.api.client.http.HttpHeaders;
 import com.google.api.client.http.HttpMethods;
 import com.google.api.client.http.HttpRequest;
 import com.google.api.client.http.HttpResponse;
 import com.google.api.client.http.HttpResponseException;
 import com.google.api.client.http.HttpResponseInterceptor;
+import com.google.api.client.http.HttpStatusCodes;
 import com.google.api.client.http.UriTemplate;
 import com.google.api.client.http.json.JsonHttpContent;
 import com.google.api.client.util.GenericData;
+import com.google.api.client.util.IOUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.api.client.util.Preconditions.checkArgument;
 import static com.google.api.client.util.Preconditions.checkNotNull;
@@ -80,6 +95,15 @@ public abstract class Request<T> extends GenericData {
   /** Response class to parse into. */
   private Class<T> responseClass;
 
+  /** Whether GET response is served through the {@link AbstractClient#getResponseCache()}. */
+  private boolean useResponseCache;
+
+  /** Measurement of the executing request or {@code null} if it isn't measured. */
+  private Measurement measurement;
+
+  /** Permits acquired for the asynchronous request or {@code null} for none. */
+  private RequestThrottle.Permit asyncPermit;
+
   /**
    * @param abstractClient client
    * @param requestMethod  HTTP Method
@@ -118,6 +142,22 @@ public abstract class Request<T> extends GenericData {
   }
 
 
+  /** Returns whether GET response is served through the client response cache. */
+  public final boolean getUseResponseCache() {
+    return useResponseCache;
+  }
+
+  /**
+   * Sets whether GET response is served through the {@link AbstractClient#getResponseCache()
+   * client response cache}, it has no effect if the client has no cache.
+   *
+   * <p> By default it is {@code true} for rarely changing resources only. </p>
+   */
+  public Request<T> setUseResponseCache(boolean useResponseCache) {
+    this.useResponseCache = useResponseCache;
+    return this;
+  }
+
   /** Returns whether to disable GZip compression of HTTP content. */
   public final boolean getDisableGZipContent() {
     return disableGZipContent;
@@ -263,6 +303,20 @@ public abstract class Request<T> extends GenericData {
     if (!disableGZipContent) {
       httpRequest.setEncoding(new GZipEncoding());
     }
+    final Measurement current = measurement;
+    if (current != null) {
+      final HttpExecuteInterceptor interceptor = httpRequest.getInterceptor();
+      httpRequest.setInterceptor(new HttpExecuteInterceptor() {
+
+        public void intercept(HttpRequest request) throws IOException {
+          if (interceptor != null) {
+            interceptor.intercept(request);
+          }
+          current.attempts++;
+        }
+      });
+      current.built(httpContent == null ? 0 : httpContent.getLength());
+    }
     final HttpResponseInterceptor responseInterceptor = httpRequest.getResponseInterceptor();
     httpRequest.setResponseInterceptor(new HttpResponseInterceptor() {
 
@@ -270,6 +324,9 @@ public abstract class Request<T> extends GenericData {
         if (responseInterceptor != null) {
           responseInterceptor.interceptResponse(response);
         }
+        if (current != null) {
+          current.sent(response.getStatusCode());
+        }
         if (!response.isSuccessStatusCode() && httpRequest.getThrowExceptionOnExecuteError()) {
           throw newExceptionOnError(response);
         }
@@ -293,12 +350,21 @@ public abstract class Request<T> extends GenericData {
    * }
    * </pre>
    *
+   * <p> It passes the {@link AbstractClient#getCircuitBreaker() client circuit breaker} and waits
+   * for the permits of the {@link AbstractClient#getRequestThrottle() client throttle} like the
+   * other execute methods, the permits are released once the response headers are received. </p>
+   *
    * <p> Subclasses may override by calling the super implementation. </p>
    *
    * @return the {@link HttpResponse}
    */
   public HttpResponse executeUnparsed() throws IOException {
-    return executeUnparsed(false);
+    return executeGated(new Attempt<HttpResponse>() {
+
+      public HttpResponse run() throws IOException {
+        return executeUnparsed(false);
+      }
+    });
   }
 
   /**
@@ -320,9 +386,14 @@ public abstract class Request<T> extends GenericData {
    * @return the {@link HttpResponse}
    */
   protected HttpResponse executeUsingHead() throws IOException {
-    HttpResponse response = executeUnparsed(true);
-    response.ignore();
-    return response;
+    return executeGated(new Attempt<HttpResponse>() {
+
+      public HttpResponse run() throws IOException {
+        HttpResponse response = executeUnparsed(true);
+        response.ignore();
+        return response;
+      }
+    });
   }
 
   /**
@@ -330,9 +401,12 @@ public abstract class Request<T> extends GenericData {
    * metadata {@link HttpResponse}.
    */
   private HttpResponse executeUnparsed(boolean usingHead) throws IOException {
-    HttpResponse response;
+    return executeUnparsed(buildHttpRequest(usingHead));
+  }
 
-    response = buildHttpRequest(usingHead).execute();
+  /** Executes the request and records the response status. */
+  private HttpResponse executeUnparsed(HttpRequest httpRequest) throws IOException {
+    HttpResponse response = httpRequest.execute();
     // process response
     lastResponseHeaders = response.getHeaders();
     lastStatusCode = response.getStatusCode();
@@ -363,7 +437,664 @@ public abstract class Request<T> extends GenericData {
    * @return parsed HTTP response
    */
   public T execute() throws IOException {
-    return executeUnparsed().parseAs(responseClass);
+    Instrumentation instrumentation = abstractClient.getInstrumentation();
+    if (instrumentation == null) {
+      return executeAndParse();
+    }
+    measurement = new Measurement();
+    Exception exception = null;
+    try {
+      return executeAndParse();
+    } catch (IOException e) {
+      exception = e;
+      throw e;
+    } catch (RuntimeException e) {
+      exception = e;
+      throw e;
+    } finally {
+      Measurement finished = measurement;
+      measurement = null;
+      instrumentation.onRequest(finished.toEvent(requestMethod, uriTemplate, exception));
+    }
+  }
+
+  /**
+   * Executes the request or waits for the identical one in flight, see {@link
+   * AbstractClient#getRequestCoalescer()}.
+   */
+  @SuppressWarnings("unchecked")
+  private T executeAndParse() throws IOException {
+    // a fresh response isn't sent, so it passes neither the throttle nor the circuit breaker
+    HttpResponseCache cache = getResponseCache();
+    if (cache != null) {
+      HttpResponseCache.CachedResponse cached = cache.get(buildHttpRequestUrl().build());
+      if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+        cache.recordHit();
+        if (measurement != null) {
+          measurement.servedFromCache(cached.content.length);
+        }
+        lastResponseHeaders = cached.toHeaders();
+        lastStatusCode = HttpStatusCodes.STATUS_CODE_OK;
+        lastStatusMessage = null;
+        return parse(cached.content, cached.getCharset());
+      }
+    }
+    RequestCoalescer coalescer = abstractClient.getRequestCoalescer();
+    String key = coalescer == null ? null : getCoalescingKey();
+    if (key == null) {
+      return executeRetrying();
+    }
+    Object principal = requestHeaders.getAuthorization() != null
+                        ? requestHeaders.getAuthorization()
+                        : abstractClient.getRequestFactory().getInitializer();
+    RequestCoalescer.Call call = coalescer.join(key, principal);
+    if (!call.isLeader()) {
+      // the leader may wait for the throttle permit this asynchronous request holds
+      if (asyncPermit != null) {
+        asyncPermit.release();
+        asyncPermit = null;
+      }
+      T response = (T) call.await();
+      if (measurement != null) {
+        measurement.servedFromCache(0);
+      }
+      lastResponseHeaders = call.headers;
+      lastStatusCode = call.statusCode;
+      lastStatusMessage = call.statusMessage;
+      return response;
+    }
+    T response = null;
+    Throwable error = null;
+    try {
+      response = executeRetrying();
+      return response;
+    } catch (IOException e) {
+      error = e;
+      throw e;
+    } catch (RuntimeException e) {
+      error = e;
+      throw e;
+    } catch (Error e) {
+      error = e;
+      throw e;
+    } finally {
+      coalescer.complete(call, response, error, lastResponseHeaders, lastStatusCode,
+                         lastStatusMessage);
+    }
+  }
+
+  /**
+   * Returns the key of identical requests that can share one response, see {@link
+   * RequestCoalescer}, or {@code null} if the request isn't coalesced.
+   *
+   * <p> By default it is the HTTP method and the URL without the {@code ck} cache-buster for GET
+   * requests. Subclasses that decode the same response differently, for example by projection,
+   * must extend the key. </p>
+   */
+  protected String getCoalescingKey() {
+    if (!requestMethod.equals(HttpMethods.GET)) {
+      return null;
+    }
+    return requestMethod + ' ' + buildHttpRequestUrl().build();
+  }
+
+  /**
+   * Executes the request, failed attempts are retried by the {@link
+   * AbstractClient#getRetryPolicy() client retry policy}.
+   */
+  private T executeRetrying() throws IOException {
+    RetryPolicy retryPolicy = abstractClient.getRetryPolicy();
+    if (retryPolicy == null) {
+      return executeHedged();
+    }
+    retryPolicy.onRequest();
+    long delay = 0;
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return executeHedged();
+      } catch (IOException e) {
+        delay = retryPolicy.nextDelay(requestMethod, attempt, delay, e);
+        if (delay < 0) {
+          throw e;
+        }
+        retryPolicy.sleep(delay);
+      }
+    }
+  }
+
+  /**
+   * Returns whether the request can be sent more than once with the same effect, so it may be
+   * hedged, see {@link HedgingPolicy}.
+   *
+   * <p> By default GET, HEAD, PUT and DELETE requests are idempotent. Subclasses that only read
+   * by POST, like {@code .mget} requests, should override. </p>
+   */
+  protected boolean isIdempotent() {
+    return requestMethod.equals(HttpMethods.GET) || requestMethod.equals(HttpMethods.HEAD)
+           || requestMethod.equals(HttpMethods.PUT) || requestMethod.equals(HttpMethods.DELETE);
+  }
+
+  /**
+   * Executes one attempt, a duplicate is sent if it is slow and the {@link
+   * AbstractClient#getHedgingPolicy() client hedging policy} allows it.
+   */
+  private T executeHedged() throws IOException {
+    HedgingPolicy policy = abstractClient.getHedgingPolicy();
+    if (policy == null || !isIdempotent()) {
+      return executeThrottled();
+    }
+    String endpoint = requestMethod + ' ' + uriTemplate;
+    long delay = policy.getDelay(endpoint);
+    long started = System.nanoTime();
+    if (delay < 0) {
+      T response = executeThrottled();
+      policy.record(endpoint, System.nanoTime() - started);
+      return response;
+    }
+    Request<T> primary = copyAttempt();
+    primary.asyncPermit = asyncPermit;
+    asyncPermit = null;
+    Hedge<T> hedge = new Hedge<T>(primary, copyAttempt(), policy, delay);
+    Executor executor = abstractClient.getExecutor();
+    FutureTask<Void> primaryFuture = new FutureTask<Void>(hedge.new Primary(), null);
+    FutureTask<Void> hedgeFuture = new FutureTask<Void>(hedge.new Duplicate(), null);
+    try {
+      boolean queued = submit(executor, primaryFuture);
+      submit(executor, hedgeFuture);
+      try {
+        // a saturated executor doesn't start the primary, the calling thread sends it instead
+        if (!queued || !hedge.done.await(delay, TimeUnit.NANOSECONDS)) {
+          hedge.new Primary().run();
+        }
+        hedge.done.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for hedged request");
+      }
+      long latency = hedge.primaryLatency >= 0 ? hedge.primaryLatency
+                                               : System.nanoTime() - started;
+      // the abandoned primary is recorded with the latency so far as it is at least that slow
+      policy.record(endpoint, latency);
+      if (hedge.winner == hedge.duplicate) {
+        policy.onHedgeWin();
+      } else if (hedge.winner == null) {
+        if (hedge.error instanceof IOException) {
+          throw (IOException) hedge.error;
+        } else if (hedge.error instanceof RuntimeException) {
+          throw (RuntimeException) hedge.error;
+        }
+        throw (Error) hedge.error;
+      }
+      return hedge.response;
+    } finally {
+      // the loser is interrupted, but a blocked read can only finish or time out on its own
+      primaryFuture.cancel(true);
+      hedgeFuture.cancel(true);
+      hedge.abandon();
+      Request<T> outcome = hedge.winner != null ? hedge.winner : primary;
+      lastResponseHeaders = outcome.lastResponseHeaders;
+      lastStatusCode = outcome.lastStatusCode;
+      lastStatusMessage = outcome.lastStatusMessage;
+      if (measurement != null) {
+        Request<T> other = outcome == primary ? (hedge.sent ? hedge.duplicate : null) : primary;
+        measurement.hedged(outcome.measurement, other == null ? null : other.measurement);
+      }
+    }
+  }
+
+  /** @return whether the executor accepted the task */
+  private static boolean submit(Executor executor, FutureTask<Void> task) {
+    try {
+      executor.execute(task);
+      return true;
+    } catch (RejectedExecutionException e) {
+      task.cancel(false);
+      return false;
+    }
+  }
+
+  /**
+   * Attempts of the hedged request, both are sent by the executor so the caller returns the first
+   * success while the other one is still blocked. The duplicate is sent after the hedge delay if
+   * the primary isn't done by then.
+   */
+  private static final class Hedge<T> {
+
+    final Request<T> primary;
+
+    final Request<T> duplicate;
+
+    private final HedgingPolicy policy;
+
+    private final long delay;
+
+    /** Counted down once an attempt succeeds or all sent attempts fail. */
+    final CountDownLatch done = new CountDownLatch(1);
+
+    private final CountDownLatch primaryDone = new CountDownLatch(1);
+
+    /** Whether the primary is taken by a thread, guarded by {@code this}. */
+    private boolean primaryTaken;
+
+    /** Whether the primary is done, guarded by {@code this}. */
+    private boolean primaryFinished;
+
+    /** Whether the duplicate is done, guarded by {@code this}. */
+    private boolean duplicateFinished;
+
+    /** Whether the duplicate is sent. */
+    volatile boolean sent;
+
+    /** Attempt that succeeded first or {@code null}. */
+    volatile Request<T> winner;
+
+    volatile T response;
+
+    /** Failure of the primary, or of the duplicate if it failed last. */
+    volatile Throwable error;
+
+    /** Latency of the primary or {@code -1} if it isn't done. */
+    volatile long primaryLatency = -1;
+
+    Hedge(Request<T> primary, Request<T> duplicate, HedgingPolicy policy, long delay) {
+      this.primary = primary;
+      this.duplicate = duplicate;
+      this.policy = policy;
+      this.delay = delay;
+    }
+
+    /** Sends the primary unless another thread took it or the request is done. */
+    final class Primary implements Runnable {
+
+      public void run() {
+        synchronized (Hedge.this) {
+          if (primaryTaken) {
+            return;
+          }
+          primaryTaken = true;
+        }
+        long started = System.nanoTime();
+        T result = null;
+        Throwable failure = null;
+        try {
+          result = primary.executeThrottled();
+        } catch (Throwable e) {
+          failure = e;
+        }
+        primaryLatency = System.nanoTime() - started;
+        synchronized (Hedge.this) {
+          primaryFinished = true;
+          if (winner == null) {
+            if (failure == null) {
+              win(primary, result);
+            } else {
+              error = failure;
+              if (!sent || duplicateFinished) {
+                done.countDown();
+              }
+            }
+          }
+        }
+        primaryDone.countDown();
+      }
+    }
+
+    /** Sends the duplicate after the hedge delay if the primary isn't done by then. */
+    final class Duplicate implements Runnable {
+
+      public void run() {
+        try {
+          if (primaryDone.await(delay, TimeUnit.NANOSECONDS)) {
+            return;
+          }
+        } catch (InterruptedException e) {
+          return;
+        }
+        synchronized (Hedge.this) {
+          if (primaryFinished || done.getCount() == 0 || !policy.tryHedge()) {
+            return;
+          }
+          sent = true;
+        }
+        T result = null;
+        Throwable failure = null;
+        try {
+          result = duplicate.executeThrottled();
+        } catch (Throwable e) {
+          failure = e;
+        }
+        synchronized (Hedge.this) {
+          duplicateFinished = true;
+          if (winner == null) {
+            if (failure == null) {
+              win(duplicate, result);
+            } else if (primaryFinished) {
+              done.countDown();
+            }
+          }
+        }
+      }
+    }
+
+    private void win(Request<T> request, T result) {
+      response = result;
+      winner = request;
+      done.countDown();
+    }
+
+    /** Releases the asynchronous permit of the primary if no thread took it. */
+    void abandon() {
+      synchronized (this) {
+        if (primaryTaken) {
+          return;
+        }
+        primaryTaken = true;
+      }
+      if (primary.asyncPermit != null) {
+        primary.asyncPermit.release();
+        primary.asyncPermit = null;
+      }
+    }
+  }
+
+  /** Returns the copy of the request to run a hedged attempt, measured separately. */
+  @SuppressWarnings("unchecked")
+  private Request<T> copyAttempt() {
+    Request<T> copy = (Request<T>) clone();
+    copy.asyncPermit = null;
+    copy.measurement = measurement == null ? null : new Measurement();
+    return copy;
+  }
+
+  /**
+   * Executes one attempt if the {@link AbstractClient#getCircuitBreaker() client circuit breaker}
+   * lets it through, holding the permits of the {@link AbstractClient#getRequestThrottle() client
+   * throttle}.
+   */
+  private T executeThrottled() throws IOException {
+    return executeGated(new Attempt<T>() {
+
+      public T run() throws IOException {
+        return executeOnce();
+      }
+    });
+  }
+
+  /**
+   * Runs the attempt if the {@link AbstractClient#getCircuitBreaker() client circuit breaker} lets
+   * it through, holding the permits of the {@link AbstractClient#getRequestThrottle() client
+   * throttle}, the permit of the asynchronous request if it has one. The attempt is reported to
+   * the {@link AbstractClient#getInstrumentation() client instrumentation} unless the request is
+   * already measured.
+   */
+  private <R> R executeGated(Attempt<R> attempt) throws IOException {
+    RequestThrottle.Permit permit = asyncPermit;
+    asyncPermit = null;
+    // parsed requests are measured as a whole by execute(), the others by their single attempt
+    Instrumentation instrumentation = measurement == null ? abstractClient.getInstrumentation()
+                                                          : null;
+    if (instrumentation != null) {
+      measurement = new Measurement();
+    }
+    CircuitBreaker breaker = abstractClient.getCircuitBreaker();
+    Exception exception = null;
+    try {
+      if (breaker != null) {
+        breaker.acquire(requestMethod + ' ' + uriTemplate);
+        attempt.breaker = breaker;
+      }
+      if (permit == null && abstractClient.getRequestThrottle() != null) {
+        permit = abstractClient.getRequestThrottle().acquire(RequestThrottle.familyOf(uriTemplate));
+      }
+      attempt.started = System.nanoTime();
+      return attempt.run();
+    } catch (IOException e) {
+      exception = e;
+      throw e;
+    } catch (RuntimeException e) {
+      exception = e;
+      throw e;
+    } finally {
+      if (permit != null) {
+        permit.release();
+      }
+      attempt.complete(exception);
+      if (instrumentation != null) {
+        Measurement finished = measurement;
+        measurement = null;
+        instrumentation.onRequest(finished.toEvent(requestMethod, uriTemplate, exception));
+      }
+    }
+  }
+
+  /** Single attempt to execute the request. */
+  private abstract class Attempt<R> {
+
+    /** Circuit breaker that let the attempt through or {@code null} once the outcome counts. */
+    private CircuitBreaker breaker;
+
+    private long started;
+
+    abstract R run() throws IOException;
+
+    /**
+     * Records the outcome of the attempt by the circuit breaker, only the first one counts. An
+     * attempt records its success early once the rest of it doesn't depend on the server.
+     */
+    final void complete(Throwable exception) {
+      if (breaker != null) {
+        breaker.onComplete(requestMethod + ' ' + uriTemplate,
+                           started == 0 ? 0 : System.nanoTime() - started, exception);
+        breaker = null;
+      }
+    }
+  }
+
+  /**
+   * Handles the response of {@link #executeUnparsed(ResponseHandler)} while the request holds its
+   * permits.
+   */
+  protected interface ResponseHandler<R> {
+
+    /** Reads the response, the handler is responsible for disconnecting it. */
+    R handle(HttpResponse response) throws IOException;
+  }
+
+  /**
+   * Sends the metadata request to the server and passes the raw metadata {@link HttpResponse} to
+   * the handler, the permits of the {@link AbstractClient#getRequestThrottle() client throttle}
+   * are held until it returns. The {@link AbstractClient#getCircuitBreaker() client circuit
+   * breaker} counts the call once the response headers arrive, the errors and the time of the
+   * handler are the caller's. It suits the responses that are streamed instead of parsed.
+   *
+   * @return result of the handler
+   */
+  protected final <R> R executeUnparsed(final ResponseHandler<R> handler) throws IOException {
+    return executeGated(new Attempt<R>() {
+
+      public R run() throws IOException {
+        HttpResponse response = executeUnparsed(false);
+        complete(null);
+        return handler.handle(response);
+      }
+    });
+  }
+
+  private T executeOnce() throws IOException {
+    HttpResponseCache cache = getResponseCache();
+    if (cache != null) {
+      return executeCached(cache);
+    }
+    return parseResponse(executeUnparsed(false));
+  }
+
+  /** Returns the {@link AbstractClient#getResponseCache() client cache} of the request or null. */
+  private HttpResponseCache getResponseCache() {
+    HttpResponseCache cache = abstractClient.getResponseCache();
+    return useResponseCache && requestMethod.equals(HttpMethods.GET) ? cache : null;
+  }
+
+  /**
+   * Parses the response content into the response class.
+   *
+   * <p> Subclasses may override to decode the content differently, they should read it by {@link
+   * #getContent(HttpResponse)}. </p>
+   */
+  protected T parseResponse(HttpResponse response) throws IOException {
+    if (measurement == null) {
+      return response.parseAs(responseClass);
+    }
+    int statusCode = response.getStatusCode();
+    InputStream content = statusCode / 100 == 1
+                          || statusCode == HttpStatusCodes.STATUS_CODE_NO_CONTENT
+                          || statusCode == HttpStatusCodes.STATUS_CODE_NOT_MODIFIED
+                          ? null : getContent(response);
+    if (content == null) {
+      response.ignore();
+      return null;
+    }
+    return abstractClient.getObjectParser()
+        .parseAndClose(content, response.getContentCharset(), responseClass);
+  }
+
+  /**
+   * Returns the content of the response, counted by {@link Instrumentation} if the request is
+   * measured.
+   */
+  protected final InputStream getContent(HttpResponse response) throws IOException {
+    InputStream content = response.getContent();
+    return content == null || measurement == null ? content : measurement.count(content);
+  }
+
+  /**
+   * Revalidates the cached response with conditional request or downloads and caches a new one,
+   * fresh responses are served before the request is sent by {@link #executeAndParse()}.
+   */
+  private T executeCached(HttpResponseCache cache) throws IOException {
+    String key = buildHttpRequestUrl().build();
+    long now = System.currentTimeMillis();
+    HttpResponseCache.CachedResponse cached = cache.get(key);
+    HttpRequest httpRequest = buildHttpRequest(false);
+    if (cached != null) {
+      httpRequest.getHeaders().setIfNoneMatch(cached.etag).setIfModifiedSince(cached.lastModified);
+    }
+    boolean throwExceptionOnExecuteError = httpRequest.getThrowExceptionOnExecuteError();
+    httpRequest.setThrowExceptionOnExecuteError(false);
+    HttpResponse response = executeUnparsed(httpRequest);
+    if (cached != null && response.getStatusCode() == HttpStatusCodes.STATUS_CODE_NOT_MODIFIED) {
+      response.ignore();
+      cache.recordRevalidation();
+      cached = cached.revalidated(response.getHeaders(), now);
+      cache.put(key, cached);
+      if (measurement != null) {
+        measurement.servedFromCache(cached.content.length);
+      }
+      return parse(cached.content, cached.getCharset());
+    }
+    if (!response.isSuccessStatusCode()) {
+      if (throwExceptionOnExecuteError) {
+        throw newExceptionOnError(response);
+      }
+      return parseResponse(response);
+    }
+    cache.recordMiss();
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    InputStream in = getContent(response);
+    if (in != null) {
+      IOUtils.copy(in, content);
+    }
+    byte[] bytes = content.toByteArray();
+    Charset charset = response.getContentCharset();
+    cache.put(key, HttpResponseCache.CachedResponse.of(response.getHeaders(), bytes, charset, now));
+    return parse(bytes, charset);
+  }
+
+  /** @return parsed content or {@code null} if it is empty */
+  private T parse(byte[] content, Charset charset) throws IOException {
+    if (content.length == 0) {
+      return null;
+    }
+    return abstractClient.getObjectParser()
+        .parseAndClose(new ByteArrayInputStream(content), charset, responseClass);
+  }
+
+  /**
+   * Executes the request asynchronously on the {@link AbstractClient#getExecutor() client
+   * executor} and returns a {@link Future} of the parsed metadata response.
+   *
+   * <p> The request must not be modified until the returned future is done. Example usage: </p>
+   *
+   * <pre>
+   * Future&lt;EntriesResponse&gt; future = service.streams().contents(stream).executeAsync();
+   * // do other work..
+   * EntriesResponse response = future.get();
+   * </pre>
+   *
+   * <p> Subclasses may override by calling the super implementation. </p>
+   *
+   * @return future of the parsed HTTP response
+   */
+  public Future<T> executeAsync() {
+    return executeAsync(abstractClient.getExecutor());
+  }
+
+  /**
+   * Executes the request asynchronously using the given executor and returns a {@link Future} of
+   * the parsed metadata response.
+   *
+   * <p> With the {@link AbstractClient#getRequestThrottle() client throttle} the request is
+   * passed to the executor once its permits are available, the calling thread isn't blocked.
+   * </p>
+   *
+   * <p> Subclasses may override by calling the super implementation. </p>
+   *
+   * @param executor executor to run the request
+   * @return future of the parsed HTTP response
+   */
+  public Future<T> executeAsync(Executor executor) {
+    final AsyncFuture<T> future = new AsyncFuture<T>(new Callable<T>() {
+
+      public T call() throws Exception {
+        return execute();
+      }
+    });
+    RequestThrottle throttle = abstractClient.getRequestThrottle();
+    if (throttle == null) {
+      executor.execute(future);
+      return future;
+    }
+    throttle.execute(RequestThrottle.familyOf(uriTemplate), executor, new RequestThrottle.Task() {
+
+      public void run(RequestThrottle.Permit permit) {
+        asyncPermit = permit;
+        try {
+          future.run();
+        } finally {
+          // not taken if the future was cancelled before it ran
+          if (asyncPermit != null) {
+            asyncPermit.release();
+            asyncPermit = null;
+          }
+        }
+      }
+
+      public void reject(RuntimeException e) {
+        future.fail(e);
+      }
+    });
+    return future;
+  }
+
+  /** Future of the asynchronous request, it fails if the request can't be started. */
+  private static final class AsyncFuture<T> extends FutureTask<T> {
+
+    AsyncFuture(Callable<T> callable) {
+      super(callable);
+    }
+
+    void fail(Throwable t) {
+      setException(t);
+    }
   }
 
   /**
@@ -404,8 +1135,17 @@ public abstract class Request<T> extends GenericData {
    *
    * @param outputStream destination output stream
    */
-  public void executeAndDownloadTo(OutputStream outputStream) throws IOException {
-    executeUnparsed().download(outputStream);
+  public void executeAndDownloadTo(final OutputStream outputStream) throws IOException {
+    executeUnparsed(new ResponseHandler<Void>() {
+
+      public Void handle(HttpResponse response) throws IOException {
+        InputStream content = getContent(response);
+        if (content != null) {
+          IOUtils.copy(content, outputStream);
+        }
+        return null;
+      }
+    });
   }
 
   // @SuppressWarnings was added here because this is generic class.
@@ -432,4 +1172,100 @@ public abstract class Request<T> extends GenericData {
         abstractClient.getSuppressRequiredParameterChecks() || value != null,
         "Required parameter %s must be specified", name);
   }
+
+  /** Phases of the measured request, see {@link RequestEvent}. */
+  private static final class Measurement {
+
+    private final long started = System.nanoTime();
+
+    private long built;
+
+    private long sent;
+
+    private int statusCode = -1;
+
+    private long requestBytes = -1;
+
+    private long responseBytes;
+
+    private int attempts;
+
+    private boolean fromCache;
+
+    void built(long requestBytes) {
+      if (built == 0) {
+        built = System.nanoTime();
+        this.requestBytes = requestBytes;
+      }
+    }
+
+    void sent(int statusCode) {
+      sent = System.nanoTime();
+      this.statusCode = statusCode;
+    }
+
+    /**
+     * Takes the outcome of the hedged attempt that completed the request, the requests sent by
+     * the other one are counted too.
+     */
+    void hedged(Measurement outcome, Measurement other) {
+      if (built == 0) {
+        built = outcome.built;
+        requestBytes = outcome.requestBytes;
+      }
+      sent = outcome.sent;
+      statusCode = outcome.statusCode;
+      responseBytes = outcome.responseBytes;
+      fromCache = outcome.fromCache;
+      attempts += outcome.attempts + (other == null ? 0 : other.attempts);
+    }
+
+    /** Marks the response as served from the cache, without or after revalidation. */
+    void servedFromCache(long contentLength) {
+      long now = System.nanoTime();
+      if (built == 0) {
+        built = now;
+        statusCode = HttpStatusCodes.STATUS_CODE_OK;
+      }
+      if (sent == 0) {
+        sent = now;
+      }
+      fromCache = true;
+      responseBytes = contentLength;
+    }
+
+    /** Returns the stream counting the bytes read to {@link #responseBytes}. */
+    InputStream count(InputStream content) {
+      return new FilterInputStream(content) {
+
+        @Override
+        public int read() throws IOException {
+          int b = super.read();
+          if (b != -1) {
+            responseBytes++;
+          }
+          return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+          int n = super.read(b, off, len);
+          if (n > 0) {
+            responseBytes += n;
+          }
+          return n;
+        }
+      };
+    }
+
+    RequestEvent toEvent(String requestMethod, String uriTemplate, Exception exception) {
+      long finished = System.nanoTime();
+      long buildEnd = built == 0 ? finished : built;
+      long sendEnd = sent == 0 ? finished : sent;
+      return new RequestEvent(requestMethod, uriTemplate, statusCode, buildEnd - started,
+                              built == 0 ? 0 : sendEnd - built, sent == 0 ? 0 : finished - sent,
+                              requestBytes, responseBytes, Math.max(0, attempts - 1), fromCache,
+                              exception);
+    }
+  }
 }
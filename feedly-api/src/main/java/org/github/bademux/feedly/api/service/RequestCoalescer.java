@@ -0,0 +1,195 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * De-duplication of identical concurrent GET requests, see {@link
+ * AbstractClient.Builder#setRequestCoalescer}.
+ *
+ * <p> Requests are identical if they have the same {@link Request#getCoalescingKey() coalescing
+ * key}, by default the HTTP method and the URL without the {@code ck} cache-buster, and the same
+ * auth principal: the {@code Authorization} request header if it is set explicitly, otherwise the
+ * request initializer of the client, i.e. its credential. While a request is in flight, identical
+ * ones wait for it and get its parsed response or its exception instead of sending their own.
+ * </p>
+ *
+ * <p> The parsed response is shared by all waiters, so it must be treated as read-only. Each
+ * waiter gets an exception of its own with the exception of the request as the cause. A coalescer
+ * may be shared by clients of different users. Implementation is thread-safe. </p>
+ */
+public class RequestCoalescer {
+
+  private final ConcurrentMap<Key, Call> calls = new ConcurrentHashMap<Key, Call>();
+
+  private final AtomicLong sentCount = new AtomicLong();
+
+  private final AtomicLong coalescedCount = new AtomicLong();
+
+  /** Returns the number of requests sent to the server. */
+  public long getSentCount() { return sentCount.get(); }
+
+  /** Returns the number of requests that got the response of an identical one. */
+  public long getCoalescedCount() { return coalescedCount.get(); }
+
+  /** Returns the number of distinct requests in flight. */
+  public int getInFlightCount() { return calls.size(); }
+
+  /**
+   * Returns the in-flight call of the identical request or registers a new one, then the caller
+   * is its {@link Call#isLeader() leader} and must {@link #complete} it.
+   */
+  Call join(String key, Object principal) {
+    Key callKey = new Key(key, principal);
+    Call call = new Call(callKey);
+    Call inFlight = calls.putIfAbsent(callKey, call);
+    if (inFlight != null) {
+      coalescedCount.incrementAndGet();
+      return inFlight;
+    }
+    call.leader = Thread.currentThread();
+    sentCount.incrementAndGet();
+    return call;
+  }
+
+  /**
+   * Completes the call with the response or the exception of the leader, the next identical
+   * request is sent again.
+   */
+  void complete(Call call, Object response, Throwable error, HttpHeaders headers, int statusCode,
+                String statusMessage) {
+    calls.remove(call.key, call);
+    call.response = response;
+    call.error = error;
+    call.headers = headers;
+    call.statusCode = statusCode;
+    call.statusMessage = statusMessage;
+    call.done.countDown();
+  }
+
+  /** Request in flight. */
+  static final class Call {
+
+    private final Key key;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    /** Thread that sends the request. */
+    private volatile Thread leader;
+
+    private Object response;
+
+    private Throwable error;
+
+    HttpHeaders headers;
+
+    int statusCode;
+
+    String statusMessage;
+
+    Call(Key key) {
+      this.key = key;
+    }
+
+    /** Returns whether the calling thread sends the request. */
+    boolean isLeader() { return leader == Thread.currentThread(); }
+
+    /**
+     * Waits for the leader and returns its response or throws an exception of its own with the
+     * exception of the leader as the cause.
+     */
+    Object await() throws IOException {
+      try {
+        done.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for identical request");
+      }
+      if (error instanceof IOException) {
+        throw copyOf((IOException) error);
+      } else if (error instanceof RuntimeException) {
+        throw new RuntimeException(error.getMessage(), error);
+      } else if (error instanceof Error) {
+        throw (Error) error;
+      }
+      return response;
+    }
+
+    /** Returns the exception of the same kind for the waiting thread. */
+    private static IOException copyOf(IOException e) {
+      IOException copy;
+      if (e instanceof HttpResponseException) {
+        HttpResponseException http = (HttpResponseException) e;
+        copy = new HttpResponseException.Builder(http.getStatusCode(), http.getStatusMessage(),
+                                                 http.getHeaders())
+            .setContent(http.getContent()).setMessage(http.getMessage()).build();
+      } else if (e instanceof CircuitBreakerOpenException) {
+        CircuitBreakerOpenException open = (CircuitBreakerOpenException) e;
+        copy = new CircuitBreakerOpenException(open.getEndpoint(), open.getRetryAfter());
+      } else if (e instanceof InterruptedIOException) {
+        copy = new InterruptedIOException(e.getMessage());
+      } else {
+        copy = new IOException(e.getMessage());
+      }
+      copy.initCause(e);
+      return copy;
+    }
+  }
+
+  /** Coalescing key and auth principal of the request. */
+  private static final class Key {
+
+    private final String key;
+
+    private final Object principal;
+
+    Key(String key, Object principal) {
+      this.key = key;
+      this.principal = principal;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return key.equals(other.key)
+             && (principal == null ? other.principal == null : principal.equals(other.principal));
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * key.hashCode() + (principal == null ? 0 : principal.hashCode());
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+package org.github.bademux.feedly.api.service;
+
+/**
+ * Measurement of one {@link Request#execute()} or other execution of a request, passed to {@link
+ * Instrumentation}.
+ *
+ * <p> Phases are: build of the HTTP request, send till the response headers are received,
+ * including retries, and parse of the response content. Times are in nanoseconds, a phase that
+ * didn't happen, for example send of a response served from {@link HttpResponseCache}, takes
+ * {@code 0}. </p>
+ */
+public final class RequestEvent {
+
+  private final String requestMethod;
+
+  private final String uriTemplate;
+
+  private final int statusCode;
+
+  private final long buildNanos;
+
+  private final long sendNanos;
+
+  private final long parseNanos;
+
+  private final long requestBytes;
+
+  private final long responseBytes;
+
+  private final int retries;
+
+  private final boolean fromCache;
+
+  private final Exception exception;
+
+  RequestEvent(String requestMethod, String uriTemplate, int statusCode, long buildNanos,
+               long sendNanos, long parseNanos, long requestBytes, long responseBytes,
+               int retries, boolean fromCache, Exception exception) {
+    this.requestMethod = requestMethod;
+    this.uriTemplate = uriTemplate;
+    this.statusCode = statusCode;
+    this.buildNanos = buildNanos;
+    this.sendNanos = sendNanos;
+    this.parseNanos = parseNanos;
+    this.requestBytes = requestBytes;
+    this.responseBytes = responseBytes;
+    this.retries = retries;
+    this.fromCache = fromCache;
+    this.exception = exception;
+  }
+
+  /** Returns the endpoint: HTTP method and URI template, e.g. {@code GET streams/{streamId}}. */
+  public String getEndpoint() { return requestMethod + ' ' + uriTemplate; }
+
+  public String getRequestMethod() { return requestMethod; }
+
+  public String getUriTemplate() { return uriTemplate; }
+
+  /** Returns the status code of the response or {@code -1} if there is none. */
+  public int getStatusCode() { return statusCode; }
+
+  public long getBuildNanos() { return buildNanos; }
+
+  public long getSendNanos() { return sendNanos; }
+
+  public long getParseNanos() { return parseNanos; }
+
+  /** Returns the duration of all phases. */
+  public long getTotalNanos() { return buildNanos + sendNanos + parseNanos; }
+
+  /** Returns the length of the request content or {@code -1} if it is unknown. */
+  public long getRequestBytes() { return requestBytes; }
+
+  /** Returns the length of the decoded response content that was read. */
+  public long getResponseBytes() { return responseBytes; }
+
+  /** Returns the number of retries of the HTTP request. */
+  public int getRetries() { return retries; }
+
+  /**
+   * Returns whether the response was served from {@link HttpResponseCache} or shared with an
+   * identical request in flight by {@link RequestCoalescer}.
+   */
+  public boolean isFromCache() { return fromCache; }
+
+  /** Returns the exception thrown by the request or {@code null} if it succeeded. */
+  public Exception getException() { return exception; }
+
+  @Override
+  public String toString() {
+    return getEndpoint() + " -> " + statusCode + " in " + getTotalNanos() / 1000 + "us";
+  }
+}
@@ -0,0 +1,484 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * Client-side rate limiter and concurrency governor, see {@link
+ * AbstractClient.Builder#setRequestThrottle}.
+ *
+ * <p> Every request is limited by the {@link #getGlobalLimit() global limit} and by the {@link
+ * #getLimit(String) limit of its endpoint family}, the first segment of its URI template, for
+ * example {@code streams}, {@code markers}, {@code entries} or {@code search}. A {@link Limit} is
+ * a token bucket of the allowed rate with the burst as its capacity plus the maximum number of
+ * requests in flight, both are unbounded until set. Example usage: </p>
+ *
+ * <pre>
+ * RequestThrottle throttle = new RequestThrottle();
+ * throttle.getGlobalLimit().setRate(10, 1).setMaxInFlight(8);
+ * throttle.getLimit("search").setRate(1, 1);
+ * Feedly service = new Feedly.Builder(transport, jsonFactory, credential)
+ *     .setRequestThrottle(throttle).build();
+ * </pre>
+ *
+ * <p> Each attempt of {@link Request#execute()} holds a permit of both limits, the calling thread
+ * waits for it. So do the streamed executions, for example {@link Request#executeUnparsed()} till
+ * the response headers are received or {@link Request#executeAndDownloadTo} till the content is
+ * read. {@link Request#executeAsync()} doesn't block: the request is queued and passed to the
+ * executor once the permits are available. With burst {@code 1} requests are paced evenly at the
+ * allowed rate. </p>
+ *
+ * <p> Implementation is thread-safe. </p>
+ */
+public class RequestThrottle {
+
+  /** Name of the global limit. */
+  public static final String GLOBAL = "*";
+
+  /** Longest wait for a released permit before it is checked again, in milliseconds. */
+  private static final long MAX_WAIT = 100;
+
+  private final Limit global = new Limit(GLOBAL);
+
+  /** Limits by endpoint family, guarded by {@code this}. */
+  private final Map<String, Limit> limits = new TreeMap<String, Limit>();
+
+  /** Asynchronous requests waiting for permits, guarded by {@code this}. */
+  private final Queue<Pending> pending = new LinkedList<Pending>();
+
+  /** Number of requests blocked in {@link #acquire(String)}, guarded by {@code this}. */
+  private int blocked;
+
+  /** Whether a drain of pending requests is scheduled, guarded by {@code this}. */
+  private boolean drainScheduled;
+
+  /** Timer of pending requests or {@code null} before the first one. */
+  private ScheduledExecutorService scheduler;
+
+  /** Returns the limit shared by all requests. */
+  public Limit getGlobalLimit() { return global; }
+
+  /** Returns the limit of the endpoint family, it is created unbounded on first use. */
+  public synchronized Limit getLimit(String family) {
+    Limit limit = limits.get(checkNotNull(family));
+    if (limit == null) {
+      limit = new Limit(family);
+      limits.put(family, limit);
+    }
+    return limit;
+  }
+
+  /** Returns limits of the endpoint families, sorted by family. */
+  public synchronized Map<String, Limit> getLimits() {
+    return Collections.unmodifiableMap(new TreeMap<String, Limit>(limits));
+  }
+
+  /** Returns the number of requests waiting for permits. */
+  public synchronized int getWaitingCount() { return blocked + pending.size(); }
+
+  /**
+   * Writes the current state in text format, one line per limit, global first, with space
+   * separated {@code key=value} fields:
+   *
+   * <pre>
+   * * tokens=0.4 inFlight=8 maxInFlight=8 acquired=1520 rejected=77
+   * streams tokens=1.0 inFlight=2 maxInFlight=4 acquired=640 rejected=0
+   * </pre>
+   */
+  public void dump(Appendable out) throws IOException {
+    global.dump(out);
+    for (Limit limit : getLimits().values()) {
+      limit.dump(out);
+    }
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    try {
+      dump(sb);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return sb.toString();
+  }
+
+  /** Returns the endpoint family of the URI template: its first path segment. */
+  public static String familyOf(String uriTemplate) {
+    int end = uriTemplate.indexOf('/');
+    return end < 0 ? uriTemplate : uriTemplate.substring(0, end);
+  }
+
+  /** Returns the permits of the family or {@code null} if they aren't available now. */
+  Permit tryAcquire(String family) {
+    Limit limit;
+    synchronized (this) {
+      limit = limits.get(family);
+    }
+    long now = System.nanoTime();
+    if (!global.tryTake(now)) {
+      return null;
+    }
+    if (limit != null && !limit.tryTake(now)) {
+      global.untake();
+      return null;
+    }
+    return new Permit(limit);
+  }
+
+  /** Waits for the permits of the family. */
+  Permit acquire(String family) throws InterruptedIOException {
+    Permit permit = tryAcquire(family);
+    if (permit != null) {
+      return permit;
+    }
+    synchronized (this) {
+      blocked++;
+      try {
+        while ((permit = tryAcquire(family)) == null) {
+          wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(nanosToNextPermit(family))));
+        }
+        return permit;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for permit");
+      } finally {
+        blocked--;
+      }
+    }
+  }
+
+  /**
+   * Passes the task to the executor once the permits of the family are available, without
+   * blocking the calling thread.
+   */
+  void execute(String family, Executor executor, Task task) {
+    Pending request = new Pending(family, executor, task);
+    synchronized (this) {
+      Permit permit = pending.isEmpty() ? tryAcquire(family) : null;
+      if (permit == null) {
+        pending.add(request);
+        scheduleDrain(nanosToNextPermit(family));
+        return;
+      }
+      request.permit = permit;
+    }
+    request.start();
+  }
+
+  /** Starts pending requests whose permits are available. */
+  void drain() {
+    List<Pending> ready = new ArrayList<Pending>();
+    synchronized (this) {
+      drainScheduled = false;
+      long delay = Long.MAX_VALUE;
+      for (Iterator<Pending> it = pending.iterator(); it.hasNext(); ) {
+        Pending request = it.next();
+        request.permit = tryAcquire(request.family);
+        if (request.permit != null) {
+          it.remove();
+          ready.add(request);
+        } else {
+          delay = Math.min(delay, nanosToNextPermit(request.family));
+        }
+      }
+      if (!pending.isEmpty()) {
+        scheduleDrain(delay);
+      }
+    }
+    for (Pending request : ready) {
+      try {
+        request.start();
+      } catch (RuntimeException e) {
+        // its permit is released, the others still start and the releasing thread doesn't fail
+        request.task.reject(e);
+      }
+    }
+  }
+
+  /** Wakes up requests waiting for the released permits. */
+  private void released() {
+    boolean hasPending;
+    synchronized (this) {
+      notifyAll();
+      hasPending = !pending.isEmpty();
+    }
+    if (hasPending) {
+      drain();
+    }
+  }
+
+  /** Returns the time till the next permit of the family, at most {@link #MAX_WAIT}. */
+  private long nanosToNextPermit(String family) {
+    Limit limit = limits.get(family);
+    long nanos = global.nanosToNextPermit(System.nanoTime());
+    if (limit != null) {
+      nanos = Math.max(nanos, limit.nanosToNextPermit(System.nanoTime()));
+    }
+    return Math.min(nanos, TimeUnit.MILLISECONDS.toNanos(MAX_WAIT));
+  }
+
+  private synchronized void scheduleDrain(long delay) {
+    if (drainScheduled) {
+      return;
+    }
+    if (scheduler == null) {
+      scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "feedly-throttle");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    drainScheduled = true;
+    scheduler.schedule(new Runnable() {
+
+      public void run() {
+        drain();
+      }
+    }, Math.max(delay, TimeUnit.MILLISECONDS.toNanos(1)), TimeUnit.NANOSECONDS);
+  }
+
+  /** Asynchronous request that needs the permits to start. */
+  interface Task {
+
+    /** Runs the request, it takes ownership of the permit. */
+    public void run(Permit permit);
+
+    /** Fails the request the executor rejected after it waited for the permits. */
+    public void reject(RuntimeException e);
+  }
+
+  /** Asynchronous request waiting for permits. */
+  private static final class Pending {
+
+    final String family;
+
+    final Executor executor;
+
+    final Task task;
+
+    Permit permit;
+
+    Pending(String family, Executor executor, Task task) {
+      this.family = family;
+      this.executor = executor;
+      this.task = task;
+    }
+
+    void start() {
+      final Permit acquired = permit;
+      try {
+        executor.execute(new Runnable() {
+
+          public void run() {
+            task.run(acquired);
+          }
+        });
+      } catch (RuntimeException e) {
+        acquired.release();
+        throw e;
+      }
+    }
+  }
+
+  /** Permits of a request, they must be released once the request is done. */
+  final class Permit {
+
+    /** Limit of the endpoint family or {@code null} for none. */
+    private final Limit limit;
+
+    private boolean released;
+
+    Permit(Limit limit) {
+      this.limit = limit;
+    }
+
+    /** Releases the permits, subsequent calls have no effect. */
+    void release() {
+      synchronized (this) {
+        if (released) {
+          return;
+        }
+        released = true;
+      }
+      global.release();
+      if (limit != null) {
+        limit.release();
+      }
+      released();
+    }
+  }
+
+  /**
+   * Token bucket and maximum number of requests in flight of an endpoint family or of all
+   * requests.
+   */
+  public static final class Limit {
+
+    private final String name;
+
+    /** Tokens per nanosecond or {@code 0} for unbounded rate. */
+    private double rate;
+
+    private int burst;
+
+    private double tokens;
+
+    private long refilledAt;
+
+    /** Maximum number of requests in flight or {@code 0} for unbounded. */
+    private int maxInFlight;
+
+    private int inFlight;
+
+    private long acquiredCount;
+
+    private long rejectedCount;
+
+    Limit(String name) {
+      this.name = name;
+    }
+
+    /** Returns the name of the endpoint family or {@link #GLOBAL}. */
+    public String getName() { return name; }
+
+    /**
+     * Sets the allowed rate and the number of requests allowed in a burst, the bucket starts
+     * full. Rate {@code 0} removes the limit.
+     */
+    public synchronized Limit setRate(double permitsPerSecond, int burst) {
+      checkArgument(permitsPerSecond >= 0, "rate must not be negative");
+      checkArgument(burst > 0, "burst must be positive");
+      this.rate = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+      this.burst = burst;
+      this.tokens = burst;
+      this.refilledAt = System.nanoTime();
+      return this;
+    }
+
+    /** Returns the allowed rate in requests per second or {@code 0} if it is unbounded. */
+    public synchronized double getRate() { return rate * TimeUnit.SECONDS.toNanos(1); }
+
+    /** Returns the number of requests allowed in a burst. */
+    public synchronized int getBurst() { return burst; }
+
+    /** Sets the maximum number of requests in flight, {@code 0} removes the limit. */
+    public synchronized Limit setMaxInFlight(int maxInFlight) {
+      checkArgument(maxInFlight >= 0, "max in flight must not be negative");
+      this.maxInFlight = maxInFlight;
+      return this;
+    }
+
+    /** Returns the maximum number of requests in flight or {@code 0} if it is unbounded. */
+    public synchronized int getMaxInFlight() { return maxInFlight; }
+
+    /** Returns the number of requests in flight. */
+    public synchronized int getInFlight() { return inFlight; }
+
+    /** Returns the number of tokens in the bucket, infinity if the rate is unbounded. */
+    public synchronized double getAvailableTokens() {
+      refill(System.nanoTime());
+      return rate > 0 ? tokens : Double.POSITIVE_INFINITY;
+    }
+
+    /** Returns the number of permits given. */
+    public synchronized long getAcquiredCount() { return acquiredCount; }
+
+    /** Returns the number of times a permit wasn't available at once. */
+    public synchronized long getRejectedCount() { return rejectedCount; }
+
+    synchronized boolean tryTake(long now) {
+      refill(now);
+      if ((maxInFlight > 0 && inFlight >= maxInFlight) || (rate > 0 && tokens < 1)) {
+        rejectedCount++;
+        return false;
+      }
+      if (rate > 0) {
+        tokens--;
+      }
+      inFlight++;
+      acquiredCount++;
+      return true;
+    }
+
+    /** Returns the permit taken by {@link #tryTake} that can't be used. */
+    synchronized void untake() {
+      if (rate > 0) {
+        tokens = Math.min(burst, tokens + 1);
+      }
+      inFlight--;
+      acquiredCount--;
+    }
+
+    synchronized void release() {
+      inFlight--;
+    }
+
+    /**
+     * Returns the time till the next token, {@code 0} if there is one, or {@link Long#MAX_VALUE}
+     * if a request in flight has to complete first.
+     */
+    synchronized long nanosToNextPermit(long now) {
+      if (maxInFlight > 0 && inFlight >= maxInFlight) {
+        return Long.MAX_VALUE;
+      }
+      refill(now);
+      return rate <= 0 || tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / rate);
+    }
+
+    private void refill(long now) {
+      if (rate > 0 && now > refilledAt) {
+        tokens = Math.min(burst, tokens + (now - refilledAt) * rate);
+        refilledAt = now;
+      }
+    }
+
+    private synchronized void dump(Appendable out) throws IOException {
+      refill(System.nanoTime());
+      out.append(name)
+          .append(" tokens=").append(rate > 0 ? String.valueOf(Math.floor(tokens * 10) / 10) : "-")
+          .append(" inFlight=").append(String.valueOf(inFlight))
+          .append(" maxInFlight=").append(maxInFlight > 0 ? String.valueOf(maxInFlight) : "-")
+          .append(" acquired=").append(String.valueOf(acquiredCount))
+          .append(" rejected=").append(String.valueOf(rejectedCount)).append('\n');
+    }
+  }
+}
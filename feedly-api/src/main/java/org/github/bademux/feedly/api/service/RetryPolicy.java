@@ -0,0 +1,279 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpMethods;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.util.Clock;
+import com.google.api.client.util.Sleeper;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * Retries of failed requests, see {@link AbstractClient.Builder#setRetryPolicy}.
+ *
+ * <p> A request is retried on an {@link IOException} without response or on a response with a
+ * {@link #isRetryableStatus(int) retryable status}: {@code 429 Too Many Requests} and {@code 5xx}
+ * server errors, but not while the {@link CircuitBreaker} is open. Retries are allowed per HTTP
+ * method by {@link #setMaxAttempts(String, int)}, by default only for the idempotent {@code GET},
+ * {@code HEAD}, {@code PUT} and {@code DELETE}. </p>
+ *
+ * <p> Delays between attempts follow decorrelated jitter: each delay is random between the base
+ * delay and three times the previous one, capped by {@link #getMaxDelay()}. A {@code
+ * Retry-After} header of the response, in seconds or as HTTP-date, is honoured as the lower bound
+ * of the delay; if it asks to wait longer than the maximum delay the request fails at once. </p>
+ *
+ * <p> Retries are limited by a budget shared by all requests of the client, so an outage doesn't
+ * turn into a retry storm: every request deposits {@link #getBudgetRatio()} of a retry, every
+ * retry withdraws a whole one and the balance is kept within {@link #getMaxBudget()}. </p>
+ *
+ * <p> Implementation is thread-safe, but it should be configured before the client is built. </p>
+ */
+public class RetryPolicy {
+
+  /** Default number of attempts of the idempotent methods, including the first one. */
+  public static final int DEFAULT_MAX_ATTEMPTS = 4;
+
+  /** Default base delay in milliseconds. */
+  public static final long DEFAULT_BASE_DELAY = 500;
+
+  /** Default maximum delay in milliseconds. */
+  public static final long DEFAULT_MAX_DELAY = 30 * 1000;
+
+  /** Default share of a retry deposited to the budget by every request. */
+  public static final double DEFAULT_BUDGET_RATIO = 0.1;
+
+  /** Default maximum balance, and the initial one, of the retry budget. */
+  public static final int DEFAULT_MAX_BUDGET = 10;
+
+  /** Status code of the rate-limited request. */
+  public static final int STATUS_CODE_TOO_MANY_REQUESTS = 429;
+
+  private final Map<String, Integer> maxAttempts = new HashMap<String, Integer>();
+
+  private long baseDelay = DEFAULT_BASE_DELAY;
+
+  private long maxDelay = DEFAULT_MAX_DELAY;
+
+  private double budgetRatio = DEFAULT_BUDGET_RATIO;
+
+  private int maxBudget = DEFAULT_MAX_BUDGET;
+
+  private double budget = DEFAULT_MAX_BUDGET;
+
+  private long retryCount;
+
+  private long rejectedCount;
+
+  private Random random = new Random();
+
+  private Sleeper sleeper = Sleeper.DEFAULT;
+
+  private Clock clock = Clock.SYSTEM;
+
+  public RetryPolicy() {
+    setMaxAttempts(HttpMethods.GET, DEFAULT_MAX_ATTEMPTS);
+    setMaxAttempts(HttpMethods.HEAD, DEFAULT_MAX_ATTEMPTS);
+    setMaxAttempts(HttpMethods.PUT, DEFAULT_MAX_ATTEMPTS);
+    setMaxAttempts(HttpMethods.DELETE, DEFAULT_MAX_ATTEMPTS);
+  }
+
+  /** Returns the number of attempts of the HTTP method, {@code 1} if it isn't retried. */
+  public synchronized int getMaxAttempts(String requestMethod) {
+    Integer attempts = maxAttempts.get(requestMethod);
+    return attempts == null ? 1 : attempts;
+  }
+
+  /**
+   * Sets the number of attempts of the HTTP method, including the first one, {@code 1} disables
+   * retries.
+   *
+   * <p> By default it is {@link #DEFAULT_MAX_ATTEMPTS} for {@code GET}, {@code HEAD}, {@code PUT}
+   * and {@code DELETE}. Enable it for {@code POST} only for requests that are idempotent by the
+   * server, for example markers. </p>
+   */
+  public synchronized RetryPolicy setMaxAttempts(String requestMethod, int attempts) {
+    checkArgument(attempts > 0, "attempts must be positive");
+    maxAttempts.put(checkNotNull(requestMethod), attempts);
+    return this;
+  }
+
+  /** Returns the base delay in milliseconds. */
+  public synchronized long getBaseDelay() { return baseDelay; }
+
+  /**
+   * Sets the base delay in milliseconds.
+   *
+   * <p> By default it is {@link #DEFAULT_BASE_DELAY}. </p>
+   */
+  public synchronized RetryPolicy setBaseDelay(long baseDelay) {
+    checkArgument(baseDelay > 0, "base delay must be positive");
+    this.baseDelay = baseDelay;
+    return this;
+  }
+
+  /** Returns the maximum delay in milliseconds. */
+  public synchronized long getMaxDelay() { return maxDelay; }
+
+  /**
+   * Sets the maximum delay in milliseconds, it also bounds the honoured {@code Retry-After}.
+   *
+   * <p> By default it is {@link #DEFAULT_MAX_DELAY}. </p>
+   */
+  public synchronized RetryPolicy setMaxDelay(long maxDelay) {
+    checkArgument(maxDelay > 0, "max delay must be positive");
+    this.maxDelay = maxDelay;
+    return this;
+  }
+
+  /** Returns the share of a retry deposited to the budget by every request. */
+  public synchronized double getBudgetRatio() { return budgetRatio; }
+
+  /** Returns the maximum balance of the retry budget. */
+  public synchronized int getMaxBudget() { return maxBudget; }
+
+  /**
+   * Sets the retry budget: retries are limited to the given share of requests with a reserve of
+   * at most {@code maxBudget} retries for bursts, the budget starts full.
+   *
+   * <p> By default it is {@link #DEFAULT_BUDGET_RATIO} and {@link #DEFAULT_MAX_BUDGET}. </p>
+   */
+  public synchronized RetryPolicy setBudget(double ratio, int maxBudget) {
+    checkArgument(ratio >= 0, "ratio must not be negative");
+    checkArgument(maxBudget >= 0, "max budget must not be negative");
+    this.budgetRatio = ratio;
+    this.maxBudget = maxBudget;
+    this.budget = maxBudget;
+    return this;
+  }
+
+  /** Returns the number of retries made. */
+  public synchronized long getRetryCount() { return retryCount; }
+
+  /** Returns the number of retries refused by the exhausted budget. */
+  public synchronized long getRejectedCount() { return rejectedCount; }
+
+  /** Sets the source of jitter, for testing purposes. */
+  synchronized RetryPolicy setRandom(Random random) {
+    this.random = checkNotNull(random);
+    return this;
+  }
+
+  /** Sets the sleeper of the delays, for testing purposes. */
+  synchronized RetryPolicy setSleeper(Sleeper sleeper) {
+    this.sleeper = checkNotNull(sleeper);
+    return this;
+  }
+
+  /** Sets the clock of {@code Retry-After} dates, for testing purposes. */
+  synchronized RetryPolicy setClock(Clock clock) {
+    this.clock = checkNotNull(clock);
+    return this;
+  }
+
+  /** Returns whether the response status is worth a retry: {@code 429} or {@code 5xx}. */
+  public boolean isRetryableStatus(int statusCode) {
+    return statusCode == STATUS_CODE_TOO_MANY_REQUESTS || statusCode / 100 == 5;
+  }
+
+  /** Returns whether the failure is worth a retry, see {@link #isRetryableStatus(int)}. */
+  public boolean isRetryable(IOException e) {
+    if (e instanceof HttpResponseException) {
+      return isRetryableStatus(((HttpResponseException) e).getStatusCode());
+    }
+    return !(e instanceof InterruptedIOException || e instanceof CircuitBreakerOpenException);
+  }
+
+  /** Deposits the share of a retry for the new request. */
+  synchronized void onRequest() {
+    budget = Math.min(maxBudget, budget + budgetRatio);
+  }
+
+  /**
+   * Returns the delay in milliseconds before the next attempt or {@code -1} if the request
+   * should fail: the failure isn't retryable, the attempts or the budget are exhausted, or the
+   * server asks to wait longer than the maximum delay.
+   *
+   * @param attempt  number of the failed attempt, starting from {@code 1}
+   * @param previous delay before the failed attempt or {@code 0} for the first one
+   */
+  synchronized long nextDelay(String requestMethod, int attempt, long previous, IOException e) {
+    if (attempt >= getMaxAttempts(requestMethod) || !isRetryable(e)) {
+      return -1;
+    }
+    long retryAfter =
+        e instanceof HttpResponseException ? retryAfter(((HttpResponseException) e).getHeaders())
+                                           : 0;
+    if (retryAfter > maxDelay) {
+      return -1;
+    }
+    if (budget < 1) {
+      rejectedCount++;
+      return -1;
+    }
+    budget--;
+    retryCount++;
+    long upper = Math.min(maxDelay, Math.max(baseDelay, previous * 3));
+    long delay = baseDelay + (long) (random.nextDouble() * (upper - baseDelay));
+    return Math.max(delay, retryAfter);
+  }
+
+  /** Waits for the given delay in milliseconds. */
+  void sleep(long delay) throws InterruptedIOException {
+    try {
+      sleeper.sleep(delay);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for retry");
+    }
+  }
+
+  /** Returns the delay in milliseconds asked by {@code Retry-After} or {@code 0} for none. */
+  long retryAfter(HttpHeaders headers) {
+    String retryAfter = headers == null ? null : headers.getRetryAfter();
+    if (retryAfter == null) {
+      return 0;
+    }
+    retryAfter = retryAfter.trim();
+    try {
+      return Math.max(0, Long.parseLong(retryAfter) * 1000);
+    } catch (NumberFormatException e) {
+      SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+      format.setTimeZone(TimeZone.getTimeZone("GMT"));
+      try {
+        return Math.max(0, format.parse(retryAfter).getTime() - clock.currentTimeMillis());
+      } catch (ParseException ignored) {
+        return 0;
+      }
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpResponse;
+
+import org.github.bademux.feedly.api.model.EntriesResponse;
+
+import java.io.IOException;
+
+/** Request returning a page of the entries of a stream as {@link EntriesResponse}. */
+abstract class StreamEntriesRequest extends EntriesRequest<EntriesResponse> {
+
+  StreamEntriesRequest(AbstractClient client, String uriTemplate) {
+    super(client, "GET", uriTemplate, null, EntriesResponse.class);
+  }
+
+  /**
+   * Executes the request and passes each entry to the handler as soon as it is decoded, so only
+   * one entry of the page is held in memory.
+   *
+   * @return response without {@link EntriesResponse#items() items}
+   */
+  public EntriesResponse executeAndHandle(EntryHandler handler) throws IOException {
+    return executeAndHandleEntries(handler);
+  }
+
+  @Override
+  EntriesResponse parse(HttpResponse response, FieldProjection projection) throws IOException {
+    return EntriesParser.parse(this, response, projection);
+  }
+
+  @Override
+  EntriesResponse parse(HttpResponse response, FieldProjection projection, EntryHandler handler)
+      throws IOException {
+    return EntriesParser.parse(this, response, projection, handler);
+  }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.util.Clock;
+import com.google.api.client.util.store.DataStore;
+import com.google.api.client.util.store.DataStoreFactory;
+
+import org.github.bademux.feedly.api.model.MarkReadsResponse;
+import org.github.bademux.feedly.api.model.MarkTagsResponse;
+import org.github.bademux.feedly.api.model.Stream;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * Incremental synchronization: every {@link #sync()} cycle pulls only the changes since the
+ * previous one and passes them to {@link ChangeSink} as a {@link ChangeSet}:
+ *
+ * <ul>
+ * <li>ids of the new entries of each registered stream, by {@link Feedly.Streams#ids},</li>
+ * <li>read state changes, by {@link Feedly.Markers#reads()},</li>
+ * <li>tag changes, by {@link Feedly.Markers#tags()}.</li>
+ * </ul>
+ *
+ * <p> Each request is bounded by {@code newerThan} of its watermark: the time of the previous
+ * successful cycle less {@link #getOverlap() overlap}, which covers clock skew and late indexing.
+ * Watermarks are kept in the {@link DataStore} {@link #DEFAULT_DATA_STORE_ID} and advanced only
+ * after the sink has applied the changes, so a failed cycle is pulled again. A stream without
+ * watermark is pulled from the beginning, read and tag changes for the last 30 days as limited by
+ * the server. Example usage: </p>
+ *
+ * <pre>
+ * SyncEngine engine = new SyncEngine(service, new FileDataStoreFactory(dir), sink);
+ * engine.addStream(subscription);
+ * engine.sync();
+ * </pre>
+ *
+ * <p> Implementation is not thread-safe. </p>
+ */
+public class SyncEngine {
+
+  /** Id of the data store with watermarks. */
+  public static final String DEFAULT_DATA_STORE_ID = "SyncEngine";
+
+  /** Default overlap of the cycles in milliseconds. */
+  public static final long DEFAULT_OVERLAP = 60 * 1000;
+
+  /** Maximum number of ids per page, allowed by the server. */
+  static final int MAX_IDS_PER_PAGE = 10000;
+
+  private static final String READS_WATERMARK = "markers/reads";
+
+  private static final String TAGS_WATERMARK = "markers/tags";
+
+  private static final String STREAM_WATERMARK_PREFIX = "streams/";
+
+  private final Feedly feedly;
+
+  private final DataStore<Long> watermarks;
+
+  private final ChangeSink sink;
+
+  private final Map<String, Stream> streams = new LinkedHashMap<String, Stream>();
+
+  private Clock clock = Clock.SYSTEM;
+
+  private long overlap = DEFAULT_OVERLAP;
+
+  private boolean syncReads = true;
+
+  private boolean syncTags = true;
+
+  /**
+   * @param dataStoreFactory factory of the data store {@link #DEFAULT_DATA_STORE_ID} with
+   *                         watermarks
+   * @param sink             receiver of the changes
+   */
+  public SyncEngine(Feedly feedly, DataStoreFactory dataStoreFactory, ChangeSink sink)
+      throws IOException {
+    this.feedly = checkNotNull(feedly);
+    this.watermarks = dataStoreFactory.getDataStore(DEFAULT_DATA_STORE_ID);
+    this.sink = checkNotNull(sink);
+  }
+
+  /** Registers the stream to pull new entry ids of. */
+  public SyncEngine addStream(Stream stream) {
+    streams.put(stream.getId(), stream);
+    return this;
+  }
+
+  /** Unregisters the stream, its watermark is kept. */
+  public SyncEngine removeStream(Stream stream) {
+    streams.remove(stream.getId());
+    return this;
+  }
+
+  /** Returns the overlap of the cycles in milliseconds. */
+  public long getOverlap() { return overlap; }
+
+  /**
+   * Sets the overlap of the cycles in milliseconds.
+   *
+   * <p> By default it is {@link #DEFAULT_OVERLAP}. </p>
+   */
+  public SyncEngine setOverlap(long overlap) {
+    checkArgument(overlap >= 0, "overlap must not be negative");
+    this.overlap = overlap;
+    return this;
+  }
+
+  /** Sets whether read state changes are pulled, by default {@code true}. */
+  public SyncEngine setSyncReads(boolean syncReads) {
+    this.syncReads = syncReads;
+    return this;
+  }
+
+  /** Sets whether tag changes are pulled, by default {@code true}. */
+  public SyncEngine setSyncTags(boolean syncTags) {
+    this.syncTags = syncTags;
+    return this;
+  }
+
+  /** Sets the clock of the watermarks, for testing purposes. */
+  SyncEngine setClock(Clock clock) {
+    this.clock = checkNotNull(clock);
+    return this;
+  }
+
+  /** Returns the watermark of the stream or {@code null} if it was never synced. */
+  public Long getWatermark(Stream stream) throws IOException {
+    return watermarks.get(STREAM_WATERMARK_PREFIX + stream.getId());
+  }
+
+  /** Forgets all watermarks, the next cycle pulls everything. */
+  public void reset() throws IOException {
+    watermarks.clear();
+  }
+
+  /**
+   * Runs one synchronization cycle.
+   *
+   * @return the changes passed to the sink
+   */
+  public ChangeSet sync() throws IOException {
+    long now = clock.currentTimeMillis();
+    Map<String, Long> advanced = new LinkedHashMap<String, Long>();
+
+    Map<String, List<String>> newEntryIds = new LinkedHashMap<String, List<String>>();
+    for (Stream stream : streams.values()) {
+      String key = STREAM_WATERMARK_PREFIX + stream.getId();
+      List<String> ids = pullIds(stream, watermarks.get(key));
+      if (!ids.isEmpty()) {
+        newEntryIds.put(stream.getId(), ids);
+      }
+      advanced.put(key, now);
+    }
+
+    List<String> readEntryIds = Collections.emptyList();
+    List<String> unreadEntryIds = Collections.emptyList();
+    Map<String, Long> feedsReadAsOf = new LinkedHashMap<String, Long>();
+    if (syncReads) {
+      MarkReadsResponse reads =
+          feedly.markers().reads().setNewerThan(newerThan(READS_WATERMARK)).execute();
+      if (reads != null) {
+        readEntryIds = nonNull(reads.entries());
+        unreadEntryIds = nonNull(reads.unread());
+        if (reads.feeds() != null) {
+          for (MarkReadsResponse.Item feed : reads.feeds()) {
+            feedsReadAsOf.put(feed.getId(), feed.getAsOf());
+          }
+        }
+      }
+      advanced.put(READS_WATERMARK, now);
+    }
+
+    Map<String, List<String>> taggedEntryIds = new LinkedHashMap<String, List<String>>();
+    if (syncTags) {
+      MarkTagsResponse tags =
+          feedly.markers().tags().setNewerThan(newerThan(TAGS_WATERMARK)).execute();
+      if (tags != null && tags.taggedEntries() != null) {
+        for (Map.Entry<String, List<String>> tag : tags.taggedEntries().entrySet()) {
+          if (tag.getValue() != null && !tag.getValue().isEmpty()) {
+            taggedEntryIds.put(tag.getKey(), tag.getValue());
+          }
+        }
+      }
+      advanced.put(TAGS_WATERMARK, now);
+    }
+
+    ChangeSet changes = new ChangeSet(newEntryIds, readEntryIds, unreadEntryIds, feedsReadAsOf,
+                                      taggedEntryIds);
+    sink.apply(changes);
+    for (Map.Entry<String, Long> watermark : advanced.entrySet()) {
+      watermarks.set(watermark.getKey(), watermark.getValue());
+    }
+    return changes;
+  }
+
+  /** Pulls all ids of the stream newer than the watermark. */
+  private List<String> pullIds(Stream stream, Long watermark) throws IOException {
+    Feedly.Streams.Ids request = feedly.streams().ids(stream).setCount(MAX_IDS_PER_PAGE)
+        .setNewerThan(watermark == null ? null : Math.max(0, watermark - overlap));
+    List<String> ids = new ArrayList<String>();
+    Paginator<String>.PageIterator it = request.paginate().setPrefetchDepth(0).iterator();
+    try {
+      while (it.hasNext()) {
+        ids.add(it.next());
+      }
+    } catch (Paginator.FetchException e) {
+      throw rethrow(e);
+    } finally {
+      it.close();
+    }
+    return ids;
+  }
+
+  private Long newerThan(String key) throws IOException {
+    Long watermark = watermarks.get(key);
+    return watermark == null ? null : Math.max(0, watermark - overlap);
+  }
+
+  private static <T> List<T> nonNull(List<T> list) {
+    return list == null ? Collections.<T>emptyList() : list;
+  }
+
+  /** Unwraps {@link IOException} of the failed page. */
+  static IOException rethrow(Paginator.FetchException e) {
+    if (e.getCause() instanceof IOException) {
+      return (IOException) e.getCause();
+    }
+    throw e;
+  }
+}
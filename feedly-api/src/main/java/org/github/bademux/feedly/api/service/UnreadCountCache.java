@@ -0,0 +1,488 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.util.Clock;
+
+import org.github.bademux.feedly.api.model.Category;
+import org.github.bademux.feedly.api.model.Entry;
+import org.github.bademux.feedly.api.model.Subscription;
+import org.github.bademux.feedly.api.model.UnreadResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * In-memory unread counts of feeds and categories, so polling them is a map lookup instead of
+ * {@link Feedly.Markers#counts()} request.
+ *
+ * <p> Counts are loaded by {@link #reconcile()}. Marking entries, feeds or categories as read
+ * through the cache applies the change to the cached counts as soon as the marker request
+ * succeeds. The server stays authoritative: once {@link #getReconcileInterval() reconcile
+ * interval} elapses, the next read reconciles the counts in background with {@link
+ * Feedly.Markers.Counts#setNewerThan(Long)}, so only the counts changed since the last reconcile,
+ * less {@link #getOverlap() overlap}, are downloaded. Example usage: </p>
+ *
+ * <pre>
+ * UnreadCountCache unread = new UnreadCountCache(service);
+ * unread.setSubscriptions(service.subscriptions().list().execute());
+ * unread.reconcile();
+ * int count = unread.getCount(feedId);
+ * </pre>
+ *
+ * <p> Categories of the feeds are known from the {@link #setSubscriptions subscriptions}, without
+ * them marking a feed as read doesn't change the counts of its categories till the next reconcile.
+ * </p>
+ *
+ * <p> Implementation is thread-safe. </p>
+ */
+public class UnreadCountCache {
+
+  private static final Logger LOGGER = Logger.getLogger(UnreadCountCache.class.getName());
+
+  /** Default interval in milliseconds between reconciles. */
+  public static final long DEFAULT_RECONCILE_INTERVAL = 60 * 1000;
+
+  /** Default overlap of the reconciles in milliseconds. */
+  public static final long DEFAULT_OVERLAP = 60 * 1000;
+
+  private static final String[] NO_IDS = new String[0];
+
+  /** Prefix of the ids of user's streams. */
+  private static final String USER_PREFIX = "user/";
+
+  private final Feedly feedly;
+
+  /** Stream ids in ascending order, guarded by {@code this}. */
+  private String[] ids = NO_IDS;
+
+  /** Unread counts, indexed as {@link #ids}. */
+  private int[] counts = new int[0];
+
+  /** Time of the last local change of the count or {@code 0}, indexed as {@link #ids}. */
+  private long[] changed = new long[0];
+
+  private int size;
+
+  /** Category ids of subscribed feed ids. */
+  private Map<String, List<String>> feedCategories = Collections.emptyMap();
+
+  /** Time the counts were reconciled as of or {@code 0} if they must be loaded in full. */
+  private long watermark;
+
+  /** Time of the last reconcile or {@code 0} for none. */
+  private long reconciled;
+
+  private boolean reconciling;
+
+  private long reconcileInterval = DEFAULT_RECONCILE_INTERVAL;
+
+  private long overlap = DEFAULT_OVERLAP;
+
+  private Clock clock = Clock.SYSTEM;
+
+  public UnreadCountCache(Feedly feedly) {
+    this.feedly = checkNotNull(feedly);
+  }
+
+  /** Returns the interval in milliseconds between reconciles. */
+  public synchronized long getReconcileInterval() { return reconcileInterval; }
+
+  /**
+   * Sets the interval between reconciles triggered by reads, {@code 0} disables them.
+   *
+   * <p> By default it is {@link #DEFAULT_RECONCILE_INTERVAL} milliseconds. </p>
+   */
+  public synchronized UnreadCountCache setReconcileInterval(long interval, TimeUnit unit) {
+    checkArgument(interval >= 0, "interval must not be negative");
+    this.reconcileInterval = unit.toMillis(interval);
+    return this;
+  }
+
+  /** Returns the overlap of the reconciles in milliseconds. */
+  public synchronized long getOverlap() { return overlap; }
+
+  /**
+   * Sets the overlap of the reconciles, it covers clock skew between the client and the server.
+   *
+   * <p> By default it is {@link #DEFAULT_OVERLAP} milliseconds. </p>
+   */
+  public synchronized UnreadCountCache setOverlap(long overlap, TimeUnit unit) {
+    checkArgument(overlap >= 0, "overlap must not be negative");
+    this.overlap = unit.toMillis(overlap);
+    return this;
+  }
+
+  synchronized UnreadCountCache setClock(Clock clock) {
+    this.clock = checkNotNull(clock);
+    return this;
+  }
+
+  /** Sets the subscriptions used to apply the changes of feed counts to their categories. */
+  public synchronized UnreadCountCache setSubscriptions(Collection<Subscription> subscriptions) {
+    Map<String, List<String>> feedCategories = new HashMap<String, List<String>>();
+    for (Subscription subscription : subscriptions) {
+      List<String> categoryIds = new ArrayList<String>();
+      if (subscription.getCategories() != null) {
+        for (Category category : subscription.getCategories()) {
+          categoryIds.add(category.getId());
+        }
+      }
+      feedCategories.put(subscription.getId(), categoryIds);
+    }
+    this.feedCategories = feedCategories;
+    return this;
+  }
+
+  /**
+   * Returns the unread count of the feed or category or {@code -1} if it isn't known. Starts
+   * reconcile in background if it is due.
+   */
+  public int getCount(String streamId) {
+    int count;
+    synchronized (this) {
+      int index = Arrays.binarySearch(ids, 0, size, streamId);
+      count = index < 0 ? -1 : counts[index];
+    }
+    reconcileIfDue();
+    return count;
+  }
+
+  /**
+   * Returns the unread counts by stream id in ascending order. Starts reconcile in background if
+   * it is due.
+   */
+  public Map<String, Integer> getCounts() {
+    Map<String, Integer> snapshot = new TreeMap<String, Integer>();
+    synchronized (this) {
+      for (int i = 0; i < size; i++) {
+        snapshot.put(ids[i], counts[i]);
+      }
+    }
+    reconcileIfDue();
+    return snapshot;
+  }
+
+  /** Forgets the counts, the next reconcile loads them in full. */
+  public synchronized void invalidate() {
+    ids = NO_IDS;
+    counts = new int[0];
+    changed = new long[0];
+    size = 0;
+    watermark = 0;
+  }
+
+  /**
+   * Fetches the counts changed since the last reconcile, or all of them the first time, and
+   * replaces the cached ones. Counts changed locally while the request was in flight are kept,
+   * they are reconciled next time.
+   */
+  public void reconcile() throws IOException {
+    long started;
+    long since;
+    long newerThan;
+    synchronized (this) {
+      started = clock.currentTimeMillis();
+      since = watermark;
+      newerThan = Math.max(0, since - overlap);
+    }
+    Feedly.Markers.Counts request = feedly.markers().counts();
+    if (since != 0) {
+      request.setNewerThan(newerThan);
+    }
+    UnreadResponse response = request.execute();
+    List<UnreadResponse.Item> items = response == null || response.unreadCounts() == null
+                                      ? Collections.<UnreadResponse.Item>emptyList()
+                                      : response.unreadCounts();
+    synchronized (this) {
+      boolean skipped = false;
+      if (since == 0) {
+        skipped = replace(items, started);
+      } else {
+        for (UnreadResponse.Item item : items) {
+          int index = indexOf(item.getId());
+          if (changed[index] >= started) {
+            skipped = true;
+          } else {
+            counts[index] = toCount(item.getCount());
+          }
+        }
+      }
+      if (!skipped && watermark == since) {
+        watermark = started;
+      }
+      reconciled = started;
+    }
+  }
+
+  /** Sends read markers of the entries and decrements the counts of their unread ones. */
+  public void markEntriesAsRead(Collection<Entry> entries) throws IOException {
+    feedly.markers().entriesAsRead(idsOf(entries)).execute();
+    synchronized (this) {
+      long now = clock.currentTimeMillis();
+      for (Entry entry : entries) {
+        if (Boolean.TRUE.equals(entry.getUnread())) {
+          addEntry(entry, -1, now);
+        }
+      }
+    }
+  }
+
+  /** Sends unread markers of the entries and increments the counts of their read ones. */
+  public void keepEntriesUnread(Collection<Entry> entries) throws IOException {
+    feedly.markers().entriesUnread(idsOf(entries)).execute();
+    synchronized (this) {
+      long now = clock.currentTimeMillis();
+      for (Entry entry : entries) {
+        if (Boolean.FALSE.equals(entry.getUnread())) {
+          addEntry(entry, 1, now);
+        }
+      }
+    }
+  }
+
+  /**
+   * Marks the feeds as read and resets their counts, the counts of their categories are
+   * decremented. Entries newer than {@code asOf} are counted again by the next reconcile.
+   */
+  public void markFeedsAsRead(Collection<String> feedIds, long asOf) throws IOException {
+    feedly.markers().feedsAsRead(feedIds, asOf).execute();
+    synchronized (this) {
+      long now = clock.currentTimeMillis();
+      for (String feedId : feedIds) {
+        resetFeed(feedId, now);
+      }
+    }
+  }
+
+  /**
+   * Marks the categories as read and resets their counts and the counts of their feeds. Entries
+   * newer than {@code asOf} are counted again by the next reconcile.
+   */
+  public void markCategoriesAsRead(Collection<String> categoryIds, long asOf)
+      throws IOException {
+    feedly.markers().categoriesAsRead(categoryIds, asOf).execute();
+    synchronized (this) {
+      long now = clock.currentTimeMillis();
+      for (String categoryId : categoryIds) {
+        if (categoryId.endsWith('/' + Category.PREFIX + '/' + Category.ALL)) {
+          Arrays.fill(counts, 0, size, 0);
+          Arrays.fill(changed, 0, size, now);
+          continue;
+        }
+        for (Map.Entry<String, List<String>> feed : feedCategories.entrySet()) {
+          if (feed.getValue().contains(categoryId)) {
+            resetFeed(feed.getKey(), now);
+          }
+        }
+        // entries of feeds that aren't known to be in the category
+        int index = indexOf(categoryId);
+        int remaining = counts[index];
+        counts[index] = 0;
+        changed[index] = now;
+        add(globalId(categoryId, Category.ALL), -remaining, now);
+      }
+    }
+  }
+
+  private void reconcileIfDue() {
+    synchronized (this) {
+      if (reconciling || reconcileInterval == 0
+          || clock.currentTimeMillis() - reconciled < reconcileInterval) {
+        return;
+      }
+      reconciling = true;
+    }
+    feedly.getExecutor().execute(new Runnable() {
+      public void run() {
+        boolean done = false;
+        try {
+          reconcile();
+          done = true;
+        } catch (IOException e) {
+          LOGGER.log(Level.WARNING, "Unread counts reconcile failed, cached ones are kept", e);
+        } finally {
+          synchronized (UnreadCountCache.this) {
+            reconciling = false;
+            // failed reconcile is retried after the interval too
+            if (!done) {
+              reconciled = clock.currentTimeMillis();
+            }
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Replaces the counts with the full response, keeps the ones changed locally since {@code
+   * started}. Returns whether any count was kept.
+   */
+  private boolean replace(List<UnreadResponse.Item> items, long started) {
+    String[] oldIds = ids;
+    int[] oldCounts = counts;
+    long[] oldChanged = changed;
+    int oldSize = size;
+    ids = NO_IDS;
+    counts = new int[0];
+    changed = new long[0];
+    size = 0;
+    for (UnreadResponse.Item item : items) {
+      int index = indexOf(item.getId());
+      counts[index] = toCount(item.getCount());
+    }
+    boolean kept = false;
+    for (int i = 0; i < oldSize; i++) {
+      if (oldChanged[i] >= started) {
+        int index = indexOf(oldIds[i]);
+        counts[index] = oldCounts[i];
+        changed[index] = oldChanged[i];
+        kept = true;
+      }
+    }
+    return kept;
+  }
+
+  /** Applies the delta to the feed of the entry, its categories and global categories. */
+  private void addEntry(Entry entry, int delta, long now) {
+    Set<String> streamIds = new LinkedHashSet<String>();
+    String feedId = entry.getOrigin() == null ? null : entry.getOrigin().getStreamId();
+    if (feedId != null) {
+      streamIds.add(feedId);
+      List<String> categoryIds = feedCategories.get(feedId);
+      if (categoryIds != null) {
+        streamIds.addAll(categoryIds);
+      }
+    }
+    if (entry.getCategories() != null) {
+      for (Category category : entry.getCategories()) {
+        streamIds.add(category.getId());
+      }
+    }
+    String allId = null;
+    for (String streamId : streamIds) {
+      add(streamId, delta, now);
+      if (allId == null) {
+        allId = globalId(streamId, Category.ALL);
+      }
+    }
+    if (allId == null) {
+      allId = globalId(null, Category.ALL);
+    }
+    add(allId, delta, now);
+  }
+
+  /** Resets the count of the feed and decrements its categories by its previous count. */
+  private void resetFeed(String feedId, long now) {
+    int index = Arrays.binarySearch(ids, 0, size, feedId);
+    int count = index < 0 ? 0 : counts[index];
+    index = indexOf(feedId);
+    counts[index] = 0;
+    changed[index] = now;
+    if (count == 0) {
+      return;
+    }
+    List<String> categoryIds = feedCategories.get(feedId);
+    if (categoryIds != null) {
+      for (String categoryId : categoryIds) {
+        add(categoryId, -count, now);
+      }
+    }
+    add(globalId(null, Category.ALL), -count, now);
+  }
+
+  /** Adds the delta to the cached count of the stream, if it is known. */
+  private void add(String streamId, int delta, long now) {
+    int index = streamId == null ? -1 : Arrays.binarySearch(ids, 0, size, streamId);
+    if (index >= 0) {
+      counts[index] = Math.max(0, counts[index] + delta);
+      changed[index] = now;
+    }
+  }
+
+  /**
+   * Returns the id of the global category of the user owning the category or any cached global
+   * category if {@code categoryId} is {@code null} or not one of the user's categories. Only
+   * {@code user/<userId>/category/} ids are owned by a user, feed URLs may contain the segment.
+   */
+  private String globalId(String categoryId, String name) {
+    String suffix = '/' + Category.PREFIX + '/' + name;
+    if (categoryId != null && categoryId.startsWith(USER_PREFIX)) {
+      int separator = categoryId.indexOf('/', USER_PREFIX.length());
+      if (separator > 0 && categoryId.startsWith('/' + Category.PREFIX + '/', separator)) {
+        return categoryId.substring(0, separator) + suffix;
+      }
+    }
+    for (int i = 0; i < size; i++) {
+      if (ids[i].endsWith(suffix)) {
+        return ids[i];
+      }
+    }
+    return null;
+  }
+
+  /** Returns the index of the stream, inserting it with zero count if it is missing. */
+  private int indexOf(String streamId) {
+    int index = Arrays.binarySearch(ids, 0, size, streamId);
+    if (index >= 0) {
+      return index;
+    }
+    index = -index - 1;
+    if (size == ids.length) {
+      int capacity = Math.max(16, size + (size >> 1));
+      ids = Arrays.copyOf(ids, capacity);
+      counts = Arrays.copyOf(counts, capacity);
+      changed = Arrays.copyOf(changed, capacity);
+    }
+    System.arraycopy(ids, index, ids, index + 1, size - index);
+    System.arraycopy(counts, index, counts, index + 1, size - index);
+    System.arraycopy(changed, index, changed, index + 1, size - index);
+    ids[index] = streamId;
+    counts[index] = 0;
+    changed[index] = 0;
+    size++;
+    return index;
+  }
+
+  private static int toCount(Integer count) { return count == null ? 0 : count; }
+
+  private static List<String> idsOf(Collection<Entry> entries) {
+    List<String> entryIds = new ArrayList<String>(entries.size());
+    for (Entry entry : entries) {
+      entryIds.add(entry.getId());
+    }
+    return entryIds;
+  }
+}
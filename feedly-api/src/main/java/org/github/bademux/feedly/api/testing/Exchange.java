@@ -0,0 +1,121 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.testing;
+
+import com.google.api.client.http.GenericUrl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * Recorded HTTP exchange: the request method, path and content and the response it was answered
+ * with. The path is relative to the host and has no {@code ck} cache-buster, so an exchange
+ * matches the same request of a later run.
+ *
+ * <p> Implementation is immutable. </p>
+ */
+public final class Exchange {
+
+  /** Query parameter added by {@code Request} to GET requests to prevent caching. */
+  static final String CACHE_BUSTER = "ck";
+
+  private static final byte[] NO_CONTENT = new byte[0];
+
+  private final String method;
+
+  private final String path;
+
+  private final byte[] requestContent;
+
+  private final int statusCode;
+
+  private final String contentType;
+
+  private final List<String> headerNames;
+
+  private final List<String> headerValues;
+
+  private final byte[] content;
+
+  /**
+   * @param method         HTTP method
+   * @param path           path with query, see {@link #pathOf(String)}
+   * @param requestContent decoded request content or {@code null} for none
+   * @param statusCode     response status code
+   * @param contentType    response content type or {@code null} for none
+   * @param headerNames    names of the other response headers
+   * @param headerValues   values of the other response headers
+   * @param content        decoded response content or {@code null} for none
+   */
+  public Exchange(String method, String path, byte[] requestContent, int statusCode,
+                  String contentType, List<String> headerNames, List<String> headerValues,
+                  byte[] content) {
+    checkArgument(headerNames.size() == headerValues.size(), "header names and values differ");
+    this.method = checkNotNull(method);
+    this.path = checkNotNull(path);
+    this.requestContent = requestContent == null ? NO_CONTENT : requestContent;
+    this.statusCode = statusCode;
+    this.contentType = contentType;
+    this.headerNames = Collections.unmodifiableList(new ArrayList<String>(headerNames));
+    this.headerValues = Collections.unmodifiableList(new ArrayList<String>(headerValues));
+    this.content = content == null ? NO_CONTENT : content;
+  }
+
+  public String getMethod() { return method; }
+
+  /** Returns the path with query, relative to the host and without {@code ck}. */
+  public String getPath() { return path; }
+
+  /** Returns the decoded request content, empty for none. */
+  public byte[] getRequestContent() { return requestContent; }
+
+  public int getStatusCode() { return statusCode; }
+
+  /** Returns the response content type or {@code null} for none. */
+  public String getContentType() { return contentType; }
+
+  /** Returns names of the response headers other than content type, length and encoding. */
+  public List<String> getHeaderNames() { return headerNames; }
+
+  /** Returns values of the response headers, in order of {@link #getHeaderNames()}. */
+  public List<String> getHeaderValues() { return headerValues; }
+
+  /** Returns the decoded response content, empty for none. */
+  public byte[] getContent() { return content; }
+
+  /** Returns the key the exchange is matched by: method and path. */
+  String getKey() { return method + ' ' + path; }
+
+  /** Returns the path with query of the url, without host and {@code ck} cache-buster. */
+  public static String pathOf(String url) {
+    GenericUrl genericUrl = new GenericUrl(url);
+    genericUrl.remove(CACHE_BUSTER);
+    return genericUrl.buildRelativeUrl();
+  }
+
+  @Override
+  public String toString() {
+    return method + ' ' + path + " -> " + statusCode;
+  }
+}
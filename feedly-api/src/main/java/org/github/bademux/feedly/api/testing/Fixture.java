@@ -0,0 +1,163 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.testing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Ordered list of the {@link Exchange exchanges} captured by {@link RecordingHttpTransport} and
+ * replayed by {@link ReplayHttpTransport}.
+ *
+ * <p> Fixture files are compact: gzipped binary records with the decoded contents, so recorded
+ * pages of entries stay small enough to be kept along with the tests. </p>
+ *
+ * <p> Implementation is thread-safe. </p>
+ */
+public final class Fixture {
+
+  /** Magic number and version of the fixture file. */
+  private static final int MAGIC = 0xFEED1701;
+
+  private final List<Exchange> exchanges = new ArrayList<Exchange>();
+
+  public Fixture() {}
+
+  public Fixture(List<Exchange> exchanges) {
+    this.exchanges.addAll(exchanges);
+  }
+
+  /** Appends the exchange. */
+  public synchronized Fixture add(Exchange exchange) {
+    exchanges.add(exchange);
+    return this;
+  }
+
+  /** Returns a snapshot of the exchanges in order they were recorded. */
+  public synchronized List<Exchange> getExchanges() {
+    return Collections.unmodifiableList(new ArrayList<Exchange>(exchanges));
+  }
+
+  /** Writes the fixture to the stream, the stream isn't closed. */
+  public void write(OutputStream out) throws IOException {
+    GZIPOutputStream gzip = new GZIPOutputStream(out);
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(gzip));
+    List<Exchange> snapshot = getExchanges();
+    data.writeInt(MAGIC);
+    data.writeInt(snapshot.size());
+    for (Exchange exchange : snapshot) {
+      data.writeUTF(exchange.getMethod());
+      data.writeUTF(exchange.getPath());
+      writeBytes(data, exchange.getRequestContent());
+      data.writeShort(exchange.getStatusCode());
+      writeNullableUTF(data, exchange.getContentType());
+      data.writeShort(exchange.getHeaderNames().size());
+      for (int i = 0; i < exchange.getHeaderNames().size(); i++) {
+        data.writeUTF(exchange.getHeaderNames().get(i));
+        data.writeUTF(exchange.getHeaderValues().get(i));
+      }
+      writeBytes(data, exchange.getContent());
+    }
+    data.flush();
+    gzip.finish();
+  }
+
+  /** Reads the fixture written by {@link #write(OutputStream)}, the stream isn't closed. */
+  public static Fixture read(InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(new BufferedInputStream(new GZIPInputStream(in)));
+    if (data.readInt() != MAGIC) {
+      throw new IOException("Not a fixture or unsupported version");
+    }
+    int count = data.readInt();
+    Fixture fixture = new Fixture();
+    for (int i = 0; i < count; i++) {
+      String method = data.readUTF();
+      String path = data.readUTF();
+      byte[] requestContent = readBytes(data);
+      int statusCode = data.readUnsignedShort();
+      String contentType = readNullableUTF(data);
+      int headerCount = data.readUnsignedShort();
+      List<String> headerNames = new ArrayList<String>(headerCount);
+      List<String> headerValues = new ArrayList<String>(headerCount);
+      for (int j = 0; j < headerCount; j++) {
+        headerNames.add(data.readUTF());
+        headerValues.add(data.readUTF());
+      }
+      fixture.add(new Exchange(method, path, requestContent, statusCode, contentType,
+                               headerNames, headerValues, readBytes(data)));
+    }
+    return fixture;
+  }
+
+  /** Writes the fixture to the file. */
+  public void save(File file) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    try {
+      write(out);
+    } finally {
+      out.close();
+    }
+  }
+
+  /** Reads the fixture from the file. */
+  public static Fixture load(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      return read(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  private static void writeBytes(DataOutputStream data, byte[] bytes) throws IOException {
+    data.writeInt(bytes.length);
+    data.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInputStream data) throws IOException {
+    byte[] bytes = new byte[data.readInt()];
+    data.readFully(bytes);
+    return bytes;
+  }
+
+  private static void writeNullableUTF(DataOutputStream data, String value) throws IOException {
+    data.writeBoolean(value != null);
+    if (value != null) {
+      data.writeUTF(value);
+    }
+  }
+
+  private static String readNullableUTF(DataInputStream data) throws IOException {
+    return data.readBoolean() ? data.readUTF() : null;
+  }
+}
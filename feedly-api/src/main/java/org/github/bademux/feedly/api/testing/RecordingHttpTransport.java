@@ -0,0 +1,193 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.testing;
+
+import com.google.api.client.http.ByteArrayContent;
+import com.google.api.client.http.GZipEncoding;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.util.FieldInfo;
+import com.google.api.client.util.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * Transport that passes requests to the real transport and records every exchange to a {@link
+ * Fixture}, to be replayed later by {@link ReplayHttpTransport}. Example usage:
+ *
+ * <pre>
+ * RecordingHttpTransport transport = new RecordingHttpTransport(new NetHttpTransport());
+ * Feedly service = new Feedly.Builder(transport, jsonFactory, credential).build();
+ * // run the scenario..
+ * transport.getFixture().save(new File("contents.fixture"));
+ * </pre>
+ *
+ * <p> Contents are recorded decoded. Request headers aren't recorded, so credentials never get
+ * into fixtures. </p>
+ *
+ * <p> Implementation is thread-safe. </p>
+ */
+public class RecordingHttpTransport extends HttpTransport {
+
+  private final HttpTransport delegate;
+
+  private final Fixture fixture;
+
+  public RecordingHttpTransport(HttpTransport delegate) {
+    this(delegate, new Fixture());
+  }
+
+  /** @param fixture fixture to append the exchanges to */
+  public RecordingHttpTransport(HttpTransport delegate, Fixture fixture) {
+    this.delegate = checkNotNull(delegate);
+    this.fixture = checkNotNull(fixture);
+  }
+
+  /** Returns the fixture with recorded exchanges. */
+  public final Fixture getFixture() { return fixture; }
+
+  @Override
+  public boolean supportsMethod(String method) throws IOException {
+    return delegate.supportsMethod(method);
+  }
+
+  @Override
+  protected LowLevelHttpRequest buildRequest(String method, String url) throws IOException {
+    return new RecordingRequest(method, url);
+  }
+
+  @Override
+  public void shutdown() throws IOException {
+    delegate.shutdown();
+  }
+
+  /** Returns the decoded content of the request, empty for none. */
+  static byte[] contentOf(LowLevelHttpRequest request) throws IOException {
+    if (request.getStreamingContent() == null) {
+      return new byte[0];
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    request.getStreamingContent().writeTo(out);
+    if (!"gzip".equalsIgnoreCase(request.getContentEncoding())) {
+      return out.toByteArray();
+    }
+    ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+    IOUtils.copy(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())), decoded);
+    return decoded.toByteArray();
+  }
+
+  /** Adds the header value, appending to values of list headers. */
+  @SuppressWarnings("unchecked")
+  private static void appendHeader(HttpHeaders headers, String name, String value) {
+    FieldInfo fieldInfo = headers.getClassInfo().getFieldInfo(name);
+    if (fieldInfo != null && !Collection.class.isAssignableFrom(fieldInfo.getType())) {
+      headers.set(name, value);
+      return;
+    }
+    Object current = headers.get(name);
+    List<String> values = new ArrayList<String>();
+    if (current instanceof Collection) {
+      values.addAll((Collection<String>) current);
+    }
+    values.add(value);
+    headers.set(name, values);
+  }
+
+  private class RecordingRequest extends LowLevelHttpRequest {
+
+    private final String method;
+
+    private final String url;
+
+    private final HttpHeaders headers = new HttpHeaders();
+
+    RecordingRequest(String method, String url) {
+      this.method = method;
+      this.url = url;
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+      // set by HttpRequest itself
+      if (!"Accept-Encoding".equalsIgnoreCase(name)) {
+        appendHeader(headers, name, value);
+      }
+    }
+
+    @Override
+    public LowLevelHttpResponse execute() throws IOException {
+      byte[] requestContent = contentOf(this);
+      HttpRequest request = delegate.createRequestFactory().buildRequest(
+          method, new GenericUrl(url), getStreamingContent() == null ? null
+                                       : new ByteArrayContent(getContentType(), requestContent));
+      if ("gzip".equalsIgnoreCase(getContentEncoding())) {
+        request.setEncoding(new GZipEncoding());
+      }
+      request.setHeaders(headers).setSuppressUserAgentSuffix(true).setNumberOfRetries(0)
+          .setFollowRedirects(false).setThrowExceptionOnExecuteError(false);
+      HttpResponse response = request.execute();
+      try {
+        List<String> headerNames = new ArrayList<String>();
+        List<String> headerValues = new ArrayList<String>();
+        for (Map.Entry<String, Object> header : response.getHeaders().entrySet()) {
+          String name = header.getKey();
+          if ("Content-Type".equalsIgnoreCase(name) || "Content-Length".equalsIgnoreCase(name)
+              || "Content-Encoding".equalsIgnoreCase(name)) {
+            continue;
+          }
+          Object value = header.getValue();
+          for (Object item : value instanceof Collection ? (Collection<?>) value
+                                                         : Collections.singleton(value)) {
+            headerNames.add(name);
+            headerValues.add(String.valueOf(item));
+          }
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        InputStream in = response.getContent();
+        if (in != null) {
+          IOUtils.copy(in, content);
+        }
+        Exchange exchange = new Exchange(method, Exchange.pathOf(url), requestContent,
+                                         response.getStatusCode(), response.getContentType(),
+                                         headerNames, headerValues, content.toByteArray());
+        fixture.add(exchange);
+        return ReplayHttpTransport.newResponse(exchange);
+      } finally {
+        response.disconnect();
+      }
+    }
+  }
+}
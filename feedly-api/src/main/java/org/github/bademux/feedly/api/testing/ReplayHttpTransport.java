@@ -0,0 +1,259 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.api.testing;
+
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.client.util.Sleeper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.api.client.util.Preconditions.checkArgument;
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * Transport that answers requests with the exchanges of a {@link Fixture}, without network.
+ *
+ * <p> Requests are matched by method and path without {@code ck}, optionally by content too.
+ * Exchanges of the same request are replayed in the order they were recorded, the last one is
+ * repeated once they are exhausted, so a recorded scenario can be looped for throughput tests.
+ * A request without a recorded exchange fails with {@link IOException}. </p>
+ *
+ * <p> Latency, jitter and errors can be injected. They are driven by a seeded {@link Random}, so
+ * a run is reproducible as long as requests are sent in the same order. An injected error doesn't
+ * consume the recorded exchange, a retried request gets it. Example usage: </p>
+ *
+ * <pre>
+ * ReplayHttpTransport transport = new ReplayHttpTransport(Fixture.load(file))
+ *     .setLatency(80, 40, TimeUnit.MILLISECONDS).setErrorRate(0.01, 503);
+ * Feedly service = new Feedly.Builder(transport, jsonFactory, credential).build();
+ * </pre>
+ *
+ * <p> Implementation is thread-safe. </p>
+ */
+public class ReplayHttpTransport extends HttpTransport {
+
+  /** Default status code of the injected errors. */
+  public static final int DEFAULT_ERROR_STATUS_CODE = 503;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /** Exchanges by {@link Exchange#getKey()}. */
+  private final Map<String, List<Exchange>> exchanges = new LinkedHashMap<String, List<Exchange>>();
+
+  /** Number of replayed exchanges by lookup key. */
+  private final Map<String, Integer> positions = new HashMap<String, Integer>();
+
+  private boolean matchContent;
+
+  private long latency;
+
+  private long jitter;
+
+  private double errorRate;
+
+  private int errorStatusCode = DEFAULT_ERROR_STATUS_CODE;
+
+  private double connectionErrorRate;
+
+  private Random random = new Random(0);
+
+  private Sleeper sleeper = Sleeper.DEFAULT;
+
+  private int requestCount;
+
+  public ReplayHttpTransport(Fixture fixture) {
+    for (Exchange exchange : fixture.getExchanges()) {
+      List<Exchange> list = exchanges.get(exchange.getKey());
+      if (list == null) {
+        exchanges.put(exchange.getKey(), list = new ArrayList<Exchange>());
+      }
+      list.add(exchange);
+    }
+  }
+
+  /** Sets whether requests are matched by decoded content too, by default {@code false}. */
+  public synchronized ReplayHttpTransport setMatchContent(boolean matchContent) {
+    this.matchContent = matchContent;
+    return this;
+  }
+
+  /**
+   * Sets the delay of every response: {@code latency} plus uniformly distributed random part of
+   * up to {@code jitter}. By default there is no delay.
+   */
+  public synchronized ReplayHttpTransport setLatency(long latency, long jitter, TimeUnit unit) {
+    checkArgument(latency >= 0 && jitter >= 0, "latency and jitter must not be negative");
+    this.latency = unit.toMillis(latency);
+    this.jitter = unit.toMillis(jitter);
+    return this;
+  }
+
+  /**
+   * Sets the share of requests answered with the error status code instead of the recorded
+   * exchange, by default {@code 0}.
+   *
+   * @param errorRate       share of requests in range 0..1
+   * @param errorStatusCode status code, for example {@code 429} or {@link
+   *                        #DEFAULT_ERROR_STATUS_CODE}
+   */
+  public synchronized ReplayHttpTransport setErrorRate(double errorRate, int errorStatusCode) {
+    checkArgument(errorRate >= 0 && errorRate <= 1, "error rate must be in range 0..1");
+    this.errorRate = errorRate;
+    this.errorStatusCode = errorStatusCode;
+    return this;
+  }
+
+  /**
+   * Sets the share of requests failed with {@link IOException}, as on a dropped connection, by
+   * default {@code 0}.
+   */
+  public synchronized ReplayHttpTransport setConnectionErrorRate(double connectionErrorRate) {
+    checkArgument(connectionErrorRate >= 0 && connectionErrorRate <= 1,
+                  "connection error rate must be in range 0..1");
+    this.connectionErrorRate = connectionErrorRate;
+    return this;
+  }
+
+  /** Sets the seed of latency and error injection, by default {@code 0}. */
+  public synchronized ReplayHttpTransport setSeed(long seed) {
+    this.random = new Random(seed);
+    return this;
+  }
+
+  /** Sets the sleeper of the injected latency, for testing purposes. */
+  public synchronized ReplayHttpTransport setSleeper(Sleeper sleeper) {
+    this.sleeper = checkNotNull(sleeper);
+    return this;
+  }
+
+  /** Returns the number of requests sent, including failed ones. */
+  public synchronized int getRequestCount() { return requestCount; }
+
+  /** Forgets replayed exchanges, the next requests get them from the beginning. */
+  public synchronized void rewind() {
+    positions.clear();
+  }
+
+  @Override
+  protected LowLevelHttpRequest buildRequest(final String method, final String url) {
+    return new LowLevelHttpRequest() {
+      @Override
+      public void addHeader(String name, String value) {}
+
+      @Override
+      public LowLevelHttpResponse execute() throws IOException {
+        return replay(method, Exchange.pathOf(url), RecordingHttpTransport.contentOf(this));
+      }
+    };
+  }
+
+  private LowLevelHttpResponse replay(String method, String path, byte[] content)
+      throws IOException {
+    long delay;
+    boolean connectionError;
+    boolean error;
+    Exchange exchange = null;
+    synchronized (this) {
+      requestCount++;
+      delay = latency + (jitter == 0 ? 0 : (long) (random.nextDouble() * jitter));
+      connectionError = random.nextDouble() < connectionErrorRate;
+      error = !connectionError && random.nextDouble() < errorRate;
+      if (!connectionError && !error) {
+        exchange = next(method + ' ' + path, content);
+      }
+    }
+    sleep(delay);
+    if (connectionError) {
+      throw new IOException("Injected connection error: " + method + ' ' + path);
+    }
+    if (error) {
+      return new MockLowLevelHttpResponse().setStatusCode(errorStatusCode)
+          .setContentType("application/json")
+          .setContent("{\"errorCode\":" + errorStatusCode + ",\"errorMessage\":\"injected\"}");
+    }
+    if (exchange == null) {
+      throw new IOException("No recorded exchange: " + method + ' ' + path);
+    }
+    return newResponse(exchange);
+  }
+
+  /** Returns the next exchange of the request or {@code null} if there is none. */
+  private Exchange next(String key, byte[] content) {
+    List<Exchange> candidates = exchanges.get(key);
+    if (candidates == null) {
+      return null;
+    }
+    if (matchContent) {
+      List<Exchange> matched = new ArrayList<Exchange>();
+      for (Exchange exchange : candidates) {
+        if (Arrays.equals(exchange.getRequestContent(), content)) {
+          matched.add(exchange);
+        }
+      }
+      if (matched.isEmpty()) {
+        return null;
+      }
+      candidates = matched;
+      key = key + '\n' + new String(content, UTF_8);
+    }
+    Integer position = positions.get(key);
+    int index = position == null ? 0 : position;
+    positions.put(key, index + 1);
+    return candidates.get(Math.min(index, candidates.size() - 1));
+  }
+
+  private void sleep(long delay) throws IOException {
+    if (delay == 0) {
+      return;
+    }
+    try {
+      sleeper.sleep(delay);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while injecting latency");
+    }
+  }
+
+  /** Returns the response of the exchange. */
+  static LowLevelHttpResponse newResponse(Exchange exchange) {
+    MockLowLevelHttpResponse response = new MockLowLevelHttpResponse()
+        .setStatusCode(exchange.getStatusCode()).setContentType(exchange.getContentType())
+        .setContent(new ByteArrayInputStream(exchange.getContent()))
+        .setContentLength(exchange.getContent().length);
+    for (int i = 0; i < exchange.getHeaderNames().size(); i++) {
+      response.addHeader(exchange.getHeaderNames().get(i), exchange.getHeaderValues().get(i));
+    }
+    return response;
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.model;
+
+import com.google.api.client.json.JsonParser;
+import com.google.api.client.json.gson.GsonFactory;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class IdRegistryTest {
+
+  private static final String ENTRY = "{\"id\":\"%s\",\"origin\":{\"streamId\":\"feed/test\"},"
+      + "\"categories\":[{\"id\":\"user/1/category/tech\",\"label\":\"tech\"}],"
+      + "\"tags\":[{\"id\":\"user/1/tag/global.saved\"}]}";
+
+  private static final String ENTRIES =
+      '[' + String.format(ENTRY, "a") + ',' + String.format(ENTRY, "b") + ']';
+
+  @Test
+  public void testDecoderInternsIds() throws IOException {
+    List<Entry> entries = decode(new IdRegistry());
+
+    Entry a = entries.get(0), b = entries.get(1);
+    assertSame("Stream id should be shared", a.getOrigin().getStreamId(),
+               b.getOrigin().getStreamId());
+    assertSame("Category should be shared", a.getCategories().get(0), b.getCategories().get(0));
+    assertSame("Tag should be shared", a.getTags().get(0), b.getTags().get(0));
+
+    List<Entry> fresh = decode(null);
+    assertNotSame("Without registry instances aren't shared", fresh.get(0).getCategories().get(0),
+                  fresh.get(1).getCategories().get(0));
+  }
+
+  @Test
+  public void testLabelChange() {
+    IdRegistry registry = new IdRegistry();
+    Category tech = registry.intern(new Category("tech", "1"));
+    assertSame(tech, registry.intern(new Category("tech", "1")));
+    assertSame(tech, registry.getCategory("user/1/category/tech"));
+
+    Category renamed = new Category("tech", "1");
+    renamed.setLabel("Technology");
+    assertSame("Renamed category should become canonical", renamed, registry.intern(renamed));
+    assertSame(renamed, registry.getCategory("user/1/category/tech"));
+  }
+
+  @Test
+  public void testParsedComponents() {
+    IdRegistry registry = new IdRegistry();
+    Tag tag = registry.getTag("user/1/tag/global.saved");
+    assertEquals("tag", tag.getPrefix());
+    assertEquals("1", tag.getUserId());
+    assertEquals("global.saved", tag.getName());
+
+    Subscription subscription = registry.getSubscription("feed/http://test/rss");
+    assertSame(subscription, registry.getSubscription("feed/http://test/rss"));
+    assertNull("Feed id isn't a user one", subscription.getUserId());
+    assertEquals("http://test/rss", subscription.getUrl());
+
+    assertEquals("-", new Category("tech", null).getUserId());
+  }
+
+  @Test
+  public void testBounded() {
+    IdRegistry registry = new IdRegistry(2);
+    String first = registry.intern(new String("feed/1"));
+    registry.intern("feed/2");
+    String third = new String("feed/3");
+    assertSame("Full registry should return the id as is", third, registry.intern(third));
+    assertSame("Registered id should stay canonical", first, registry.intern("feed/1"));
+    assertEquals("Full registry shouldn't grow", 2, registry.size());
+  }
+
+  private static List<Entry> decode(IdRegistry registry) throws IOException {
+    JsonParser parser = new GsonFactory().createJsonParser(ENTRIES);
+    try {
+      return ModelReaders.get(Entry.Entries.class, registry).read(parser);
+    } finally {
+      parser.close();
+    }
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.oauth2;
+
+import com.google.api.client.auth.oauth2.ClientParametersAuthentication;
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FeedlyCredentialTest {
+
+  private final AtomicInteger refreshes = new AtomicInteger();
+
+  @Test
+  public void testSingleFlightRefresh() throws Exception {
+    final FeedlyCredential credential = newCredential(new FeedlyCredential.Builder(), 100);
+    credential.setRefreshToken("refresh").setAccessToken("expired").setExpiresInSeconds(0L);
+
+    final List<String> tokens = new ArrayList<String>();
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 8; i++) {
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            HttpRequest request = new MockHttpTransport().createRequestFactory()
+                .buildGetRequest(new GenericUrl("http://localhost"));
+            credential.intercept(request);
+            synchronized (tokens) {
+              tokens.add(request.getHeaders().getAuthorization());
+            }
+          } catch (Exception e) {
+            throw new RuntimeException(e);
+          }
+        }
+      });
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals("Only one refresh should be sent", 1, refreshes.get());
+    assertEquals(8, tokens.size());
+    for (String token : tokens) {
+      assertEquals("token1", token);
+    }
+  }
+
+  @Test
+  public void testProactiveRefresh() throws Exception {
+    FeedlyCredential credential =
+        newCredential(new FeedlyCredential.Builder().setRefreshMargin(100L), 0);
+    credential.setRefreshToken("refresh").setAccessToken("old");
+    credential.setExpirationTimeMilliseconds(System.currentTimeMillis() + 250);
+
+    for (int i = 0; i < 100 && refreshes.get() == 0; i++) {
+      Thread.sleep(10);
+    }
+
+    assertEquals(1, refreshes.get());
+    assertEquals("token1", credential.getAccessToken());
+    assertTrue("Refreshed token expires later", credential.getExpiresInSeconds() > 3000);
+  }
+
+  @Test
+  public void testNoProactiveRefreshWithinMargin() throws Exception {
+    FeedlyCredential credential = newCredential(
+        new FeedlyCredential.Builder().setRefreshMargin(TimeUnit.HOURS.toMillis(1)), 0);
+    credential.setRefreshToken("refresh").setAccessToken("old");
+    credential.setExpiresInSeconds(TimeUnit.MINUTES.toSeconds(30));
+
+    Thread.sleep(100);
+
+    assertEquals("Token within margin shouldn't be refreshed in background", 0, refreshes.get());
+    assertEquals("old", credential.getAccessToken());
+  }
+
+  private FeedlyCredential newCredential(FeedlyCredential.Builder builder, final long delay) {
+    builder.setTransport(new MockHttpTransport()).setJsonFactory(new GsonFactory())
+        .setTokenServerEncodedUrl("http://localhost/token")
+        .setClientAuthentication(new ClientParametersAuthentication("id", "secret"));
+    return new FeedlyCredential(builder) {
+      @Override
+      protected FeedlyTokenResponse executeRefreshToken() throws IOException {
+        try {
+          Thread.sleep(delay);
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        FeedlyTokenResponse response = new FeedlyTokenResponse();
+        response.setAccessToken("token" + refreshes.incrementAndGet());
+        response.setExpiresInSeconds(TimeUnit.HOURS.toSeconds(2));
+        return response;
+      }
+    };
+  }
+}
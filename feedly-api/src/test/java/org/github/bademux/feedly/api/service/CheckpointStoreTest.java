@@ -0,0 +1,158 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.client.util.Clock;
+import com.google.api.client.util.store.DataStore;
+
+import org.github.bademux.feedly.api.model.Subscription;
+import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CheckpointStoreTest {
+
+  private static final String STREAM = "feed/test";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private long now = 100000;
+
+  private final List<String> continuations = new ArrayList<String>();
+
+  private int failAt = -1;
+
+  @Test
+  public void testAtomicFileDataStore() throws IOException {
+    File dir = folder.getRoot();
+    DataStore<String> store = new AtomicFileDataStoreFactory(dir).getDataStore("test");
+    store.set("a", "1").set("b/c", "2").set("a", "3").delete("b/c");
+
+    File storeDir = new File(dir, "test");
+    new FileOutputStream(new File(storeDir, "torn.tmp")).close();
+    DataStore<String> reopened = new AtomicFileDataStoreFactory(dir).getDataStore("test");
+    assertEquals("Wrong keys", 1, reopened.size());
+    assertEquals("Wrong value", "3", reopened.get("a"));
+    assertNull("Deleted key", reopened.get("b/c"));
+    assertFalse("Temporary file should be removed", new File(storeDir, "torn.tmp").exists());
+  }
+
+  @Test
+  public void testCrawlWatermarks() throws IOException {
+    CheckpointStore checkpoints = newCheckpointStore();
+    CheckpointStore.Checkpoint checkpoint = checkpoints.begin(STREAM);
+    assertTrue("Crawl should be in progress", checkpoint.isInProgress());
+    assertNull("First crawl should get all entries", checkpoint.getNewerThan());
+
+    checkpoints.advance(STREAM, "1");
+    assertEquals("Interrupted crawl should resume", "1",
+                 checkpoints.begin(STREAM).getContinuation());
+
+    checkpoints.complete(STREAM);
+    now += 1000;
+    checkpoint = checkpoints.begin(STREAM);
+    assertNull("New crawl should start from the first page", checkpoint.getContinuation());
+    assertEquals("New crawl should be newer than the previous one",
+                 Long.valueOf(100000 - CheckpointStore.DEFAULT_OVERLAP),
+                 checkpoint.getNewerThan());
+  }
+
+  @Test
+  public void testPaginatorResumesAfterRestart() throws IOException {
+    Feedly service = newService(3);
+    List<String> ids = new ArrayList<String>();
+    failAt = 2;
+    try {
+      crawl(service, newCheckpointStore(), ids);
+      fail("Failed page should be reported");
+    } catch (Paginator.FetchException e) {
+      assertEquals("Wrong ids before failure", Arrays.asList("0-a", "0-b", "1-a", "1-b"), ids);
+    }
+
+    failAt = -1;
+    continuations.clear();
+    CheckpointStore checkpoints = newCheckpointStore();
+    crawl(service, checkpoints, ids);
+    assertEquals("Only the failed page should be fetched", Arrays.asList("2"), continuations);
+    assertEquals("Wrong ids", Arrays.asList("0-a", "0-b", "1-a", "1-b", "2-a", "2-b"), ids);
+    assertFalse("Crawl should be completed", checkpoints.get(STREAM).isInProgress());
+  }
+
+  private void crawl(Feedly service, CheckpointStore checkpoints, List<String> ids)
+      throws IOException {
+    CheckpointStore.Checkpoint checkpoint = checkpoints.begin(STREAM);
+    Feedly.Streams.Ids request = service.streams().ids(new Subscription("test"))
+        .setNewerThan(checkpoint.getNewerThan()).setContinuation(checkpoint.getContinuation());
+    for (String id : request.paginate().setPrefetchDepth(0).setCheckpoint(checkpoints, STREAM)) {
+      ids.add(id);
+    }
+  }
+
+  /** Returns a store over a new factory, as if the process was restarted. */
+  private CheckpointStore newCheckpointStore() throws IOException {
+    return new CheckpointStore(new AtomicFileDataStoreFactory(folder.getRoot()))
+        .setClock(new Clock() {
+          public long currentTimeMillis() { return now; }
+        });
+  }
+
+  private Feedly newService(final int pages) {
+    MockHttpTransport transport = new MockHttpTransport() {
+      @Override
+      public LowLevelHttpRequest buildRequest(String method, String url) throws IOException {
+        Object continuation = new GenericUrl(url).getFirst("continuation");
+        if (continuation != null) {
+          continuations.add(continuation.toString());
+        }
+        int page = continuation == null ? 0 : Integer.parseInt(continuation.toString());
+        MockLowLevelHttpResponse response = new MockLowLevelHttpResponse()
+            .setContentType("application/json");
+        if (page == failAt) {
+          response.setStatusCode(500).setContent("{}");
+        } else {
+          response.setContent("{\"ids\":[\"" + page + "-a\",\"" + page + "-b\"]"
+                              + (page + 1 < pages ? ",\"continuation\":\"" + (page + 1) + '"'
+                                                  : "") + '}');
+        }
+        return new MockLowLevelHttpRequest(url).setResponse(response);
+      }
+    };
+    return new Feedly(transport, new GsonFactory(), new FeedlyCredential());
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.client.util.Clock;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import static org.github.bademux.feedly.api.service.MockServices.newBuilder;
+import static org.github.bademux.feedly.api.service.MockServices.newTransport;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class CircuitBreakerTest {
+
+  private static final String COUNTS = "GET markers/counts";
+
+  private long now = 1000;
+
+  private int requests;
+
+  private int statusCode = 500;
+
+  private final CircuitBreaker breaker = new CircuitBreaker().setWindow(4, 4)
+      .setHalfOpenCalls(2).setOpenDuration(5000).setClock(new Clock() {
+        public long currentTimeMillis() { return now; }
+      });
+
+  @Test
+  public void testOpensOnFailures() throws IOException {
+    Feedly service = newService();
+    for (int i = 0; i < 4; i++) {
+      assertEquals("Circuit should be closed", CircuitBreaker.State.CLOSED,
+                   breaker.getState(COUNTS));
+      executeFailing(service, HttpResponseException.class);
+    }
+    assertEquals("Circuit should be open", CircuitBreaker.State.OPEN, breaker.getState(COUNTS));
+
+    now += 1000;
+    CircuitBreakerOpenException e = executeFailing(service, CircuitBreakerOpenException.class);
+    assertEquals("Request shouldn't be sent", 4, requests);
+    assertEquals("Wrong endpoint", COUNTS, e.getEndpoint());
+    assertEquals("Wrong retry after", 4000, e.getRetryAfter());
+    assertEquals("Other endpoint should be closed", CircuitBreaker.State.CLOSED,
+                 breaker.getState("GET profile"));
+  }
+
+  @Test
+  public void testStreamedRequestsPassCircuit() throws IOException {
+    Feedly service = newService();
+    for (int i = 0; i < 4; i++) {
+      try {
+        service.markers().counts().executeAsInputStream();
+        fail("Request should fail");
+      } catch (HttpResponseException e) {
+        // expected
+      }
+    }
+    assertEquals("Circuit should be open", CircuitBreaker.State.OPEN, breaker.getState(COUNTS));
+    try {
+      service.markers().counts().executeAndDownloadTo(new ByteArrayOutputStream());
+      fail("Circuit should be open");
+    } catch (CircuitBreakerOpenException e) {
+      assertEquals("Request shouldn't be sent", 4, requests);
+    }
+  }
+
+  @Test
+  public void testHandlerErrorsKeepCircuitClosed() throws IOException {
+    statusCode = 200;
+    Feedly service = newService();
+    for (int i = 0; i < 8; i++) {
+      try {
+        service.markers().counts().executeAndDownloadTo(new OutputStream() {
+          @Override
+          public void write(int b) throws IOException {
+            throw new IOException("Disk full");
+          }
+        });
+        fail("Handler should fail");
+      } catch (IOException e) {
+        assertEquals("Wrong exception", "Disk full", e.getMessage());
+      }
+    }
+    assertEquals("Circuit should be closed", CircuitBreaker.State.CLOSED,
+                 breaker.getState(COUNTS));
+  }
+
+  @Test
+  public void testClientErrorsKeepCircuitClosed() throws IOException {
+    statusCode = 404;
+    Feedly service = newService();
+    for (int i = 0; i < 8; i++) {
+      executeFailing(service, HttpResponseException.class);
+    }
+    assertEquals("Circuit should be closed", CircuitBreaker.State.CLOSED,
+                 breaker.getState(COUNTS));
+  }
+
+  @Test
+  public void testHalfOpenRecovery() throws IOException {
+    Feedly service = newService();
+    for (int i = 0; i < 4; i++) {
+      executeFailing(service, HttpResponseException.class);
+    }
+    now += 5000;
+    assertEquals("Circuit should be half-open", CircuitBreaker.State.HALF_OPEN,
+                 breaker.getState(COUNTS));
+
+    executeFailing(service, HttpResponseException.class);
+    statusCode = 200;
+    service.markers().counts().execute();
+    assertEquals("Failed probe should open the circuit", CircuitBreaker.State.OPEN,
+                 breaker.getState(COUNTS));
+
+    now += 5000;
+    service.markers().counts().execute();
+    service.markers().counts().execute();
+    assertEquals("Passed probes should close the circuit", CircuitBreaker.State.CLOSED,
+                 breaker.getState(COUNTS));
+  }
+
+  @Test
+  public void testHalfOpenLimitsProbes() throws IOException {
+    for (int i = 0; i < 4; i++) {
+      breaker.onComplete(COUNTS, 0, new IOException());
+    }
+    now += 5000;
+    breaker.acquire(COUNTS);
+    breaker.acquire(COUNTS);
+    try {
+      breaker.acquire(COUNTS);
+      fail("Only two probes should be let through");
+    } catch (CircuitBreakerOpenException e) {
+      assertEquals("Wrong retry after", 0, e.getRetryAfter());
+    }
+  }
+
+  @Test
+  public void testOpensOnSlowCalls() {
+    breaker.setSlowCall(1000, 75);
+    long slow = TimeUnit.SECONDS.toNanos(2);
+    breaker.onComplete(COUNTS, slow, null);
+    breaker.onComplete(COUNTS, slow, null);
+    breaker.onComplete(COUNTS, 0, null);
+    breaker.onComplete(COUNTS, slow, null);
+    assertEquals("Slow calls should open the circuit", CircuitBreaker.State.OPEN,
+                 breaker.getState(COUNTS));
+  }
+
+  private <E extends IOException> E executeFailing(Feedly service, Class<E> expected)
+      throws IOException {
+    try {
+      service.markers().counts().execute();
+      fail("Request should fail");
+      return null;
+    } catch (IOException e) {
+      assertEquals("Wrong exception", expected, e.getClass());
+      return expected.cast(e);
+    }
+  }
+
+  private Feedly newService() {
+    return newBuilder(newTransport(new MockServices.Responder() {
+      public MockLowLevelHttpResponse respond(String method, String url) {
+        requests++;
+        return new MockLowLevelHttpResponse().setStatusCode(statusCode)
+            .setContentType("application/json").setContent("{}");
+      }
+    })).setCircuitBreaker(breaker).build();
+  }
+}
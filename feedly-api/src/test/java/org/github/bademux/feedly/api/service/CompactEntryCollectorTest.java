@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import org.github.bademux.feedly.api.model.CompactEntry;
+import org.github.bademux.feedly.api.model.Entry;
+import org.github.bademux.feedly.api.model.Subscription;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.github.bademux.feedly.api.service.MockServices.newService;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CompactEntryCollectorTest {
+
+  private static final String CONTENTS = "{\"id\":\"feed/test\",\"items\":["
+      + "{\"id\":\"a\",\"crawled\":1,\"unread\":true,\"origin\":{\"streamId\":\"feed/test\"},"
+      + "\"categories\":[{\"id\":\"user/1/category/tech\",\"label\":\"tech\"}],"
+      + "\"content\":{\"content\":\"<p>\\u00e9</p>\",\"direction\":\"rtl\"}},"
+      + "{\"id\":\"b\",\"origin\":{\"streamId\":\"feed/test\"},"
+      + "\"categories\":[{\"id\":\"user/1/category/tech\",\"label\":\"tech\"}]}]}";
+
+  @Test
+  public void testCompactDecoding() throws IOException {
+    Feedly service = newService(200, CONTENTS);
+    CompactEntryCollector collector = new CompactEntryCollector();
+
+    service.streams().contents(new Subscription("test")).executeAndHandle(collector);
+
+    List<CompactEntry> entries = collector.getEntries();
+    assertEquals(2, entries.size());
+    CompactEntry a = entries.get(0), b = entries.get(1);
+    assertEquals(1, a.getCrawled());
+    assertEquals(0, b.getCrawled());
+    assertEquals(Boolean.TRUE, a.getUnread());
+    assertNull("Unread is unknown", b.getUnread());
+    assertEquals("<p>\u00e9</p>", a.getContent());
+    assertEquals(Entry.Content.Direction.RTL, a.getContentDirection());
+    assertSame("Origin should be shared", a.getOrigin(), b.getOrigin());
+    assertSame("Category should be shared", a.getCategories().get(0), b.getCategories().get(0));
+  }
+
+  @Test
+  public void testToEntry() throws IOException {
+    Feedly service = newService(200, CONTENTS);
+    CompactEntryCollector collector = new CompactEntryCollector();
+
+    service.streams().contents(new Subscription("test")).executeAndHandle(collector);
+
+    Entry entry = collector.getEntries().get(0).toEntry();
+    assertEquals("a", entry.getId());
+    assertEquals(Long.valueOf(1), entry.getCrawled());
+    assertEquals(Boolean.TRUE, entry.getUnread());
+    assertEquals("feed/test", entry.getOrigin().getStreamId());
+    assertEquals("<p>\u00e9</p>", entry.getContent().getContent());
+    assertEquals(Entry.Content.Direction.RTL, entry.getContent().getDirection());
+    assertEquals("tech", entry.getCategories().get(0).getLabel());
+    assertNull(collector.getEntries().get(1).toEntry().getCrawled());
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import org.github.bademux.feedly.api.model.EntriesResponse;
+import org.github.bademux.feedly.api.model.Entry;
+import org.github.bademux.feedly.api.model.Subscription;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.github.bademux.feedly.api.service.MockServices.newService;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EntriesParserTest {
+
+  private static final String CONTENTS = "{\"id\":\"feed/test\",\"continuation\":\"next\","
+      + "\"items\":[{\"id\":\"a\",\"crawled\":1,\"origin\":{\"streamId\":\"feed/test\"}},"
+      + "{\"id\":\"b\",\"unread\":true,\"content\":{\"content\":\"<p/>\",\"direction\":\"ltr\"}}],"
+      + "\"updated\":2}";
+
+  @Test
+  public void testExecuteAndHandleResponse() throws IOException {
+    Feedly service = newService(200, CONTENTS);
+    final List<Entry> entries = new ArrayList<Entry>();
+
+    EntriesResponse response = service.streams().contents(new Subscription("test"))
+        .executeAndHandle(new EntryHandler() {
+          public void handle(Entry entry) { entries.add(entry); }
+        });
+
+    assertEquals("next", response.getContinuation());
+    assertEquals(Long.valueOf(2), response.getUpdated());
+    assertNull("Items should be streamed", response.items());
+    assertEquals(2, entries.size());
+    assertEquals("feed/test", entries.get(0).getOrigin().getStreamId());
+    assertEquals(Long.valueOf(1), entries.get(0).getCrawled());
+    assertEquals(Entry.Content.Direction.LTR, entries.get(1).getContent().getDirection());
+  }
+
+  @Test
+  public void testExecuteAndHandleArray() throws IOException {
+    Feedly service = newService(200, "[{\"id\":\"a\"},{\"id\":\"b\"}]");
+    final List<String> ids = new ArrayList<String>();
+
+    service.entries().list(Arrays.asList("a", "b")).executeAndHandle(new EntryHandler() {
+      public void handle(Entry entry) { ids.add(entry.getId()); }
+    });
+
+    assertEquals(Arrays.asList("a", "b"), ids);
+  }
+
+  @Test
+  public void testProjection() throws IOException {
+    Feedly service = newService(200, CONTENTS);
+
+    EntriesResponse response = service.streams().contents(new Subscription("test"))
+        .setProjection(Arrays.asList("id", "origin.streamId", "unread")).execute();
+
+    assertEquals("next", response.getContinuation());
+    List<Entry> entries = response.items();
+    assertEquals(2, entries.size());
+    assertEquals("a", entries.get(0).getId());
+    assertNull("Not projected key should be skipped", entries.get(0).getCrawled());
+    assertEquals("feed/test", entries.get(0).getOrigin().getStreamId());
+    assertEquals(Boolean.TRUE, entries.get(1).getUnread());
+    assertNull("Not projected key should be skipped", entries.get(1).getContent());
+    assertTrue("Unknown keys should be skipped", entries.get(1).getUnknownKeys().isEmpty());
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.JsonObjectParser;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.client.util.GenericData;
+
+import org.github.bademux.feedly.api.model.Entry;
+import org.github.bademux.feedly.api.model.Subscription;
+import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EntryFetcherTest {
+
+  private static final int IDS = 25;
+
+  private final List<Integer> chunkSizes = Collections.synchronizedList(new ArrayList<Integer>());
+
+  private final AtomicInteger running = new AtomicInteger();
+
+  private final AtomicInteger maxRunning = new AtomicInteger();
+
+  private final Feedly service = new Feedly(new MockHttpTransport() {
+    @Override
+    public LowLevelHttpRequest buildRequest(final String method, final String url) {
+      return new MockLowLevelHttpRequest(url) {
+        @Override
+        public LowLevelHttpResponse execute() throws IOException {
+          StringBuilder content = new StringBuilder();
+          if (url.contains("/ids")) {
+            content.append("{\"ids\":[");
+            for (int i = 0; i < IDS; i++) {
+              content.append(i == 0 ? "" : ",").append("\"e").append(i).append('"');
+            }
+            content.append("]}");
+          } else {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            getStreamingContent().writeTo(body);
+            List<?> ids = (List<?>) new JsonObjectParser(new GsonFactory()).parseAndClose(
+                new StringReader(body.toString("UTF-8")), GenericData.class).get("ids");
+            chunkSizes.add(ids.size());
+            track();
+            content.append('[');
+            for (Object id : ids) {
+              content.append(content.length() == 1 ? "" : ",")
+                  .append("{\"id\":\"").append(id).append("\"}");
+            }
+            content.append(']');
+          }
+          return new MockLowLevelHttpResponse().setContentType("application/json")
+              .setContent(content.toString());
+        }
+      };
+    }
+  }, new GsonFactory(), new FeedlyCredential());
+
+  @Test
+  public void testFetchKeepsParallelism() throws IOException {
+    int count = new EntryFetcher(service).setChunkSize(5).setParallelism(2)
+        .fetch(Arrays.asList("e1", "e2", "e3", "e4", "e5", "e6", "e7", "e8", "e9", "e10", "e11"),
+               null, new EntryHandler() {
+          public void handle(Entry entry) { }
+        });
+
+    assertEquals(11, count);
+    assertEquals("Trailing chunk should wait for a free slot", 2, maxRunning.get());
+  }
+
+  @Test
+  public void testFetchInterrupted() throws IOException {
+    Thread.currentThread().interrupt();
+    try {
+      new EntryFetcher(service).setChunkSize(5).setParallelism(2)
+          .fetch(Arrays.asList("e1", "e2", "e3", "e4", "e5", "e6", "e7", "e8", "e9", "e10", "e11"),
+                 null, new EntryHandler() {
+            public void handle(Entry entry) { }
+          });
+      fail("Interrupted fetch should fail");
+    } catch (InterruptedIOException expected) {
+      assertTrue("Interrupt should be kept", Thread.currentThread().isInterrupted());
+    } finally {
+      Thread.interrupted();
+    }
+  }
+
+  @Test
+  public void testFetchMissing() throws IOException {
+    Set<String> known = new HashSet<String>();
+    for (int i = 0; i < IDS; i += 2) {
+      known.add("e" + i);
+    }
+    final List<String> fetched = new ArrayList<String>();
+
+    int count = new EntryFetcher(service).setChunkSize(5).setParallelism(2)
+        .fetch(new Subscription("a"), known, new EntryHandler() {
+          public void handle(Entry entry) { fetched.add(entry.getId()); }
+        });
+
+    assertEquals(12, count);
+    assertEquals(12, fetched.size());
+    for (int i = 0; i < fetched.size(); i++) {
+      assertEquals("Entries should keep the order of ids", "e" + (i * 2 + 1), fetched.get(i));
+    }
+    Collections.sort(chunkSizes);
+    assertEquals(Arrays.asList(2, 5, 5), chunkSizes);
+  }
+
+  /** Keeps the request in flight for a while, recording the number of parallel requests. */
+  private void track() throws IOException {
+    int current = running.incrementAndGet();
+    try {
+      for (int max = maxRunning.get(); current > max; max = maxRunning.get()) {
+        maxRunning.compareAndSet(max, current);
+      }
+      Thread.sleep(100);
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    } finally {
+      running.decrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+
+import org.github.bademux.feedly.api.model.UnreadResponse;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.github.bademux.feedly.api.service.MockServices.newTransport;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class HedgingPolicyTest {
+
+  private static final String COUNTS = "GET markers/counts";
+
+  private final AtomicInteger sent = new AtomicInteger();
+
+  private final AtomicBoolean slowNext = new AtomicBoolean();
+
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  private final HedgingPolicy policy = new HedgingPolicy().setSamples(5, 100).setMinDelay(50);
+
+  @After
+  public void tearDown() {
+    release.countDown();
+  }
+
+  @Test
+  public void testHedgeWins() throws IOException {
+    Feedly service = newService();
+    warmUp(service);
+
+    slowNext.set(true);
+    assertNotNull("Hedge should respond", service.markers().counts().execute());
+    assertEquals("Hedge should be sent", 7, sent.get());
+    assertEquals("Wrong hedge count", 1, policy.getHedgeCount());
+    assertEquals("Wrong hedge win count", 1, policy.getHedgeWinCount());
+  }
+
+  @Test(timeout = 10000)
+  public void testHedgeWinsOverBlockedRead() throws IOException {
+    Feedly service = newService();
+    warmUp(service);
+
+    slowNext.set(true);
+    long started = System.nanoTime();
+    assertNotNull("Hedge should respond", service.markers().counts().execute());
+    assertTrue("Caller shouldn't wait for the blocked primary",
+               System.nanoTime() - started < TimeUnit.SECONDS.toNanos(2));
+    assertEquals("Wrong hedge win count", 1, policy.getHedgeWinCount());
+  }
+
+  @Test(timeout = 10000)
+  public void testPrimaryFallsBackToCallingThread() throws Exception {
+    RequestThrottle throttle = new RequestThrottle();
+    throttle.getGlobalLimit().setMaxInFlight(1);
+    final Queue<Runnable> queued = new LinkedList<Runnable>();
+    Feedly service = newBuilder().setRequestThrottle(throttle).setExecutor(new Executor() {
+      public void execute(Runnable command) {
+        queued.add(command);
+      }
+    }).build();
+    for (int i = 0; i < 5; i++) {
+      service.markers().counts().execute();
+    }
+
+    Future<UnreadResponse> future = service.markers().counts().executeAsync();
+    queued.remove().run();
+
+    assertNotNull("Primary shouldn't wait for the executor", future.get());
+    assertEquals("Wrong number of requests", 6, sent.get());
+    while (!queued.isEmpty()) {
+      queued.remove().run();
+    }
+    assertEquals("Primary shouldn't be sent twice", 6, sent.get());
+    assertEquals("Permit should be released", 0, throttle.getGlobalLimit().getInFlight());
+  }
+
+  @Test
+  public void testBudgetLimitsHedges() throws IOException {
+    policy.setBudget(0, 0);
+    Feedly service = newService();
+    warmUp(service);
+
+    slowNext.set(true);
+    long started = System.nanoTime();
+    release.countDown();
+    service.markers().counts().execute();
+    assertTrue("Slow response should be awaited",
+               System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(50));
+    assertEquals("Hedge shouldn't be sent", 6, sent.get());
+    assertEquals("Wrong hedge count", 0, policy.getHedgeCount());
+  }
+
+  @Test
+  public void testNoHedgeWithoutSamples() throws IOException {
+    Feedly service = newService();
+    assertEquals("Endpoint shouldn't be hedged yet", -1, policy.getDelay(COUNTS));
+    for (int i = 0; i < 4; i++) {
+      service.markers().counts().execute();
+    }
+    assertEquals("Endpoint shouldn't be hedged yet", -1, policy.getDelay(COUNTS));
+    service.markers().counts().execute();
+    assertEquals("Delay should be at least the minimum", TimeUnit.MILLISECONDS.toNanos(50),
+                 policy.getDelay(COUNTS));
+  }
+
+  @Test
+  public void testIdempotent() throws IOException {
+    Feedly service = newService();
+    assertTrue("GET should be idempotent", service.markers().counts().isIdempotent());
+    assertTrue(".mget should be idempotent",
+               service.entries().list(Collections.singleton("entry")).isIdempotent());
+    assertFalse("POST shouldn't be idempotent",
+                service.opml().importSubscription(new ByteArrayInputStream(new byte[0]))
+                    .isIdempotent());
+  }
+
+  private void warmUp(Feedly service) throws IOException {
+    for (int i = 0; i < 5; i++) {
+      service.markers().counts().execute();
+    }
+  }
+
+  private Feedly newService() {
+    return newBuilder().build();
+  }
+
+  private Feedly.Builder newBuilder() {
+    return MockServices.newBuilder(newTransport(new MockServices.Responder() {
+      public MockLowLevelHttpResponse respond(String method, String url) throws IOException {
+        sent.incrementAndGet();
+        if (slowNext.compareAndSet(true, false)) {
+          block();
+        }
+        return new MockLowLevelHttpResponse().setContentType("application/json")
+            .setContent("{\"unreadcounts\":[]}");
+      }
+    })).setHedgingPolicy(policy);
+  }
+
+  /** Blocks like a socket read until released and 100ms more, interrupts are ignored. */
+  private void block() {
+    boolean interrupted = false;
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (release.getCount() > 0 && System.nanoTime() < deadline) {
+      try {
+        release.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+    for (long now = System.nanoTime(); now < end; now = System.nanoTime()) {
+      try {
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(end - now) + 1);
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
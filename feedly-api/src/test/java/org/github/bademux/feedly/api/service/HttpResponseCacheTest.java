@@ -0,0 +1,247 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.client.util.store.MemoryDataStoreFactory;
+
+import org.github.bademux.feedly.api.model.Category;
+import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class HttpResponseCacheTest {
+
+  private static final String CATEGORIES = "[{\"id\":\"user/u/category/tech\",\"label\":\"tech\"}]";
+
+  @Test
+  public void testRevalidationByETag() throws Exception {
+    HttpResponseCache cache = new HttpResponseCache();
+    RecordingTransport transport = new RecordingTransport();
+    Feedly service = newService(transport, cache);
+
+    transport.respond(200, CATEGORIES).etag = "\"v1\"";
+    assertEquals("tech", service.categories().list().execute().get(0).getLabel());
+
+    transport.respond(304, "");
+    List<Category> categories = service.categories().list().execute();
+    assertEquals("Cached content should be reused", "tech", categories.get(0).getLabel());
+
+    assertEquals("\"v1\"", transport.ifNoneMatch.get(1));
+    assertEquals(1, cache.getMissCount());
+    assertEquals(1, cache.getRevalidationCount());
+  }
+
+  @Test
+  public void testCacheBusterIsNotPartOfKey() throws Exception {
+    HttpResponseCache cache = new HttpResponseCache();
+    RecordingTransport transport = new RecordingTransport();
+    Feedly service = newService(transport, cache);
+
+    transport.respond(200, CATEGORIES).lastModified = "Mon, 02 Dec 2013 10:00:00 GMT";
+    service.categories().list().execute();
+    Thread.sleep(2);
+    transport.respond(304, "");
+    service.categories().list().execute();
+
+    assertFalse("Urls should differ by ck", transport.urls.get(0).equals(transport.urls.get(1)));
+    assertEquals("Mon, 02 Dec 2013 10:00:00 GMT", transport.ifModifiedSince.get(1));
+    assertEquals(1, cache.getRevalidationCount());
+  }
+
+  @Test
+  public void testFreshResponseIsServedWithoutRequest() throws Exception {
+    HttpResponseCache cache = new HttpResponseCache();
+    RecordingTransport transport = new RecordingTransport();
+    Feedly service = newService(transport, cache);
+
+    transport.respond(200, CATEGORIES).cacheControl = "private, max-age=600";
+    service.categories().list().execute();
+    assertEquals("tech", service.categories().list().execute().get(0).getLabel());
+
+    assertEquals("Fresh response should not be requested", 1, transport.urls.size());
+    assertEquals(1, cache.getHitCount());
+  }
+
+  @Test
+  public void testFreshResponseIsNotGated() throws Exception {
+    HttpResponseCache cache = new HttpResponseCache();
+    RecordingTransport transport = new RecordingTransport();
+    RequestThrottle throttle = new RequestThrottle();
+    CircuitBreaker breaker = new CircuitBreaker().setWindow(4, 3).setFailureRateThreshold(60);
+    Feedly service = new Feedly.Builder(transport, new GsonFactory(), new FeedlyCredential())
+        .setResponseCache(cache).setRequestThrottle(throttle).setCircuitBreaker(breaker).build();
+
+    transport.respond(200, CATEGORIES).cacheControl = "private, max-age=600";
+    for (int i = 0; i < 3; i++) {
+      service.categories().list().execute();
+    }
+
+    assertEquals("Fresh responses shouldn't take permits", 1,
+                 throttle.getGlobalLimit().getAcquiredCount());
+    transport.respond(500, "{}");
+    for (int i = 0; i < 2; i++) {
+      try {
+        service.categories().list().setUseResponseCache(false).execute();
+        fail("Error response should be thrown");
+      } catch (HttpResponseException e) {
+        assertEquals(500, e.getStatusCode());
+      }
+    }
+    assertEquals("Fresh responses shouldn't count as calls", CircuitBreaker.State.OPEN,
+                 breaker.getState("GET categories"));
+  }
+
+  @Test
+  public void testNoStoreIsNotCached() throws Exception {
+    HttpResponseCache cache = new HttpResponseCache();
+    RecordingTransport transport = new RecordingTransport();
+    Feedly service = newService(transport, cache);
+
+    MockResponse response = transport.respond(200, CATEGORIES);
+    response.etag = "\"v1\"";
+    response.cacheControl = "no-store";
+    service.categories().list().execute();
+    service.categories().list().execute();
+
+    assertNull("No-store response should not be revalidated", transport.ifNoneMatch.get(1));
+    assertEquals(2, cache.getMissCount());
+  }
+
+  @Test
+  public void testOnlyOptedInRequestsAreCached() throws Exception {
+    HttpResponseCache cache = new HttpResponseCache();
+    RecordingTransport transport = new RecordingTransport();
+    Feedly service = newService(transport, cache);
+
+    transport.respond(200, "{\"unreadcounts\":[]}").cacheControl = "max-age=600";
+    service.markers().counts().execute();
+    service.markers().counts().execute();
+
+    assertEquals(2, transport.urls.size());
+    assertEquals(0, cache.getMissCount());
+  }
+
+  @Test
+  public void testDiskTier() throws Exception {
+    MemoryDataStoreFactory dataStoreFactory = new MemoryDataStoreFactory();
+    RecordingTransport transport = new RecordingTransport();
+
+    transport.respond(200, CATEGORIES).etag = "\"v1\"";
+    newService(transport, new HttpResponseCache(1, dataStoreFactory)).categories().list()
+        .execute();
+
+    transport.respond(304, "");
+    HttpResponseCache cache = new HttpResponseCache(1, dataStoreFactory);
+    List<Category> categories = newService(transport, cache).categories().list().execute();
+
+    assertEquals("tech", categories.get(0).getLabel());
+    assertEquals(1, cache.getRevalidationCount());
+  }
+
+  @Test
+  public void testErrorResponseIsThrown() throws Exception {
+    RecordingTransport transport = new RecordingTransport();
+    Feedly service = newService(transport, new HttpResponseCache());
+
+    transport.respond(500, "{}");
+    try {
+      service.categories().list().execute();
+      fail("Error response should be thrown");
+    } catch (HttpResponseException e) {
+      assertEquals(500, e.getStatusCode());
+    }
+  }
+
+  private static Feedly newService(MockHttpTransport transport, HttpResponseCache cache) {
+    return new Feedly.Builder(transport, new GsonFactory(), new FeedlyCredential())
+        .setResponseCache(cache).build();
+  }
+
+  private static class MockResponse {
+
+    int statusCode;
+
+    String content;
+
+    String etag;
+
+    String lastModified;
+
+    String cacheControl;
+  }
+
+  /** Serves the last configured response and records conditional headers. */
+  private static class RecordingTransport extends MockHttpTransport {
+
+    final List<String> urls = new ArrayList<String>();
+
+    final List<String> ifNoneMatch = new ArrayList<String>();
+
+    final List<String> ifModifiedSince = new ArrayList<String>();
+
+    private MockResponse response;
+
+    MockResponse respond(int statusCode, String content) {
+      response = new MockResponse();
+      response.statusCode = statusCode;
+      response.content = content;
+      return response;
+    }
+
+    @Override
+    public LowLevelHttpRequest buildRequest(String method, final String url) throws IOException {
+      final MockResponse current = response;
+      return new MockLowLevelHttpRequest(url) {
+        @Override
+        public LowLevelHttpResponse execute() throws IOException {
+          urls.add(url);
+          ifNoneMatch.add(getFirstHeaderValue("If-None-Match"));
+          ifModifiedSince.add(getFirstHeaderValue("If-Modified-Since"));
+          MockLowLevelHttpResponse result = new MockLowLevelHttpResponse()
+              .setStatusCode(current.statusCode).setContentType("application/json")
+              .setContent(current.content);
+          if (current.etag != null) {
+            result.addHeader("ETag", current.etag);
+          }
+          if (current.lastModified != null) {
+            result.addHeader("Last-Modified", current.lastModified);
+          }
+          if (current.cacheControl != null) {
+            result.addHeader("Cache-Control", current.cacheControl);
+          }
+          return result;
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.client.util.store.MemoryDataStoreFactory;
+
+import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MarkerBatcherTest {
+
+  private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+  private volatile int statusCode = 200;
+
+  private final Feedly service = new Feedly(new MockHttpTransport() {
+    @Override
+    public LowLevelHttpRequest buildRequest(final String method, final String url) {
+      return new MockLowLevelHttpRequest(url) {
+        @Override
+        public LowLevelHttpResponse execute() throws IOException {
+          ByteArrayOutputStream content = new ByteArrayOutputStream();
+          if (getStreamingContent() != null) {
+            getStreamingContent().writeTo(content);
+          }
+          requests.add(method + ' ' + url.substring(url.indexOf("/v3/") + 4).replaceAll(
+              "[?&]ck=\\d+", "") + ' ' + content.toString("UTF-8"));
+          return new MockLowLevelHttpResponse().setStatusCode(statusCode)
+              .setContentType("application/json").setContent("{}");
+        }
+      };
+    }
+  }, new GsonFactory(), new FeedlyCredential());
+
+  @Test
+  public void testCoalesce() throws IOException {
+    MarkerBatcher batcher = new MarkerBatcher(service).setFlushDelay(0, TimeUnit.MILLISECONDS);
+    batcher.markAsRead("a");
+    batcher.keepUnread("a");
+    batcher.markAsRead("a", "b");
+    batcher.keepUnread("c");
+    batcher.tag(Arrays.asList("a"), Arrays.asList("user/u/tag/t"));
+    batcher.untag(Arrays.asList("a"), Arrays.asList("user/u/tag/t"));
+    assertEquals(4, batcher.getPendingCount());
+
+    batcher.flush();
+
+    assertEquals(Arrays.asList(
+        "POST markers {\"type\":\"entries\",\"action\":\"markAsRead\",\"entryIds\":[\"a\",\"b\"]}",
+        "POST markers {\"type\":\"entries\",\"action\":\"keepUnread\",\"entryIds\":[\"c\"]}",
+        "DELETE tags/user%2Fu%2Ftag%2Ft/a "), requests);
+    assertEquals(0, batcher.getPendingCount());
+  }
+
+  @Test
+  public void testChunks() throws IOException {
+    MarkerBatcher batcher = new MarkerBatcher(service).setFlushDelay(0, TimeUnit.MILLISECONDS)
+        .setMaxPending(Integer.MAX_VALUE);
+    List<String> ids = new ArrayList<String>();
+    for (int i = 0; i < MarkerBatcher.MAX_IDS_PER_REQUEST * 2 + 1; i++) {
+      ids.add(String.valueOf(i));
+    }
+    batcher.markAsRead(ids);
+    batcher.flush();
+    assertEquals(3, requests.size());
+  }
+
+  @Test
+  public void testSpillAndRetry() throws IOException {
+    MemoryDataStoreFactory dataStoreFactory = new MemoryDataStoreFactory();
+    MarkerBatcher batcher = new MarkerBatcher(service, dataStoreFactory).setFlushDelay(0, TimeUnit.MILLISECONDS);
+    batcher.markAsRead("a");
+    statusCode = 500;
+    try {
+      batcher.flush();
+      fail("Failed flush should be reported");
+    } catch (IOException e) {
+      assertEquals("Failed operations should stay pending", 1, batcher.getPendingCount());
+    }
+
+    statusCode = 200;
+    requests.clear();
+    MarkerBatcher restored = new MarkerBatcher(service, dataStoreFactory);
+    assertEquals("Spilled operations should be restored", 1, restored.getPendingCount());
+    restored.close();
+    assertEquals(1, requests.size());
+    assertTrue(requests.get(0).contains("\"entryIds\":[\"a\"]"));
+    assertTrue(dataStoreFactory.getDataStore(MarkerBatcher.DEFAULT_DATA_STORE_ID).isEmpty());
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+
+import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MetricsRegistryTest {
+
+  private static final String COUNTS = "{\"unreadcounts\":[{\"id\":\"feed/a\",\"count\":3}]}";
+
+  @Test
+  public void testHistogramPercentiles() {
+    Histogram histogram = new Histogram();
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000L);
+    }
+    assertEquals(1000, histogram.getCount());
+    assertEquals(1000000, histogram.getMax());
+    assertEquals(500500, histogram.getMean(), 0.001);
+    assertWithinError(500000, histogram.getValueAtPercentile(50));
+    assertWithinError(990000, histogram.getValueAtPercentile(99));
+    assertEquals(1000000, histogram.getValueAtPercentile(100));
+    assertEquals(0, new Histogram().getValueAtPercentile(50));
+  }
+
+  @Test
+  public void testHistogramBuckets() {
+    for (long value = 0; value < 1 << 20; value = value * 3 / 2 + 1) {
+      int index = Histogram.indexOf(value);
+      assertTrue("Value above its bucket: " + value,
+                 value <= Histogram.highestEquivalentValue(index));
+      assertTrue("Value below its bucket: " + value,
+                 index == 0 || value > Histogram.highestEquivalentValue(index - 1));
+    }
+    Histogram histogram = new Histogram();
+    histogram.record(Long.MAX_VALUE);
+    assertEquals(Histogram.MAX_VALUE, histogram.getMax());
+  }
+
+  @Test
+  public void testRequestsAreMeasured() throws Exception {
+    MetricsRegistry metrics = new MetricsRegistry();
+    Feedly service = new Feedly.Builder(newTransport(200, COUNTS), new GsonFactory(),
+                                        new FeedlyCredential()).setInstrumentation(metrics).build();
+
+    service.markers().counts().execute();
+    service.markers().counts().executeAsync().get();
+
+    MetricsRegistry.EndpointMetrics counts = metrics.getEndpoint("GET markers/counts");
+    assertNotNull("Endpoint should be keyed by method and uri template", counts);
+    assertEquals(2, counts.getCount());
+    assertEquals(2, counts.getStatusCount(200));
+    assertEquals(0, counts.getErrorCount());
+    assertEquals(COUNTS.length(), counts.getResponseBytes().getMax());
+    assertTrue(counts.getLatency().getMax() > 0);
+    assertTrue(metrics.toString().startsWith("GET markers/counts count=2 errors=0"));
+  }
+
+  @Test
+  public void testStreamedRequestsAreMeasured() throws Exception {
+    MetricsRegistry metrics = new MetricsRegistry();
+    Feedly service = new Feedly.Builder(newTransport(200, COUNTS), new GsonFactory(),
+                                        new FeedlyCredential()).setInstrumentation(metrics).build();
+
+    service.markers().counts().executeUnparsed().disconnect();
+    service.markers().counts().executeAsInputStream().close();
+    service.markers().counts().executeAndDownloadTo(new ByteArrayOutputStream());
+
+    MetricsRegistry.EndpointMetrics counts = metrics.getEndpoint("GET markers/counts");
+    assertNotNull("Streamed requests should be measured", counts);
+    assertEquals(3, counts.getCount());
+    assertEquals(3, counts.getStatusCount(200));
+    assertEquals("Downloaded content should be counted", COUNTS.length(),
+                 counts.getResponseBytes().getMax());
+  }
+
+  @Test
+  public void testProjectedEntriesAreCounted() throws Exception {
+    final String entries = "[{\"id\":\"a\",\"title\":\"A\"},{\"id\":\"b\",\"title\":\"B\"}]";
+    MetricsRegistry metrics = new MetricsRegistry();
+    Feedly service = new Feedly.Builder(newTransport(200, entries), new GsonFactory(),
+                                        new FeedlyCredential()).setInstrumentation(metrics).build();
+
+    assertEquals(2, service.entries().list(Arrays.asList("a", "b"))
+        .setProjection(Arrays.asList("id")).execute().size());
+
+    MetricsRegistry.EndpointMetrics list = metrics.getEndpoint("POST entries/.mget");
+    assertEquals(entries.length(), list.getResponseBytes().getMax());
+    assertTrue("Request content should be measured", list.getRequestBytes().getMax() > 0);
+  }
+
+  @Test
+  public void testFailuresAndRetriesAreMeasured() throws Exception {
+    final AtomicInteger calls = new AtomicInteger();
+    MockHttpTransport transport = new MockHttpTransport() {
+      @Override
+      public LowLevelHttpRequest buildRequest(String method, String url) throws IOException {
+        return new MockLowLevelHttpRequest(url) {
+          @Override
+          public LowLevelHttpResponse execute() throws IOException {
+            int call = calls.incrementAndGet();
+            return new MockLowLevelHttpResponse().setStatusCode(call == 2 ? 200 : 503)
+                .setContentType("application/json").setContent(COUNTS);
+          }
+        };
+      }
+    };
+    FeedlyCredential retryOnce = new FeedlyCredential() {
+      @Override
+      public boolean handleResponse(HttpRequest request, HttpResponse response,
+                                    boolean supportsRetry) {
+        return calls.get() == 1;
+      }
+    };
+    MetricsRegistry metrics = new MetricsRegistry();
+    Feedly service = new Feedly.Builder(transport, new GsonFactory(), retryOnce)
+        .setInstrumentation(metrics).build();
+
+    service.markers().counts().execute();
+    try {
+      service.markers().counts().execute();
+      fail("Error response should be thrown");
+    } catch (HttpResponseException e) {
+      assertEquals(503, e.getStatusCode());
+    }
+
+    MetricsRegistry.EndpointMetrics counts = metrics.getEndpoint("GET markers/counts");
+    assertEquals(2, counts.getCount());
+    assertEquals(1, counts.getRetryCount());
+    assertEquals(1, counts.getErrorCount());
+    assertEquals(1, counts.getStatusCount(503));
+    assertEquals(1, counts.getStatusCount(200));
+    assertTrue(metrics.toString().contains(" status.200=1 status.503=1"));
+
+    metrics.reset();
+    assertFalse(metrics.getEndpoints().containsKey("GET markers/counts"));
+  }
+
+  private static void assertWithinError(long expected, long actual) {
+    assertEquals(expected, actual, expected / Histogram.SUB_BUCKETS);
+  }
+
+  private static MockHttpTransport newTransport(int statusCode, String content) {
+    return MockServices.newTransport(statusCode, content);
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+
+import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
+
+import java.io.IOException;
+
+/** Services over mocked transports shared by the tests of the package. */
+final class MockServices {
+
+  /** Creates the response of a request, called each time the request is sent. */
+  interface Responder {
+
+    MockLowLevelHttpResponse respond(String method, String url) throws IOException;
+  }
+
+  private MockServices() { }
+
+  static Feedly newService(int statusCode, String content) {
+    return newBuilder(newTransport(statusCode, content)).build();
+  }
+
+  static Feedly.Builder newBuilder(HttpTransport transport) {
+    return new Feedly.Builder(transport, new GsonFactory(), new FeedlyCredential());
+  }
+
+  /** Returns the transport that responds with the given JSON content to every request. */
+  static MockHttpTransport newTransport(final int statusCode, final String content) {
+    return newTransport(new Responder() {
+      public MockLowLevelHttpResponse respond(String method, String url) {
+        return new MockLowLevelHttpResponse().setStatusCode(statusCode)
+            .setContentType("application/json").setContent(content);
+      }
+    });
+  }
+
+  static MockHttpTransport newTransport(final Responder responder) {
+    return new MockHttpTransport() {
+      @Override
+      public LowLevelHttpRequest buildRequest(final String method, final String url) {
+        return new MockLowLevelHttpRequest(url) {
+          @Override
+          public LowLevelHttpResponse execute() throws IOException {
+            return responder.respond(method, url);
+          }
+        };
+      }
+    };
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.JsonObjectParser;
+import com.google.api.client.json.gson.GsonFactory;
+
+import org.github.bademux.feedly.api.model.EntriesResponse;
+import org.github.bademux.feedly.api.model.Entry;
+import org.github.bademux.feedly.api.model.IdRegistry;
+import org.github.bademux.feedly.api.model.Subscription;
+import org.github.bademux.feedly.api.model.UnreadResponse;
+import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ModelObjectParserTest {
+
+  private static final String CONTENTS = "{\"id\":\"feed/test\",\"direction\":\"ltr\","
+      + "\"continuation\":\"next\",\"self\":[{\"href\":\"http://a\"}],\"updated\":2,"
+      + "\"items\":[{\"id\":\"a\",\"crawled\":1,\"unread\":true,\"engagement\":5,"
+      + "\"origin\":{\"streamId\":\"feed/test\",\"title\":\"Test\"},\"keywords\":[\"k\"],"
+      + "\"alternate\":[{\"href\":\"http://a/1\",\"type\":\"text/html\"}],"
+      + "\"visual\":{\"url\":\"http://a/1.png\",\"width\":10},\"unknown\":{\"x\":[1]},"
+      + "\"tags\":[{\"id\":\"user/u/tag/t\",\"label\":\"t\"}],"
+      + "\"enclosure\":[{\"href\":\"http://a/1.mp3\",\"length\":42}],"
+      + "\"summary\":{\"content\":\"<p/>\",\"direction\":\"rtl\"}}]}";
+
+  private final JsonFactory jsonFactory = new GsonFactory();
+
+  @Test
+  public void testSameAsReflection() throws IOException {
+    EntriesResponse expected = new JsonObjectParser(jsonFactory)
+        .parseAndClose(new StringReader(CONTENTS), EntriesResponse.class);
+    EntriesResponse actual = new ModelObjectParser(jsonFactory)
+        .parseAndClose(new StringReader(CONTENTS), EntriesResponse.class);
+
+    assertEquals(jsonFactory.toString(expected), jsonFactory.toString(actual));
+    Entry entry = actual.items().get(0);
+    assertEquals(Entry.Content.Direction.RTL, entry.getSummary().getDirection());
+    assertEquals(Long.valueOf(42), entry.getEnclosure().get(0).getLength());
+    assertTrue("Unknown keys should be kept", entry.containsKey("unknown"));
+  }
+
+  @Test
+  public void testReflectionFreeClient() throws IOException {
+    Feedly service = new Feedly.Builder(
+        MockServices.newTransport(200, "{\"unreadcounts\":[{\"id\":\"feed/a\",\"count\":3}]}"),
+        jsonFactory, new FeedlyCredential()).setReflectionFreeParsing(true).build();
+
+    assertTrue(service.getObjectParser() instanceof ModelObjectParser);
+    UnreadResponse response = service.markers().counts().execute();
+    assertEquals(Integer.valueOf(3), response.unreadCounts().get(0).getCount());
+  }
+
+  @Test
+  public void testReflectionFreeStreaming() throws IOException {
+    Feedly service = new Feedly.Builder(MockServices.newTransport(200, CONTENTS), jsonFactory,
+                                        new FeedlyCredential())
+        .setReflectionFreeParsing(true).build();
+
+    EntriesResponse response = service.streams().contents(new Subscription("test")).execute();
+
+    assertEquals("next", response.getContinuation());
+    assertEquals("feed/test", response.items().get(0).getOrigin().getStreamId());
+  }
+
+  @Test
+  public void testIdRegistryOfClient() throws IOException {
+    IdRegistry registry = new IdRegistry();
+    String contents = "{\"items\":[{\"id\":\"a\",\"origin\":{\"streamId\":\"feed/test\"}}]}";
+    Feedly service = new Feedly.Builder(MockServices.newTransport(200, contents), jsonFactory,
+                                        new FeedlyCredential())
+        .setReflectionFreeParsing(true).setIdRegistry(registry).build();
+
+    Entry entry = service.streams().contents(new Subscription("test")).execute().items().get(0);
+
+    assertSame("Client should intern into its registry", registry.intern("feed/test"),
+               entry.getOrigin().getStreamId());
+    assertNull("Registry should be opt-in", new Feedly.Builder(
+        MockServices.newTransport(200, contents), jsonFactory, new FeedlyCredential())
+        .setReflectionFreeParsing(true).build().getIdRegistry());
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+
+import org.github.bademux.feedly.api.model.Subscription;
+import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class PaginatorTest {
+
+  private final AtomicInteger requests = new AtomicInteger();
+
+  private volatile int failures = Integer.MAX_VALUE;
+
+  @Test
+  public void testIteratesAllPages() throws IOException {
+    Feedly service = newService(3, -1);
+    for (int depth = 0; depth < 3; depth++) {
+      requests.set(0);
+      Feedly.Streams.Ids request = service.streams().ids(new Subscription("test"));
+      List<String> ids = new ArrayList<String>();
+      for (String id : request.paginate().setPrefetchDepth(depth)) {
+        ids.add(id);
+      }
+      assertEquals("Wrong ids with depth " + depth,
+                   Arrays.asList("0-a", "0-b", "1-a", "1-b", "2-a", "2-b"), ids);
+      assertEquals("Wrong number of requests", 3, requests.get());
+    }
+  }
+
+  @Test
+  public void testPrefetchDepthBound() throws Exception {
+    Feedly service = newService(10, -1);
+    for (int depth = 1; depth < 3; depth++) {
+      requests.set(0);
+      Paginator<String>.PageIterator it = service.streams().ids(new Subscription("test"))
+          .paginate().setPrefetchDepth(depth).iterator();
+      try {
+        assertEquals("0-a", it.next());
+        Thread.sleep(200);
+        assertEquals("Wrong number of pages ahead with depth " + depth, 1 + depth,
+                     requests.get());
+      } finally {
+        it.close();
+      }
+    }
+  }
+
+  @Test
+  public void testFailedPage() throws IOException {
+    Feedly service = newService(3, 1);
+    Paginator<String>.PageIterator it =
+        service.streams().ids(new Subscription("test")).paginate().iterator();
+    try {
+      assertEquals("0-a", it.next());
+      assertEquals("0-b", it.next());
+      it.next();
+      fail("Failed page should be reported");
+    } catch (Paginator.FetchException e) {
+      assertEquals("Wrong continuation of last good page", null, it.getContinuation());
+      assertFalse("Iteration should stop after failure", it.hasNext());
+    } finally {
+      it.close();
+    }
+  }
+
+  @Test
+  public void testResumeFromFailedPage() throws IOException {
+    Feedly service = newService(3, 1);
+    for (int depth = 0; depth < 2; depth++) {
+      failures = 1;
+      Paginator<String> paginator =
+          service.streams().ids(new Subscription("test")).paginate().setPrefetchDepth(depth);
+      List<String> ids = new ArrayList<String>();
+      Paginator<String>.PageIterator it = paginator.iterator();
+      try {
+        while (it.hasNext()) {
+          ids.add(it.next());
+        }
+        fail("Failed page should be reported");
+      } catch (Paginator.FetchException e) {
+        assertEquals("Wrong continuation of failed page", "1", e.getContinuation());
+        it = paginator.iterator(e.getContinuation());
+        while (it.hasNext()) {
+          ids.add(it.next());
+        }
+      } finally {
+        it.close();
+      }
+      assertEquals("Wrong ids with depth " + depth,
+                   Arrays.asList("0-a", "0-b", "1-a", "1-b", "2-a", "2-b"), ids);
+    }
+  }
+
+  /**
+   * Serves {@code pages} pages of ids, page number {@code failAt} responds with error {@link
+   * #failures} times.
+   */
+  private Feedly newService(final int pages, final int failAt) {
+    MockHttpTransport transport = new MockHttpTransport() {
+      @Override
+      public LowLevelHttpRequest buildRequest(String method, String url) throws IOException {
+        requests.incrementAndGet();
+        Object continuation = new GenericUrl(url).getFirst("continuation");
+        int page = continuation == null ? 0 : Integer.parseInt(continuation.toString());
+        MockLowLevelHttpResponse response = new MockLowLevelHttpResponse()
+            .setContentType("application/json");
+        if (page == failAt && failures-- > 0) {
+          response.setStatusCode(500).setContent("{}");
+        } else {
+          response.setContent("{\"ids\":[\"" + page + "-a\",\"" + page + "-b\"]"
+                              + (page + 1 < pages ? ",\"continuation\":\"" + (page + 1) + '"'
+                                                  : "") + '}');
+        }
+        return new MockLowLevelHttpRequest(url).setResponse(response);
+      }
+    };
+    return new Feedly(transport, new GsonFactory(), new FeedlyCredential());
+  }
+}
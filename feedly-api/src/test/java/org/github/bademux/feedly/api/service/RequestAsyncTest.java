@@ -0,0 +1,75 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpResponseException;
+
+import org.github.bademux.feedly.api.model.UnreadResponse;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.github.bademux.feedly.api.service.MockServices.newBuilder;
+import static org.github.bademux.feedly.api.service.MockServices.newService;
+import static org.github.bademux.feedly.api.service.MockServices.newTransport;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RequestAsyncTest {
+
+  @Test
+  public void testExecuteAsync() throws Exception {
+    Feedly service = newService(200, "{\"unreadcounts\":[{\"id\":\"feed/a\",\"count\":3}]}");
+
+    Future<UnreadResponse> future = service.markers().counts().executeAsync();
+
+    UnreadResponse response = future.get();
+    assertEquals("Wrong unread count", Integer.valueOf(3),
+                 response.unreadCounts().get(0).getCount());
+  }
+
+  @Test
+  public void testExecuteAsyncUsesBuilderExecutor() throws Exception {
+    final AtomicInteger submitted = new AtomicInteger();
+    Executor executor = new Executor() {
+      public void execute(Runnable command) {
+        submitted.incrementAndGet();
+        command.run();
+      }
+    };
+    Feedly service = newBuilder(newTransport(200, "{}")).setExecutor(executor).build();
+
+    assertTrue("Future should be done", service.markers().counts().executeAsync().isDone());
+    assertEquals("Custom executor wasn't used", 1, submitted.get());
+  }
+
+  @Test
+  public void testExecuteAsyncFailure() throws Exception {
+    Feedly service = newService(500, "{}");
+    try {
+      service.markers().counts().executeAsync().get();
+      fail("Error response should fail the future");
+    } catch (ExecutionException e) {
+      assertTrue("Wrong cause", e.getCause() instanceof HttpResponseException);
+    }
+  }
+}
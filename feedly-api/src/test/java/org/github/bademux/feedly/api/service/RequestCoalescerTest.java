@@ -0,0 +1,174 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+
+import org.github.bademux.feedly.api.model.FeedInfo;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.github.bademux.feedly.api.service.MockServices.newBuilder;
+import static org.github.bademux.feedly.api.service.MockServices.newTransport;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RequestCoalescerTest {
+
+  private final AtomicInteger sent = new AtomicInteger();
+
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  private final RequestCoalescer coalescer = new RequestCoalescer();
+
+  private volatile int statusCode = 200;
+
+  @Test
+  public void testSharesResponse() throws Exception {
+    Feedly service = newService();
+
+    Future<FeedInfo> first = service.feeds().get("feed/http://a").executeAsync();
+    Future<FeedInfo> second = service.feeds().get("feed/http://a").executeAsync();
+    awaitCoalesced(1);
+    release.countDown();
+
+    assertSame("Response should be shared", first.get(), second.get());
+    assertEquals("Only one request should be sent", 1, sent.get());
+    assertEquals("Wrong sent count", 1, coalescer.getSentCount());
+    assertEquals("No request should be in flight", 0, coalescer.getInFlightCount());
+
+    service.feeds().get("feed/http://a").execute();
+    assertEquals("Completed request shouldn't be reused", 2, sent.get());
+  }
+
+  @Test
+  public void testDistinctRequests() throws Exception {
+    release.countDown();
+    Feedly service = newService();
+
+    service.feeds().get("feed/http://a").execute();
+    service.feeds().get("feed/http://b").executeAsync().get();
+    Feedly.Feeds.Get other = service.feeds().get("feed/http://b");
+    other.setRequestHeaders(new HttpHeaders().setAuthorization("OAuth other"));
+    other.execute();
+
+    assertEquals("Different URL or principal should be sent", 3, sent.get());
+  }
+
+  @Test
+  public void testSharesError() throws Exception {
+    statusCode = 500;
+    Feedly service = newService();
+
+    List<Future<FeedInfo>> futures = new ArrayList<Future<FeedInfo>>();
+    futures.add(service.feeds().get("feed/http://a").executeAsync());
+    futures.add(service.feeds().get("feed/http://a").executeAsync());
+    awaitCoalesced(1);
+    release.countDown();
+
+    List<Throwable> errors = new ArrayList<Throwable>();
+    for (Future<FeedInfo> future : futures) {
+      try {
+        future.get();
+        fail("Error should be shared");
+      } catch (ExecutionException e) {
+        assertTrue("Wrong cause", e.getCause() instanceof HttpResponseException);
+        errors.add(e.getCause());
+      }
+    }
+    assertEquals("Only one request should be sent", 1, sent.get());
+    assertNotSame("Each waiter should get its own exception", errors.get(0), errors.get(1));
+  }
+
+  @Test(timeout = 10000)
+  public void testWaiterReleasesPermit() throws Exception {
+    release.countDown();
+    RequestThrottle throttle = new RequestThrottle();
+    throttle.getGlobalLimit().setMaxInFlight(1);
+    final Queue<Runnable> queued = new LinkedList<Runnable>();
+    final Feedly service = newBuilder(newTransport(200, "{\"id\":\"feed/http://a\"}"))
+        .setRequestCoalescer(coalescer).setRequestThrottle(throttle)
+        .setExecutor(new Executor() {
+          public void execute(Runnable command) {
+            queued.add(command);
+          }
+        }).build();
+
+    Future<FeedInfo> waiter = service.feeds().get("feed/http://a").executeAsync();
+    ExecutorService leader = Executors.newSingleThreadExecutor();
+    try {
+      Future<FeedInfo> sent = leader.submit(new Callable<FeedInfo>() {
+        public FeedInfo call() throws IOException {
+          return service.feeds().get("feed/http://a").execute();
+        }
+      });
+      while (coalescer.getInFlightCount() == 0) {
+        Thread.sleep(1);
+      }
+      queued.remove().run();
+
+      assertNotNull("Leader should get the permit of the waiter", sent.get(5, TimeUnit.SECONDS));
+      assertSame("Response should be shared", sent.get(), waiter.get());
+    } finally {
+      leader.shutdownNow();
+    }
+  }
+
+  private void awaitCoalesced(int count) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (coalescer.getCoalescedCount() < count) {
+      assertTrue("Requests weren't coalesced", System.nanoTime() < deadline);
+      Thread.sleep(1);
+    }
+  }
+
+  private Feedly newService() {
+    return newBuilder(newTransport(new MockServices.Responder() {
+      public MockLowLevelHttpResponse respond(String method, String url) throws IOException {
+        sent.incrementAndGet();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new IOException(e);
+        }
+        return new MockLowLevelHttpResponse().setStatusCode(statusCode)
+            .setContentType("application/json").setContent("{\"id\":\"feed/http://a\"}");
+      }
+    })).setRequestCoalescer(coalescer).build();
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import org.github.bademux.feedly.api.model.Category;
+import org.github.bademux.feedly.api.model.Entry;
+import org.github.bademux.feedly.api.model.UnreadResponse;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.github.bademux.feedly.api.service.MockServices.newBuilder;
+import static org.github.bademux.feedly.api.service.MockServices.newTransport;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RequestThrottleTest {
+
+  @Test
+  public void testFamilyOf() {
+    assertEquals("streams", RequestThrottle.familyOf("streams/{streamId}/contents"));
+    assertEquals("markers", RequestThrottle.familyOf("markers"));
+    assertEquals("search", RequestThrottle.familyOf("search/feeds"));
+  }
+
+  @Test
+  public void testTokenBucket() {
+    RequestThrottle throttle = new RequestThrottle();
+    throttle.getLimit("markers").setRate(0.001, 2);
+
+    RequestThrottle.Permit first = throttle.tryAcquire("markers");
+    RequestThrottle.Permit second = throttle.tryAcquire("markers");
+    assertNotNull("Burst should be allowed", first);
+    assertNotNull("Burst should be allowed", second);
+    assertNull("Bucket should be empty", throttle.tryAcquire("markers"));
+    assertNotNull("Other family isn't limited", throttle.tryAcquire("streams"));
+    assertTrue("Wrong tokens", throttle.getLimit("markers").getAvailableTokens() < 1);
+    assertEquals("Wrong rejected count", 1, throttle.getLimit("markers").getRejectedCount());
+    assertEquals("Refused permit should be returned to global limit", 3,
+                 throttle.getGlobalLimit().getAcquiredCount());
+  }
+
+  @Test
+  public void testPacesRequests() throws Exception {
+    RequestThrottle throttle = new RequestThrottle();
+    throttle.getGlobalLimit().setRate(50, 1);
+    Feedly service = newService(throttle, null);
+
+    long started = System.nanoTime();
+    for (int i = 0; i < 6; i++) {
+      service.markers().counts().execute();
+    }
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    assertTrue("Requests should be paced at 50/s, took " + elapsed + "ms", elapsed >= 90);
+    assertEquals("Wrong acquired count", 6, throttle.getGlobalLimit().getAcquiredCount());
+  }
+
+  @Test
+  public void testMaxInFlightAsync() throws Exception {
+    RequestThrottle throttle = new RequestThrottle();
+    throttle.getLimit("markers").setMaxInFlight(2);
+    final Queue<Runnable> queued = new LinkedList<Runnable>();
+    Feedly service = newService(throttle, new Executor() {
+      public void execute(Runnable command) {
+        queued.add(command);
+      }
+    });
+
+    List<Future<UnreadResponse>> futures = new ArrayList<Future<UnreadResponse>>();
+    for (int i = 0; i < 3; i++) {
+      futures.add(service.markers().counts().executeAsync());
+    }
+    assertEquals("Only two requests may be in flight", 2, queued.size());
+    assertEquals("Wrong in flight", 2, throttle.getLimit("markers").getInFlight());
+    assertEquals("Wrong waiting count", 1, throttle.getWaitingCount());
+
+    queued.remove().run();
+    assertTrue("First request should be done", futures.get(0).isDone());
+    assertEquals("Released permit should start the waiting request", 2, queued.size());
+    assertFalse("Third request shouldn't be done", futures.get(2).isDone());
+
+    while (!queued.isEmpty()) {
+      queued.remove().run();
+    }
+    for (Future<UnreadResponse> future : futures) {
+      assertNotNull("Wrong response", future.get());
+    }
+    assertEquals("All permits should be released", 0,
+                 throttle.getLimit("markers").getInFlight());
+    assertEquals("All permits should be released", 0, throttle.getGlobalLimit().getInFlight());
+  }
+
+  @Test
+  public void testCancelledRequestReleasesPermit() throws Exception {
+    RequestThrottle throttle = new RequestThrottle();
+    throttle.getGlobalLimit().setMaxInFlight(1);
+    final Queue<Runnable> queued = new LinkedList<Runnable>();
+    Feedly service = newService(throttle, new Executor() {
+      public void execute(Runnable command) {
+        queued.add(command);
+      }
+    });
+
+    service.markers().counts().executeAsync().cancel(false);
+    queued.remove().run();
+
+    assertEquals("Permit should be released", 0, throttle.getGlobalLimit().getInFlight());
+  }
+
+  @Test
+  public void testRejectedRequestFails() throws Exception {
+    RequestThrottle throttle = new RequestThrottle();
+    throttle.getGlobalLimit().setMaxInFlight(1);
+    final Queue<Runnable> queued = new LinkedList<Runnable>();
+    Feedly service = newService(throttle, new Executor() {
+      public void execute(Runnable command) {
+        if (!queued.isEmpty()) {
+          throw new RejectedExecutionException();
+        }
+        queued.add(command);
+      }
+    });
+
+    Future<UnreadResponse> first = service.markers().counts().executeAsync();
+    Future<UnreadResponse> second = service.markers().counts().executeAsync();
+    queued.peek().run();
+
+    assertNotNull("Wrong response", first.get());
+    try {
+      second.get();
+      fail("Rejected request should fail");
+    } catch (ExecutionException e) {
+      assertTrue("Wrong cause", e.getCause() instanceof RejectedExecutionException);
+    }
+    assertEquals("Permit should be released", 0, throttle.getGlobalLimit().getInFlight());
+  }
+
+  @Test
+  public void testStreamedRequestsHoldPermits() throws Exception {
+    final RequestThrottle throttle = new RequestThrottle();
+    Feedly service = newBuilder(
+        newTransport(200, "{\"id\":\"feed/x\",\"items\":[{\"id\":\"a\"}]}"))
+        .setRequestThrottle(throttle).build();
+
+    final List<Integer> inFlight = new ArrayList<Integer>();
+    service.streams().contents(new Category("tech", "u")).executeAndHandle(new EntryHandler() {
+      public void handle(Entry entry) {
+        inFlight.add(throttle.getGlobalLimit().getInFlight());
+      }
+    });
+    service.opml().exportSubscription().executeAndDownloadAsString();
+    service.markers().counts().executeUnparsed().disconnect();
+
+    assertEquals("Handler should run holding the permit", Arrays.asList(1), inFlight);
+    assertEquals("Wrong acquired count", 3, throttle.getGlobalLimit().getAcquiredCount());
+    assertEquals("All permits should be released", 0, throttle.getGlobalLimit().getInFlight());
+  }
+
+  @Test
+  public void testDump() throws Exception {
+    RequestThrottle throttle = new RequestThrottle();
+    throttle.getGlobalLimit().setMaxInFlight(8);
+    throttle.getLimit("streams").setRate(1, 1);
+    throttle.tryAcquire("streams");
+
+    String dump = throttle.toString();
+    assertTrue("Wrong dump: " + dump,
+               dump.startsWith("* tokens=- inFlight=1 maxInFlight=8 acquired=1 rejected=0\n"));
+    assertTrue("Wrong dump: " + dump,
+               dump.contains("streams tokens=0.0 inFlight=1 maxInFlight=- acquired=1"));
+  }
+
+  private static Feedly newService(RequestThrottle throttle, Executor executor) {
+    return newBuilder(newTransport(200, "{\"unreadcounts\":[]}")).setRequestThrottle(throttle)
+        .setExecutor(executor).build();
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.client.util.Clock;
+import com.google.api.client.util.Sleeper;
+
+import org.github.bademux.feedly.api.model.UnreadResponse;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+
+import static org.github.bademux.feedly.api.service.MockServices.newBuilder;
+import static org.github.bademux.feedly.api.service.MockServices.newTransport;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RetryPolicyTest {
+
+  private final Queue<Integer> statuses = new LinkedList<Integer>();
+
+  private final List<Long> sleeps = new ArrayList<Long>();
+
+  private int requests;
+
+  private String retryAfter;
+
+  private final RetryPolicy policy = new RetryPolicy().setRandom(new Random(0))
+      .setSleeper(new Sleeper() {
+        public void sleep(long millis) { sleeps.add(millis); }
+      });
+
+  @Test
+  public void testRetriesServerErrors() throws IOException {
+    statuses.addAll(Arrays.asList(503, 500, 200));
+
+    UnreadResponse response = newService().markers().counts().execute();
+
+    assertEquals("Wrong unread count", Integer.valueOf(3),
+                 response.unreadCounts().get(0).getCount());
+    assertEquals("Wrong number of requests", 3, requests);
+    assertEquals("Wrong number of delays", 2, sleeps.size());
+    for (long delay : sleeps) {
+      assertTrue("Delay out of bounds: " + delay,
+                 delay >= RetryPolicy.DEFAULT_BASE_DELAY && delay <= RetryPolicy.DEFAULT_MAX_DELAY);
+    }
+    assertEquals("Wrong retry count", 2, policy.getRetryCount());
+  }
+
+  @Test
+  public void testGivesUpAfterMaxAttempts() throws IOException {
+    statuses.addAll(Arrays.asList(500, 500, 500, 500, 500));
+    try {
+      newService().markers().counts().execute();
+      fail("Request should fail");
+    } catch (HttpResponseException e) {
+      assertEquals("Wrong status", 500, e.getStatusCode());
+    }
+    assertEquals("Wrong number of requests", RetryPolicy.DEFAULT_MAX_ATTEMPTS, requests);
+  }
+
+  @Test
+  public void testClientErrorAndPostAreNotRetried() throws IOException {
+    statuses.addAll(Arrays.asList(404, 503));
+    Feedly service = newService();
+    try {
+      service.markers().counts().execute();
+      fail("Request should fail");
+    } catch (HttpResponseException e) {
+      assertEquals("Wrong status", 404, e.getStatusCode());
+    }
+    try {
+      service.markers().entriesAsRead(Arrays.asList("a")).execute();
+      fail("Request should fail");
+    } catch (HttpResponseException e) {
+      assertEquals("Wrong status", 503, e.getStatusCode());
+    }
+    assertEquals("Wrong number of requests", 2, requests);
+    assertTrue("Nothing should be retried", sleeps.isEmpty());
+  }
+
+  @Test
+  public void testHonoursRetryAfter() throws IOException {
+    statuses.addAll(Arrays.asList(429, 200));
+    retryAfter = "20";
+
+    newService().markers().counts().execute();
+
+    assertEquals("Retry-After should be honoured", Arrays.asList(20000L), sleeps);
+
+    statuses.addAll(Arrays.asList(429, 200));
+    retryAfter = "120";
+    try {
+      newService().markers().counts().execute();
+      fail("Too long Retry-After should fail the request");
+    } catch (HttpResponseException e) {
+      assertEquals("Wrong status", 429, e.getStatusCode());
+    }
+  }
+
+  @Test
+  public void testRetryAfterDate() {
+    policy.setClock(new Clock() {
+      public long currentTimeMillis() { return 784111777000L; }
+    });
+    HttpHeaders headers = new HttpHeaders();
+    headers.setRetryAfter("Sun, 06 Nov 1994 08:49:47 GMT");
+    assertEquals("Wrong delay of HTTP-date", 10000, policy.retryAfter(headers));
+    headers.setRetryAfter("soon");
+    assertEquals("Invalid value should be ignored", 0, policy.retryAfter(headers));
+  }
+
+  @Test
+  public void testBudgetLimitsRetries() throws IOException {
+    policy.setBudget(0, 1);
+    statuses.addAll(Arrays.asList(500, 500, 500, 500));
+    Feedly service = newService();
+    for (int i = 0; i < 2; i++) {
+      try {
+        service.markers().counts().execute();
+        fail("Request should fail");
+      } catch (HttpResponseException expected) {
+      }
+    }
+    assertEquals("Only one retry should fit the budget", 3, requests);
+    assertEquals("Wrong rejected count", 2, policy.getRejectedCount());
+  }
+
+  private Feedly newService() {
+    return newBuilder(newTransport(new MockServices.Responder() {
+      public MockLowLevelHttpResponse respond(String method, String url) {
+        requests++;
+        Integer status = statuses.poll();
+        MockLowLevelHttpResponse response = new MockLowLevelHttpResponse()
+            .setStatusCode(status == null ? 200 : status).setContentType("application/json")
+            .setContent("{\"unreadcounts\":[{\"id\":\"feed/a\",\"count\":3}]}");
+        if (retryAfter != null) {
+          response.addHeader("Retry-After", retryAfter);
+        }
+        return response;
+      }
+    })).setRetryPolicy(policy).build();
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.client.util.Clock;
+import com.google.api.client.util.store.MemoryDataStoreFactory;
+
+import org.github.bademux.feedly.api.model.Subscription;
+import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class SyncEngineTest {
+
+  /** Last {@code newerThan} by request path. */
+  private final Map<String, Object> newerThan =
+      Collections.synchronizedMap(new HashMap<String, Object>());
+
+  private final Feedly service = new Feedly(new MockHttpTransport() {
+    @Override
+    public LowLevelHttpRequest buildRequest(String method, String url) {
+      GenericUrl genericUrl = new GenericUrl(url);
+      String path = url.substring(url.indexOf("/v3/") + 4, url.indexOf('?'));
+      newerThan.put(path, genericUrl.getFirst("newerThan"));
+      String content;
+      if (path.endsWith("/ids")) {
+        content = "{\"ids\":[\"e1\",\"e2\"]}";
+      } else if (path.equals("markers/reads")) {
+        content = "{\"entries\":[\"e1\"],\"unread\":[\"e3\"],"
+                  + "\"feeds\":[{\"id\":\"feed/a\",\"asOf\":5}]}";
+      } else {
+        content = "{\"taggedEntries\":{\"user/u/tag/t\":[\"e2\"]}}";
+      }
+      return new MockLowLevelHttpRequest(url).setResponse(
+          new MockLowLevelHttpResponse().setContentType("application/json").setContent(content));
+    }
+  }, new GsonFactory(), new FeedlyCredential());
+
+  private long now = 100000;
+
+  private final Clock clock = new Clock() {
+    public long currentTimeMillis() { return now; }
+  };
+
+  @Test
+  public void testSync() throws IOException {
+    final ChangeSet[] applied = new ChangeSet[1];
+    SyncEngine engine = new SyncEngine(service, new MemoryDataStoreFactory(), new ChangeSink() {
+      public void apply(ChangeSet changes) { applied[0] = changes; }
+    }).addStream(new Subscription("a")).setClock(clock).setOverlap(1000);
+
+    ChangeSet changes = engine.sync();
+
+    assertEquals(applied[0], changes);
+    assertEquals(Arrays.asList("e1", "e2"), changes.getNewEntryIds().get("feed/a"));
+    assertEquals(Arrays.asList("e1"), changes.getReadEntryIds());
+    assertEquals(Arrays.asList("e3"), changes.getUnreadEntryIds());
+    assertEquals(Long.valueOf(5), changes.getFeedsReadAsOf().get("feed/a"));
+    assertEquals(Arrays.asList("e2"), changes.getTaggedEntryIds().get("user/u/tag/t"));
+    assertNull("First cycle should pull everything", newerThan.get("markers/reads"));
+
+    now = 200000;
+    engine.sync();
+
+    assertEquals("99000", newerThan.get("markers/reads"));
+    assertEquals("99000", newerThan.get("markers/tags"));
+    assertEquals("99000", newerThan.get("streams/feed%2Fa/ids"));
+    assertEquals(Long.valueOf(200000), engine.getWatermark(new Subscription("a")));
+  }
+
+  @Test
+  public void testFailedSinkKeepsWatermarks() throws IOException {
+    SyncEngine engine = new SyncEngine(service, new MemoryDataStoreFactory(), new ChangeSink() {
+      public void apply(ChangeSet changes) throws IOException { throw new IOException(); }
+    }).addStream(new Subscription("a")).setClock(clock);
+    try {
+      engine.sync();
+      fail("Sink failure should be reported");
+    } catch (IOException e) {
+      assertNull(engine.getWatermark(new Subscription("a")));
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.service;
+
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.client.util.Clock;
+
+import org.github.bademux.feedly.api.model.Entry;
+import org.github.bademux.feedly.api.model.Subscription;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.github.bademux.feedly.api.service.MockServices.newBuilder;
+import static org.github.bademux.feedly.api.service.MockServices.newTransport;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UnreadCountCacheTest {
+
+  private static final String TECH = "user/u/category/tech";
+
+  private static final String ALL = "user/u/category/global.all";
+
+  private static final GsonFactory JSON_FACTORY = new GsonFactory();
+
+  private final List<String> urls = new ArrayList<String>();
+
+  private long now = 1000;
+
+  private String counts = "{\"unreadcounts\":["
+                          + "{\"id\":\"feed/a\",\"count\":5},{\"id\":\"feed/b\",\"count\":2},"
+                          + "{\"id\":\"feed/c\",\"count\":2},{\"id\":\"" + TECH + "\",\"count\":7},"
+                          + "{\"id\":\"" + ALL + "\",\"count\":9}]}";
+
+  private UnreadCountCache cache;
+
+  @Before
+  public void setUp() throws IOException {
+    cache = new UnreadCountCache(newService()).setReconcileInterval(0, TimeUnit.SECONDS)
+        .setClock(new Clock() {
+          public long currentTimeMillis() { return now; }
+        });
+    cache.setSubscriptions(Arrays.asList(
+        JSON_FACTORY.fromString("{\"id\":\"feed/a\",\"categories\":[{\"id\":\"" + TECH + "\"}]}",
+                                Subscription.class),
+        JSON_FACTORY.fromString("{\"id\":\"feed/b\",\"categories\":[{\"id\":\"" + TECH + "\"}]}",
+                                Subscription.class),
+        JSON_FACTORY.fromString("{\"id\":\"feed/c\"}", Subscription.class)));
+    cache.reconcile();
+  }
+
+  @Test
+  public void testLoad() {
+    assertEquals("Wrong feed count", 5, cache.getCount("feed/a"));
+    assertEquals("Wrong category count", 7, cache.getCount(TECH));
+    assertEquals("Unknown stream", -1, cache.getCount("feed/d"));
+    assertEquals("Wrong number of streams", 5, cache.getCounts().size());
+    assertFalse("Full load shouldn't be incremental", urls.get(0).contains("newerThan"));
+  }
+
+  @Test
+  public void testMarkEntries() throws IOException {
+    now++;
+    Entry unread = newEntry("{\"id\":\"e1\",\"unread\":true,\"origin\":{\"streamId\":\"feed/a\"}}");
+    Entry read = newEntry("{\"id\":\"e2\",\"unread\":false,\"origin\":{\"streamId\":\"feed/a\"}}");
+    cache.markEntriesAsRead(Arrays.asList(unread, read));
+    assertEquals("Wrong feed count", 4, cache.getCount("feed/a"));
+    assertEquals("Wrong category count", 6, cache.getCount(TECH));
+    assertEquals("Wrong global count", 8, cache.getCount(ALL));
+
+    cache.keepEntriesUnread(Collections.singleton(read));
+    assertEquals("Wrong feed count", 5, cache.getCount("feed/a"));
+    assertEquals("Wrong global count", 9, cache.getCount(ALL));
+    assertEquals("Markers should be sent", 3, urls.size());
+  }
+
+  @Test
+  public void testMarkEntryOfFeedWithCategoryInUrl() throws IOException {
+    now++;
+    cache.markEntriesAsRead(Collections.singleton(newEntry(
+        "{\"id\":\"e1\",\"unread\":true,"
+        + "\"origin\":{\"streamId\":\"feed/http://blog.com/category/news/feed\"}}")));
+    assertEquals("Wrong global count", 8, cache.getCount(ALL));
+  }
+
+  @Test
+  public void testMarkFeedsAndCategories() throws IOException {
+    now++;
+    cache.markFeedsAsRead(Collections.singleton("feed/a"), now);
+    assertEquals("Wrong feed count", 0, cache.getCount("feed/a"));
+    assertEquals("Wrong category count", 2, cache.getCount(TECH));
+    assertEquals("Wrong global count", 4, cache.getCount(ALL));
+
+    cache.markCategoriesAsRead(Collections.singleton(TECH), now);
+    assertEquals("Wrong feed count", 0, cache.getCount("feed/b"));
+    assertEquals("Wrong category count", 0, cache.getCount(TECH));
+    assertEquals("Wrong global count", 2, cache.getCount(ALL));
+    assertEquals("Uncategorized feed shouldn't change", 2, cache.getCount("feed/c"));
+  }
+
+  @Test
+  public void testReconcile() throws IOException {
+    now = 2000;
+    counts = "{\"unreadcounts\":[{\"id\":\"feed/c\",\"count\":3},{\"id\":\"feed/d\",\"count\":1}]}";
+    cache.setOverlap(300, TimeUnit.MILLISECONDS).reconcile();
+    assertTrue("Reconcile should overlap", urls.get(1).contains("newerThan=700"));
+    assertEquals("Changed count should be replaced", 3, cache.getCount("feed/c"));
+    assertEquals("New stream should be added", 1, cache.getCount("feed/d"));
+    assertEquals("Unchanged count should be kept", 5, cache.getCount("feed/a"));
+
+    cache.invalidate();
+    assertEquals("Counts should be forgotten", -1, cache.getCount("feed/a"));
+    cache.reconcile();
+    assertFalse("Invalidated counts should be loaded in full", urls.get(2).contains("newerThan"));
+  }
+
+  private static Entry newEntry(String json) throws IOException {
+    return JSON_FACTORY.fromString(json, Entry.class);
+  }
+
+  private Feedly newService() {
+    return newBuilder(newTransport(new MockServices.Responder() {
+      public MockLowLevelHttpResponse respond(String method, String url) {
+        urls.add(url);
+        return new MockLowLevelHttpResponse().setContentType("application/json")
+            .setContent(method.equals("GET") ? counts : "{}");
+      }
+    })).build();
+  }
+}
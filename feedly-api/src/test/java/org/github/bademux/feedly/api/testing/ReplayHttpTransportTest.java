@@ -0,0 +1,196 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.api.testing;
+
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.client.util.Sleeper;
+
+import org.github.bademux.feedly.api.model.UnreadResponse;
+import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
+import org.github.bademux.feedly.api.service.Feedly;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReplayHttpTransportTest {
+
+  @Test
+  public void testRecordAndReplay() throws Exception {
+    RecordingHttpTransport recorder = new RecordingHttpTransport(newCountingTransport());
+    newService(recorder).markers().counts().execute();
+    newService(recorder).markers().counts().execute();
+
+    List<Exchange> exchanges = recorder.getFixture().getExchanges();
+    assertEquals(2, exchanges.size());
+    assertEquals("GET", exchanges.get(0).getMethod());
+    assertEquals("Cache-buster should be stripped", "/v3/markers/counts?autorefresh=true",
+                 exchanges.get(0).getPath());
+    assertTrue("Response headers should be recorded",
+               exchanges.get(0).getHeaderNames().contains("etag"));
+
+    ReplayHttpTransport replay = new ReplayHttpTransport(copy(recorder.getFixture()));
+    Feedly service = newService(replay);
+    assertEquals(Integer.valueOf(1), countOf(service.markers().counts().execute()));
+    assertEquals(Integer.valueOf(2), countOf(service.markers().counts().execute()));
+    assertEquals("Last exchange should be repeated", Integer.valueOf(2),
+                 countOf(service.markers().counts().execute()));
+
+    replay.rewind();
+    assertEquals(Integer.valueOf(1), countOf(service.markers().counts().execute()));
+    assertEquals(4, replay.getRequestCount());
+  }
+
+  @Test
+  public void testRequestContentIsRecordedDecoded() throws Exception {
+    RecordingHttpTransport recorder = new RecordingHttpTransport(newCountingTransport());
+    newService(recorder).markers().entriesAsRead(Arrays.asList("a")).execute();
+    newService(recorder).markers().entriesAsRead(Arrays.asList("b")).execute();
+
+    Exchange exchange = recorder.getFixture().getExchanges().get(0);
+    assertEquals("POST", exchange.getMethod());
+    assertTrue("Content should be gunzipped",
+               new String(exchange.getRequestContent(), "UTF-8").contains("\"entryIds\":[\"a\"]"));
+
+    ReplayHttpTransport replay = new ReplayHttpTransport(recorder.getFixture())
+        .setMatchContent(true);
+    newService(replay).markers().entriesAsRead(Arrays.asList("b")).execute();
+    try {
+      newService(replay).markers().entriesAsRead(Arrays.asList("c")).execute();
+      fail("Request with other content should not match");
+    } catch (IOException e) {
+      assertTrue(e.getMessage().startsWith("No recorded exchange"));
+    }
+  }
+
+  @Test
+  public void testUnmatchedRequestFails() throws Exception {
+    Feedly service = newService(new ReplayHttpTransport(new Fixture()));
+    try {
+      service.markers().counts().execute();
+      fail("Request without exchange should fail");
+    } catch (IOException e) {
+      assertEquals("No recorded exchange: GET /v3/markers/counts?autorefresh=true", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testErrorInjection() throws Exception {
+    ReplayHttpTransport replay = new ReplayHttpTransport(newFixture())
+        .setErrorRate(1, 429);
+    try {
+      newService(replay).markers().counts().execute();
+      fail("Injected error should be thrown");
+    } catch (HttpResponseException e) {
+      assertEquals(429, e.getStatusCode());
+    }
+
+    replay.setErrorRate(0, 0).setConnectionErrorRate(1);
+    try {
+      newService(replay).markers().counts().execute();
+      fail("Injected connection error should be thrown");
+    } catch (IOException e) {
+      assertFalse(e instanceof HttpResponseException);
+    }
+
+    replay.setConnectionErrorRate(0);
+    assertEquals("Injected errors should not consume exchanges", Integer.valueOf(1),
+                 countOf(newService(replay).markers().counts().execute()));
+  }
+
+  @Test
+  public void testLatencyIsReproducible() throws Exception {
+    assertEquals(sleeps(7), sleeps(7));
+    assertFalse(sleeps(7).equals(sleeps(8)));
+    for (long delay : sleeps(7)) {
+      assertTrue("Delay out of range: " + delay, delay >= 100 && delay < 150);
+    }
+  }
+
+  private static List<Long> sleeps(long seed) throws IOException {
+    final List<Long> sleeps = new ArrayList<Long>();
+    ReplayHttpTransport replay = new ReplayHttpTransport(newFixture()).setSeed(seed)
+        .setLatency(100, 50, TimeUnit.MILLISECONDS).setSleeper(new Sleeper() {
+          public void sleep(long millis) {
+            sleeps.add(millis);
+          }
+        });
+    Feedly service = newService(replay);
+    for (int i = 0; i < 5; i++) {
+      service.markers().counts().execute();
+    }
+    return sleeps;
+  }
+
+  private static Fixture newFixture() throws IOException {
+    RecordingHttpTransport recorder = new RecordingHttpTransport(newCountingTransport());
+    newService(recorder).markers().counts().execute();
+    return recorder.getFixture();
+  }
+
+  private static Fixture copy(Fixture fixture) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    fixture.write(out);
+    return Fixture.read(new ByteArrayInputStream(out.toByteArray()));
+  }
+
+  private static Integer countOf(UnreadResponse response) {
+    return response.unreadCounts().get(0).getCount();
+  }
+
+  private static Feedly newService(HttpTransport transport) {
+    return new Feedly(transport, new GsonFactory(), new FeedlyCredential());
+  }
+
+  /** Answers every request with the next unread count. */
+  private static MockHttpTransport newCountingTransport() {
+    final AtomicInteger counter = new AtomicInteger();
+    return new MockHttpTransport() {
+      @Override
+      public LowLevelHttpRequest buildRequest(String method, String url) throws IOException {
+        return new MockLowLevelHttpRequest(url) {
+          @Override
+          public LowLevelHttpResponse execute() throws IOException {
+            int count = counter.incrementAndGet();
+            return new MockLowLevelHttpResponse().setContentType("application/json")
+                .addHeader("ETag", "\"" + count + "\"")
+                .setContent("{\"unreadcounts\":[{\"id\":\"feed/a\",\"count\":" + count + "}]}");
+          }
+        };
+      }
+    };
+  }
+}
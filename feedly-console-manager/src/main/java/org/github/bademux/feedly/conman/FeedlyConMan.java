@@ -39,9 +39,13 @@ import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
 import org.github.bademux.feedly.api.service.Feedly;
 import org.github.bademux.feedly.api.service.Request;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URLDecoder;
 import java.security.CodeSource;
 import java.util.Arrays;
@@ -206,13 +210,10 @@ public class FeedlyConMan {
         service = new DevFeedly.Builder(HTTP_TRANSPORT, JSON_FACTORY, credential).build();
         break;
       case "export":
-        String opmlStr = checkNotNull(service, "Please authorize").opml().exportSubscription()
-            .executeAndDownloadAsString();
-        String opmlFilePath = getJarContainingFolder(FeedlyConMan.class) + '/' + OPML_FILE_NAME;
-        System.out.println(opmlFilePath);
-        try (PrintWriter writer = new PrintWriter(opmlFilePath, "UTF-8")) {
-          writer.write(opmlStr);
-        }
+        File exportFile = new File(getJarContainingFolder(FeedlyConMan.class), OPML_FILE_NAME);
+        System.out.println(exportFile.getAbsolutePath());
+        download(checkNotNull(service, "Please authorize").opml().exportSubscription(),
+                 exportFile);
         break;
       case "import":
         File opml = new File(getJarContainingFolder(FeedlyConMan.class), OPML_FILE_NAME);
@@ -220,6 +221,30 @@ public class FeedlyConMan {
                                   + "' file to the folder with the program");
         checkNotNull(service, "Please authorize").opml().importSubscription(opml).execute();
         break;
+      case "sync":
+        File syncFile = new File(getJarContainingFolder(FeedlyConMan.class), OPML_FILE_NAME);
+        checkState(syncFile.exists(), "Please, put '" + syncFile.getAbsoluteFile()
+                                      + "' file to the folder with the program");
+        OpmlSync sync = new OpmlSync(checkNotNull(service, "Please authorize"));
+        try (InputStream in = new FileInputStream(syncFile)) {
+          sync.diff(in);
+        }
+        System.out.println("Subscribing: " + sync.getAdded().size()
+                           + " Recategorizing: " + sync.getUpdated().size()
+                           + " Unsubscribing: " + sync.getRemoved().size());
+        if (commands.length < 2 || !"apply".equals(commands[1])) {
+          for (Subscription subscription : sync.getRemoved()) {
+            System.out.println(" - " + subscription.getId());
+          }
+          System.out.println("Nothing is changed, use 'sync apply' to apply");
+          break;
+        }
+        Map<Subscription, Throwable> failures = sync.apply();
+        for (Map.Entry<Subscription, Throwable> failure : failures.entrySet()) {
+          System.err.println(failure.getKey().getId() + ": " + failure.getValue().getMessage());
+        }
+        System.out.println("Synchronized, failed: " + failures.size());
+        break;
       default:
         System.out.println("Error: Unknown command: " + commands[0]);
       case "help":
@@ -238,12 +263,21 @@ public class FeedlyConMan {
             + "} id \n - removes item \n"
             + "export  - Downloads feed list to the './" + OPML_FILE_NAME + "' file\n"
             + "import  - uploads opml './" + OPML_FILE_NAME + "' file to the Feedly service\n"
+            + "sync [apply] - compares opml './" + OPML_FILE_NAME + "' file with the subscriptions,"
+            + " 'apply' subscribes, recategorizes and unsubscribes feeds that differ\n"
             + "exit    - Exits from the program. User credential still can be stored in '"
             + DATA_STORE_DIR + "' folder. use 'logout' to clear.\n"
             + "help    - shows this menu");
     }
   }
 
+  /** Streams the response content to the file, it isn't held in memory. */
+  private static void download(Request<?> request, File file) throws IOException {
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+      request.executeAndDownloadTo(out);
+    }
+  }
+
   /** Authorizes the installed application to access user's protected data. */
   private static FeedlyCredential authorize() throws Exception {
     Properties secrets = load("user_secrets.properties");
@@ -313,6 +347,7 @@ public class FeedlyConMan {
   public static final File DATA_STORE_DIR = new File(getProperty("user.home"), ".store/feedly-api");
 
   private static final String OPML_FILE_NAME = "feedly.opml";
+
   /**
    * Global instance of the {@link com.google.api.client.util.store.DataStoreFactory}. The best
    * practice is to make it a single
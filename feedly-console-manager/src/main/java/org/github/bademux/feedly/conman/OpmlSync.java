@@ -0,0 +1,234 @@
+/*
+ * Copyright 2013 Bademus
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *    Contributors:
+ *                 Bademus
+ */
+
+package org.github.bademux.feedly.conman;
+
+import org.github.bademux.feedly.api.model.Category;
+import org.github.bademux.feedly.api.model.Feed;
+import org.github.bademux.feedly.api.model.Subscription;
+import org.github.bademux.feedly.api.service.Feedly;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import static com.google.api.client.util.Preconditions.checkNotNull;
+
+/**
+ * Smart import of OPML: brings the subscriptions of the user to the feeds of the OPML file by
+ * sending only the differences, instead of uploading the whole file.
+ *
+ * <p> The file is read as a stream of StAX events: an outline with 'xmlUrl' is a feed, the
+ * outlines enclosing it are its categories. The feeds are compared to the subscriptions by id and
+ * to their categories by label; missing feeds are subscribed, feeds with other categories are
+ * updated and subscriptions absent from the file are deleted. Changes are sent in parallel, at
+ * most {@link #PARALLELISM} at a time. </p>
+ */
+class OpmlSync {
+
+  /** Maximum number of changes in flight. */
+  static final int PARALLELISM = 4;
+
+  private final Feedly service;
+
+  private final List<Subscription> added = new ArrayList<>();
+
+  private final List<Subscription> updated = new ArrayList<>();
+
+  private final List<Subscription> removed = new ArrayList<>();
+
+  OpmlSync(Feedly service) { this.service = checkNotNull(service); }
+
+  /** Returns the feeds to subscribe to. */
+  List<Subscription> getAdded() { return added; }
+
+  /** Returns the subscriptions to move to other categories. */
+  List<Subscription> getUpdated() { return updated; }
+
+  /** Returns the subscriptions to delete. */
+  List<Subscription> getRemoved() { return removed; }
+
+  /**
+   * Compares the OPML with the subscriptions of the user, nothing is changed yet.
+   *
+   * @throws IOException if the OPML is invalid or has no feeds
+   */
+  OpmlSync diff(InputStream opml) throws IOException {
+    added.clear();
+    updated.clear();
+    removed.clear();
+    Map<String, Subscription> current = new LinkedHashMap<>();
+    Map<String, Category> categories = new HashMap<>();
+    for (Subscription subscription : service.subscriptions().list().execute()) {
+      current.put(subscription.getId(), subscription);
+      for (Category category : categoriesOf(subscription)) {
+        if (category.getLabel() != null) {
+          categories.put(category.getLabel(), category);
+        }
+      }
+    }
+    Map<String, Set<String>> feeds = parse(opml);
+    if (feeds.isEmpty()) {
+      // a truncated or foreign file would unsubscribe every feed
+      throw new IOException("No feeds in OPML, nothing to synchronize");
+    }
+    for (Map.Entry<String, Set<String>> feed : feeds.entrySet()) {
+      Subscription subscription = current.remove(feed.getKey());
+      if (subscription != null && labelsOf(subscription).equals(feed.getValue())) {
+        continue;
+      }
+      Subscription change = new Subscription();
+      change.set("id", feed.getKey());
+      if (subscription != null) {
+        change.setTitle(subscription.getTitle());
+      }
+      for (String label : feed.getValue()) {
+        Category category = categories.get(label);
+        if (category == null) {
+          categories.put(label, category = service.newCategory(label));
+        }
+        change.addCategory(category);
+      }
+      if (change.getCategories() == null) {
+        change.setCategories(Collections.<Category>emptyList());
+      }
+      (subscription == null ? added : updated).add(change);
+    }
+    removed.addAll(current.values());
+    return this;
+  }
+
+  /**
+   * Sends the changes found by {@link #diff(InputStream)} in parallel and waits for them.
+   *
+   * @return the changes that failed with their errors
+   */
+  Map<Subscription, Throwable> apply() throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(PARALLELISM);
+    try {
+      Map<Subscription, Future<Void>> futures = new LinkedHashMap<>();
+      for (Subscription subscription : added) {
+        futures.put(subscription, service.subscriptions().update(subscription)
+            .executeAsync(executor));
+      }
+      for (Subscription subscription : updated) {
+        futures.put(subscription, service.subscriptions().update(subscription)
+            .executeAsync(executor));
+      }
+      for (Subscription subscription : removed) {
+        futures.put(subscription, service.subscriptions().delete(subscription)
+            .executeAsync(executor));
+      }
+      Map<Subscription, Throwable> failures = new LinkedHashMap<>();
+      for (Map.Entry<Subscription, Future<Void>> future : futures.entrySet()) {
+        try {
+          future.getValue().get();
+        } catch (ExecutionException e) {
+          failures.put(future.getKey(), e.getCause());
+        }
+      }
+      return failures;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Reads the feeds of OPML.
+   *
+   * @return labels of the categories by feed id, in the order of the file
+   */
+  static Map<String, Set<String>> parse(InputStream opml) throws IOException {
+    Map<String, Set<String>> feeds = new LinkedHashMap<>();
+    // labels of the enclosing outlines, empty for feeds
+    Deque<String> outlines = new ArrayDeque<>();
+    try {
+      XMLInputFactory factory = XMLInputFactory.newInstance();
+      factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+      XMLStreamReader reader = factory.createXMLStreamReader(opml);
+      try {
+        while (reader.hasNext()) {
+          int event = reader.next();
+          if (event == XMLStreamConstants.START_ELEMENT
+              && "outline".equals(reader.getLocalName())) {
+            String url = reader.getAttributeValue(null, "xmlUrl");
+            if (url == null) {
+              String label = reader.getAttributeValue(null, "title");
+              label = label != null ? label : reader.getAttributeValue(null, "text");
+              outlines.push(label != null ? label : "");
+              continue;
+            }
+            outlines.push("");
+            String id = Feed.PREFIX + '/' + url;
+            Set<String> labels = feeds.get(id);
+            if (labels == null) {
+              feeds.put(id, labels = new TreeSet<>());
+            }
+            for (String label : outlines) {
+              if (!label.isEmpty()) {
+                labels.add(label);
+              }
+            }
+          } else if (event == XMLStreamConstants.END_ELEMENT
+                     && "outline".equals(reader.getLocalName())) {
+            outlines.pop();
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException e) {
+      throw new IOException("Invalid OPML: " + e.getMessage(), e);
+    }
+    return feeds;
+  }
+
+  private static List<Category> categoriesOf(Subscription subscription) {
+    return subscription.getCategories() == null ? Collections.<Category>emptyList()
+                                                : subscription.getCategories();
+  }
+
+  private static Set<String> labelsOf(Subscription subscription) {
+    Set<String> labels = new TreeSet<>();
+    for (Category category : categoriesOf(subscription)) {
+      if (category.getLabel() != null) {
+        labels.add(category.getLabel());
+      }
+    }
+    return labels;
+  }
+}
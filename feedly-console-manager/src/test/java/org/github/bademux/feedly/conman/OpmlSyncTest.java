@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ *  Contributors:
+ *               Bademus
+ */
+
+package org.github.bademux.feedly.conman;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+
+import org.github.bademux.feedly.api.model.Category;
+import org.github.bademux.feedly.api.model.Subscription;
+import org.github.bademux.feedly.api.oauth2.FeedlyCredential;
+import org.github.bademux.feedly.api.service.Feedly;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+
+public class OpmlSyncTest {
+
+  private static final String CLUB = "feed/http://mds-club.ru/cgi-bin/index.cgi?r=85s&sbr=2";
+
+  private static final String NEW = "feed/http://m-d-s.podfm.ru/rss/";
+
+  private static final String LISTEN = "Listen Subscriptions";
+
+  @Test
+  public void testParse() throws Exception {
+    Map<String, Set<String>> feeds;
+    try (InputStream opml = openOpml()) {
+      feeds = OpmlSync.parse(opml);
+    }
+
+    assertEquals("Wrong feeds", Arrays.asList(CLUB, NEW), new ArrayList<>(feeds.keySet()));
+    Set<String> labels = new TreeSet<>(Collections.singleton(LISTEN));
+    assertEquals("Wrong categories of " + CLUB, labels, feeds.get(CLUB));
+    assertEquals("Wrong categories of " + NEW, labels, feeds.get(NEW));
+  }
+
+  @Test
+  public void testDiff() throws Exception {
+    OpmlSync sync = new OpmlSync(newService(
+        "[{\"id\":\"" + NEW + "\",\"title\":\"MDS-NEW\","
+        + "\"categories\":[{\"id\":\"user/u/category/other\",\"label\":\"other\"}]},"
+        + "{\"id\":\"feed/http://example.com/rss\",\"title\":\"example\"}]"));
+
+    try (InputStream opml = openOpml()) {
+      sync.diff(opml);
+    }
+
+    assertEquals("Wrong added", Collections.singletonList(CLUB), idsOf(sync.getAdded()));
+    assertEquals("Wrong updated", Collections.singletonList(NEW), idsOf(sync.getUpdated()));
+    assertEquals("Wrong removed", Collections.singletonList("feed/http://example.com/rss"),
+                 idsOf(sync.getRemoved()));
+    Subscription updated = sync.getUpdated().get(0);
+    assertEquals("Title should be kept", "MDS-NEW", updated.getTitle());
+    assertEquals("Wrong categories", Collections.singletonList(LISTEN),
+                 labelsOf(updated.getCategories()));
+  }
+
+  @Test
+  public void testDiffUnchanged() throws Exception {
+    String category = ",\"categories\":[{\"id\":\"user/u/category/listen\",\"label\":\""
+                      + LISTEN + "\"}]";
+    OpmlSync sync = new OpmlSync(newService("[{\"id\":\"" + CLUB + "\"" + category + "},"
+                                            + "{\"id\":\"" + NEW + "\"" + category + "}]"));
+
+    try (InputStream opml = openOpml()) {
+      sync.diff(opml);
+    }
+
+    assertEquals("Nothing to add", 0, sync.getAdded().size());
+    assertEquals("Nothing to update", 0, sync.getUpdated().size());
+    assertEquals("Nothing to remove", 0, sync.getRemoved().size());
+  }
+
+  @Test(expected = IOException.class)
+  public void testDiffRefusesOpmlWithoutFeeds() throws Exception {
+    OpmlSync sync = new OpmlSync(newService("[{\"id\":\"" + NEW + "\"}]"));
+    String opml = "<?xml version=\"1.0\"?><opml version=\"1.0\"><head/><body>"
+                  + "<outline text=\"" + LISTEN + "\"/></body></opml>";
+
+    sync.diff(new ByteArrayInputStream(opml.getBytes("UTF-8")));
+  }
+
+  private static InputStream openOpml() {
+    return OpmlSyncTest.class.getClassLoader().getResourceAsStream("feedly.opml");
+  }
+
+  private static List<String> idsOf(List<Subscription> subscriptions) {
+    List<String> ids = new ArrayList<>();
+    for (Subscription subscription : subscriptions) {
+      ids.add(subscription.getId());
+    }
+    return ids;
+  }
+
+  private static List<String> labelsOf(List<Category> categories) {
+    List<String> labels = new ArrayList<>();
+    for (Category category : categories) {
+      labels.add(category.getLabel());
+    }
+    return labels;
+  }
+
+  private static Feedly newService(final String subscriptions) {
+    return new Feedly(new MockHttpTransport() {
+      @Override
+      public LowLevelHttpRequest buildRequest(String method, String url) throws IOException {
+        return new MockLowLevelHttpRequest(url).setResponse(
+            new MockLowLevelHttpResponse().setStatusCode(200)
+                .setContentType("application/json").setContent(subscriptions));
+      }
+    }, new GsonFactory(), new FeedlyCredential());
+  }
+}